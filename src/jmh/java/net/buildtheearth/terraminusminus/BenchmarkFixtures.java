@@ -0,0 +1,101 @@
+package net.buildtheearth.terraminusminus;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.imageio.ImageIO;
+
+import net.buildtheearth.terraminusminus.util.IntToDoubleBiFunction;
+
+/**
+ * Generates the synthetic tiles used by the benchmarks, so that they don't depend on any network resources.
+ * <p>
+ * Unless stated otherwise, tiles contain the same smooth terrain, which is rolling enough that neither flat nor noisy inputs end up being special-cased.
+ */
+public final class BenchmarkFixtures {
+    public static final int RESOLUTION = 256;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @return the elevation at the given pixel, in meters
+     */
+    public static double elevation(int x, int z) {
+        return 300.0d * Math.sin(x * (Math.PI / 64.0d)) * Math.cos(z * (Math.PI / 48.0d)) + 20.0d * Math.sin((x + z) * 0.7d);
+    }
+
+    /**
+     * @return a {@link #RESOLUTION}x{@link #RESOLUTION} elevation tile encoded as a Terrarium PNG
+     */
+    public static byte[] terrariumPng() {
+        return terrariumPng(BenchmarkFixtures::elevation);
+    }
+
+    /**
+     * @param values the function providing the value of each pixel
+     * @return a {@link #RESOLUTION}x{@link #RESOLUTION} tile encoded as a Terrarium PNG
+     */
+    public static byte[] terrariumPng(IntToDoubleBiFunction values) {
+        BufferedImage image = new BufferedImage(RESOLUTION, RESOLUTION, BufferedImage.TYPE_INT_ARGB);
+        for (int z = 0; z < RESOLUTION; z++) {
+            for (int x = 0; x < RESOLUTION; x++) {
+                //inverse of ParseTerrariumPngDSP
+                image.setRGB(x, z, 0xFF000000 | ((int) (values.apply(x, z) * 256.0d) + 0x00800000));
+            }
+        }
+
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return a {@link #RESOLUTION}x{@link #RESOLUTION} elevation tile encoded as an uncompressed single-channel 32-bit floating-point TIFF
+     */
+    public static byte[] floatTiff() {
+        final int entries = 10;
+        final int dataOffset = 8 + 2 + entries * 12 + 4;
+        final int dataLength = RESOLUTION * RESOLUTION * Float.BYTES;
+
+        ByteBuffer buf = ByteBuffer.allocate(dataOffset + dataLength).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+
+        //image file directory, tags must be sorted in ascending order
+        buf.putShort((short) entries);
+        tiffEntry(buf, 256, 4, RESOLUTION); //ImageWidth
+        tiffEntry(buf, 257, 4, RESOLUTION); //ImageLength
+        tiffEntry(buf, 258, 3, Float.SIZE); //BitsPerSample
+        tiffEntry(buf, 259, 3, 1); //Compression: none
+        tiffEntry(buf, 262, 3, 1); //PhotometricInterpretation: BlackIsZero
+        tiffEntry(buf, 273, 4, dataOffset); //StripOffsets
+        tiffEntry(buf, 277, 3, 1); //SamplesPerPixel
+        tiffEntry(buf, 278, 4, RESOLUTION); //RowsPerStrip
+        tiffEntry(buf, 279, 4, dataLength); //StripByteCounts
+        tiffEntry(buf, 339, 3, 3); //SampleFormat: IEEE floating point
+        buf.putInt(0); //no more directories
+
+        for (int z = 0; z < RESOLUTION; z++) {
+            for (int x = 0; x < RESOLUTION; x++) {
+                buf.putFloat((float) elevation(x, z));
+            }
+        }
+        return buf.array();
+    }
+
+    private static void tiffEntry(ByteBuffer buf, int tag, int type, int value) {
+        buf.putShort((short) tag).putShort((short) type).putInt(1);
+        if (type == 3) { //SHORT values are left-justified in the value field
+            buf.putShort((short) value).putShort((short) 0);
+        } else {
+            buf.putInt(value);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.buildtheearth.terraminusminus.config.scalarparse.d;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.Unpooled;
+import net.buildtheearth.terraminusminus.BenchmarkFixtures;
+
+/**
+ * Decodes a single elevation tile from each of the supported image formats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DoubleScalarParserBenchmark {
+    private final DoubleScalarParser terrariumPng = new ParseTerrariumPngDSP();
+    private final DoubleScalarParser tiffAuto = new ParseTiffAutoDSP();
+
+    private byte[] png;
+    private byte[] tiff;
+
+    @Setup
+    public void setup() {
+        this.png = BenchmarkFixtures.terrariumPng();
+        this.tiff = BenchmarkFixtures.floatTiff();
+    }
+
+    @Benchmark
+    public double[] terrariumPng() throws IOException {
+        return this.terrariumPng.parse(BenchmarkFixtures.RESOLUTION, Unpooled.wrappedBuffer(this.png));
+    }
+
+    @Benchmark
+    public double[] tiffAuto() throws IOException {
+        return this.tiffAuto.parse(BenchmarkFixtures.RESOLUTION, Unpooled.wrappedBuffer(this.tiff));
+    }
+}
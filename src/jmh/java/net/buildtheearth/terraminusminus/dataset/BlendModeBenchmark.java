@@ -0,0 +1,89 @@
+package net.buildtheearth.terraminusminus.dataset;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.buildtheearth.terraminusminus.BenchmarkFixtures;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.IntToDoubleBiFunction;
+
+/**
+ * Samples a full 16x16 column from a tile using each {@link BlendMode}, the way {@link net.buildtheearth.terraminusminus.dataset.scalar.DoubleTiledDataset}
+ * does.
+ * <p>
+ * {@link #columnPointwise(Blackhole)} and {@link #columnGrid(Blackhole)} sample the same points from a bounding box, one point at a time and
+ * through {@link BlendMode#sampleGrid(CornerBoundingBox2d, int, int, IntToDoubleBiFunction, double[])} respectively.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlendModeBenchmark {
+    @Param({ "NEAR", "LINEAR", "CUBIC" })
+    public BlendMode blend;
+
+    private IntToDoubleBiFunction sampler;
+    private CornerBoundingBox2d bounds;
+    private final double[] out = new double[16 * 16];
+
+    @Setup
+    public void setup() throws OutOfProjectionBoundsException {
+        int resolution = BenchmarkFixtures.RESOLUTION;
+        double[] tile = new double[resolution * resolution];
+        for (int z = 0; z < resolution; z++) {
+            for (int x = 0; x < resolution; x++) {
+                tile[z * resolution + x] = BenchmarkFixtures.elevation(x, z);
+            }
+        }
+        this.sampler = (x, z) -> tile[(z & (resolution - 1)) * resolution + (x & (resolution - 1))];
+
+        this.bounds = new CornerBoundingBox2d(37.25d, 41.5d, 16 * 0.37d, 16 * 0.37d, new EquirectangularProjection(), false);
+    }
+
+    @Benchmark
+    public void column(Blackhole bh) {
+        BlendMode blend = this.blend;
+        IntToDoubleBiFunction sampler = this.sampler;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                bh.consume(blend.get(37.25d + x * 0.37d, 91.5d + z * 0.37d, sampler));
+            }
+        }
+    }
+
+    @Benchmark
+    public void columnPointwise(Blackhole bh) {
+        BlendMode blend = this.blend;
+        IntToDoubleBiFunction sampler = this.sampler;
+        double[] point = new double[2];
+        double fx = 0.0d;
+        for (int x = 0; x < 16; x++, fx += 1.0d / 16) {
+            double fz = 0.0d;
+            for (int z = 0; z < 16; z++, fz += 1.0d / 16) {
+                point = this.bounds.point(point, fx, fz);
+                bh.consume(blend.get(point[0], point[1], sampler));
+            }
+        }
+    }
+
+    @Benchmark
+    public double[] columnGrid() {
+        return this.blend.sampleGrid(this.bounds, 16, 16, this.sampler, this.out);
+    }
+}
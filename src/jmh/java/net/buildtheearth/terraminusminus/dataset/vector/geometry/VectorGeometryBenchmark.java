@@ -0,0 +1,108 @@
+package net.buildtheearth.terraminusminus.dataset.vector.geometry;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.buildtheearth.terraminusminus.dataset.geojson.geometry.LineString;
+import net.buildtheearth.terraminusminus.dataset.geojson.geometry.MultiLineString;
+import net.buildtheearth.terraminusminus.dataset.geojson.geometry.MultiPolygon;
+import net.buildtheearth.terraminusminus.dataset.geojson.geometry.Point;
+import net.buildtheearth.terraminusminus.dataset.geojson.geometry.Polygon;
+import net.buildtheearth.terraminusminus.dataset.vector.draw.DrawFunction;
+import net.buildtheearth.terraminusminus.dataset.vector.geometry.line.WideLine;
+import net.buildtheearth.terraminusminus.dataset.vector.geometry.polygon.DistancePolygon;
+import net.buildtheearth.terraminusminus.dataset.vector.geometry.polygon.FillPolygon;
+import net.buildtheearth.terraminusminus.generator.CachedChunkData;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+/**
+ * Rasterizes vector geometry onto columns, cycling through every column the geometry covers.
+ * <p>
+ * The geometry is already in block coordinates, so this only measures {@link VectorGeometry#apply}, not projection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorGeometryBenchmark {
+    private static final int RADIUS_CHUNKS = 16;
+    private static final DrawFunction DRAW = (data, x, z, weight) -> data.surfaceHeight(x, z, weight);
+
+    private FillPolygon fillPolygon;
+    private DistancePolygon distancePolygon;
+    private WideLine wideLine;
+
+    private final CachedChunkData.Builder builder = new CachedChunkData.Builder();
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1234L);
+        double radius = RADIUS_CHUNKS * 16.0d;
+
+        //a roughly circular polygon with a jagged outline, like a lake
+        Point[] ring = new Point[513];
+        for (int i = 0; i < ring.length - 1; i++) {
+            double angle = i * (2.0d * Math.PI / (ring.length - 1));
+            double r = radius * random.nextDouble(0.85d, 1.0d);
+            ring[i] = new Point(Math.cos(angle) * r, Math.sin(angle) * r);
+        }
+        ring[ring.length - 1] = ring[0];
+        MultiPolygon polygons = new MultiPolygon(new Polygon[]{ new Polygon(new LineString(ring), new LineString[0]) });
+
+        //a winding line across the same area, like a road
+        Point[] line = new Point[256];
+        for (int i = 0; i < line.length; i++) {
+            double x = -radius + i * (2.0d * radius / (line.length - 1));
+            line[i] = new Point(x, Math.sin(x * 0.02d) * radius * 0.5d + random.nextDouble(-4.0d, 4.0d));
+        }
+        MultiLineString lines = new MultiLineString(new LineString[]{ new LineString(line) });
+
+        this.fillPolygon = new FillPolygon("fill", 0.0d, DRAW, polygons);
+        this.distancePolygon = new DistancePolygon("distance", 0.0d, DRAW, polygons, 5);
+        this.wideLine = new WideLine("line", 0.0d, DRAW, lines, 4.0d);
+    }
+
+    private void apply(VectorGeometry geometry) {
+        int side = RADIUS_CHUNKS * 2;
+        int index = this.next++;
+        int chunkX = Math.floorMod(index, side) - RADIUS_CHUNKS;
+        int chunkZ = Math.floorMod(index / side, side) - RADIUS_CHUNKS;
+
+        int baseX = ChunkPos.cubeToMinBlock(chunkX);
+        int baseZ = ChunkPos.cubeToMinBlock(chunkZ);
+        geometry.apply(this.builder, chunkX, chunkZ, Bounds2d.of(baseX, baseX + 16, baseZ, baseZ + 16));
+    }
+
+    @Benchmark
+    public CachedChunkData.Builder fillPolygon() {
+        this.apply(this.fillPolygon);
+        return this.builder;
+    }
+
+    @Benchmark
+    public CachedChunkData.Builder distancePolygon() {
+        this.apply(this.distancePolygon);
+        return this.builder;
+    }
+
+    @Benchmark
+    public CachedChunkData.Builder wideLine() {
+        this.apply(this.wideLine);
+        return this.builder;
+    }
+}
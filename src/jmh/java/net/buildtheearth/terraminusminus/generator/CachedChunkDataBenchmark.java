@@ -0,0 +1,121 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import net.buildtheearth.terraminusminus.BenchmarkFixtures;
+import net.buildtheearth.terraminusminus.substitutes.BlockState;
+import net.buildtheearth.terraminusminus.substitutes.MetaBiome;
+
+/**
+ * Measures how expensive it is to build {@link CachedChunkData}, and how much memory it takes up once built.
+ * <p>
+ * The columns cover an area of {@link #AREA_CHUNKS}x{@link #AREA_CHUNKS} chunks of the fixture terrain, with everything below sea level
+ * turned into ocean and a tree cover attribute like the one the default bakers add.
+ * <p>
+ * {@link #footprint(Footprint)} reports the retained size of the columns in bytes per column (as measured by JOL, so objects which are shared
+ * between columns are only counted once) as {@code bytesPerColumn}, and the size of the same data stored as plain arrays as
+ * {@code uncompressedBytesPerColumn}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CachedChunkDataBenchmark {
+    private static final int AREA_CHUNKS = 32;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        if (BiomesRegistry.get() == null) {
+            BiomesRegistry.setDefaultBiomesRegistry(new BiomesRegistry() {
+            });
+        }
+    }
+
+    @Benchmark
+    public CachedChunkData build() {
+        int index = this.next++;
+        return column(Math.floorMod(index, AREA_CHUNKS), Math.floorMod(index / AREA_CHUNKS, AREA_CHUNKS));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public CachedChunkData[] footprint(Footprint footprint) {
+        CachedChunkData[] columns = new CachedChunkData[AREA_CHUNKS * AREA_CHUNKS];
+        Object[] uncompressed = new Object[AREA_CHUNKS * AREA_CHUNKS];
+        for (int chunkX = 0; chunkX < AREA_CHUNKS; chunkX++) {
+            for (int chunkZ = 0; chunkZ < AREA_CHUNKS; chunkZ++) {
+                CachedChunkData column = columns[chunkX * AREA_CHUNKS + chunkZ] = column(chunkX, chunkZ);
+
+                int[] surfaceHeight = new int[16 * 16];
+                int[] groundHeight = new int[16 * 16];
+                BlockState[] surfaceBlocks = new BlockState[16 * 16];
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        surfaceHeight[x * 16 + z] = column.surfaceHeight(x, z);
+                        groundHeight[x * 16 + z] = column.groundHeight(x, z);
+                        surfaceBlocks[x * 16 + z] = column.surfaceBlock(x, z);
+                    }
+                }
+                uncompressed[chunkX * AREA_CHUNKS + chunkZ] = new Object[]{
+                        surfaceHeight, groundHeight, column.biomes(), surfaceBlocks, column.getCustom(EarthGeneratorPipelines.DATA_TREE_COVER)
+                };
+            }
+        }
+
+        footprint.bytesPerColumn = GraphLayout.parseInstance((Object[]) columns).totalSize() / columns.length;
+        footprint.uncompressedBytesPerColumn = GraphLayout.parseInstance(uncompressed).totalSize() / uncompressed.length;
+        return columns;
+    }
+
+    private static CachedChunkData column(int chunkX, int chunkZ) {
+        CachedChunkData.Builder builder = CachedChunkData.builder();
+        byte[] treeCover = new byte[16 * 16];
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int height = (int) Math.floor(BenchmarkFixtures.elevation(chunkX * 16 + x, chunkZ * 16 + z));
+                builder.surfaceHeight(x, z, height);
+                if (height < 0) {
+                    builder.updateOceanDepth(x, z, -height);
+                }
+                builder.biomes()[z * 16 + x] = height < 0 ? MetaBiome.DEEP_OCEAN : height < 150 ? MetaBiome.PLAINS : MetaBiome.FOREST;
+                treeCover[x * 16 + z] = (byte) (height < 0 ? 0 : (height * 7) & 0xFF);
+            }
+        }
+        builder.putCustom(EarthGeneratorPipelines.DATA_TREE_COVER, treeCover);
+        return builder.build();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerColumn;
+        public long uncompressedBytesPerColumn;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytesPerColumn = 0L;
+            this.uncompressedBytesPerColumn = 0L;
+        }
+    }
+}
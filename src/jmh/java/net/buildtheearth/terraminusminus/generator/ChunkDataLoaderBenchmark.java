@@ -0,0 +1,96 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.buildtheearth.terraminusminus.BenchmarkFixtures;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.TerraExecutors;
+import net.buildtheearth.terraminusminus.config.scalarparse.d.ParseTerrariumPngDSP;
+import net.buildtheearth.terraminusminus.dataset.BlendMode;
+import net.buildtheearth.terraminusminus.dataset.scalar.ConfigurableDoubleTiledDataset;
+import net.buildtheearth.terraminusminus.generator.data.HeightsBaker;
+import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
+import net.buildtheearth.terraminusminus.generator.data.NullIslandBaker;
+import net.buildtheearth.terraminusminus.generator.data.TreeCoverBaker;
+import net.buildtheearth.terraminusminus.projection.GeographicProjection;
+import net.buildtheearth.terraminusminus.projection.mercator.WebMercatorProjection;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+
+/**
+ * Loads columns through the full {@link ChunkDataLoader} pipeline with the default BTE projection, backed by tiles read from local files.
+ * <p>
+ * Every tile of both datasets resolves to the same fixture file, and the columns cycle through a fixed area, so once warmed up this measures
+ * the steady state where the tiles are already cached: projecting bounds, sampling, blending and baking. OSM isn't included, as its tiles
+ * can't be served locally.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkDataLoaderBenchmark {
+    private static final int AREA_CHUNKS = 64;
+
+    private Path directory;
+    private ChunkDataLoader loader;
+    private int baseX;
+    private int baseZ;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        TerraConfig.reducedConsoleMessages = true;
+
+        this.directory = Files.createTempDirectory("terraminusminus-bench");
+        Path heights = Files.write(this.directory.resolve("heights.png"), BenchmarkFixtures.terrariumPng());
+        Path treeCover = Files.write(this.directory.resolve("tree_cover.png"), BenchmarkFixtures.terrariumPng((x, z) -> ((x ^ z) & 0xFF) / 255.0d));
+
+        Map<String, Object> datasets = new HashMap<>();
+        datasets.put(EarthGeneratorPipelines.KEY_DATASET_HEIGHTS, new ConfigurableDoubleTiledDataset(
+                new String[]{ heights.toUri().toString() }, BenchmarkFixtures.RESOLUTION, BlendMode.CUBIC, new ParseTerrariumPngDSP(), new WebMercatorProjection(13)));
+        datasets.put(EarthGeneratorPipelines.KEY_DATASET_TREE_COVER, new ConfigurableDoubleTiledDataset(
+                new String[]{ treeCover.toUri().toString() }, BenchmarkFixtures.RESOLUTION, BlendMode.LINEAR, new ParseTerrariumPngDSP(), new WebMercatorProjection(12)));
+
+        GeographicProjection projection = EarthGeneratorSettings.parse(EarthGeneratorSettings.BTE_DEFAULT_SETTINGS).projection();
+        this.loader = new ChunkDataLoader(new GeneratorDatasets(datasets, projection),
+                new IEarthDataBaker<?>[]{ new TreeCoverBaker(), new HeightsBaker(), new NullIslandBaker() }, TerraExecutors.bake());
+
+        double[] origin = projection.fromGeo(7.65d, 45.98d); //somewhere in the alps
+        this.baseX = ChunkPos.blockToCube((int) origin[0]);
+        this.baseZ = ChunkPos.blockToCube((int) origin[1]);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> stream = Files.walk(this.directory)) {
+            stream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public CachedChunkData load() {
+        int index = this.next++;
+        ChunkPos pos = new ChunkPos(this.baseX + Math.floorMod(index, AREA_CHUNKS), this.baseZ + Math.floorMod(index / AREA_CHUNKS, AREA_CHUNKS));
+        return this.loader.load(pos).join();
+    }
+}
@@ -0,0 +1,70 @@
+package net.buildtheearth.terraminusminus.projection.dymaxion;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+
+/**
+ * Projects random points with the Dymaxion projections, in both directions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DymaxionProjectionBenchmark {
+    private static final int POINTS = 4096;
+
+    @Param({ "dymaxion", "conformal" })
+    public String projection;
+
+    private DymaxionProjection instance;
+    private double[] geo;
+    private double[] projected;
+    private int next;
+
+    @Setup
+    public void setup() throws OutOfProjectionBoundsException {
+        this.instance = "conformal".equals(this.projection) ? new ConformalDynmaxionProjection() : new DymaxionProjection();
+
+        SplittableRandom random = new SplittableRandom(1234L);
+        this.geo = new double[POINTS * 2];
+        this.projected = new double[POINTS * 2];
+        for (int i = 0; i < POINTS; i++) {
+            double lon = random.nextDouble(-180.0d, 180.0d);
+            double lat = Math.toDegrees(Math.asin(random.nextDouble(-1.0d, 1.0d))); //uniformly distributed over the sphere
+            double[] xy = this.instance.fromGeo(lon, lat);
+
+            this.geo[i * 2] = lon;
+            this.geo[i * 2 + 1] = lat;
+            this.projected[i * 2] = xy[0];
+            this.projected[i * 2 + 1] = xy[1];
+        }
+    }
+
+    @Benchmark
+    public double[] fromGeo() throws OutOfProjectionBoundsException {
+        int i = (this.next++ & (POINTS - 1)) << 1;
+        return this.instance.fromGeo(this.geo[i], this.geo[i + 1]);
+    }
+
+    @Benchmark
+    public double[] toGeo() throws OutOfProjectionBoundsException {
+        int i = (this.next++ & (POINTS - 1)) << 1;
+        return this.instance.toGeo(this.projected[i], this.projected[i + 1]);
+    }
+}
@@ -0,0 +1,63 @@
+package net.buildtheearth.terraminusminus.util.bvh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.buildtheearth.terraminusminus.dataset.vector.geometry.Segment;
+
+/**
+ * Queries a {@link QuadtreeBVH} of short line segments (like the roads in an OSM tile) with the bounds of a single column.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuadtreeBVHBenchmark {
+    private static final int AREA = 4096;
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private BVH<Segment> bvh;
+    private Bounds2d[] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1234L);
+        Segment[] segments = new Segment[this.size];
+        for (int i = 0; i < segments.length; i++) {
+            double x = random.nextDouble(AREA);
+            double z = random.nextDouble(AREA);
+            segments[i] = new Segment(x, z, x + random.nextDouble(-32.0d, 32.0d), z + random.nextDouble(-32.0d, 32.0d));
+        }
+        this.bvh = new QuadtreeBVH<>(segments);
+
+        this.queries = new Bounds2d[1024];
+        for (int i = 0; i < this.queries.length; i++) {
+            int x = random.nextInt(AREA) & ~15;
+            int z = random.nextInt(AREA) & ~15;
+            this.queries[i] = Bounds2d.of(x, x + 16, z, z + 16);
+        }
+    }
+
+    @Benchmark
+    public void forEachIntersecting(Blackhole bh) {
+        this.bvh.forEachIntersecting(this.queries[this.next++ & (this.queries.length - 1)], bh::consume);
+    }
+}
@@ -0,0 +1,57 @@
+package net.buildtheearth.terraminusminus.util.interval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.buildtheearth.terraminusminus.dataset.vector.geometry.Segment;
+
+/**
+ * Queries an {@link IntervalTree} of polygon edges the way {@link net.buildtheearth.terraminusminus.dataset.vector.geometry.polygon.AbstractPolygon}
+ * does when rasterizing a row of blocks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntervalTreeBenchmark {
+    private static final int AREA = 4096;
+
+    @Param({ "100", "10000" })
+    public int size;
+
+    private IntervalTree<Segment> tree;
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1234L);
+        List<Segment> segments = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            double x = random.nextDouble(AREA);
+            double z = random.nextDouble(AREA);
+            segments.add(new Segment(x, z, x + random.nextDouble(-64.0d, 64.0d), z + random.nextDouble(-64.0d, 64.0d)));
+        }
+        this.tree = new IntervalTree<>(segments);
+    }
+
+    @Benchmark
+    public List<Segment> getAllIntersecting() {
+        return this.tree.getAllIntersecting((this.next++ & (AREA - 1)) + 0.5d);
+    }
+}
@@ -10,6 +10,16 @@ public class TerraConfig {
 
 	public static HttpOpts http = new HttpOpts();
 
+	public static ExecutorOpts executors = new ExecutorOpts();
+
+	public static ChunkStoreOpts chunkStore = new ChunkStoreOpts();
+
+	public static MetricsOpts metrics = new MetricsOpts();
+
+	public static TileCacheOpts tileCache = new TileCacheOpts();
+
+	public static DatasetOpts datasets = new DatasetOpts();
+
 	public static class OSMOpts {
 		public String[] servers = {
 				"https://cloud.daporkchop.net/gis/osm/0/"
@@ -30,4 +40,139 @@ public class TerraConfig {
 
 		public int cacheTTL = 1440;
 	}
+
+	public static class ExecutorOpts {
+
+		/**
+		 * The pool used for CPU-bound work such as sampling datasets and baking chunk data.
+		 */
+		public PoolOpts bake = new PoolOpts(Math.max(Runtime.getRuntime().availableProcessors() >> 1, 1));
+
+		/**
+		 * The pool used for decoding downloaded tiles (PNG, TIFF, GeoJSON...).
+		 */
+		public PoolOpts decode = new PoolOpts(Math.max(Runtime.getRuntime().availableProcessors() >> 1, 1));
+
+		/**
+		 * The pool used for callbacks from the network and disk threads.
+		 */
+		public PoolOpts io = new PoolOpts(2);
+
+		/**
+		 * The pool used for reading and writing stored chunk data, which blocks on disk access.
+		 */
+		public PoolOpts store = new PoolOpts(2);
+	}
+
+	public static class ChunkStoreOpts {
+
+		/**
+		 * Whether to persist baked chunk data to disk, so that it doesn't need to be baked again after a restart.
+		 * <p>
+		 * This must be enabled for the generator to make use of columns baked by the pregenerator.
+		 */
+		public boolean enabled = false;
+
+		/**
+		 * The maximum number of region files to keep open at once.
+		 */
+		public int maxOpenRegions = 64;
+
+		/**
+		 * The number of minutes after which stored columns are baked again, so that changes to the source data are picked up, or 0 to keep them
+		 * forever.
+		 * <p>
+		 * Defaults to the same duration as {@link HttpOpts#cacheTTL}.
+		 */
+		public int ttl = 1440;
+	}
+
+	public static class MetricsOpts {
+
+		/**
+		 * Whether to record timings and counters for the generation pipeline. Recording is cheap enough to be left on in production.
+		 */
+		public boolean enabled = true;
+
+		/**
+		 * Whether to expose the metrics as MXBeans, so that they can be inspected with a JMX client.
+		 */
+		public boolean jmx = true;
+	}
+
+	public static class TileCacheOpts {
+
+		/**
+		 * The maximum number of bytes of loaded tiles to keep in memory, across all datasets.
+		 * <p>
+		 * This includes tiles kept off-heap, so it may need to be raised together with {@code -XX:MaxDirectMemorySize} when they are in use.
+		 */
+		public long maxBytes = Runtime.getRuntime().maxMemory() >> 2;
+
+		/**
+		 * The maximum number of bytes of loaded tiles to keep in memory for a single dataset.
+		 */
+		public long maxBytesPerDataset = Runtime.getRuntime().maxMemory() >> 3;
+
+		/**
+		 * The number of seconds to wait before trying to load a tile again after it failed to load.
+		 */
+		public int failureTTL = 300;
+	}
+
+	public static class DatasetOpts {
+
+		/**
+		 * The number of overlapping datasets a multi-resolution dataset requests at once, starting with the highest priority ones.
+		 * <p>
+		 * With the default of 1, each dataset is only requested once all higher priority datasets have been sampled and left some samples empty.
+		 * Higher values trade extra downloads for fewer sequential round trips, as lower priority datasets are requested speculatively. Requests
+		 * which turn out to be unnecessary are cancelled.
+		 */
+		public int speculativeFetches = 1;
+
+		/**
+		 * The number of tiles around each newly loaded tile which tiled datasets load ahead of time in the background, or 0 to disable prefetching.
+		 * <p>
+		 * While requests move steadily in one direction, only the tiles ahead of them are prefetched.
+		 */
+		public int prefetchRadius = 0;
+
+		/**
+		 * The maximum number of prefetched tiles a single dataset may be loading at once.
+		 */
+		public int maxPrefetches = 16;
+
+		/**
+		 * The maximum number of minutes for which tiles which were not found are remembered, or 0 to not remember them at all.
+		 * <p>
+		 * Tiles are forgotten sooner if the server's response may not be cached for that long.
+		 * <p>
+		 * Has no effect if {@link HttpOpts#cache} is disabled.
+		 */
+		public int missingTilesTTL = 10080;
+	}
+
+	public static class PoolOpts {
+
+		/**
+		 * The number of worker threads. Ignored if {@link #virtual} is set.
+		 */
+		public int threads;
+
+		/**
+		 * Whether to run each task on its own virtual thread instead of a fixed pool of platform threads.
+		 * <p>
+		 * Only has an effect on Java 21+, older runtimes fall back to platform threads.
+		 */
+		public boolean virtual;
+
+		public PoolOpts() {
+			this(1);
+		}
+
+		public PoolOpts(int threads) {
+			this.threads = threads;
+		}
+	}
 }
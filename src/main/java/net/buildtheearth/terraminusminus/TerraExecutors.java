@@ -0,0 +1,169 @@
+package net.buildtheearth.terraminusminus;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * The thread pools used by the generation pipeline.
+ * <p>
+ * Terra-- never runs its own work on {@link java.util.concurrent.ForkJoinPool#commonPool()}, as it is shared with the rest of the JVM (and therefore
+ * the server). Instead, work is split into four separately sized pools:
+ * <ul>
+ *     <li>{@link #bake()}: CPU-bound work, such as sampling datasets and baking chunk data</li>
+ *     <li>{@link #decode()}: decoding of downloaded tiles</li>
+ *     <li>{@link #io()}: callbacks from the network and disk threads, which must never be blocked</li>
+ *     <li>{@link #store()}: blocking reads and writes of the {@link net.buildtheearth.terraminusminus.generator.ChunkDataStore}</li>
+ * </ul>
+ * The pools are configured through {@link TerraConfig#executors}, and are lazily re-created after {@link #configChanged()} is called. The
+ * {@link Executor}s returned by this class always forward to the current pools, so they may safely be stored.
+ */
+@UtilityClass
+public class TerraExecutors {
+    private final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        MethodHandle handle = null;
+        try {
+            handle = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException ignored) { //virtual threads aren't supported on this JVM
+        }
+        NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = handle;
+    }
+
+    private final Pool BAKE = new Pool("bake", () -> TerraConfig.executors.bake);
+    private final Pool DECODE = new Pool("decode", () -> TerraConfig.executors.decode);
+    private final Pool IO = new Pool("I/O", () -> TerraConfig.executors.io);
+    private final Pool STORE = new Pool("store", () -> TerraConfig.executors.store);
+
+    /**
+     * @return the {@link Executor} to use for CPU-bound work
+     */
+    public Executor bake() {
+        return BAKE;
+    }
+
+    /**
+     * @return the {@link Executor} to use for decoding tiles
+     */
+    public Executor decode() {
+        return DECODE;
+    }
+
+    /**
+     * @return the {@link Executor} to use for callbacks from I/O threads
+     */
+    public Executor io() {
+        return IO;
+    }
+
+    /**
+     * @return the {@link Executor} to use for blocking reads and writes of stored chunk data
+     */
+    public Executor store() {
+        return STORE;
+    }
+
+    /**
+     * Should be called whenever {@link TerraConfig#executors} is modified.
+     * <p>
+     * The returned {@link Executor}s stay valid: tasks submitted after this call (including continuations of futures which are already in flight)
+     * are run by new pools, while the current pools are shut down once all of their queued tasks have completed.
+     */
+    public void configChanged() {
+        BAKE.replace();
+        DECODE.replace();
+        IO.replace();
+        STORE.replace();
+    }
+
+    private ExecutorService create(@NonNull String name, @NonNull TerraConfig.PoolOpts opts) {
+        if (opts.virtual) {
+            if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+                try {
+                    return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+                } catch (Throwable t) {
+                    TerraMinusMinus.LOGGER.error("Unable to create virtual thread executor for " + name + " pool, falling back to platform threads", t);
+                }
+            } else {
+                TerraMinusMinus.LOGGER.warn("Virtual threads are not supported by this JVM, falling back to platform threads for {} pool", name);
+            }
+        }
+
+        int threads = positive(opts.threads, "threads");
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setDaemon(true).setPriority(Thread.MIN_PRIORITY).setNameFormat("terra-- " + name + " thread #%d").build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * An {@link Executor} which forwards tasks to the current pool of its kind.
+     * <p>
+     * Callers hold on to these rather than the pools themselves, so that replacing a pool never causes their tasks to be rejected.
+     */
+    private static final class Pool implements Executor {
+        private final String name;
+        private final Supplier<TerraConfig.PoolOpts> opts;
+
+        private volatile ExecutorService delegate;
+
+        Pool(@NonNull String name, @NonNull Supplier<TerraConfig.PoolOpts> opts) {
+            this.name = name;
+            this.opts = opts;
+        }
+
+        @Override
+        public void execute(@NonNull Runnable task) {
+            while (true) {
+                ExecutorService delegate = this.delegate();
+                try {
+                    delegate.execute(task);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    if (this.delegate == delegate) { //the pool wasn't replaced concurrently, so the rejection is genuine
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        private ExecutorService delegate() {
+            ExecutorService delegate = this.delegate;
+            if (delegate == null) {
+                synchronized (this) {
+                    if ((delegate = this.delegate) == null) {
+                        this.delegate = delegate = create(this.name, this.opts.get());
+                    }
+                }
+            }
+            return delegate;
+        }
+
+        void replace() {
+            ExecutorService delegate;
+            synchronized (this) {
+                delegate = this.delegate;
+                this.delegate = null;
+            }
+            if (delegate != null) { //queued tasks still run, new ones go to the next pool
+                delegate.shutdown();
+            }
+        }
+    }
+}
@@ -36,6 +36,13 @@ import net.buildtheearth.terraminusminus.config.scalarparse.i.ParseTiffISP;
 import net.buildtheearth.terraminusminus.config.scalarparse.i.RGBExtractISP;
 import net.buildtheearth.terraminusminus.config.scalarparse.i.RequireOpaqueISP;
 import net.buildtheearth.terraminusminus.config.scalarparse.i.SwapAxesISP;
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.dataset.scalar.GeoTiffDataset;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.DoubleTileStorage;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.FloatTileStorage;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.OffHeapTileStorage;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.ShortTileStorage;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.TileStorage;
 import net.buildtheearth.terraminusminus.projection.AzimuthalEquidistantProjection;
 import net.buildtheearth.terraminusminus.projection.LambertAzimuthalProjection;
 import net.buildtheearth.terraminusminus.projection.EqualEarthProjection;
@@ -136,6 +143,17 @@ public class GlobalParseRegistries {
             .put("parse_tiff", ParseTiffISP.class)
             .build();
 
+    public final BiMap<String, Class<? extends TileStorage>> TILE_STORAGES = new BiMapBuilder<String, Class<? extends TileStorage>>()
+            .put("double", DoubleTileStorage.class)
+            .put("float", FloatTileStorage.class)
+            .put("short", ShortTileStorage.class)
+            .put("off_heap", OffHeapTileStorage.class)
+            .build();
+
+    public final BiMap<String, Class<? extends IScalarDataset>> SCALAR_DATASETS = new BiMapBuilder<String, Class<? extends IScalarDataset>>()
+            .put("geotiff", GeoTiffDataset.class)
+            .build();
+
     /**
      * Stupid builder class so that I can populate the initial values cleanly using chained method calls.
      *
@@ -3,9 +3,11 @@ package net.buildtheearth.terraminusminus.dataset;
 import com.fasterxml.jackson.annotation.JsonAlias;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
 import net.buildtheearth.terraminusminus.util.IntToDoubleBiFunction;
 
 import static net.daporkchop.lib.common.math.PMath.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
 
 /**
  * @author DaPorkchop_
@@ -18,6 +20,13 @@ public enum BlendMode {
             //very simple - just round down
             return sampler.apply(floorI(scaledX), floorI(scaledZ));
         }
+
+        @Override
+        protected void blendGrid(@NonNull double[] xs, @NonNull double[] zs, int count, @NonNull double[] samples, int originX, int originZ, int stride, @NonNull double[] out) {
+            for (int i = 0; i < count; i++) {
+                out[i] = samples[(floorI(zs[i]) - originZ) * stride + (floorI(xs[i]) - originX)];
+            }
+        }
     },
     LINEAR(0.0d, 2) {
         @Override
@@ -36,6 +45,25 @@ public enum BlendMode {
 
             return lerp(lerp(v00, v01, fz), lerp(v10, v11, fz), fx);
         }
+
+        @Override
+        protected void blendGrid(@NonNull double[] xs, @NonNull double[] zs, int count, @NonNull double[] samples, int originX, int originZ, int stride, @NonNull double[] out) {
+            for (int i = 0; i < count; i++) {
+                int sampleX = floorI(xs[i]);
+                int sampleZ = floorI(zs[i]);
+
+                double fx = xs[i] - sampleX;
+                double fz = zs[i] - sampleZ;
+
+                int base = (sampleZ - originZ) * stride + (sampleX - originX);
+                double v00 = samples[base];
+                double v01 = samples[base + stride];
+                double v10 = samples[base + 1];
+                double v11 = samples[base + stride + 1];
+
+                out[i] = lerp(lerp(v00, v01, fz), lerp(v10, v11, fz), fx);
+            }
+        }
     },
     @JsonAlias("SMOOTH") //old name
     CUBIC(-0.5d, 3) {
@@ -110,6 +138,33 @@ public enum BlendMode {
             double v21 = sampler.apply(sampleX + 2, sampleZ + 1);
             double v22 = sampler.apply(sampleX + 2, sampleZ + 2);
 
+            return this.interpolate(fx, fz, v00, v01, v02, v10, v11, v12, v20, v21, v22);
+        }
+
+        @Override
+        protected void blendGrid(@NonNull double[] xs, @NonNull double[] zs, int count, @NonNull double[] samples, int originX, int originZ, int stride, @NonNull double[] out) {
+            for (int i = 0; i < count; i++) {
+                double x = xs[i] - 0.5d;
+                double z = zs[i] - 0.5d;
+
+                int sampleX = floorI(x);
+                int sampleZ = floorI(z);
+
+                double fx = x - sampleX;
+                double fz = z - sampleZ;
+
+                int row0 = (sampleZ - originZ) * stride + (sampleX - originX);
+                int row1 = row0 + stride;
+                int row2 = row1 + stride;
+
+                out[i] = this.interpolate(fx, fz,
+                        samples[row0], samples[row1], samples[row2],
+                        samples[row0 + 1], samples[row1 + 1], samples[row2 + 1],
+                        samples[row0 + 2], samples[row1 + 2], samples[row2 + 2]);
+            }
+        }
+
+        double interpolate(double fx, double fz, double v00, double v01, double v02, double v10, double v11, double v12, double v20, double v21, double v22) {
             //Compute smooth 9-point interpolation on this block
             double result = this.compute(fx, fz, v00, v01, v02, v10, v11, v12, v20, v21, v22);
 
@@ -125,4 +180,87 @@ public enum BlendMode {
     public final int size;
 
     public abstract double get(double scaledX, double scaledZ, @NonNull IntToDoubleBiFunction sampler);
+
+    /**
+     * Samples a grid of points spread evenly over the given bounding box.
+     * <p>
+     * The result is identical to calling {@link #get(double, double, IntToDoubleBiFunction)} for each point, but the raw samples covered by the
+     * bounding box are read from the sampler only once each, a whole row at a time (see {@link IntToDoubleBiFunction#applyRow}), and then
+     * blended by a loop specialized for this blend mode, rather than through a virtual call per raw sample. Bounding boxes which are much larger than the number of points to sample fall back to sampling each point
+     * individually, so that coarse queries over large areas don't read every raw sample in between.
+     *
+     * @param localBounds the bounding box, in the sampler's coordinate space
+     * @param sizeX       the number of points to sample along the X axis
+     * @param sizeZ       the number of points to sample along the Z axis
+     * @param sampler     the function providing the raw samples
+     * @param out         the array to write the values to, ordered by X, then by Z. Must have room for at least {@code sizeX * sizeZ} values
+     * @return {@code out}
+     */
+    public double[] sampleGrid(@NonNull CornerBoundingBox2d localBounds, int sizeX, int sizeZ, @NonNull IntToDoubleBiFunction sampler, @NonNull double[] out) {
+        int count = positive(sizeX, "sizeX") * positive(sizeZ, "sizeZ");
+        checkArg(out.length >= count, "out must have room for at least %d values (given: %d)", count, out.length);
+
+        //compute the points in exactly the same way as callers of get() do
+        double[] xs = new double[count];
+        double[] zs = new double[count];
+        double stepX = 1.0d / sizeX;
+        double stepZ = 1.0d / sizeZ;
+        double[] point = new double[2];
+        double fx = 0.0d;
+        for (int i = 0, x = 0; x < sizeX; x++, fx += stepX) {
+            double fz = 0.0d;
+            for (int z = 0; z < sizeZ; z++, fz += stepZ) {
+                point = localBounds.point(point, fx, fz);
+                xs[i] = point[0];
+                zs[i++] = point[1];
+            }
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minZ = Math.min(minZ, zs[i]);
+            maxZ = Math.max(maxZ, zs[i]);
+        }
+
+        //the raw samples read by this blend mode for any of the points
+        int taps = Math.max(this.size, 1);
+        int originX = floorI(minX + this.offset);
+        int originZ = floorI(minZ + this.offset);
+        int windowX = floorI(maxX + this.offset) + taps - originX;
+        int windowZ = floorI(maxZ + this.offset) + taps - originZ;
+        if ((long) windowX * windowZ > (long) count * taps * taps) { //reading the whole window would be more work than sampling each point
+            for (int i = 0; i < count; i++) {
+                out[i] = this.get(xs[i], zs[i], sampler);
+            }
+            return out;
+        }
+
+        //tiled samplers store their samples in rows along the X axis, so the window is read one row at a time
+        double[] samples = new double[windowX * windowZ];
+        for (int z = 0; z < windowZ; z++) {
+            sampler.applyRow(originX, originZ + z, samples, z * windowX, windowX);
+        }
+
+        this.blendGrid(xs, zs, count, samples, originX, originZ, windowX, out);
+        return out;
+    }
+
+    /**
+     * Blends the values at the given points from a window of raw samples.
+     *
+     * @param xs      the X coordinates of the points
+     * @param zs      the Z coordinates of the points
+     * @param count   the number of points
+     * @param samples the raw samples, ordered by Z, then by X
+     * @param originX the X coordinate of the first raw sample in the window
+     * @param originZ the Z coordinate of the first raw sample in the window
+     * @param stride  the number of raw samples along the X axis of the window
+     * @param out     the array to write the values to
+     */
+    protected abstract void blendGrid(@NonNull double[] xs, @NonNull double[] zs, int count, @NonNull double[] samples, int originX, int originZ, int stride, @NonNull double[] out);
 }
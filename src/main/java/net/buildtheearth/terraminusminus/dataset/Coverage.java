@@ -0,0 +1,42 @@
+package net.buildtheearth.terraminusminus.dataset;
+
+import lombok.NonNull;
+
+/**
+ * Describes whether or not a dataset has any data within a given area, without actually querying it.
+ *
+ * @see IScalarDataset#coverage(net.buildtheearth.terraminusminus.util.CornerBoundingBox2d)
+ * @see IElementDataset#coverage(net.buildtheearth.terraminusminus.util.CornerBoundingBox2d)
+ */
+public enum Coverage {
+    /**
+     * The dataset definitely has no data within the area, so querying it would only ever return empty results.
+     */
+    NONE,
+    /**
+     * It isn't known yet whether or not the dataset has any data within the area (e.g. because the relevant tiles haven't been loaded), but
+     * it may be known at a later point.
+     */
+    UNKNOWN,
+    /**
+     * The dataset may have data within the area.
+     */
+    POSSIBLE;
+
+    /**
+     * Combines this coverage with the coverage of another dataset for the same area.
+     *
+     * @param other the other coverage
+     * @return the combined coverage
+     */
+    public Coverage or(@NonNull Coverage other) {
+        return this.ordinal() >= other.ordinal() ? this : other;
+    }
+
+    /**
+     * @return whether or not this coverage will stay the same for as long as the dataset exists
+     */
+    public boolean isFinal() {
+        return this != UNKNOWN;
+    }
+}
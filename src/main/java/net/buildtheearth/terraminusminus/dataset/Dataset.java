@@ -1,26 +1,116 @@
 package net.buildtheearth.terraminusminus.dataset;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.metrics.Counter;
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
+import net.buildtheearth.terraminusminus.util.metrics.Timer;
 
 /**
  * @author DaPorkchop_
  */
 public abstract class Dataset<K, V> extends CacheLoader<K, CompletableFuture<V>> implements IDataset<K, V> {
-    protected final LoadingCache<K, CompletableFuture<V>> cache = CacheBuilder.newBuilder()
-            .softValues()
-            .expireAfterAccess(5L, TimeUnit.MINUTES)
-            .build(this);
+    private static final ClassValue<DatasetMetrics> METRICS = new ClassValue<DatasetMetrics>() {
+        @Override
+        protected DatasetMetrics computeValue(Class<?> type) {
+            return new DatasetMetrics(Metrics.nameOf(type));
+        }
+    };
+
+    protected final TileCache<K, V> cache = new TileCache<>(TileCache.GLOBAL, this::maxCacheBytes, this::weigh, METRICS.get(this.getClass()).evictions, this::released);
 
     @Override
     public CompletableFuture<V> getAsync(@NonNull K key) {
-        return this.cache.getUnchecked(key);
+        RequestTicket ticket = RequestTicket.current();
+        DatasetMetrics metrics = METRICS.get(this.getClass());
+        while (true) {
+            CompletableFuture<V> future = this.cache.getIfPresent(key);
+            if (future != null) {
+                metrics.hits.increment();
+            } else {
+                metrics.misses.increment();
+
+                //concurrent misses for the same key all share the load of whichever one gets to add its future to the cache first
+                TrackedFuture<V> loading = new TrackedFuture<>(new RequestTicket.Shared(ticket));
+                future = this.cache.putIfAbsent(key, loading);
+                if (future == null) {
+                    this.loadTracked(key, loading);
+                    return loading;
+                }
+            }
+            if (!(future instanceof TrackedFuture) || ((TrackedFuture<V>) future).ticket.join(ticket)) {
+                return future;
+            }
+
+            //every request which needed this value was cancelled before we could join it, discard it and try again
+            this.cache.remove(key, future);
+        }
+    }
+
+    /**
+     * Loads the value with the given key on behalf of the future's {@link RequestTicket}, so that any further requests for the same value while
+     * it is being loaded are tracked as well.
+     */
+    private void loadTracked(@NonNull K key, @NonNull TrackedFuture<V> future) {
+        RequestTicket.Shared ticket = future.ticket;
+
+        Timer timer = METRICS.get(this.getClass()).load;
+        long start = timer.start();
+
+        RequestTicket previous = RequestTicket.swap(ticket);
+        try {
+            this.load(key).whenComplete((value, t) -> {
+                timer.stop(start);
+                ticket.complete();
+                if (t != null) {
+                    future.completeExceptionally(t);
+                } else {
+                    future.complete(value);
+                }
+            });
+        } catch (Exception e) {
+            timer.stop(start);
+            ticket.complete();
+            future.completeExceptionally(e);
+        } finally {
+            RequestTicket.swap(previous);
+        }
+    }
+
+    /**
+     * Estimates the number of bytes used by the given value in memory, which is counted towards this dataset's cache budget.
+     * <p>
+     * The default implementation uses {@link TileCache#sizeOf(Object)}, datasets whose values aren't arrays of primitives should override it.
+     *
+     * @param value the value
+     * @return the estimated size of the value, in bytes
+     */
+    protected long weigh(V value) {
+        return TileCache.sizeOf(value);
+    }
+
+    /**
+     * Called once a loaded value has been removed from this dataset's cache, after which the cache won't hand it out anymore.
+     * <p>
+     * Requests which obtained the value before it was removed may still be using it. The default implementation does nothing.
+     *
+     * @param value the value
+     */
+    protected void released(V value) {
+    }
+
+    /**
+     * @return the maximum number of bytes which may be used by the values in this dataset's cache
+     * @see TerraConfig.TileCacheOpts#maxBytesPerDataset
+     */
+    protected long maxCacheBytes() {
+        return TerraConfig.tileCache.maxBytesPerDataset;
     }
 
     /**
@@ -29,4 +119,30 @@ public abstract class Dataset<K, V> extends CacheLoader<K, CompletableFuture<V>>
     @Override
     @Deprecated
     public abstract CompletableFuture<V> load(@NonNull K key) throws Exception;
+
+    /**
+     * The {@link Metrics} recorded for each kind of dataset.
+     */
+    private static final class DatasetMetrics {
+        protected final Counter hits;
+        protected final Counter misses;
+        protected final Counter evictions;
+        protected final Timer load;
+
+        DatasetMetrics(@NonNull String name) {
+            this.hits = Metrics.counter("dataset." + name + ".hits");
+            this.misses = Metrics.counter("dataset." + name + ".misses");
+            this.evictions = Metrics.counter("dataset." + name + ".evictions");
+            this.load = Metrics.timer("dataset." + name + ".load");
+        }
+    }
+
+    /**
+     * A {@link CompletableFuture} which keeps track of all the requests which are waiting for it.
+     */
+    @RequiredArgsConstructor
+    private static final class TrackedFuture<V> extends CompletableFuture<V> {
+        @NonNull
+        protected final RequestTicket.Shared ticket;
+    }
 }
@@ -19,4 +19,16 @@ public interface IElementDataset<V> {
      * @return a {@link CompletableFuture} which will be completed with the elements
      */
     CompletableFuture<V[]> getAsync(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException;
+
+    /**
+     * Checks whether or not this dataset may have any elements intersecting the given bounding box, without actually loading them.
+     * <p>
+     * The default implementation conservatively assumes that elements may be present everywhere.
+     *
+     * @param bounds the bounding box
+     * @return the {@link Coverage}
+     */
+    default Coverage coverage(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
+        return Coverage.POSSIBLE;
+    }
 }
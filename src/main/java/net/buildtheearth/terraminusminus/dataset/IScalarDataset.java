@@ -1,20 +1,31 @@
 package net.buildtheearth.terraminusminus.dataset;
 
+import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import lombok.NonNull;
+import net.buildtheearth.terraminusminus.config.GlobalParseRegistries;
 import net.buildtheearth.terraminusminus.dataset.scalar.ConfigurableDoubleTiledDataset;
 import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
 
+import static net.daporkchop.lib.common.util.PValidation.*;
+
 /**
  * A dataset consisting of floating-point scalar values.
+ * <p>
+ * In JSON, a dataset is either a type name from {@link GlobalParseRegistries#SCALAR_DATASETS} mapped to the dataset's properties, or just the
+ * properties of a {@link ConfigurableDoubleTiledDataset}.
  *
  * @author DaPorkchop_
  */
-@JsonDeserialize(as = ConfigurableDoubleTiledDataset.class)
+@JsonDeserialize(using = IScalarDataset.Deserializer.class)
 public interface IScalarDataset {
     /**
      * @param point the point
@@ -41,4 +52,48 @@ public interface IScalarDataset {
      * @return a {@link CompletableFuture} which will be completed with the values
      */
     CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) throws OutOfProjectionBoundsException;
+
+    /**
+     * Checks whether or not this dataset may have any data within the given bounding box, without actually sampling it.
+     * <p>
+     * The default implementation conservatively assumes that data may be present everywhere.
+     *
+     * @param bounds the bounding box
+     * @return the {@link Coverage}
+     */
+    default Coverage coverage(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
+        return Coverage.POSSIBLE;
+    }
+
+    /**
+     * Gets a view of this dataset for sampling at the given zoom level, where each sample covers {@code 2^zoom} blocks along each axis.
+     * <p>
+     * Regular queries are at zoom level 0, where each sample covers a single block. Callers which only need coarse values, such as map renders,
+     * should query the view at the zoom level matching their sample spacing so that no more data than necessary is fetched.
+     * <p>
+     * Datasets which have lower-resolution data available may return a view which only samples from it, making coarse queries over large areas
+     * much cheaper. The default implementation has no such data, and returns this dataset itself.
+     *
+     * @param zoom the zoom level. Must not be negative
+     * @return a view of this dataset at the given zoom level
+     */
+    default IScalarDataset atZoom(int zoom) {
+        notNegative(zoom, "zoom");
+        return this;
+    }
+
+    class Deserializer extends JsonDeserializer<IScalarDataset> {
+        @Override
+        public IScalarDataset deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonNode node = ctxt.readTree(p);
+            if (node.size() == 1) { //typed dataset
+                String name = node.fieldNames().next();
+                Class<? extends IScalarDataset> clazz = GlobalParseRegistries.SCALAR_DATASETS.get(name);
+                if (clazz != null) {
+                    return ctxt.readTreeAsValue(node.get(name), clazz);
+                }
+            }
+            return ctxt.readTreeAsValue(node, ConfigurableDoubleTiledDataset.class);
+        }
+    }
 }
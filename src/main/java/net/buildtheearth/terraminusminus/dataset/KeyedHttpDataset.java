@@ -2,11 +2,13 @@ package net.buildtheearth.terraminusminus.dataset;
 
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import net.buildtheearth.terraminusminus.TerraExecutors;
 import net.buildtheearth.terraminusminus.util.http.Http;
 
 /**
@@ -20,8 +22,15 @@ public abstract class KeyedHttpDataset<V> extends Dataset<String, V> {
 
     protected abstract V decode(@NonNull String path, @NonNull ByteBuf data) throws Exception;
 
+    /**
+     * @return the {@link Executor} which {@link #decode(String, ByteBuf)} will be run on
+     */
+    protected Executor decodeExecutor() {
+        return TerraExecutors.decode();
+    }
+
     @Override
     public CompletableFuture<V> load(@NonNull String key) throws Exception {
-        return Http.getFirst(Arrays.stream(this.urls()).map(s -> s + key).toArray(String[]::new), data -> this.decode(key, data));
+        return Http.getFirst(Arrays.stream(this.urls()).map(s -> s + key).toArray(String[]::new), data -> this.decode(key, data), this.decodeExecutor());
     }
 }
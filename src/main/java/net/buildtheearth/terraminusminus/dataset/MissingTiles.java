@@ -0,0 +1,195 @@
+package net.buildtheearth.terraminusminus.dataset;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.codec.binary.Hex;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMaps;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.TerraMinusMinus;
+import net.buildtheearth.terraminusminus.util.http.CacheEntry;
+import net.buildtheearth.terraminusminus.util.http.Disk;
+import net.buildtheearth.terraminusminus.util.http.TileArchive;
+import net.buildtheearth.terraminusminus.util.metrics.Counter;
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
+import net.daporkchop.lib.common.math.BinMath;
+import net.daporkchop.lib.common.misc.file.PFiles;
+
+/**
+ * Remembers which tiles of a {@link TiledHttpDataset} don't exist, so that requesting them again is answered from memory without any I/O.
+ * <p>
+ * Many datasets only cover some regions, and the tiles outside of them respond with {@code 404 Not Found}. While those responses are cached by
+ * {@link net.buildtheearth.terraminusminus.util.http.Http} as well, each lookup still costs a hash of the URL and a read on the disk thread.
+ * <p>
+ * Each missing tile is remembered for as long as the server's response may be reused (see {@link CacheEntry#freshUntil()}), but never longer
+ * than {@link TerraConfig.DatasetOpts#missingTilesTTL}, so that tiles which are published later are eventually picked up. The positions of
+ * missing tiles are kept in a hash map along with their expiry time, and appended to a file in the persistent store directory as they are
+ * discovered so that they survive restarts.
+ * <p>
+ * The file starts with a {@code long} magic number, followed by one record per missing tile: its position packed with
+ * {@link BinMath#packXY(int, int)}, and the time in milliseconds since the epoch at which it expires, as two big-endian {@code long}s. A tile may
+ * appear more than once, in which case the last record wins. Expired records are dropped when the file is rewritten on startup.
+ */
+public final class MissingTiles {
+    static final long MAGIC = 0x5450504D49535332L; //"TPPMISS2"
+    static final int RECORD_SIZE = 2 * Long.BYTES; //position, expiry time
+
+    private static final Map<String, MissingTiles> INDICES = new ConcurrentHashMap<>();
+
+    private static final Counter HITS = Metrics.counter("dataset.missing_tiles.hits");
+
+    /**
+     * Gets the index of missing tiles for datasets with the given URL templates.
+     *
+     * @param urls   the URL templates of the dataset's tiles
+     * @param tiling identifies how the dataset's tile positions map to locations, as the same URL templates may be used with different tile
+     *               sizes or projections
+     * @return the index, or {@code null} if missing tiles shouldn't be remembered for the given URLs
+     */
+    public static MissingTiles forUrls(@NonNull String[] urls, @NonNull String tiling) {
+        if (!TerraConfig.http.cache || TerraConfig.datasets.missingTilesTTL <= 0) {
+            return null;
+        }
+        for (String url : urls) {
+            if (url.regionMatches(true, 0, "file:", 0, "file:".length())) { //local files may appear at any time, don't remember them
+                return null;
+            } else if (url.regionMatches(true, 0, TileArchive.URL_PREFIX, 0, TileArchive.URL_PREFIX.length())) { //archive lookups are already cheap
+                return null;
+            }
+        }
+        return INDICES.computeIfAbsent(tiling + '\n' + String.join("\n", urls), key -> new MissingTiles(
+                PFiles.ensureDirectoryExists(Disk.storeDirectory("missing_tiles").toFile()).toPath().resolve(fileName(key)),
+                System::currentTimeMillis));
+    }
+
+    private static String fileName(@NonNull String key) {
+        try {
+            return Hex.encodeHexString(MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not supported", e);
+        }
+    }
+
+    private final Path file;
+    private final LongSupplier clock;
+    private final Long2LongMap missing = new Long2LongOpenHashMap(); //tile position -> time at which it expires, guarded by this
+
+    /**
+     * @param file  the file to store the index in
+     * @param clock supplies the current time in milliseconds since the epoch
+     */
+    MissingTiles(@NonNull Path file, @NonNull LongSupplier clock) {
+        this.file = file;
+        this.clock = clock;
+        this.missing.defaultReturnValue(Long.MIN_VALUE);
+
+        //tiles found to be missing before the index has been read are simply not short-circuited yet
+        Disk.read(this.file).whenComplete((data, t) -> {
+            try {
+                this.loaded(data, t);
+            } finally {
+                if (data != null) {
+                    data.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return whether or not the tile at the given position is known to be missing
+     */
+    public boolean contains(int tileX, int tileZ) {
+        long pos = BinMath.packXY(tileX, tileZ);
+        long now = this.clock.getAsLong();
+        boolean missing;
+        synchronized (this) {
+            long expiresAt = this.missing.get(pos);
+            missing = expiresAt > now;
+            if (!missing && expiresAt != Long.MIN_VALUE) { //the tile should be requested again
+                this.missing.remove(pos);
+            }
+        }
+        if (missing) {
+            HITS.increment();
+        }
+        return missing;
+    }
+
+    /**
+     * Remembers that the tile at the given position is missing.
+     *
+     * @param expiresAt the time until which the tile may be assumed to be missing, in milliseconds since the epoch. It is clamped to
+     *                  {@link TerraConfig.DatasetOpts#missingTilesTTL}, and the tile isn't remembered at all if it's already in the past
+     */
+    public void add(int tileX, int tileZ, long expiresAt) {
+        long now = this.clock.getAsLong();
+        expiresAt = Math.min(expiresAt, now + TimeUnit.MINUTES.toMillis(TerraConfig.datasets.missingTilesTTL));
+        if (expiresAt <= now) { //the response may not be reused, e.g. because it was sent with Cache-Control: no-store
+            return;
+        }
+
+        long pos = BinMath.packXY(tileX, tileZ);
+        synchronized (this) {
+            if (this.missing.get(pos) >= expiresAt) {
+                return;
+            }
+            this.missing.put(pos, expiresAt);
+        }
+
+        ByteBuf buf = UnpooledByteBufAllocator.DEFAULT.ioBuffer(RECORD_SIZE, RECORD_SIZE);
+        Disk.append(this.file, buf.writeLong(pos).writeLong(expiresAt));
+    }
+
+    private void loaded(ByteBuf data, Throwable t) {
+        if (t != null) {
+            TerraMinusMinus.LOGGER.warn("Unable to read missing tiles from " + this.file, t);
+        }
+
+        long now = this.clock.getAsLong();
+        synchronized (this) {
+            boolean valid = data != null && data.readableBytes() >= Long.BYTES && data.readLong() == MAGIC;
+            boolean dropped = false;
+            if (valid) {
+                while (data.readableBytes() >= RECORD_SIZE) {
+                    long pos = data.readLong();
+                    long expiresAt = data.readLong();
+                    long previous = this.missing.get(pos);
+                    if (expiresAt > now && expiresAt > previous) {
+                        this.missing.put(pos, expiresAt);
+                    }
+                    dropped |= expiresAt <= now || previous != Long.MIN_VALUE;
+                }
+                if (!dropped) {
+                    return;
+                }
+            }
+
+            //the index doesn't exist yet, is corrupt or contains records which are no longer needed: rewrite it with the tiles which are still
+            //known to be missing
+            ByteBuf buf = UnpooledByteBufAllocator.DEFAULT.ioBuffer(Long.BYTES + this.missing.size() * RECORD_SIZE);
+            buf.writeLong(MAGIC);
+            for (ObjectIterator<Long2LongMap.Entry> it = Long2LongMaps.fastIterator(this.missing); it.hasNext(); ) {
+                Long2LongMap.Entry entry = it.next();
+                if (entry.getLongValue() > now) {
+                    buf.writeLong(entry.getLongKey()).writeLong(entry.getLongValue());
+                } else {
+                    it.remove();
+                }
+            }
+            Disk.write(this.file, buf);
+        }
+    }
+}
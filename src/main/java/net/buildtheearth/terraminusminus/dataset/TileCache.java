@@ -0,0 +1,406 @@
+package net.buildtheearth.terraminusminus.dataset;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.metrics.Counter;
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
+
+/**
+ * A cache for loaded tiles which is bounded by the number of bytes its values occupy, rather than by the number of values or by the garbage
+ * collector.
+ * <p>
+ * Each cache has its own byte budget, and additionally shares a global {@link Budget} with other caches. Once either budget is exceeded, the
+ * least recently used values are evicted, from the same cache or from any cache sharing the global budget respectively.
+ * <p>
+ * Lookups only go through the cache's own concurrent map and never take the global budget's lock: they merely mark the value as accessed.
+ * The budget's lock is only taken to account for newly loaded values, to evict values and to remove them. Eviction uses the second chance
+ * algorithm: a value at the end of the least recently used list which has been accessed since it was last moved is moved back to the front
+ * instead of being evicted, which approximates a least recently used order without having to reorder the lists on every lookup.
+ * <p>
+ * Values are stored as {@link CompletableFuture}s, so that concurrent requests for a value which is still being loaded share the same load. A
+ * value only counts towards the budgets once it has been loaded, as its size isn't known before. Values whose load was cancelled are removed
+ * immediately, and values whose load failed are removed once they've been kept for {@link TerraConfig.TileCacheOpts#failureTTL} seconds.
+ *
+ * @see Dataset
+ */
+public final class TileCache<K, V> {
+    /**
+     * The approximate number of bytes used by each cache entry, in addition to its value.
+     */
+    public static final long ENTRY_OVERHEAD = 96L;
+
+    /**
+     * The number of bytes assumed to be used by values whose size can't be estimated.
+     */
+    public static final long UNKNOWN_SIZE = 1024L;
+
+    /**
+     * The global {@link Budget} shared by all datasets.
+     */
+    public static final Budget GLOBAL = new Budget("tiles", () -> TerraConfig.tileCache.maxBytes);
+
+    /**
+     * Estimates the number of bytes used by the given value.
+     * <p>
+     * The sizes of primitive arrays are exact, anything else is a rough guess.
+     *
+     * @param value the value
+     * @return the estimated size of the value, in bytes
+     */
+    public static long sizeOf(Object value) {
+        if (value == null) {
+            return 0L;
+        } else if (value instanceof double[]) {
+            return 16L + ((double[]) value).length * 8L;
+        } else if (value instanceof long[]) {
+            return 16L + ((long[]) value).length * 8L;
+        } else if (value instanceof float[]) {
+            return 16L + ((float[]) value).length * 4L;
+        } else if (value instanceof int[]) {
+            return 16L + ((int[]) value).length * 4L;
+        } else if (value instanceof short[]) {
+            return 16L + ((short[]) value).length * 2L;
+        } else if (value instanceof char[]) {
+            return 16L + ((char[]) value).length * 2L;
+        } else if (value instanceof byte[]) {
+            return 16L + ((byte[]) value).length;
+        } else if (value instanceof Object[]) { //assume each element is a small object
+            return 16L + ((Object[]) value).length * (4L + UNKNOWN_SIZE);
+        } else {
+            return UNKNOWN_SIZE;
+        }
+    }
+
+    private final Budget budget;
+    private final LongSupplier maxBytes;
+    private final ToLongFunction<? super V> weigher;
+    private final Counter evictions;
+    private final Consumer<? super V> onRemoval;
+
+    private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<>(); //entries are only removed while holding budget's lock
+
+    //this cache's least recently used list, guarded by budget
+    private Entry<K, V> head;
+    private Entry<K, V> tail;
+    private volatile long bytes;
+
+    /**
+     * @param budget    the global {@link Budget} to share
+     * @param maxBytes  a function which computes the maximum number of bytes which may be used by this cache's values
+     * @param weigher   a function which computes the number of bytes used by a value
+     * @param evictions a {@link Counter} which is incremented every time a value is evicted from this cache
+     */
+    public TileCache(@NonNull Budget budget, @NonNull LongSupplier maxBytes, @NonNull ToLongFunction<? super V> weigher, @NonNull Counter evictions) {
+        this(budget, maxBytes, weigher, evictions, value -> {
+        });
+    }
+
+    /**
+     * @param onRemoval a function which is called with every loaded value once it has been removed from this cache, e.g. to free resources
+     *                  held by the value. It is called while holding the budget's lock, so it must be fast and must not access any cache
+     * @see #TileCache(Budget, LongSupplier, ToLongFunction, Counter)
+     */
+    public TileCache(@NonNull Budget budget, @NonNull LongSupplier maxBytes, @NonNull ToLongFunction<? super V> weigher, @NonNull Counter evictions,
+                     @NonNull Consumer<? super V> onRemoval) {
+        this.budget = budget;
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        this.evictions = evictions;
+        this.onRemoval = onRemoval;
+    }
+
+    /**
+     * Gets the value with the given key, and marks it as recently used.
+     *
+     * @param key the key
+     * @return the value, or {@code null} if it isn't cached
+     */
+    public CompletableFuture<V> getIfPresent(@NonNull K key) {
+        Entry<K, V> entry = this.map.get(key);
+        if (entry == null) {
+            return null;
+        } else if (entry.expired()) { //failed a while ago, try loading it again
+            this.remove(entry);
+            return null;
+        }
+
+        entry.access();
+        return entry.value;
+    }
+
+    /**
+     * Adds the given value to this cache, unless a value with the same key is already present.
+     *
+     * @param key   the key
+     * @param value the value, which may still be loading
+     * @return the existing value, or {@code null} if the given value was added
+     */
+    public CompletableFuture<V> putIfAbsent(@NonNull K key, @NonNull CompletableFuture<V> value) {
+        Entry<K, V> entry = new Entry<>(this, key, value);
+        Entry<K, V> existing;
+        while ((existing = this.map.putIfAbsent(key, entry)) != null) {
+            if (!existing.expired()) {
+                existing.access();
+                return existing.value;
+            }
+            this.remove(existing);
+        }
+
+        value.whenComplete((v, t) -> this.loaded(entry, v, t));
+        return null;
+    }
+
+    /**
+     * Removes the value with the given key, if it's still the given value.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return whether or not the value was removed
+     */
+    public boolean remove(@NonNull K key, @NonNull CompletableFuture<V> value) {
+        Entry<K, V> entry = this.map.get(key);
+        return entry != null && entry.value == value && this.remove(entry);
+    }
+
+    /**
+     * @return the number of values in this cache, including those which are still loading
+     */
+    public int size() {
+        return this.map.size();
+    }
+
+    /**
+     * @return the approximate number of bytes used by the loaded values in this cache
+     */
+    public long bytes() {
+        return this.bytes;
+    }
+
+    private boolean remove(@NonNull Entry<K, V> entry) {
+        synchronized (this.budget) {
+            if (this.map.get(entry.key) != entry) { //someone else was faster
+                return false;
+            }
+            this.unlink(entry);
+            return true;
+        }
+    }
+
+    private void loaded(@NonNull Entry<K, V> entry, V value, Throwable cause) {
+        long weight = ENTRY_OVERHEAD;
+        if (cause == null) {
+            weight += this.weigher.applyAsLong(value);
+        }
+
+        synchronized (this.budget) {
+            if (this.map.get(entry.key) != entry) { //the entry was removed while it was loading
+                if (cause == null) {
+                    this.onRemoval.accept(value);
+                }
+                return;
+            } else if (cause != null && RequestTicket.isCancellation(cause)) { //don't keep cancelled values around, they should be loaded again when requested
+                this.unlink(entry);
+                return;
+            }
+
+            if (cause != null) {
+                entry.expiresAt = System.nanoTime() + Math.max(TimeUnit.SECONDS.toNanos(TerraConfig.tileCache.failureTTL), 1L);
+            }
+            entry.weight = weight;
+            entry.accessed = false;
+            this.linkHead(entry);
+
+            //evict the least recently used values until we're within both budgets again, but never the value we just added
+            for (long maxBytes = this.maxBytes.getAsLong(); this.bytes > maxBytes && this.head != this.tail; ) {
+                Entry<K, V> tail = this.tail;
+                if (tail == entry || tail.accessed) { //give it a second chance
+                    tail.accessed = false;
+                    this.moveToHead(tail);
+                } else {
+                    this.evict(tail);
+                }
+            }
+            Budget budget = this.budget;
+            for (long maxBytes = budget.maxBytes.getAsLong(); budget.bytes > maxBytes && budget.head != budget.tail; ) {
+                Entry<?, ?> tail = budget.tail;
+                if (tail == entry || tail.accessed) {
+                    tail.accessed = false;
+                    moveToHeadInOwner(tail);
+                } else {
+                    evictFromOwner(tail);
+                }
+            }
+        }
+    }
+
+    private static <K, V> void evictFromOwner(@NonNull Entry<K, V> entry) {
+        entry.owner.evict(entry);
+    }
+
+    private static <K, V> void moveToHeadInOwner(@NonNull Entry<K, V> entry) {
+        entry.owner.moveToHead(entry);
+    }
+
+    private void evict(@NonNull Entry<K, V> entry) {
+        this.unlink(entry);
+        this.evictions.increment();
+        this.budget.evictions.increment();
+    }
+
+    private void unlink(@NonNull Entry<K, V> entry) {
+        this.map.remove(entry.key, entry);
+        if (entry.weight >= 0L) { //the value is linked into the lists
+            this.detach(entry);
+            entry.weight = -1L;
+
+            if (entry.expiresAt == 0L) { //the value was loaded successfully
+                this.onRemoval.accept(entry.value.join());
+            }
+        }
+    }
+
+    private void detach(@NonNull Entry<K, V> entry) {
+        Entry<K, V> prev = entry.prev;
+        Entry<K, V> next = entry.next;
+        if (prev != null) {
+            prev.next = next;
+        } else {
+            this.head = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        } else {
+            this.tail = prev;
+        }
+        this.bytes -= entry.weight;
+
+        Budget budget = this.budget;
+        Entry<?, ?> globalPrev = entry.globalPrev;
+        Entry<?, ?> globalNext = entry.globalNext;
+        if (globalPrev != null) {
+            globalPrev.globalNext = globalNext;
+        } else {
+            budget.head = globalNext;
+        }
+        if (globalNext != null) {
+            globalNext.globalPrev = globalPrev;
+        } else {
+            budget.tail = globalPrev;
+        }
+        budget.bytes -= entry.weight;
+        budget.size--;
+
+        entry.prev = entry.next = null;
+        entry.globalPrev = entry.globalNext = null;
+    }
+
+    private void linkHead(@NonNull Entry<K, V> entry) {
+        Entry<K, V> head = this.head;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        } else {
+            this.tail = entry;
+        }
+        this.head = entry;
+        this.bytes += entry.weight;
+
+        Budget budget = this.budget;
+        Entry<?, ?> globalHead = budget.head;
+        entry.globalNext = globalHead;
+        if (globalHead != null) {
+            globalHead.globalPrev = entry;
+        } else {
+            budget.tail = entry;
+        }
+        budget.head = entry;
+        budget.bytes += entry.weight;
+        budget.size++;
+    }
+
+    private void moveToHead(@NonNull Entry<K, V> entry) {
+        if (this.head != entry || this.budget.head != entry) {
+            this.detach(entry);
+            this.linkHead(entry);
+        }
+    }
+
+    /**
+     * A byte budget which is shared by multiple {@link TileCache}s.
+     */
+    public static final class Budget {
+        private final LongSupplier maxBytes;
+        private final Counter evictions;
+
+        //the least recently used list of every cache sharing this budget, guarded by this
+        private Entry<?, ?> head;
+        private Entry<?, ?> tail;
+        private volatile long bytes;
+        private volatile int size;
+
+        /**
+         * @param name     the name of the budget, used for its metrics
+         * @param maxBytes a function which computes the maximum number of bytes which may be used by the values in all caches sharing this budget
+         */
+        public Budget(@NonNull String name, @NonNull LongSupplier maxBytes) {
+            this.maxBytes = maxBytes;
+            this.evictions = Metrics.counter("cache." + name + ".evictions");
+            Metrics.gauge("cache." + name + ".bytes", this::bytes);
+            Metrics.gauge("cache." + name + ".size", this::size);
+        }
+
+        /**
+         * @return the approximate number of bytes used by the loaded values in all caches sharing this budget
+         */
+        public long bytes() {
+            return this.bytes;
+        }
+
+        /**
+         * @return the number of loaded values in all caches sharing this budget
+         */
+        public int size() {
+            return this.size;
+        }
+    }
+
+    private static final class Entry<K, V> {
+        final TileCache<K, V> owner;
+        final K key;
+        final CompletableFuture<V> value;
+
+        long weight = -1L; //negative while the value is still loading
+        volatile long expiresAt; //0 if the entry never expires
+        volatile boolean accessed; //whether the value was accessed since it was last moved to the head of the lists
+
+        Entry<K, V> prev;
+        Entry<K, V> next;
+        Entry<?, ?> globalPrev;
+        Entry<?, ?> globalNext;
+
+        Entry(@NonNull TileCache<K, V> owner, @NonNull K key, @NonNull CompletableFuture<V> value) {
+            this.owner = owner;
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean expired() {
+            long expiresAt = this.expiresAt;
+            return expiresAt != 0L && expiresAt - System.nanoTime() < 0L;
+        }
+
+        void access() {
+            if (!this.accessed) { //avoid writing to the entry on every access
+                this.accessed = true;
+            }
+        }
+    }
+}
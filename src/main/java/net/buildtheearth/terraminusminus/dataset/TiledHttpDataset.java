@@ -3,20 +3,49 @@ package net.buildtheearth.terraminusminus.dataset;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.collect.ImmutableMap;
 
 import io.netty.buffer.ByteBuf;
 import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.TerraConstants;
+import net.buildtheearth.terraminusminus.TerraExecutors;
 import net.buildtheearth.terraminusminus.projection.GeographicProjection;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
 import net.buildtheearth.terraminusminus.util.http.Http;
+import net.buildtheearth.terraminusminus.util.metrics.Counter;
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
 import net.daporkchop.lib.common.misc.string.PStrings;
 
 /**
  * @author DaPorkchop_
  */
 public abstract class TiledHttpDataset<T> extends TiledDataset<T> {
+    /**
+     * The priority of background loads for tiles which haven't been requested yet, which are only served once nothing else is waiting.
+     */
+    public static final double PREFETCH_PRIORITY = Double.MAX_VALUE;
+
+    private static final ThreadLocal<Boolean> PREFETCHING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final AtomicInteger prefetches = new AtomicInteger();
+    private final Counter prefetched = Metrics.counter("dataset." + Metrics.nameOf(this.getClass()) + ".prefetches");
+
+    //the last tile which was loaded on demand, and the direction requests are moving in. updated racily, as it's only a hint
+    private volatile ChunkPos lastTile;
+    private volatile int directionX;
+    private volatile int directionZ;
+
+    private volatile Bounds2d[] prefetchBounds; //the geographic areas this dataset has data for, or null if unknown
+    private String tiling; //see tiling()
+
     public TiledHttpDataset(@NonNull GeographicProjection projection, double tileSize) {
         super(projection, tileSize);
     }
@@ -34,20 +63,191 @@ public abstract class TiledHttpDataset<T> extends TiledDataset<T> {
 
     protected abstract T decode(int tileX, int tileZ, @NonNull ByteBuf data) throws Exception;
 
+    /**
+     * @return the {@link Executor} which {@link #decode(int, int, ByteBuf)} will be run on
+     */
+    protected Executor decodeExecutor() {
+        return TerraExecutors.decode();
+    }
+
     @Override
     public CompletableFuture<T> load(@NonNull ChunkPos pos) throws Exception {
+        CompletableFuture<T> future = this.fetch(pos);
+        if (!PREFETCHING.get()) { //the tile was requested on demand, its own request has already been issued so it goes out first
+            this.prefetchAround(pos);
+        }
+        return future;
+    }
+
+    private CompletableFuture<T> fetch(@NonNull ChunkPos pos) throws Exception {
         String[] urls = this.urls(pos.x(), pos.z());
 
         if (urls == null || urls.length == 0) { //no urls for tile
             return CompletableFuture.completedFuture(null);
         }
 
+        MissingTiles missing = MissingTiles.forUrls(urls, this.tiling());
+        if (missing != null && missing.contains(pos.x(), pos.z())) { //we already know that none of the urls have this tile
+            return CompletableFuture.completedFuture(null);
+        }
+
         ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
         this.addProperties(pos.x(), pos.z(), builder);
         Map<String, String> properties = builder.build();
 
         return Http.getFirst(
                 Arrays.stream(urls).map(url -> Http.formatUrl(properties, url)).toArray(String[]::new),
-                data -> this.decode(pos.x(), pos.z(), data));
+                data -> this.decode(pos.x(), pos.z(), data),
+                this.decodeExecutor(),
+                missing != null ? expiresAt -> missing.add(pos.x(), pos.z(), expiresAt) : null); //every url returned 404 Not Found
+    }
+
+    /**
+     * @return a string which identifies how tile positions map to locations, i.e. the tile size and the projection
+     */
+    protected String tiling() {
+        String tiling = this.tiling;
+        if (tiling == null) { //racy, but every thread computes the same value
+            try {
+                this.tiling = tiling = this.tileSize + " " + TerraConstants.JSON_MAPPER.writeValueAsString(this.projection);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return tiling;
+    }
+
+    /**
+     * Adds to the geographic area which this dataset has data for. Once any bounds have been added, tiles which lie entirely outside of all of
+     * them are never prefetched, as they would only result in requests for tiles which don't exist.
+     * <p>
+     * Tiles outside of the bounds may still be loaded on demand.
+     *
+     * @param bounds the bounds, in geographic coordinates
+     */
+    public synchronized void addPrefetchBounds(@NonNull Bounds2d... bounds) {
+        Bounds2d[] existing = this.prefetchBounds;
+        if (existing == null) {
+            this.prefetchBounds = bounds.clone();
+        } else {
+            Bounds2d[] merged = Arrays.copyOf(existing, existing.length + bounds.length);
+            System.arraycopy(bounds, 0, merged, existing.length, bounds.length);
+            this.prefetchBounds = merged;
+        }
+    }
+
+    /**
+     * @param tileX the tile's X coordinate
+     * @param tileZ the tile's Z coordinate
+     * @return the area covered by the given tile, in the projection's coordinate space
+     */
+    protected Bounds2d tileBounds(int tileX, int tileZ) {
+        return Bounds2d.of(tileX * this.tileSize, (tileX + 1) * this.tileSize, tileZ * this.tileSize, (tileZ + 1) * this.tileSize);
+    }
+
+    /**
+     * @param pos the position of the tile
+     * @return whether or not the given tile may contain any data, i.e. it lies within the projection's valid area and intersects this dataset's
+     * bounds (see {@link #addPrefetchBounds(Bounds2d...)})
+     */
+    protected boolean mayExist(@NonNull ChunkPos pos) {
+        Bounds2d geoBounds;
+        try {
+            geoBounds = this.tileBounds(pos.x(), pos.z()).toCornerBB(this.projection, false).toGeo();
+        } catch (OutOfProjectionBoundsException e) { //part of the tile can't be projected
+            return false;
+        }
+
+        Bounds2d[] prefetchBounds = this.prefetchBounds;
+        if (prefetchBounds == null) {
+            return true;
+        }
+        for (Bounds2d bounds : prefetchBounds) {
+            if (bounds.intersects(geoBounds)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of tiles around each newly loaded tile to prefetch, or 0 to disable prefetching
+     */
+    protected int prefetchRadius() {
+        return TerraConfig.datasets.prefetchRadius;
+    }
+
+    /**
+     * Loads the tiles which are likely to be requested soon after the given one in the background, at {@link #PREFETCH_PRIORITY}.
+     * <p>
+     * If the last tiles loaded on demand were next to each other, requests are assumed to keep moving in the same direction and only the tiles
+     * ahead of the given one are prefetched. Otherwise, the ring of tiles around it is. Tiles which can't contain any data (see
+     * {@link #mayExist(ChunkPos)}) are skipped.
+     *
+     * @param pos the position of the tile which was just requested
+     */
+    protected void prefetchAround(@NonNull ChunkPos pos) {
+        int radius = this.prefetchRadius();
+        if (radius <= 0) {
+            return;
+        }
+
+        ChunkPos last = this.lastTile;
+        this.lastTile = pos;
+        int directionX = this.directionX;
+        int directionZ = this.directionZ;
+        if (last != null && Math.abs(pos.x() - last.x()) <= 1 && Math.abs(pos.z() - last.z()) <= 1 && !pos.equals(last)) {
+            this.directionX = directionX = pos.x() - last.x();
+            this.directionZ = directionZ = pos.z() - last.z();
+        } else if (last == null || !pos.equals(last)) { //requests jumped somewhere else
+            this.directionX = directionX = 0;
+            this.directionZ = directionZ = 0;
+        }
+
+        if (directionX != 0 || directionZ != 0) {
+            for (int i = 1; i <= radius; i++) {
+                if (!this.prefetch(new ChunkPos(pos.x() + directionX * i, pos.z() + directionZ * i))) {
+                    return;
+                }
+            }
+        } else {
+            for (int r = 1; r <= radius; r++) { //closest rings first
+                for (int dx = -r; dx <= r; dx++) {
+                    for (int dz = -r; dz <= r; dz++) {
+                        if ((Math.abs(dx) == r || Math.abs(dz) == r) && !this.prefetch(new ChunkPos(pos.x() + dx, pos.z() + dz))) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts loading the given tile in the background, unless it's already cached or can't contain any data.
+     *
+     * @param pos the position of the tile
+     * @return whether or not more tiles may be prefetched, i.e. the budget of concurrent prefetches hasn't been used up
+     */
+    protected boolean prefetch(@NonNull ChunkPos pos) {
+        if (!this.mayExist(pos)) { //requesting the tile would only result in a 404
+            return true;
+        } else if (this.cache.getIfPresent(pos) != null) { //already loaded or loading
+            return true;
+        } else if (this.prefetches.incrementAndGet() > TerraConfig.datasets.maxPrefetches) {
+            this.prefetches.decrementAndGet();
+            return false;
+        }
+
+        this.prefetched.increment();
+        CompletableFuture<T> future;
+        PREFETCHING.set(Boolean.TRUE);
+        try {
+            future = RequestTicket.supplyWith(new RequestTicket.Mutable(PREFETCH_PRIORITY), () -> this.getAsync(pos));
+        } finally {
+            PREFETCHING.set(Boolean.FALSE);
+        }
+        future.whenComplete((value, t) -> this.prefetches.decrementAndGet());
+        return true;
     }
 }
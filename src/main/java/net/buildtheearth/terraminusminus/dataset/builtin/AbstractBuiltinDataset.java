@@ -5,6 +5,7 @@ import static net.daporkchop.lib.common.util.PValidation.notNegative;
 import java.util.concurrent.CompletableFuture;
 
 import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraExecutors;
 import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
 import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
@@ -58,7 +59,7 @@ public abstract class AbstractBuiltinDataset implements IScalarDataset {
             }
 
             return out;
-        });
+        }, TerraExecutors.bake());
     }
 
     protected abstract double get(double x, double y);
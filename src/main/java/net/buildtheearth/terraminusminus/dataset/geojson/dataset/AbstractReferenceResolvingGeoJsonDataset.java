@@ -19,6 +19,7 @@ import lombok.NonNull;
 import net.buildtheearth.terraminusminus.dataset.Dataset;
 import net.buildtheearth.terraminusminus.dataset.geojson.GeoJsonObject;
 import net.buildtheearth.terraminusminus.dataset.geojson.object.Reference;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
 
 /**
  * @author DaPorkchop_
@@ -46,7 +47,8 @@ public abstract class AbstractReferenceResolvingGeoJsonDataset<V> extends Datase
 
     @Override
     public CompletableFuture<V> load(@NonNull String key) throws Exception {
-        return this.delegate.getAsync(key).thenCompose(objects -> {
+        RequestTicket ticket = RequestTicket.current();
+        return this.delegate.getAsync(key).thenCompose(objects -> RequestTicket.supplyWith(ticket, () -> {
             if (!areAnyObjectsReferences(objects)) { //none of the objects are references, so there's nothing to be resolved!
                 return CompletableFuture.completedFuture(this.translate(Arrays.stream(objects)));
             }
@@ -69,7 +71,7 @@ public abstract class AbstractReferenceResolvingGeoJsonDataset<V> extends Datase
             CompletableFuture<V>[] packedReferenceFutures = uncheckedCast(referenceFutures.toArray(new CompletableFuture[0]));
             return CompletableFuture.allOf(packedReferenceFutures).thenApply(unused ->
                     this.merge(Arrays.stream(packedReferenceFutures).map(CompletableFuture::join)));
-        });
+        }));
     }
 
     protected abstract V translate(@NonNull Stream<GeoJsonObject> inputs);
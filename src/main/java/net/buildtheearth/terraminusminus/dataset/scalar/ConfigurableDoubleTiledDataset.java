@@ -11,6 +11,9 @@ import lombok.Getter;
 import lombok.NonNull;
 import net.buildtheearth.terraminusminus.config.scalarparse.d.DoubleScalarParser;
 import net.buildtheearth.terraminusminus.dataset.BlendMode;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.DoubleTileStorage;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.ScalarTile;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.TileStorage;
 import net.buildtheearth.terraminusminus.projection.GeographicProjection;
 
 /**
@@ -25,14 +28,22 @@ public class ConfigurableDoubleTiledDataset extends DoubleTiledDataset {
     protected final String[] urls;
     protected final DoubleScalarParser parse;
 
+    public ConfigurableDoubleTiledDataset(@NonNull String[] urls, int resolution, @NonNull BlendMode blend, @NonNull DoubleScalarParser parse, @NonNull GeographicProjection projection) {
+        this(urls, resolution, blend, parse, projection, null);
+    }
+
+    /**
+     * @param storage the {@link TileStorage} to keep decoded tiles in. If {@code null}, tiles are kept at full {@code double} precision
+     */
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public ConfigurableDoubleTiledDataset(
             @JsonProperty(value = "urls", required = true) @NonNull String[] urls,
             @JsonProperty(value = "resolution", required = true) int resolution,
             @JsonProperty(value = "blend", required = true) @NonNull BlendMode blend,
             @JsonProperty(value = "parse", required = true) @NonNull DoubleScalarParser parse,
-            @JsonProperty(value = "projection", required = true) @NonNull GeographicProjection projection) {
-        super(projection, resolution, blend);
+            @JsonProperty(value = "projection", required = true) @NonNull GeographicProjection projection,
+            @JsonProperty(value = "storage") TileStorage storage) {
+        super(projection, resolution, blend, storage != null ? storage : new DoubleTileStorage());
 
         this.urls = urls;
 
@@ -45,8 +56,8 @@ public class ConfigurableDoubleTiledDataset extends DoubleTiledDataset {
     }
 
     @Override
-    protected double[] decode(int tileX, int tileZ, @NonNull ByteBuf data) throws Exception {
-        return this.parse.parse(this.resolution, data);
+    protected ScalarTile decode(int tileX, int tileZ, @NonNull ByteBuf data) throws Exception {
+        return this.storage.store(this.parse.parse(this.resolution, data));
     }
 
     @Override
@@ -61,6 +72,12 @@ public class ConfigurableDoubleTiledDataset extends DoubleTiledDataset {
         return super.blend();
     }
 
+    @Override
+    @JsonGetter
+    public TileStorage storage() {
+        return super.storage();
+    }
+
     @Override
     @JsonGetter
     public GeographicProjection projection() {
@@ -0,0 +1,205 @@
+package net.buildtheearth.terraminusminus.dataset.scalar;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import net.buildtheearth.terraminusminus.TerraExecutors;
+import net.buildtheearth.terraminusminus.dataset.BlendMode;
+import net.buildtheearth.terraminusminus.dataset.Coverage;
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.dataset.TiledDataset;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.DoubleTileStorage;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.ScalarTile;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.TileStorage;
+import net.buildtheearth.terraminusminus.dataset.scalar.tiff.TiffFile;
+import net.buildtheearth.terraminusminus.dataset.scalar.tiff.TiffImage;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.projection.GeographicProjection;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.projection.transform.OffsetProjectionTransform;
+import net.buildtheearth.terraminusminus.projection.transform.ScaleProjectionTransform;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Implementation of {@link IScalarDataset} which samples a tiled GeoTIFF on the local disk, such as a Cloud-Optimized GeoTIFF.
+ * <p>
+ * The file is opened and memory-mapped once, and only the internal tiles which are actually sampled are decoded (see {@link TiffFile}). Decoded
+ * tiles are sampled and cached just like those of a {@link DoubleTiledDataset}, but without any of the HTTP machinery.
+ * <p>
+ * The file's overviews, if any, are used for coarse queries (see {@link #atZoom(int)}). Each sample at zoom level {@code n} is assumed to cover
+ * {@code 2^n} meters, which matches the scale of the default projection.
+ *
+ * @see TiffImage for the supported sample formats and compression methods
+ */
+@JsonDeserialize
+@JsonSerialize
+@Getter(onMethod_ = { @JsonGetter })
+public class GeoTiffDataset implements IScalarDataset {
+    protected final String path;
+    protected final BlendMode blend;
+    protected final GeographicProjection projection;
+    protected final TileStorage storage;
+
+    @Getter(AccessLevel.NONE)
+    protected final Level[] levels; //the full resolution image, followed by the overviews in order of decreasing resolution
+
+    /**
+     * @param path       the path to the GeoTIFF file
+     * @param projection the projection of the GeoTIFF's model space. If {@code null}, it is assumed to be in geographic coordinates (e.g.
+     *                   EPSG:4326)
+     * @param storage    the {@link TileStorage} to keep decoded tiles in. If {@code null}, tiles are kept at full {@code double} precision
+     */
+    @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+    @SneakyThrows(IOException.class)
+    public GeoTiffDataset(
+            @JsonProperty(value = "path", required = true) @NonNull String path,
+            @JsonProperty(value = "blend", required = true) @NonNull BlendMode blend,
+            @JsonProperty(value = "projection") GeographicProjection projection,
+            @JsonProperty(value = "storage") TileStorage storage) {
+        this.path = path;
+        this.blend = blend;
+        this.projection = projection != null ? projection : new EquirectangularProjection();
+        this.storage = storage != null ? storage : new DoubleTileStorage();
+
+        TiffFile file = new TiffFile(Paths.get(path));
+        TiffImage[] images = file.images().stream()
+                .filter(image -> !image.mask())
+                .sorted(Comparator.comparingInt(TiffImage::width).reversed())
+                .toArray(TiffImage[]::new);
+        checkArg(images.length > 0, "no images found in %s", path);
+
+        TiffImage full = images[0];
+        checkArg(full.pixelScale() != null && full.pixelScale().length >= 2 && full.tiePoints() != null && full.tiePoints().length >= 6,
+                "%s isn't georeferenced (missing ModelPixelScale or ModelTiepoint)", path);
+
+        //the model space coordinates of the top-left corner of the top-left pixel
+        double scaleX = full.pixelScale()[0];
+        double scaleY = full.pixelScale()[1];
+        double originX = full.tiePoints()[3] - full.tiePoints()[0] * scaleX;
+        double originY = full.tiePoints()[4] + full.tiePoints()[1] * scaleY;
+        if (full.pixelIsPoint()) {
+            originX -= scaleX * 0.5d;
+            originY += scaleY * 0.5d;
+        }
+
+        this.levels = new Level[images.length];
+        for (int i = 0; i < images.length; i++) {
+            TiffImage image = images[i];
+            image.checkSupported();
+            checkArg(image.tileWidth() == image.tileHeight(), "tiles in %s must be square (found: %dx%d)", path, image.tileWidth(), image.tileHeight());
+
+            //overviews cover the same area as the full resolution image, but with fewer pixels
+            double levelScaleX = scaleX * full.width() / image.width();
+            double levelScaleY = scaleY * full.height() / image.height();
+            GeographicProjection levelProjection = new ScaleProjectionTransform(
+                    new OffsetProjectionTransform(this.projection, -originX, -originY),
+                    1.0d / levelScaleX, -1.0d / levelScaleY);
+            this.levels[i] = new Level(levelProjection, image, blend, this.storage);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Double> getAsync(double lon, double lat) throws OutOfProjectionBoundsException {
+        return this.levels[0].getAsync(lon, lat);
+    }
+
+    @Override
+    public CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) throws OutOfProjectionBoundsException {
+        return this.levels[0].getAsync(bounds, sizeX, sizeZ);
+    }
+
+    @Override
+    public Coverage coverage(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
+        return this.levels[0].coverage(bounds);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned view samples from the lowest resolution image whose pixels are no larger than the samples at the given zoom level, or from
+     * the full resolution image if there is none.
+     */
+    @Override
+    public IScalarDataset atZoom(int zoom) {
+        double sampleSize = Math.scalb(1.0d, notNegative(zoom, "zoom"));
+        for (int i = this.levels.length - 1; i > 0; i--) {
+            if (this.levels[i].projection().metersPerUnit() <= sampleSize) {
+                return this.levels[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Samples a single image in the file.
+     */
+    protected static class Level extends TiledDataset<ScalarTile> implements IScalarDataset {
+        protected final TiffImage image;
+        protected final TileStorage storage;
+        private final TileSampler sampler;
+
+        public Level(@NonNull GeographicProjection projection, @NonNull TiffImage image, @NonNull BlendMode blend, @NonNull TileStorage storage) {
+            super(projection, 1.0d / image.tileWidth());
+
+            this.image = image;
+            this.storage = storage;
+            this.sampler = new TileSampler(projection, image.tileWidth(), blend, this::getAsync);
+        }
+
+        @Override
+        public CompletableFuture<ScalarTile> load(@NonNull ChunkPos pos) throws Exception {
+            //the internal tiles are laid out exactly like our own: rows are along the X axis, starting at the top-left corner
+            return CompletableFuture.supplyAsync(() -> this.read(pos), TerraExecutors.decode());
+        }
+
+        @SneakyThrows(IOException.class)
+        protected ScalarTile read(@NonNull ChunkPos pos) {
+            double[] values = this.image.readTile(pos.x(), pos.z());
+            return values != null ? this.storage.store(values) : null;
+        }
+
+        @Override
+        protected long weigh(ScalarTile tile) {
+            return tile != null ? tile.sizeInBytes() : 0L;
+        }
+
+        @Override
+        protected void released(ScalarTile tile) {
+            if (tile != null) {
+                tile.release();
+            }
+        }
+
+        @Override
+        public CompletableFuture<Double> getAsync(double lon, double lat) throws OutOfProjectionBoundsException {
+            return this.sampler.getAsync(lon, lat);
+        }
+
+        @Override
+        public CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) throws OutOfProjectionBoundsException {
+            return this.sampler.getAsync(bounds, sizeX, sizeZ);
+        }
+
+        @Override
+        public Coverage coverage(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
+            Bounds2d localBounds = bounds.fromGeo(this.projection).axisAlign();
+            return localBounds.intersects(Bounds2d.of(0.0d, this.image.width(), 0.0d, this.image.height())) ? Coverage.POSSIBLE : Coverage.NONE;
+        }
+    }
+}
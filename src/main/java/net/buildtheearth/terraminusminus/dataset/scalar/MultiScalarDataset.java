@@ -7,7 +7,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.stream.Stream;
@@ -21,18 +26,23 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.SneakyThrows;
+import net.buildtheearth.terraminusminus.TerraConfig;
 import net.buildtheearth.terraminusminus.TerraConstants;
 import net.buildtheearth.terraminusminus.config.condition.DoubleCondition;
+import net.buildtheearth.terraminusminus.dataset.Coverage;
 import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.dataset.TiledHttpDataset;
 import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
 import net.buildtheearth.terraminusminus.util.IntRange;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
 import net.buildtheearth.terraminusminus.util.bvh.BVH;
 import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
 import net.buildtheearth.terraminusminus.util.http.Disk;
 import net.daporkchop.lib.common.function.io.IOFunction;
 import net.daporkchop.lib.common.function.throwing.EFunction;
 
+import static net.daporkchop.lib.common.math.PMath.*;
 import static net.daporkchop.lib.common.util.PValidation.*;
 
 /**
@@ -41,10 +51,47 @@ import static net.daporkchop.lib.common.util.PValidation.*;
  * @author DaPorkchop_
  */
 public class MultiScalarDataset implements IScalarDataset {
-    protected final BVH<WrappedDataset> bvh;
+    protected final BVH<WrappedDataset> bvh; //the datasets sampled by this view
+    private final Index index; //the datasets sampled by this view, by grid cell
+
+    protected final BVH<WrappedDataset> all; //every dataset, regardless of zoom level
+    protected final MultiScalarDataset[] zooms; //views of the datasets at each zoom level, shared with all views. lazily initialized
 
-    @SneakyThrows(IOException.class)
     public MultiScalarDataset(@NonNull String name, boolean useDefault) {
+        this(loadConfig(name, useDefault));
+    }
+
+    /**
+     * @param datasets the datasets to sample
+     */
+    MultiScalarDataset(@NonNull WrappedDataset... datasets) {
+        for (WrappedDataset dataset : datasets) { //there's no point in prefetching tiles which lie outside of the area a dataset is used for
+            if (dataset.dataset instanceof TiledHttpDataset) {
+                ((TiledHttpDataset<?>) dataset.dataset).addPrefetchBounds(dataset.bounds != null ? dataset.bounds : new Bounds2d[]{ dataset.bounds() });
+            }
+        }
+
+        this.all = BVH.of(Arrays.stream(datasets)
+                .flatMap(WrappedDataset::flatten)
+                .toArray(WrappedDataset[]::new));
+        this.zooms = new MultiScalarDataset[this.all.stream().mapToInt(dataset -> dataset.zooms.max()).max().orElse(0) + 1];
+
+        //regular queries are at full resolution, so they only sample from the datasets which are meant to be used at zoom level 0
+        this.bvh = filterZoom(this.all, 0);
+        this.index = new Index(this.bvh);
+        this.zooms[0] = this;
+    }
+
+    protected MultiScalarDataset(@NonNull MultiScalarDataset parent, int zoom) {
+        this.bvh = filterZoom(parent.all, zoom);
+        this.index = new Index(this.bvh);
+
+        this.all = parent.all;
+        this.zooms = parent.zooms;
+    }
+
+    @SneakyThrows(IOException.class)
+    private static WrappedDataset[] loadConfig(@NonNull String name, boolean useDefault) {
         List<URL> configSources = new ArrayList<>();
         if (useDefault) { //add default configuration
             configSources.add(MultiScalarDataset.class.getResource(name + ".json5"));
@@ -57,16 +104,64 @@ public class MultiScalarDataset implements IScalarDataset {
                     .forEach(configSources::add);
         }
 
-        this.bvh = BVH.of(configSources.stream()
+        return configSources.stream()
                 .map((IOFunction<URL, WrappedDataset[]>) url -> TerraConstants.JSON_MAPPER.readValue(url, WrappedDataset[].class))
                 .flatMap(Arrays::stream)
-                .flatMap(WrappedDataset::flatten)
+                .toArray(WrappedDataset[]::new);
+    }
+
+    private static BVH<WrappedDataset> filterZoom(@NonNull BVH<WrappedDataset> all, int zoom) {
+        return BVH.of(all.stream()
+                .filter(dataset -> dataset.zooms.min() <= zoom && dataset.zooms.max() >= zoom)
+                .map(dataset -> dataset.atZoom(zoom))
                 .toArray(WrappedDataset[]::new));
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned view only samples from the datasets whose {@code zooms} range contains the given zoom level, just like this dataset only
+     * samples from those whose range contains zoom level 0. Zoom levels above the highest one supported by any dataset are treated as the
+     * highest one, so that the coarsest available datasets are used.
+     */
+    @Override
+    public IScalarDataset atZoom(int zoom) {
+        MultiScalarDataset[] zooms = this.zooms;
+        zoom = Math.min(notNegative(zoom, "zoom"), zooms.length - 1);
+
+        synchronized (zooms) {
+            MultiScalarDataset view = zooms[zoom];
+            if (view == null) {
+                zooms[zoom] = view = new MultiScalarDataset(this, zoom);
+            }
+            return view;
+        }
+    }
+
+    /**
+     * Gets the datasets which intersect the given bounding box.
+     *
+     * @param bounds the bounding box
+     * @return the datasets, in priority order. The returned array may be shared and must not be modified
+     */
+    protected WrappedDataset[] select(@NonNull Bounds2d bounds) {
+        WrappedDataset[] datasets = this.index.select(bounds);
+        if (datasets == null) { //the bounding box isn't within a single cell, fall back to searching the BVH
+            datasets = this.bvh.getAllIntersecting(bounds).toArray(new WrappedDataset[0]);
+            Arrays.sort(datasets); //ensure datasets are in priority order
+        }
+        return datasets;
+    }
+
     @Override
     public CompletableFuture<Double> getAsync(double lon, double lat) throws OutOfProjectionBoundsException {
-        WrappedDataset[] datasets = this.bvh.getAllIntersecting(Bounds2d.of(lon, lon, lat, lat)).toArray(new WrappedDataset[0]);
+        Bounds2d point = Bounds2d.of(lon, lon, lat, lat);
+        IScalarDataset single = this.index.single(point);
+        if (single != null) { //the point is only covered by a single dataset without a condition, there's no reason to do any merging
+            return single.getAsync(lon, lat);
+        }
+
+        WrappedDataset[] datasets = this.select(point);
         if (datasets.length == 0) { //no matching datasets!
             return CompletableFuture.completedFuture(Double.NaN);
         } else if (datasets.length == 1) { //only one dataset matches
@@ -74,10 +169,10 @@ public class MultiScalarDataset implements IScalarDataset {
                 return datasets[0].dataset.getAsync(lon, lat);
             }
         }
-        Arrays.sort(datasets); //ensure datasets are in priority order
 
         class State implements BiConsumer<Double, Throwable> {
             final CompletableFuture<Double> future = new CompletableFuture<>();
+            final RequestTicket ticket = RequestTicket.current();
             int i = -1;
 
             @Override
@@ -92,11 +187,16 @@ public class MultiScalarDataset implements IScalarDataset {
             }
 
             private void advance() {
-                if (++this.i < datasets.length) {
+                if (this.ticket.isCancelled()) { //don't bother sampling the remaining datasets
+                    this.future.completeExceptionally(new CancellationException());
+                } else if (++this.i < datasets.length) {
+                    RequestTicket previous = RequestTicket.swap(this.ticket); //we may be running on a different thread than the one which issued the request
                     try {
                         datasets[this.i].dataset.getAsync(lon, lat).whenComplete(this);
                     } catch (OutOfProjectionBoundsException e) {
                         this.future.completeExceptionally(e);
+                    } finally {
+                        RequestTicket.swap(previous);
                     }
                 } else { //no datasets remain, complete the future successfully with whatever value we currently have
                     this.future.complete(Double.NaN);
@@ -115,7 +215,12 @@ public class MultiScalarDataset implements IScalarDataset {
             return CompletableFuture.completedFuture(new double[0]);
         }
 
-        WrappedDataset[] datasets = this.bvh.getAllIntersecting(bounds).toArray(new WrappedDataset[0]);
+        IScalarDataset single = this.index.single(bounds);
+        if (single != null) { //the bounding box is only covered by a single dataset without a condition, there's no reason to do any merging
+            return single.getAsync(bounds, sizeX, sizeZ);
+        }
+
+        WrappedDataset[] datasets = this.select(bounds);
         if (datasets.length == 0) { //no matching datasets!
             return CompletableFuture.completedFuture(null);
         } else if (datasets.length == 1) { //only one dataset matches
@@ -123,60 +228,302 @@ public class MultiScalarDataset implements IScalarDataset {
                 return datasets[0].dataset.getAsync(bounds, sizeX, sizeZ);
             }
         }
-        Arrays.sort(datasets); //ensure datasets are in priority order
 
-        class State implements BiConsumer<double[], Throwable> {
+        //the datasets are merged strictly in priority order, but up to speculativeFetches of them may be requested ahead of time
+        class State {
             final CompletableFuture<double[]> future = new CompletableFuture<>();
+            final RequestTicket ticket = RequestTicket.current();
+            final int speculation = Math.max(TerraConfig.datasets.speculativeFetches, 1);
+
+            //guarded by this
+            final RequestTicket[] tickets = new RequestTicket[datasets.length];
+            final boolean[] done = new boolean[datasets.length];
+            final double[][] results = new double[datasets.length][];
+            final Throwable[] causes = new Throwable[datasets.length];
             double[] out;
             int remaining = sizeX * sizeZ;
-            int i = -1;
+            int merged = 0;
+            int requested = 0;
+            boolean updating;
+            boolean dirty;
+            boolean finished;
+            Throwable failure;
 
-            @Override
-            public void accept(double[] data, Throwable cause) {
-                if (cause != null) {
-                    this.future.completeExceptionally(cause);
-                } else if (data != null) { //if the array is null, it's as if it were an array of NaNs - nothing would be set, we simply skip it
-                    double[] out = this.out;
-                    if (out == null) { //ensure the destination array is set
-                        Arrays.fill(this.out = out = new double[sizeX * sizeZ], Double.NaN);
+            void completed(int i, double[] data, Throwable cause) {
+                synchronized (this) {
+                    this.done[i] = true;
+                    this.results[i] = data;
+                    this.causes[i] = cause;
+                }
+                this.update();
+            }
+
+            void update() {
+                double[] out;
+                Throwable failure;
+                synchronized (this) {
+                    if (this.finished) { //the result has already been determined, results of speculative requests which complete late are ignored
+                        return;
+                    } else if (this.updating) { //a request we just issued completed immediately, let the outer call handle it
+                        this.dirty = true;
+                        return;
                     }
 
-                    WrappedDataset dataset = datasets[this.i];
-
-                    for (int i = 0; i < sizeX * sizeZ; i++) {
-                        if (Double.isNaN(out[i])) { //if value in output array is NaN, consider replacing it
-                            double v = data[i];
-                            if (!Double.isNaN(v) && dataset.test(v)) { //if the value in the input array is accepted, use it as the output
-                                out[i] = v;
-                                if (--this.remaining == 0) { //if no samples are left to process, we're done!
-                                    this.future.complete(out);
-                                    return;
-                                }
-                            }
+                    this.updating = true;
+                    try {
+                        do {
+                            this.dirty = false;
+                            this.step();
+                        } while (this.dirty && !this.finished);
+                    } finally {
+                        this.updating = false;
+                    }
+
+                    if (!this.finished) {
+                        return;
+                    }
+
+                    //cancel any speculative requests which are still running, we won't need their results
+                    for (int i = this.merged; i < this.requested; i++) {
+                        if (!this.done[i] && this.tickets[i] != this.ticket) {
+                            this.tickets[i].cancel();
                         }
                     }
+                    out = this.out;
+                    failure = this.failure;
+                }
+
+                //complete the future without holding the lock, as it runs the dependent stages on this thread
+                if (failure != null) {
+                    this.future.completeExceptionally(failure);
+                } else {
+                    this.future.complete(out);
                 }
-                this.advance();
             }
 
-            private void advance() {
-                if (++this.i < datasets.length) {
+            private void finish(Throwable failure) {
+                this.finished = true;
+                this.failure = failure;
+            }
+
+            private void step() {
+                //merge all datasets which have completed, in priority order
+                for (; this.merged < this.requested && this.done[this.merged]; this.merged++) {
+                    if (this.causes[this.merged] != null) {
+                        this.finish(this.causes[this.merged]);
+                        return;
+                    } else if (this.merge(datasets[this.merged], this.results[this.merged])) { //if no samples are left to process, we're done!
+                        this.finish(null);
+                        return;
+                    }
+                    this.results[this.merged] = null;
+                }
+
+                if (this.merged == datasets.length) { //no datasets remain, complete the future successfully with whatever value we currently have
+                    this.finish(null);
+                    return;
+                }
+
+                //request the next datasets
+                while (this.requested < datasets.length && this.requested < this.merged + this.speculation) {
+                    if (this.ticket.isCancelled()) { //don't bother sampling the remaining datasets
+                        this.finish(new CancellationException());
+                        return;
+                    }
+
+                    int i = this.requested++;
+                    //speculative requests get their own ticket, so that they can be cancelled without cancelling the whole request
+                    RequestTicket ticket = this.tickets[i] = this.speculation > 1 ? new RequestTicket.Child(this.ticket) : this.ticket;
+                    RequestTicket previous = RequestTicket.swap(ticket); //we may be running on a different thread than the one which issued the request
                     try {
-                        datasets[this.i].dataset.getAsync(bounds, sizeX, sizeZ).whenComplete(this);
+                        datasets[i].dataset.getAsync(bounds, sizeX, sizeZ).whenComplete((data, cause) -> this.completed(i, data, cause));
                     } catch (OutOfProjectionBoundsException e) {
-                        this.future.completeExceptionally(e);
+                        this.completed(i, null, e);
+                    } finally {
+                        RequestTicket.swap(previous);
                     }
-                } else { //no datasets remain, complete the future successfully with whatever value we currently have
-                    this.future.complete(this.out);
                 }
             }
+
+            private boolean merge(WrappedDataset dataset, double[] data) {
+                if (data == null) { //if the array is null, it's as if it were an array of NaNs - nothing would be set, we simply skip it
+                    return false;
+                }
+
+                double[] out = this.out;
+                if (out == null) { //ensure the destination array is set
+                    Arrays.fill(this.out = out = new double[sizeX * sizeZ], Double.NaN);
+                }
+
+                for (int i = 0; i < sizeX * sizeZ; i++) {
+                    if (Double.isNaN(out[i])) { //if value in output array is NaN, consider replacing it
+                        double v = data[i];
+                        if (!Double.isNaN(v) && dataset.test(v)) { //if the value in the input array is accepted, use it as the output
+                            out[i] = v;
+                            if (--this.remaining == 0) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+                return false;
+            }
         }
 
         State state = new State();
-        state.advance();
+        state.update();
         return state.future;
     }
 
+    @Override
+    public Coverage coverage(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
+        //the bounds of the wrapped datasets never change, so this is always final
+        return this.select(bounds).length == 0 ? Coverage.NONE : Coverage.POSSIBLE;
+    }
+
+    /**
+     * Precomputed selection of the datasets to sample, for each cell of a grid in geographic coordinates.
+     * <p>
+     * Almost every query is much smaller than a cell, so selecting datasets amounts to looking up the query's cell. Each cell stores the datasets
+     * intersecting it, already in priority order. If all of them cover the entire cell, they all intersect every query within it and are returned
+     * as-is; otherwise, the ones which don't intersect the query are filtered out.
+     * <p>
+     * Cells which are covered by a single dataset without a condition, and intersected by no other one, additionally store that dataset on its
+     * own. Queries which only touch such cells (even if they span several of them) can sample it directly, without selecting or merging anything.
+     */
+    private static final class Index {
+        static final int CELLS_X = 360;
+        static final int CELLS_Z = 180;
+
+        static int cellX(double lon) {
+            return floorI(lon) + (CELLS_X >> 1);
+        }
+
+        static int cellZ(double lat) {
+            return floorI(lat) + (CELLS_Z >> 1);
+        }
+
+        static Bounds2d cellBounds(int cellX, int cellZ) {
+            double lon = cellX - (CELLS_X >> 1);
+            double lat = cellZ - (CELLS_Z >> 1);
+            return Bounds2d.of(lon, lon + 1.0d, lat, lat + 1.0d);
+        }
+
+        final WrappedDataset[][] cells = new WrappedDataset[CELLS_X * CELLS_Z][];
+        final BitSet covered = new BitSet(CELLS_X * CELLS_Z);
+        final IScalarDataset[] single = new IScalarDataset[CELLS_X * CELLS_Z];
+
+        Index(@NonNull BVH<WrappedDataset> bvh) {
+            List<List<WrappedDataset>> lists = new ArrayList<>(Collections.nCopies(CELLS_X * CELLS_Z, null));
+            bvh.forEach(dataset -> {
+                int minCellX = Math.max(cellX(dataset.minX) - 1, 0);
+                int maxCellX = Math.min(cellX(dataset.maxX), CELLS_X - 1);
+                int minCellZ = Math.max(cellZ(dataset.minZ) - 1, 0);
+                int maxCellZ = Math.min(cellZ(dataset.maxZ), CELLS_Z - 1);
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                        if (dataset.intersects(cellBounds(cellX, cellZ))) {
+                            int i = cellX * CELLS_Z + cellZ;
+                            if (lists.get(i) == null) {
+                                lists.set(i, new ArrayList<>());
+                            }
+                            lists.get(i).add(dataset);
+                        }
+                    }
+                }
+            });
+
+            //many cells end up with identical datasets (e.g. only the global ones), so they share the same array
+            Map<List<WrappedDataset>, WrappedDataset[]> interned = new HashMap<>();
+            WrappedDataset[] empty = new WrappedDataset[0];
+            for (int cellX = 0; cellX < CELLS_X; cellX++) {
+                for (int cellZ = 0; cellZ < CELLS_Z; cellZ++) {
+                    int i = cellX * CELLS_Z + cellZ;
+                    List<WrappedDataset> list = lists.get(i);
+                    if (list == null) {
+                        this.cells[i] = empty;
+                        this.covered.set(i);
+                        continue;
+                    }
+
+                    list.sort(null); //ensure datasets are in priority order
+                    this.cells[i] = interned.computeIfAbsent(list, l -> l.toArray(new WrappedDataset[0]));
+
+                    Bounds2d cellBounds = cellBounds(cellX, cellZ);
+                    if (list.stream().allMatch(dataset -> dataset.contains(cellBounds))) {
+                        this.covered.set(i);
+                        if (list.size() == 1 && list.get(0).condition == null) {
+                            this.single[i] = list.get(0).dataset;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the only dataset to sample for the given bounding box, or {@code null} if any cell it touches is intersected by more than one
+         * dataset, isn't entirely covered, or needs to test the dataset's values against a condition
+         */
+        IScalarDataset single(@NonNull Bounds2d bounds) {
+            int minCellX = cellX(bounds.minX());
+            int maxCellX = cellX(bounds.maxX());
+            int minCellZ = cellZ(bounds.minZ());
+            int maxCellZ = cellZ(bounds.maxZ());
+            if (minCellX < 0 || maxCellX >= CELLS_X || minCellZ < 0 || maxCellZ >= CELLS_Z) {
+                return null;
+            }
+
+            IScalarDataset single = this.single[minCellX * CELLS_Z + minCellZ];
+            if (single == null) {
+                return null;
+            }
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                    if (this.single[cellX * CELLS_Z + cellZ] != single) {
+                        return null;
+                    }
+                }
+            }
+            return single;
+        }
+
+        /**
+         * @return the datasets intersecting the given bounding box in priority order, or {@code null} if it isn't within a single cell
+         */
+        WrappedDataset[] select(@NonNull Bounds2d bounds) {
+            int cellX = cellX(bounds.minX());
+            int cellZ = cellZ(bounds.minZ());
+            if (cellX != cellX(bounds.maxX()) || cellZ != cellZ(bounds.maxZ())
+                || cellX < 0 || cellX >= CELLS_X || cellZ < 0 || cellZ >= CELLS_Z) {
+                return null;
+            }
+
+            int i = cellX * CELLS_Z + cellZ;
+            WrappedDataset[] datasets = this.cells[i];
+            if (this.covered.get(i)) { //every dataset in the cell intersects the bounding box
+                return datasets;
+            }
+
+            int count = 0;
+            for (WrappedDataset dataset : datasets) {
+                if (dataset.intersects(bounds)) {
+                    count++;
+                }
+            }
+            if (count == datasets.length) {
+                return datasets;
+            }
+
+            WrappedDataset[] out = new WrappedDataset[count];
+            for (int j = 0, k = 0; j < datasets.length; j++) {
+                if (datasets[j].intersects(bounds)) {
+                    out[k++] = datasets[j];
+                }
+            }
+            return out;
+        }
+    }
+
     /**
      * Wrapper around a dataset with a bounding box.
      *
@@ -185,13 +532,13 @@ public class MultiScalarDataset implements IScalarDataset {
     @JsonDeserialize
     @JsonSerialize
     @Getter
-    private static class WrappedDataset implements Bounds2d, Comparable<WrappedDataset>, DoubleCondition {
+    static class WrappedDataset implements Bounds2d, Comparable<WrappedDataset>, DoubleCondition {
         @Getter(onMethod_ = { @JsonGetter })
         protected final IScalarDataset dataset;
         @Getter(onMethod_ = { @JsonGetter })
         protected final DoubleCondition condition;
         @Getter(onMethod_ = { @JsonGetter })
-        protected final IntRange zooms; //TODO: use this
+        protected final IntRange zooms; //the zoom levels this dataset is sampled at, see atZoom()
 
         protected final Bounds2d[] bounds;
 
@@ -229,6 +576,17 @@ public class MultiScalarDataset implements IScalarDataset {
                     : Stream.of(this.bounds).map(bounds -> new WrappedDataset(this.dataset, new Bounds2d[]{bounds}, this.zooms, this.priority, this.condition));
         }
 
+        /**
+         * @return a copy of this dataset which samples its dataset at the given zoom level, e.g. from overviews of the source data
+         * @see IScalarDataset#atZoom(int)
+         */
+        protected WrappedDataset atZoom(int zoom) {
+            IScalarDataset zoomed = this.dataset.atZoom(zoom);
+            return zoomed == this.dataset
+                    ? this
+                    : new WrappedDataset(zoomed, new Bounds2d[]{ this.bounds() }, this.zooms, this.priority, this.condition);
+        }
+
         @Override
         public int compareTo(WrappedDataset o) {
             return -Double.compare(this.priority, o.priority);
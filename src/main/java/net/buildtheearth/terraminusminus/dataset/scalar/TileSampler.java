@@ -0,0 +1,232 @@
+package net.buildtheearth.terraminusminus.dataset.scalar;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraExecutors;
+import net.buildtheearth.terraminusminus.dataset.BlendMode;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.ScalarTile;
+import net.buildtheearth.terraminusminus.projection.GeographicProjection;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.IntToDoubleBiFunction;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+import net.daporkchop.lib.common.math.BinMath;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Samples a grid of square {@link ScalarTile}s, regardless of where the tiles are loaded from.
+ * <p>
+ * The tile at {@code (x, z)} contains the samples whose local coordinates lie in {@code [x * resolution, (x + 1) * resolution)} and
+ * {@code [z * resolution, (z + 1) * resolution)}, in rows along the X axis.
+ */
+final class TileSampler {
+    private final GeographicProjection projection;
+    private final BlendMode blend;
+    private final int resolution;
+    private final int shift;
+    private final int mask;
+    private final Function<ChunkPos, CompletableFuture<ScalarTile>> loader;
+
+    /**
+     * @param projection the projection from geographic to local coordinates
+     * @param resolution the number of samples along each side of a tile, must be a power of 2
+     * @param blend      the {@link BlendMode} to sample with
+     * @param loader     gets the tile at the given position, which may be {@code null} if there is none. Tiles are retained while they
+     *                   are being sampled (see {@link ScalarTile#retain()})
+     */
+    TileSampler(@NonNull GeographicProjection projection, int resolution, @NonNull BlendMode blend, @NonNull Function<ChunkPos, CompletableFuture<ScalarTile>> loader) {
+        checkArg(BinMath.isPow2(positive(resolution, "resolution")), "given resolution (%d) is not a power of 2!", resolution);
+        this.projection = projection;
+        this.blend = blend;
+        this.resolution = resolution;
+        this.shift = Integer.numberOfTrailingZeros(resolution);
+        this.mask = resolution - 1;
+        this.loader = loader;
+    }
+
+    /**
+     * @return the area covered by the tile at the given position, in local coordinates
+     */
+    Bounds2d tileBounds(int tileX, int tileZ) {
+        double resolution = this.resolution;
+        return Bounds2d.of(tileX * resolution, (tileX + 1) * resolution, tileZ * resolution, (tileZ + 1) * resolution);
+    }
+
+    public CompletableFuture<Double> getAsync(double lon, double lat) throws OutOfProjectionBoundsException {
+        class State extends AbstractState<Double> {
+            protected final double[] localCoords;
+
+            public State(@NonNull double[] localCoords, Bounds2d paddedLocalBounds) {
+                super(paddedLocalBounds);
+
+                this.localCoords = localCoords;
+            }
+
+            @Override
+            public Double apply(Void unused) { //stage 2: actually compute the value now that the tiles have been fetched
+                return TileSampler.this.blend.get(this.localCoords[0], this.localCoords[1], this);
+            }
+        }
+
+        double[] localCoords = this.projection.fromGeo(lon, lat);
+
+        Bounds2d paddedLocalBounds = Bounds2d.of(localCoords[0], localCoords[0], localCoords[1], localCoords[1])
+                .expand(this.blend.size)
+                .validate(this.projection, false);
+
+        return new State(localCoords, paddedLocalBounds).future();
+    }
+
+    public CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) throws OutOfProjectionBoundsException {
+        if (notNegative(sizeX, "sizeX") == 0 | notNegative(sizeZ, "sizeZ") == 0) { //no input points -> no output points, ez
+            return CompletableFuture.completedFuture(new double[0]);
+        }
+
+        class State extends AbstractState<double[]> {
+            protected final CornerBoundingBox2d localBounds;
+
+            public State(@NonNull CornerBoundingBox2d localBounds, Bounds2d paddedLocalBounds) {
+                super(paddedLocalBounds);
+
+                this.localBounds = localBounds;
+            }
+
+            @Override
+            public double[] apply(Void unused) { //stage 2: actually compute the values now that the tiles have been fetched
+                return TileSampler.this.blend.sampleGrid(this.localBounds, sizeX, sizeZ, this, new double[sizeX * sizeZ]);
+            }
+        }
+
+        CornerBoundingBox2d localBounds = bounds.fromGeo(this.projection);
+        Bounds2d paddedLocalBounds = localBounds.axisAlign().expand(this.blend.size).validate(this.projection, false);
+
+        return new State(localBounds, paddedLocalBounds).future();
+    }
+
+    private abstract class AbstractState<R> implements Function<Void, R>, IntToDoubleBiFunction {
+        protected final Bounds2d paddedLocalBounds;
+
+        //the tiles intersecting the padded bounds, in a dense grid indexed by their offset from the minimum tile
+        final ChunkPos[] tilePositions;
+        final ScalarTile[] tiles; //guarded by itself until all tiles have been fetched
+        final int minTileX;
+        final int minTileZ;
+        final int tilesX;
+        final int tilesZ;
+
+        final RequestTicket ticket = RequestTicket.current();
+        boolean released; //guarded by tiles
+
+        public AbstractState(@NonNull Bounds2d paddedLocalBounds) {
+            this.paddedLocalBounds = paddedLocalBounds;
+
+            //toTiles() returns the tiles ordered by X, then by Z
+            this.tilePositions = paddedLocalBounds.toTiles(TileSampler.this.resolution);
+            ChunkPos min = this.tilePositions[0];
+            ChunkPos max = this.tilePositions[this.tilePositions.length - 1];
+            this.minTileX = min.x();
+            this.minTileZ = min.z();
+            this.tilesX = max.x() - min.x() + 1;
+            this.tilesZ = max.z() - min.z() + 1;
+            this.tiles = new ScalarTile[this.tilePositions.length];
+        }
+
+        @Override
+        public double apply(int x, int z) { //gets raw sample values to be used in blending
+            int shift = TileSampler.this.shift;
+            int mask = TileSampler.this.mask;
+
+            int tileX = (x >> shift) - this.minTileX;
+            int tileZ = (z >> shift) - this.minTileZ;
+            if (tileX < 0 || tileX >= this.tilesX || tileZ < 0 || tileZ >= this.tilesZ) { //outside of the padded bounds
+                return Double.NaN;
+            }
+
+            ScalarTile tile = this.tiles[tileX * this.tilesZ + tileZ];
+            if (tile == null) {
+                return Double.NaN;
+            }
+            return tile.get((z & mask) << shift | (x & mask));
+        }
+
+        @Override
+        public void applyRow(int x, int z, @NonNull double[] dst, int dstOffset, int count) { //copies whole rows of each tile at once
+            int shift = TileSampler.this.shift;
+            int mask = TileSampler.this.mask;
+
+            int tileZ = (z >> shift) - this.minTileZ;
+            int rowIndex = (z & mask) << shift;
+            while (count > 0) {
+                int tileX = (x >> shift) - this.minTileX;
+                int n = Math.min(count, TileSampler.this.resolution - (x & mask)); //the number of samples left in this tile's row
+
+                ScalarTile tile = tileX >= 0 && tileX < this.tilesX && tileZ >= 0 && tileZ < this.tilesZ ? this.tiles[tileX * this.tilesZ + tileZ] : null;
+                if (tile != null) {
+                    tile.get(rowIndex | (x & mask), dst, dstOffset, n);
+                } else { //outside of the padded bounds, or the tile is missing
+                    Arrays.fill(dst, dstOffset, dstOffset + n, Double.NaN);
+                }
+
+                x += n;
+                dstOffset += n;
+                count -= n;
+            }
+        }
+
+        public CompletableFuture<R> future() {
+            CompletableFuture<?>[] futures = new CompletableFuture[this.tilePositions.length];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = this.fetch(this.tilePositions[i], i);
+            }
+
+            CompletableFuture<R> future = CompletableFuture.allOf(futures).thenApplyAsync(this, TerraExecutors.bake());
+
+            //the tiles may be evicted from the cache at any time, so we hold a reference to each of them until we're done sampling
+            future.whenComplete((result, t) -> this.releaseTiles());
+            return future;
+        }
+
+        protected CompletableFuture<ScalarTile> fetch(@NonNull ChunkPos pos, int index) {
+            return TileSampler.this.loader.apply(pos).thenCompose(tile -> {
+                //the tile may have been evicted and freed since the cache handed it out, in which case retaining it fails and it's no longer
+                //in the cache, so we simply load it again
+                if (tile != null && !tile.retain()) {
+                    return RequestTicket.supplyWith(this.ticket, () -> this.fetch(pos, index));
+                }
+
+                //put tile directly into the grid when it's loaded
+                //synchronize because we can't be certain that all of the futures will be completed by the same thread
+                synchronized (this.tiles) {
+                    if (!this.released) {
+                        this.tiles[index] = tile;
+                        return CompletableFuture.completedFuture(tile);
+                    }
+                }
+
+                //the query already failed before this tile was loaded
+                if (tile != null) {
+                    tile.release();
+                }
+                return CompletableFuture.completedFuture(tile);
+            });
+        }
+
+        protected void releaseTiles() {
+            synchronized (this.tiles) {
+                this.released = true;
+                for (int i = 0; i < this.tiles.length; i++) {
+                    if (this.tiles[i] != null) {
+                        this.tiles[i].release();
+                        this.tiles[i] = null;
+                    }
+                }
+            }
+        }
+    }
+}
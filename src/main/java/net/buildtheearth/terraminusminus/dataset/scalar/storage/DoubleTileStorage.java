@@ -0,0 +1,39 @@
+package net.buildtheearth.terraminusminus.dataset.scalar.storage;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import lombok.NonNull;
+
+/**
+ * Stores samples at full {@code double} precision.
+ */
+@JsonDeserialize
+public class DoubleTileStorage implements TileStorage {
+    @Override
+    public ScalarTile store(@NonNull double[] values) {
+        return new Tile(values);
+    }
+
+    private static final class Tile implements ScalarTile {
+        private final double[] values;
+
+        Tile(@NonNull double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public double get(int index) {
+            return this.values[index];
+        }
+
+        @Override
+        public void get(int index, @NonNull double[] dst, int dstOffset, int count) {
+            System.arraycopy(this.values, index, dst, dstOffset, count);
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16L + this.values.length * (long) Double.BYTES;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.buildtheearth.terraminusminus.dataset.scalar.storage;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import lombok.NonNull;
+
+/**
+ * Stores samples at {@code float} precision, which is enough for all elevation and tree cover data sources in use.
+ */
+@JsonDeserialize
+public class FloatTileStorage implements TileStorage {
+    @Override
+    public ScalarTile store(@NonNull double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return new Tile(floats);
+    }
+
+    private static final class Tile implements ScalarTile {
+        private final float[] values;
+
+        Tile(@NonNull float[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public double get(int index) {
+            return this.values[index];
+        }
+
+        @Override
+        public void get(int index, @NonNull double[] dst, int dstOffset, int count) {
+            float[] values = this.values;
+            for (int i = 0; i < count; i++) {
+                dst[dstOffset + i] = values[index + i];
+            }
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16L + this.values.length * (long) Float.BYTES;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.buildtheearth.terraminusminus.dataset.scalar.storage;
+
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import lombok.NonNull;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Stores samples at {@code float} precision in direct memory outside of the Java heap, allocated from netty's pooled allocator.
+ * <p>
+ * Off-heap tiles don't count towards the heap size and are never scanned by the garbage collector, which keeps pauses short when a large number
+ * of tiles is cached. Their memory is returned to the pool as soon as they are evicted from the cache and no longer being sampled. Off-heap tiles
+ * still count towards the tile cache's budget (see {@link net.buildtheearth.terraminusminus.TerraConfig.TileCacheOpts}).
+ */
+@JsonDeserialize
+public class OffHeapTileStorage implements TileStorage {
+    @Override
+    public ScalarTile store(@NonNull double[] values) {
+        int size = values.length * Float.BYTES;
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(size, size);
+        FloatBuffer floats = buf.nioBuffer(0, size).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int i = 0; i < values.length; i++) {
+            floats.put(i, (float) values[i]);
+        }
+        return new Tile(buf, floats);
+    }
+
+    private static final class Tile implements ScalarTile {
+        private final ByteBuf buf;
+        private final FloatBuffer floats; //a view of buf's memory, which is much faster to read from than the ByteBuf itself
+
+        /**
+         * The number of references to this tile, starting with the cache's. Once it reaches 0, the buffer is returned to the pool and this tile
+         * can never be retained again.
+         * <p>
+         * This is deliberately separate from the buffer's own reference count: netty recycles pooled buffer instances, so a freed buffer may
+         * already have been handed out again (with a fresh reference count) by the time a stale tile tries to retain it.
+         */
+        private final AtomicInteger refCnt = new AtomicInteger(1);
+
+        Tile(@NonNull ByteBuf buf, @NonNull FloatBuffer floats) {
+            this.buf = buf;
+            this.floats = floats;
+        }
+
+        @Override
+        public double get(int index) {
+            return this.floats.get(index);
+        }
+
+        @Override
+        public void get(int index, @NonNull double[] dst, int dstOffset, int count) {
+            FloatBuffer floats = this.floats;
+            for (int i = 0; i < count; i++) {
+                dst[dstOffset + i] = floats.get(index + i);
+            }
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return this.buf.capacity();
+        }
+
+        @Override
+        public boolean retain() {
+            for (int refCnt; (refCnt = this.refCnt.get()) > 0; ) {
+                if (this.refCnt.compareAndSet(refCnt, refCnt + 1)) {
+                    return true;
+                }
+            }
+            return false; //the tile has already been freed
+        }
+
+        @Override
+        public void release() {
+            int refCnt = this.refCnt.decrementAndGet();
+            checkState(refCnt >= 0, "tile was released too many times");
+            if (refCnt == 0) {
+                this.buf.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package net.buildtheearth.terraminusminus.dataset.scalar.storage;
+
+/**
+ * A decoded tile of a {@link net.buildtheearth.terraminusminus.dataset.scalar.DoubleTiledDataset}, stored by a {@link TileStorage}.
+ */
+public interface ScalarTile {
+    /**
+     * Gets the value of the given sample.
+     *
+     * @param index the index of the sample, in the same order as the {@code double[]} the tile was stored from
+     * @return the sample's value, or {@link Double#NaN} if the tile has no data there
+     */
+    double get(int index);
+
+    /**
+     * Gets the values of a number of consecutive samples.
+     * <p>
+     * The default implementation calls {@link #get(int)} for each sample.
+     *
+     * @param index     the index of the first sample
+     * @param dst       the array to write the values to
+     * @param dstOffset the index in {@code dst} to write the first value to
+     * @param count     the number of samples
+     */
+    default void get(int index, double[] dst, int dstOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOffset + i] = this.get(index + i);
+        }
+    }
+
+    /**
+     * @return the approximate number of bytes of memory used by this tile
+     */
+    long sizeInBytes();
+
+    /**
+     * Prevents this tile's memory from being freed until {@link #release()} is called, so that it can be sampled safely even if it is evicted
+     * from the cache in the meantime.
+     * <p>
+     * Once a tile's memory has been freed, this must atomically fail for every later call, so that a caller which obtained the tile from the cache
+     * just before it was evicted can never sample freed memory.
+     * <p>
+     * Tiles stored on the Java heap are freed by the garbage collector, so the default implementation does nothing.
+     *
+     * @return whether or not the tile was retained. If {@code false}, the tile's memory has already been freed and it must not be sampled
+     */
+    default boolean retain() {
+        return true;
+    }
+
+    /**
+     * Releases a reference to this tile, freeing its memory once it is no longer referenced by anything.
+     * <p>
+     * The cache holds a reference to each tile, which is released when the tile is evicted. Callers of {@link #retain()} must call this method
+     * exactly once when they're done sampling the tile.
+     */
+    default void release() {
+    }
+}
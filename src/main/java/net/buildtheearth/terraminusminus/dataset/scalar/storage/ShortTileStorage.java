@@ -0,0 +1,88 @@
+package net.buildtheearth.terraminusminus.dataset.scalar.storage;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Quantizes samples to 16-bit integers, as {@code value = raw * scale + offset}.
+ * <p>
+ * Values which don't fit into the representable range are clamped to it. For example, a scale of {@code 0.5} with an offset of {@code 0} stores
+ * elevations from roughly -16km to +16km with a precision of half a meter.
+ */
+@JsonDeserialize
+@Getter(onMethod_ = { @JsonGetter })
+public class ShortTileStorage implements TileStorage {
+    /**
+     * The raw value used to represent {@link Double#NaN}.
+     */
+    protected static final short NODATA = Short.MIN_VALUE;
+
+    protected final double scale;
+    protected final double offset;
+
+    @JsonCreator
+    public ShortTileStorage(
+            @JsonProperty(value = "scale", required = true) double scale,
+            @JsonProperty(value = "offset", defaultValue = "0.0") double offset) {
+        checkArg(scale > 0.0d && Double.isFinite(scale), "scale must be positive and finite: %s", scale);
+        checkArg(Double.isFinite(offset), "offset must be finite: %s", offset);
+        this.scale = scale;
+        this.offset = offset;
+    }
+
+    @Override
+    public ScalarTile store(@NonNull double[] values) {
+        double factor = 1.0d / this.scale;
+        double offset = this.offset;
+
+        short[] raw = new short[values.length];
+        for (int i = 0; i < values.length; i++) {
+            double value = values[i];
+            raw[i] = Double.isNaN(value)
+                    ? NODATA
+                    : (short) Math.max(Math.min(Math.round((value - offset) * factor), Short.MAX_VALUE), Short.MIN_VALUE + 1);
+        }
+        return new Tile(raw, this.scale, offset);
+    }
+
+    private static final class Tile implements ScalarTile {
+        private final short[] values;
+        private final double scale;
+        private final double offset;
+
+        Tile(@NonNull short[] values, double scale, double offset) {
+            this.values = values;
+            this.scale = scale;
+            this.offset = offset;
+        }
+
+        @Override
+        public double get(int index) {
+            short raw = this.values[index];
+            return raw != NODATA ? raw * this.scale + this.offset : Double.NaN;
+        }
+
+        @Override
+        public void get(int index, @NonNull double[] dst, int dstOffset, int count) {
+            short[] values = this.values;
+            double scale = this.scale;
+            double offset = this.offset;
+            for (int i = 0; i < count; i++) {
+                short raw = values[index + i];
+                dst[dstOffset + i] = raw != NODATA ? raw * scale + offset : Double.NaN;
+            }
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 40L + this.values.length * (long) Short.BYTES;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package net.buildtheearth.terraminusminus.dataset.scalar.storage;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.config.GlobalParseRegistries;
+import net.buildtheearth.terraminusminus.config.TypedDeserializer;
+import net.buildtheearth.terraminusminus.config.TypedSerializer;
+
+/**
+ * Determines how the decoded tiles of a {@link net.buildtheearth.terraminusminus.dataset.scalar.DoubleTiledDataset} are kept in memory.
+ * <p>
+ * Most source formats don't have anywhere near the precision of a {@code double}, so storing their tiles with less precision allows many more
+ * of them to stay cached at once.
+ */
+@JsonDeserialize(using = TileStorage.Deserializer.class)
+@JsonSerialize(using = TileStorage.Serializer.class)
+@FunctionalInterface
+public interface TileStorage {
+    /**
+     * Stores the given samples.
+     *
+     * @param values the samples, which may be modified or kept by the returned tile
+     * @return a {@link ScalarTile} containing the samples
+     */
+    ScalarTile store(@NonNull double[] values);
+
+    class Deserializer extends TypedDeserializer<TileStorage> {
+        @Override
+        protected Map<String, Class<? extends TileStorage>> registry() {
+            return GlobalParseRegistries.TILE_STORAGES;
+        }
+    }
+
+    class Serializer extends TypedSerializer<TileStorage> {
+        @Override
+        protected Map<Class<? extends TileStorage>, String> registry() {
+            return GlobalParseRegistries.TILE_STORAGES.inverse();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package net.buildtheearth.terraminusminus.dataset.scalar.tiff;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.util.MappedFile;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A TIFF file, such as a Cloud-Optimized GeoTIFF, which is memory-mapped for reading.
+ * <p>
+ * Only the file's header and image file directories are parsed when it is opened. Each {@link TiffImage} decodes its internal tiles straight
+ * from the mapped file when they are requested, so even very large files are cheap to open and only the parts of them which are actually
+ * sampled are ever read from disk.
+ * <p>
+ * Both classic TIFF and BigTIFF files are supported.
+ */
+@Getter
+public final class TiffFile {
+    private static final int MAX_DIRECTORIES = 1024;
+
+    //field types
+    static final int TYPE_BYTE = 1;
+    static final int TYPE_ASCII = 2;
+    static final int TYPE_SHORT = 3;
+    static final int TYPE_LONG = 4;
+    static final int TYPE_RATIONAL = 5;
+    static final int TYPE_SBYTE = 6;
+    static final int TYPE_UNDEFINED = 7;
+    static final int TYPE_SSHORT = 8;
+    static final int TYPE_SLONG = 9;
+    static final int TYPE_SRATIONAL = 10;
+    static final int TYPE_FLOAT = 11;
+    static final int TYPE_DOUBLE = 12;
+    static final int TYPE_IFD = 13;
+    static final int TYPE_LONG8 = 16;
+    static final int TYPE_SLONG8 = 17;
+    static final int TYPE_IFD8 = 18;
+
+    private static int typeSize(int type) {
+        switch (type) {
+            case TYPE_BYTE:
+            case TYPE_ASCII:
+            case TYPE_SBYTE:
+            case TYPE_UNDEFINED:
+                return 1;
+            case TYPE_SHORT:
+            case TYPE_SSHORT:
+                return 2;
+            case TYPE_LONG:
+            case TYPE_SLONG:
+            case TYPE_FLOAT:
+            case TYPE_IFD:
+                return 4;
+            case TYPE_RATIONAL:
+            case TYPE_SRATIONAL:
+            case TYPE_DOUBLE:
+            case TYPE_LONG8:
+            case TYPE_SLONG8:
+            case TYPE_IFD8:
+                return 8;
+            default: //unknown types must be ignored
+                return 0;
+        }
+    }
+
+    @Getter(AccessLevel.NONE)
+    private final MappedFile file;
+
+    private final Path path;
+    private final long size;
+    private final ByteOrder order;
+    private final boolean bigTiff;
+
+    /**
+     * The images in this file, in the order they are stored in. For a Cloud-Optimized GeoTIFF, this is the full resolution image followed by
+     * its overviews at decreasing resolutions.
+     */
+    private final List<TiffImage> images;
+
+    public TiffFile(@NonNull Path path) throws IOException {
+        this.path = path;
+        this.file = new MappedFile(path);
+        this.size = this.file.size();
+
+        checkArg(this.size >= 8L, "not a TIFF file: %s", path);
+        switch (this.file.slice(0L, 2).getShort(0)) {
+            case 0x4949: //"II"
+                this.order = ByteOrder.LITTLE_ENDIAN;
+                break;
+            case 0x4D4D: //"MM"
+                this.order = ByteOrder.BIG_ENDIAN;
+                break;
+            default:
+                throw new IllegalArgumentException("not a TIFF file: " + path);
+        }
+
+        ByteBuffer header = this.slice(0L, 8);
+        int version = header.getShort(2) & 0xFFFF;
+        long firstDirectory;
+        switch (version) {
+            case 42:
+                this.bigTiff = false;
+                firstDirectory = header.getInt(4) & 0xFFFFFFFFL;
+                break;
+            case 43:
+                this.bigTiff = true;
+                checkArg(header.getShort(4) == 8, "unsupported BigTIFF offset size in %s", path);
+                firstDirectory = this.slice(8L, 8).getLong(0);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported TIFF version " + version + " in " + path);
+        }
+
+        List<TiffImage> images = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        for (long offset = firstDirectory; offset != 0L; ) {
+            checkArg(visited.add(offset) && visited.size() <= MAX_DIRECTORIES, "invalid image file directory chain in %s", path);
+            offset = this.readDirectory(offset, images);
+        }
+        this.images = Collections.unmodifiableList(images);
+    }
+
+    /**
+     * Reads the image file directory at the given offset.
+     *
+     * @return the offset of the next image file directory, or {@code 0L} if it was the last one
+     */
+    private long readDirectory(long offset, @NonNull List<TiffImage> images) {
+        int countSize = this.bigTiff ? 8 : 2;
+        int entrySize = this.bigTiff ? 20 : 12;
+        int valueSize = this.bigTiff ? 8 : 4;
+
+        long count = this.bigTiff ? this.slice(offset, countSize).getLong(0) : this.slice(offset, countSize).getShort(0) & 0xFFFF;
+        checkArg(count >= 0L && count <= 0xFFFF, "invalid image file directory entry count %d in %s", count, this.path);
+        ByteBuffer entries = this.slice(offset + countSize, (int) count * entrySize + valueSize);
+
+        Map<Integer, Field> fields = new HashMap<>();
+        for (int i = 0, base = 0; i < count; i++, base += entrySize) {
+            int tag = entries.getShort(base) & 0xFFFF;
+            int type = entries.getShort(base + 2) & 0xFFFF;
+            long n = this.bigTiff ? entries.getLong(base + 4) : entries.getInt(base + 4) & 0xFFFFFFFFL;
+            int typeSize = typeSize(type);
+            if (typeSize == 0) {
+                continue;
+            }
+            checkArg(n >= 0L && n <= Integer.MAX_VALUE / typeSize, "invalid value count %d for tag %d in %s", n, tag, this.path);
+
+            int bytes = (int) n * typeSize;
+            int valueOffset = base + entrySize - valueSize;
+            ByteBuffer data = bytes <= valueSize //small values are stored inline
+                    ? entries.slice(valueOffset, bytes).order(this.order)
+                    : this.slice(this.bigTiff ? entries.getLong(valueOffset) : entries.getInt(valueOffset) & 0xFFFFFFFFL, bytes);
+            fields.put(tag, new Field(type, (int) n, data));
+        }
+
+        images.add(new TiffImage(this, fields));
+        return this.bigTiff ? entries.getLong((int) count * entrySize) : entries.getInt((int) count * entrySize) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Gets a view of the given range of this file.
+     *
+     * @param offset the offset of the range
+     * @param length the length of the range
+     * @return a {@link ByteBuffer} containing the data in the range, using this file's byte order
+     * @see MappedFile#slice(long, int)
+     */
+    public ByteBuffer slice(long offset, int length) {
+        return this.file.slice(offset, length).order(this.order);
+    }
+
+    /**
+     * The value of a field in an image file directory.
+     */
+    static final class Field {
+        final int type;
+        final int count;
+        final ByteBuffer data;
+
+        Field(int type, int count, @NonNull ByteBuffer data) {
+            this.type = type;
+            this.count = count;
+            this.data = data;
+        }
+
+        long getLong(int index) {
+            switch (this.type) {
+                case TYPE_BYTE:
+                case TYPE_UNDEFINED:
+                    return this.data.get(index) & 0xFFL;
+                case TYPE_SBYTE:
+                    return this.data.get(index);
+                case TYPE_SHORT:
+                    return this.data.getShort(index << 1) & 0xFFFFL;
+                case TYPE_SSHORT:
+                    return this.data.getShort(index << 1);
+                case TYPE_LONG:
+                case TYPE_IFD:
+                    return this.data.getInt(index << 2) & 0xFFFFFFFFL;
+                case TYPE_SLONG:
+                    return this.data.getInt(index << 2);
+                case TYPE_LONG8:
+                case TYPE_SLONG8:
+                case TYPE_IFD8:
+                    return this.data.getLong(index << 3);
+                default:
+                    return (long) this.getDouble(index);
+            }
+        }
+
+        double getDouble(int index) {
+            switch (this.type) {
+                case TYPE_FLOAT:
+                    return this.data.getFloat(index << 2);
+                case TYPE_DOUBLE:
+                    return this.data.getDouble(index << 3);
+                case TYPE_RATIONAL:
+                    return (this.data.getInt(index << 3) & 0xFFFFFFFFL) / (double) (this.data.getInt((index << 3) + 4) & 0xFFFFFFFFL);
+                case TYPE_SRATIONAL:
+                    return this.data.getInt(index << 3) / (double) this.data.getInt((index << 3) + 4);
+                case TYPE_ASCII:
+                    return Double.parseDouble(this.getString());
+                default:
+                    return this.getLong(index);
+            }
+        }
+
+        String getString() {
+            byte[] bytes = new byte[this.count];
+            this.data.get(0, bytes);
+            int length = 0;
+            while (length < bytes.length && bytes[length] != 0) { //strings are NUL-terminated
+                length++;
+            }
+            return new String(bytes, 0, length, StandardCharsets.US_ASCII).trim();
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package net.buildtheearth.terraminusminus.dataset.scalar.tiff;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A single tiled image in a {@link TiffFile}, which decodes its internal tiles on demand.
+ * <p>
+ * Only single-band images with integer or floating-point samples are supported, which covers practically every elevation model. The tiles may be
+ * uncompressed or compressed with LZW or Deflate, optionally with a horizontal or floating-point predictor.
+ */
+@Getter
+public final class TiffImage {
+    //baseline and extension tags
+    static final int TAG_NEW_SUBFILE_TYPE = 254;
+    static final int TAG_IMAGE_WIDTH = 256;
+    static final int TAG_IMAGE_LENGTH = 257;
+    static final int TAG_BITS_PER_SAMPLE = 258;
+    static final int TAG_COMPRESSION = 259;
+    static final int TAG_SAMPLES_PER_PIXEL = 277;
+    static final int TAG_PREDICTOR = 317;
+    static final int TAG_TILE_WIDTH = 322;
+    static final int TAG_TILE_LENGTH = 323;
+    static final int TAG_TILE_OFFSETS = 324;
+    static final int TAG_TILE_BYTE_COUNTS = 325;
+    static final int TAG_SAMPLE_FORMAT = 339;
+
+    //GeoTIFF and GDAL tags
+    static final int TAG_MODEL_PIXEL_SCALE = 33550;
+    static final int TAG_MODEL_TIEPOINT = 33922;
+    static final int TAG_GEO_KEY_DIRECTORY = 34735;
+    static final int TAG_GDAL_NODATA = 42113;
+
+    static final int GEO_KEY_RASTER_TYPE = 1025;
+    static final int RASTER_PIXEL_IS_POINT = 2;
+
+    public static final int COMPRESSION_NONE = 1;
+    public static final int COMPRESSION_LZW = 5;
+    public static final int COMPRESSION_DEFLATE = 8;
+    public static final int COMPRESSION_ADOBE_DEFLATE = 32946;
+
+    public static final int PREDICTOR_NONE = 1;
+    public static final int PREDICTOR_HORIZONTAL = 2;
+    public static final int PREDICTOR_FLOATING_POINT = 3;
+
+    public static final int SAMPLE_FORMAT_UNSIGNED = 1;
+    public static final int SAMPLE_FORMAT_SIGNED = 2;
+    public static final int SAMPLE_FORMAT_FLOATING_POINT = 3;
+
+    private static long get(@NonNull Map<Integer, TiffFile.Field> fields, int tag, long fallback) {
+        TiffFile.Field field = fields.get(tag);
+        return field != null && field.count > 0 ? field.getLong(0) : fallback;
+    }
+
+    private static double[] getDoubles(@NonNull Map<Integer, TiffFile.Field> fields, int tag) {
+        TiffFile.Field field = fields.get(tag);
+        if (field == null) {
+            return null;
+        }
+        double[] values = new double[field.count];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = field.getDouble(i);
+        }
+        return values;
+    }
+
+    @Getter(AccessLevel.NONE)
+    private final TiffFile file;
+    @Getter(AccessLevel.NONE)
+    private final TiffFile.Field tileOffsets; //read lazily, as there may be millions of tiles
+    @Getter(AccessLevel.NONE)
+    private final TiffFile.Field tileByteCounts;
+
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int tilesAcross;
+    private final int tilesDown;
+
+    private final int samplesPerPixel;
+    private final int bitsPerSample;
+    private final int sampleFormat;
+    private final int compression;
+    private final int predictor;
+
+    /**
+     * Whether or not this image is a reduced-resolution version of another image in the same file, i.e. an overview.
+     */
+    private final boolean reducedResolution;
+
+    /**
+     * Whether or not this image is a transparency mask for another image in the same file.
+     */
+    private final boolean mask;
+
+    /**
+     * The value of samples which have no data, or {@link Double#NaN} if there is none.
+     */
+    private final double noData;
+
+    /**
+     * The size of a pixel in model space along each axis, or {@code null} if this image isn't georeferenced.
+     */
+    private final double[] pixelScale;
+
+    /**
+     * The raster and model space coordinates of the tie points, or {@code null} if this image isn't georeferenced.
+     */
+    private final double[] tiePoints;
+
+    /**
+     * Whether or not the tie points refer to the center of a pixel, rather than to its corner.
+     */
+    private final boolean pixelIsPoint;
+
+    TiffImage(@NonNull TiffFile file, @NonNull Map<Integer, TiffFile.Field> fields) {
+        this.file = file;
+
+        long subfileType = get(fields, TAG_NEW_SUBFILE_TYPE, 0L);
+        this.reducedResolution = (subfileType & 1L) != 0L;
+        this.mask = (subfileType & 4L) != 0L;
+
+        this.width = (int) get(fields, TAG_IMAGE_WIDTH, 0L);
+        this.height = (int) get(fields, TAG_IMAGE_LENGTH, 0L);
+        this.tileWidth = (int) get(fields, TAG_TILE_WIDTH, 0L);
+        this.tileHeight = (int) get(fields, TAG_TILE_LENGTH, 0L);
+        this.tilesAcross = this.tileWidth > 0 ? (this.width + this.tileWidth - 1) / this.tileWidth : 0;
+        this.tilesDown = this.tileHeight > 0 ? (this.height + this.tileHeight - 1) / this.tileHeight : 0;
+        this.tileOffsets = fields.get(TAG_TILE_OFFSETS);
+        this.tileByteCounts = fields.get(TAG_TILE_BYTE_COUNTS);
+
+        this.samplesPerPixel = (int) get(fields, TAG_SAMPLES_PER_PIXEL, 1L);
+        this.bitsPerSample = (int) get(fields, TAG_BITS_PER_SAMPLE, 1L);
+        this.sampleFormat = (int) get(fields, TAG_SAMPLE_FORMAT, SAMPLE_FORMAT_UNSIGNED);
+        this.compression = (int) get(fields, TAG_COMPRESSION, COMPRESSION_NONE);
+        this.predictor = (int) get(fields, TAG_PREDICTOR, PREDICTOR_NONE);
+
+        TiffFile.Field noData = fields.get(TAG_GDAL_NODATA);
+        double noDataValue = noData != null ? Double.parseDouble(noData.getString()) : Double.NaN;
+        if (this.sampleFormat == SAMPLE_FORMAT_FLOATING_POINT && this.bitsPerSample == Float.SIZE) { //the value is only written with limited precision
+            noDataValue = (float) noDataValue;
+        }
+        this.noData = noDataValue;
+
+        this.pixelScale = getDoubles(fields, TAG_MODEL_PIXEL_SCALE);
+        this.tiePoints = getDoubles(fields, TAG_MODEL_TIEPOINT);
+
+        boolean pixelIsPoint = false;
+        TiffFile.Field geoKeys = fields.get(TAG_GEO_KEY_DIRECTORY);
+        if (geoKeys != null && geoKeys.count >= 4) { //header is followed by entries of (key, location, count, value)
+            for (int i = 4; i + 3 < geoKeys.count; i += 4) {
+                if (geoKeys.getLong(i) == GEO_KEY_RASTER_TYPE && geoKeys.getLong(i + 1) == 0L) {
+                    pixelIsPoint = geoKeys.getLong(i + 3) == RASTER_PIXEL_IS_POINT;
+                }
+            }
+        }
+        this.pixelIsPoint = pixelIsPoint;
+    }
+
+    /**
+     * Ensures that this image's tiles can be decoded.
+     *
+     * @throws IllegalArgumentException if this image isn't supported
+     */
+    public void checkSupported() {
+        checkArg(this.width > 0 && this.height > 0, "invalid image size %dx%d in %s", this.width, this.height, this.file.path());
+        checkArg(this.tileWidth > 0 && this.tileHeight > 0 && this.tileOffsets != null && this.tileByteCounts != null,
+                "image in %s isn't tiled! (convert it with e.g. gdal_translate -of COG)", this.file.path());
+        checkArg(this.tileOffsets.count >= this.tilesAcross * this.tilesDown && this.tileByteCounts.count >= this.tilesAcross * this.tilesDown,
+                "missing tile offsets in %s", this.file.path());
+        checkArg(this.samplesPerPixel == 1, "image in %s has %d bands, only single-band images are supported", this.file.path(), this.samplesPerPixel);
+
+        switch (this.sampleFormat) {
+            case SAMPLE_FORMAT_UNSIGNED:
+            case SAMPLE_FORMAT_SIGNED:
+                checkArg(this.bitsPerSample == 8 || this.bitsPerSample == 16 || this.bitsPerSample == 32 || this.bitsPerSample == 64,
+                        "unsupported integer sample size %d in %s", this.bitsPerSample, this.file.path());
+                break;
+            case SAMPLE_FORMAT_FLOATING_POINT:
+                checkArg(this.bitsPerSample == 32 || this.bitsPerSample == 64,
+                        "unsupported floating-point sample size %d in %s", this.bitsPerSample, this.file.path());
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported sample format " + this.sampleFormat + " in " + this.file.path());
+        }
+
+        switch (this.compression) {
+            case COMPRESSION_NONE:
+            case COMPRESSION_LZW:
+            case COMPRESSION_DEFLATE:
+            case COMPRESSION_ADOBE_DEFLATE:
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported compression " + this.compression + " in " + this.file.path() + " (supported: none, LZW, Deflate)");
+        }
+        checkArg(this.predictor == PREDICTOR_NONE
+                 || this.predictor == PREDICTOR_HORIZONTAL && this.sampleFormat != SAMPLE_FORMAT_FLOATING_POINT
+                 || this.predictor == PREDICTOR_FLOATING_POINT && this.sampleFormat == SAMPLE_FORMAT_FLOATING_POINT,
+                "unsupported predictor %d in %s", this.predictor, this.file.path());
+    }
+
+    /**
+     * Decodes the given internal tile.
+     * <p>
+     * Samples are returned in row-major order, starting at the top-left corner. Samples which have no data, or which are outside of the image
+     * because the tile is at its right or bottom edge, are {@link Double#NaN}.
+     *
+     * @param tileX the tile's column
+     * @param tileY the tile's row
+     * @return the tile's samples, or {@code null} if the tile is outside of the image or has no data at all
+     */
+    public double[] readTile(int tileX, int tileY) throws IOException {
+        if (tileX < 0 || tileX >= this.tilesAcross || tileY < 0 || tileY >= this.tilesDown) {
+            return null;
+        }
+
+        int tile = tileY * this.tilesAcross + tileX;
+        long offset = this.tileOffsets.getLong(tile);
+        long length = this.tileByteCounts.getLong(tile);
+        if (length == 0L) { //sparse file, the tile was never written
+            return null;
+        }
+        checkArg(length <= Integer.MAX_VALUE, "tile (%d,%d) in %s is too large", tileX, tileY, this.file.path());
+        ByteBuffer src = this.file.slice(offset, (int) length);
+
+        int bytesPerSample = this.bitsPerSample >> 3;
+        byte[] raw = new byte[this.tileWidth * this.tileHeight * bytesPerSample];
+        switch (this.compression) {
+            case COMPRESSION_NONE:
+                src.get(0, raw, 0, Math.min(raw.length, src.capacity()));
+                break;
+            case COMPRESSION_LZW:
+                lzw(src, raw);
+                break;
+            case COMPRESSION_DEFLATE:
+            case COMPRESSION_ADOBE_DEFLATE:
+                inflate(src, raw);
+                break;
+            default:
+                throw new IllegalStateException("unsupported compression: " + this.compression);
+        }
+
+        if (this.predictor == PREDICTOR_FLOATING_POINT) {
+            this.undoFloatingPointPredictor(raw, bytesPerSample);
+        }
+        return this.toSamples(ByteBuffer.wrap(raw).order(this.file.order()), tileX, tileY, bytesPerSample);
+    }
+
+    private double[] toSamples(@NonNull ByteBuffer raw, int tileX, int tileY, int bytesPerSample) {
+        int tileWidth = this.tileWidth;
+        int tileHeight = this.tileHeight;
+        int validWidth = Math.min(tileWidth, this.width - tileX * tileWidth);
+        int validHeight = Math.min(tileHeight, this.height - tileY * tileHeight);
+        boolean horizontal = this.predictor == PREDICTOR_HORIZONTAL;
+        boolean floatingPoint = this.sampleFormat == SAMPLE_FORMAT_FLOATING_POINT;
+        int signShift = this.sampleFormat == SAMPLE_FORMAT_SIGNED ? Long.SIZE - this.bitsPerSample : 0;
+        long mask = this.bitsPerSample == Long.SIZE ? -1L : (1L << this.bitsPerSample) - 1L;
+        double noData = this.noData;
+
+        double[] dst = new double[tileWidth * tileHeight];
+        for (int y = 0, i = 0; y < tileHeight; y++) {
+            long previous = 0L;
+            for (int x = 0; x < tileWidth; x++, i++) {
+                int position = i * bytesPerSample;
+                double value;
+                if (floatingPoint) {
+                    value = bytesPerSample == Float.BYTES ? raw.getFloat(position) : raw.getDouble(position);
+                } else {
+                    long bits;
+                    switch (bytesPerSample) {
+                        case 1:
+                            bits = raw.get(position);
+                            break;
+                        case 2:
+                            bits = raw.getShort(position);
+                            break;
+                        case 4:
+                            bits = raw.getInt(position);
+                            break;
+                        default:
+                            bits = raw.getLong(position);
+                    }
+                    if (horizontal) { //each sample is stored as the difference to the previous sample in the row
+                        bits += previous;
+                        previous = bits;
+                    }
+                    bits &= mask;
+                    value = bits << signShift >> signShift;
+                }
+
+                dst[i] = x >= validWidth || y >= validHeight || value == noData ? Double.NaN : value;
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Undoes the floating-point predictor, which stores each row as byte-wise differences between the samples' bytes, with the most significant
+     * bytes of all samples first.
+     * <p>
+     * Afterwards, the samples are stored in the file's byte order like any other samples.
+     */
+    private void undoFloatingPointPredictor(@NonNull byte[] raw, int bytesPerSample) {
+        int rowBytes = this.tileWidth * bytesPerSample;
+        byte[] row = new byte[rowBytes];
+        boolean littleEndian = this.file.order() == ByteOrder.LITTLE_ENDIAN;
+
+        for (int base = 0; base < raw.length; base += rowBytes) {
+            for (int i = 1; i < rowBytes; i++) {
+                raw[base + i] += raw[base + i - 1];
+            }
+            System.arraycopy(raw, base, row, 0, rowBytes);
+
+            for (int x = 0; x < this.tileWidth; x++) {
+                for (int b = 0; b < bytesPerSample; b++) { //b is the significance of the byte, starting with the most significant one
+                    raw[base + x * bytesPerSample + (littleEndian ? bytesPerSample - 1 - b : b)] = row[b * this.tileWidth + x];
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes TIFF's variant of LZW, which uses most significant bit first codes of 9 to 12 bits and switches to wider codes one code early.
+     */
+    static void lzw(@NonNull ByteBuffer src, @NonNull byte[] dst) throws IOException {
+        final int clear = 256;
+        final int end = 257;
+
+        int[] prefixes = new int[4096];
+        byte[] suffixes = new byte[4096];
+        byte[] firsts = new byte[4096];
+        int[] lengths = new int[4096];
+        for (int i = 0; i < 256; i++) {
+            prefixes[i] = -1;
+            suffixes[i] = firsts[i] = (byte) i;
+            lengths[i] = 1;
+        }
+
+        int next = 258;
+        int codeBits = 9;
+        int previous = -1;
+        int out = 0;
+
+        long buffer = 0L;
+        int bufferedBits = 0;
+        int position = 0;
+        int limit = src.capacity();
+        while (out < dst.length) {
+            while (bufferedBits < codeBits) {
+                if (position >= limit) {
+                    return;
+                }
+                buffer = buffer << 8 | (src.get(position++) & 0xFF);
+                bufferedBits += 8;
+            }
+            bufferedBits -= codeBits;
+            int code = (int) (buffer >>> bufferedBits) & ((1 << codeBits) - 1);
+
+            if (code == end) {
+                return;
+            } else if (code == clear) {
+                next = 258;
+                codeBits = 9;
+                previous = -1;
+                continue;
+            } else if (code > next || (previous < 0 && code >= 256)) {
+                throw new IOException("corrupt LZW data");
+            }
+
+            if (previous >= 0 && next < 4096) { //add a new string consisting of the previous string followed by the first byte of this one
+                prefixes[next] = previous;
+                suffixes[next] = code < next ? firsts[code] : firsts[previous];
+                firsts[next] = firsts[previous];
+                lengths[next] = lengths[previous] + 1;
+                if (++next >= (1 << codeBits) - 1 && codeBits < 12) {
+                    codeBits++;
+                }
+            } else if (code >= next) { //the code refers to the string which would have been added, but the table is already full
+                throw new IOException("corrupt LZW data");
+            }
+
+            //write the string backwards by following its prefixes
+            int length = lengths[code];
+            for (int c = code, i = out + length - 1; c >= 0; c = prefixes[c], i--) {
+                if (i < dst.length) {
+                    dst[i] = suffixes[c];
+                }
+            }
+            out += length;
+            previous = code;
+        }
+    }
+
+    static void inflate(@NonNull ByteBuffer src, @NonNull byte[] dst) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(src);
+            for (int out = 0; out < dst.length && !inflater.finished(); ) {
+                int n = inflater.inflate(dst, out, dst.length - out);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) { //truncated tile, leave the rest empty
+                    Arrays.fill(dst, out, dst.length, (byte) 0);
+                    break;
+                }
+                out += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt Deflate data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
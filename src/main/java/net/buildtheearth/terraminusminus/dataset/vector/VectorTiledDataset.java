@@ -6,8 +6,11 @@ import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 
 import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraExecutors;
+import net.buildtheearth.terraminusminus.dataset.Coverage;
 import net.buildtheearth.terraminusminus.dataset.IDataset;
 import net.buildtheearth.terraminusminus.dataset.IElementDataset;
+import net.buildtheearth.terraminusminus.dataset.TileCache;
 import net.buildtheearth.terraminusminus.dataset.TiledDataset;
 import net.buildtheearth.terraminusminus.dataset.vector.geometry.VectorGeometry;
 import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
@@ -34,6 +37,11 @@ public class VectorTiledDataset extends TiledDataset<BVH<VectorGeometry>> implem
         return this.delegate.getAsync(String.format("tile/%d/%d.json", key.x(), key.z())).thenApply(BVH::of);
     }
 
+    @Override
+    protected long weigh(BVH<VectorGeometry> value) {
+        return value != null ? value.size() * TileCache.UNKNOWN_SIZE : 0L;
+    }
+
     @Override
     public CompletableFuture<BVH<VectorGeometry>[]> getAsync(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
         Bounds2d localBounds = bounds.fromGeo(this.projection).axisAlign();
@@ -44,6 +52,30 @@ public class VectorTiledDataset extends TiledDataset<BVH<VectorGeometry>> implem
         return CompletableFuture.allOf(futures).thenApplyAsync(unused ->
                 uncheckedCast(Arrays.stream(futures)
                         .map(CompletableFuture::join)
-                        .toArray(BVH[]::new)));
+                        .toArray(BVH[]::new)), TerraExecutors.bake());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Tiles are only known to be empty once they have been loaded, so areas whose tiles aren't currently cached have an {@link Coverage#UNKNOWN}
+     * coverage. As there is no way of knowing which tiles are empty without downloading them, areas which haven't been loaded yet never
+     * benefit from this.
+     */
+    @Override
+    public Coverage coverage(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
+        Coverage coverage = Coverage.NONE;
+        for (ChunkPos tile : bounds.fromGeo(this.projection).axisAlign().toTiles(this.tileSize)) {
+            CompletableFuture<BVH<VectorGeometry>> future = this.cache.getIfPresent(tile);
+            if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+                coverage = Coverage.UNKNOWN;
+            } else {
+                BVH<VectorGeometry> elements = future.join();
+                if (elements != null && elements.size() != 0) {
+                    return Coverage.POSSIBLE;
+                }
+            }
+        }
+        return coverage;
     }
 }
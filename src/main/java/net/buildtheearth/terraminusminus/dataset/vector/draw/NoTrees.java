@@ -19,7 +19,7 @@ import net.buildtheearth.terraminusminus.generator.EarthGeneratorPipelines;
 final class NoTrees implements DrawFunction {
     @Override
     public void drawOnto(@NonNull CachedChunkData.Builder data, int x, int z, int weight) {
-        byte[] treeCover = data.getCustom(EarthGeneratorPipelines.KEY_DATA_TREE_COVER, null);
+        byte[] treeCover = data.getCustom(EarthGeneratorPipelines.DATA_TREE_COVER, null);
         if (treeCover != null) {
             treeCover[x * 16 + z] = (byte) 0; //set chance to 0
         }
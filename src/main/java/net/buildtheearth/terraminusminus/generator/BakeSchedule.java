@@ -0,0 +1,87 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+
+/**
+ * Helper methods for scheduling the {@link IEarthAsyncPipelineStep#bake bake} stage of a set of pipeline steps as a dependency graph, based on
+ * the {@link IEarthAsyncPipelineStep#inputs() inputs} and {@link IEarthAsyncPipelineStep#outputs() outputs} they declare.
+ * <p>
+ * Step sets are represented as bitmasks, so at most {@link #MAX_STEPS} steps are supported.
+ */
+@UtilityClass
+class BakeSchedule {
+    public final int MAX_STEPS = Long.SIZE;
+
+    /**
+     * Computes the dependencies of every step.
+     * <p>
+     * A step depends on every earlier step which it conflicts with, i.e. one of them writes to a part of the builder which the other one reads
+     * from or writes to. Steps which don't conflict with each other may be baked in any order, or concurrently.
+     *
+     * @param steps the steps
+     * @return a bitmask of the earlier steps that each step depends on, or {@code null} if any of the steps doesn't declare its inputs and outputs
+     */
+    public long[] dependencies(@NonNull IEarthAsyncPipelineStep<?, ?, ?>[] steps) {
+        if (steps.length > MAX_STEPS) {
+            return null;
+        }
+
+        long[] dependencies = new long[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            Set<String> inputs = steps[i].inputs();
+            Set<String> outputs = steps[i].outputs();
+            if (inputs == null || outputs == null) {
+                return null;
+            }
+
+            for (int j = 0; j < i; j++) {
+                if (!Collections.disjoint(steps[j].outputs(), inputs)
+                        || !Collections.disjoint(steps[j].outputs(), outputs)
+                        || !Collections.disjoint(steps[j].inputs(), outputs)) {
+                    dependencies[i] |= 1L << j;
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Computes which steps don't need to be baked at the given column, because everything they would write is overwritten by later steps before
+     * anything reads it.
+     *
+     * @param pos   the position of the column
+     * @param steps the steps, which must all declare their inputs and outputs
+     * @return a bitmask of the steps which don't need to be baked
+     */
+    public long skipped(@NonNull ChunkPos pos, @NonNull IEarthAsyncPipelineStep<?, ?, ?>[] steps) {
+        long skipped = 0L;
+        Set<String> dead = null; //the parts of the builder which will be overwritten before being read
+
+        //walk backwards through the steps, tracking which parts of the builder are overwritten by the steps after the current one
+        for (int i = steps.length - 1; i >= 0; i--) {
+            IEarthAsyncPipelineStep<?, ?, ?> step = steps[i];
+            if (dead != null && !step.outputs().isEmpty() && dead.containsAll(step.outputs())) {
+                skipped |= 1L << i;
+                continue;
+            }
+
+            Set<String> overwrites = step.overwrites(pos);
+            if (!overwrites.isEmpty()) {
+                if (dead == null) {
+                    dead = new HashSet<>();
+                }
+                dead.addAll(overwrites);
+            }
+            if (dead != null) { //anything the step reads must be computed by the steps before it
+                dead.removeAll(step.inputs());
+            }
+        }
+        return skipped;
+    }
+}
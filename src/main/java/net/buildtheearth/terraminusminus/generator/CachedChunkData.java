@@ -8,10 +8,10 @@ import static net.daporkchop.lib.common.math.PMath.lerp;
 
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.google.common.collect.ImmutableMap;
-
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
@@ -19,20 +19,33 @@ import net.buildtheearth.terraminusminus.substitutes.MetaBiome;
 import net.buildtheearth.terraminusminus.substitutes.BlockState;
 import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
 import net.buildtheearth.terraminusminus.substitutes.IBiome;
+import net.buildtheearth.terraminusminus.util.AttributeKey;
 import net.buildtheearth.terraminusminus.util.CustomAttributeContainer;
 import net.buildtheearth.terraminusminus.util.ImmutableCompactArray;
+import net.daporkchop.lib.binary.bit.BitArray;
+import net.daporkchop.lib.binary.bit.padded.PaddedBitArray;
 import net.daporkchop.lib.common.reference.ReferenceStrength;
 import net.daporkchop.lib.common.reference.cache.Cached;
 import net.daporkchop.lib.common.util.PorkUtil;
 
 /**
  * A collection of data cached per-column by earth generators.
+ * <p>
+ * As many chunks are kept in memory at once, the data is stored in a compact form: heights are stored as a base value plus bit-packed deltas,
+ * biomes are stored using a palette, and chunks whose columns are all identical (such as open ocean) share a single instance.
  *
  * @author DaPorkchop_
  */
 public class CachedChunkData extends CustomAttributeContainer {
     public static final int BLANK_HEIGHT = -1;
 
+    /**
+     * Heights are clamped to the range [{@link #MIN_HEIGHT}, {@link #MAX_HEIGHT}], so that the difference between any two heights in a column
+     * fits into the bit-packed deltas. This is far beyond the height of any real terrain.
+     */
+    public static final int MIN_HEIGHT = -(1 << 30);
+    public static final int MAX_HEIGHT = (1 << 30) - 1;
+
     public static final int WATER_DEPTH_OFFSET = 1;
 
     public static final int WATERDEPTH_DEFAULT = (byte) 0x80;
@@ -42,10 +55,27 @@ public class CachedChunkData extends CustomAttributeContainer {
     public static final int WATERDEPTH_TYPE_WATER = (byte) 0x00;
     public static final int WATERDEPTH_TYPE_OCEAN = (byte) 0x40;
 
+    //the parts of a builder which can be declared as inputs or outputs by data bakers, custom attributes are identified by their name
+    public static final String CHANNEL_SURFACE_HEIGHT = "surface_height";
+    public static final String CHANNEL_WATER_DEPTH = "water_depth";
+    public static final String CHANNEL_BIOMES = "biomes";
+    public static final String CHANNEL_SURFACE_BLOCKS = "surface_blocks";
+
     private static final Cached<Builder> BUILDER_CACHE = Cached.threadLocal(Builder::new, ReferenceStrength.SOFT);
 
+    /**
+     * Gets a builder which may be used until it is built or discarded.
+     * <p>
+     * Builders are cached per-thread, but the returned builder may be used on other threads while it is in use. If this thread's cached builder
+     * is still in use, a new one is returned.
+     */
     public static Builder builder() {
-        return BUILDER_CACHE.get().reset();
+        Builder builder = BUILDER_CACHE.get();
+        if (builder.inUse) { //the cached builder is still being used by a column which is being baked asynchronously
+            builder = new Builder();
+        }
+        builder.inUse = true;
+        return builder.reset();
     }
 
     private static int extractActualDepth(int waterDepth) {
@@ -53,22 +83,18 @@ public class CachedChunkData extends CustomAttributeContainer {
         return ((waterDepth & 0x3F) - 32) << 26 >> 26;
     }
 
-    private final int[] surfaceHeight;
-    private final int[] groundHeight;
-
-    @Getter
-    private final int[] biomes;
-
-    private final ImmutableCompactArray<BlockState> surfaceBlocks;
-
-    private final int surfaceMinCube;
-    private final int surfaceMaxCube;
-
-    private CachedChunkData(@NonNull Builder builder, @NonNull Map<String, Object> custom) {
-        super(custom);
+    /**
+     * Flyweight instances for uniform columns (e.g. open ocean), keyed by their contents.
+     */
+    private static final Map<UniformKey, CachedChunkData> FLYWEIGHTS = new ConcurrentHashMap<>();
+    private static final int MAX_FLYWEIGHTS = 1024;
 
-        this.surfaceHeight = builder.surfaceHeight.clone();
-        this.groundHeight = builder.surfaceHeight.clone();
+    /**
+     * Bakes the data from the given builder.
+     */
+    private static CachedChunkData bake(@NonNull Builder builder, @NonNull Object[] custom) {
+        int[] surfaceHeight = builder.surfaceHeight.clone();
+        int[] groundHeight = builder.surfaceHeight.clone();
 
         for (int i = 0; i < 16 * 16; i++) {
             int waterDepth = builder.waterDepth[i];
@@ -80,18 +106,18 @@ public class CachedChunkData extends CustomAttributeContainer {
                     break;
                 case WATERDEPTH_TYPE_WATER: //water - lake/river/pond
                     if (d + WATER_DEPTH_OFFSET >= 0) {
-                        this.groundHeight[i] -= d + WATER_DEPTH_OFFSET;
+                        groundHeight[i] -= d + WATER_DEPTH_OFFSET;
                         builder.biomes[(i >>> 4) | ((i & 0xF) << 4)] = MetaBiome.RIVER;
                     }
                     break;
                 case WATERDEPTH_TYPE_OCEAN:
                     if (d < 0) {
                         double t = (~d) / 8.0d;
-                        this.surfaceHeight[i] = floorI(lerp(0.0d, this.surfaceHeight[i], t));
-                        this.groundHeight[i] = floorI(lerp(-1.0d, this.groundHeight[i], t));
+                        surfaceHeight[i] = floorI(lerp(0.0d, surfaceHeight[i], t));
+                        groundHeight[i] = floorI(lerp(-1.0d, groundHeight[i], t));
                     } else {
-                        this.surfaceHeight[i] = 0;
-                        this.groundHeight[i] = min(this.groundHeight[i], -2);
+                        surfaceHeight[i] = 0;
+                        groundHeight[i] = min(groundHeight[i], -2);
                         builder.biomes[(i >>> 4) | ((i & 0xF) << 4)] = MetaBiome.DEEP_OCEAN;
                     }
                     break;
@@ -100,22 +126,171 @@ public class CachedChunkData extends CustomAttributeContainer {
             }
         }
 
-        this.biomes = new int[16 * 16];
+        int[] biomes = new int[16 * 16];
         for (int i = 0; i < 16 * 16; i++) {
             //Map from pseudo biomes, like MetaBiome, to real biome, to get the real numeric ID
-            this.biomes[i] = BiomesRegistry.get().map(PorkUtil.fallbackIfNull(builder.biomes[i],MetaBiome.DEEP_OCEAN)).getNumericId();
+            biomes[i] = BiomesRegistry.get().map(PorkUtil.fallbackIfNull(builder.biomes[i],MetaBiome.DEEP_OCEAN)).getNumericId();
+        }
+
+        return restore(surfaceHeight, groundHeight, biomes, builder.surfaceBlocks, custom);
+    }
+
+    /**
+     * Restores previously baked data, e.g. from a {@link ChunkDataStore}.
+     * <p>
+     * If the column is uniform, a shared instance may be returned.
+     *
+     * @param custom the custom attributes, indexed by their {@link AttributeKey#slot() slot}. The array is used as-is, and must not be modified
+     *               afterwards
+     */
+    static CachedChunkData restore(@NonNull int[] surfaceHeight, @NonNull int[] groundHeight, @NonNull int[] biomes, @NonNull BlockState[] surfaceBlocks, @NonNull Object[] custom) {
+        CachedChunkData data = new CachedChunkData(surfaceHeight, groundHeight, biomes, surfaceBlocks, custom);
+        if (!data.isUniform()) {
+            return data;
         }
 
-        this.surfaceBlocks = new ImmutableCompactArray<>(builder.surfaceBlocks);
+        UniformKey key = new UniformKey(data.surfaceBase, data.groundBase, data.biomePalette[0], data.surfaceBlocks.get(0));
+        CachedChunkData flyweight = FLYWEIGHTS.get(key);
+        if (flyweight == null && FLYWEIGHTS.size() < MAX_FLYWEIGHTS) {
+            flyweight = FLYWEIGHTS.putIfAbsent(key, data);
+            if (flyweight == null) { //we're the first uniform column with these contents
+                return data;
+            }
+        }
+        return flyweight != null && sameAttributes(flyweight.custom, data.custom) ? flyweight : data;
+    }
 
+    /**
+     * @return whether or not the given attributes are equal, ignoring absent attributes at the end of either array
+     */
+    private static boolean sameAttributes(@NonNull Object[] a, @NonNull Object[] b) {
+        for (int i = 0; i < max(a.length, b.length); i++) {
+            if (!Objects.deepEquals(i < a.length ? a[i] : null, i < b.length ? b[i] : null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int minOf(@NonNull int[] values) {
         int min = Integer.MAX_VALUE;
-        int max = Integer.MIN_VALUE;
+        for (int value : values) {
+            min = min(min, value);
+        }
+        return min;
+    }
+
+    /**
+     * @return the given heights clamped to [{@link #MIN_HEIGHT}, {@link #MAX_HEIGHT}]. The array is only copied if any heights need to be clamped
+     */
+    private static int[] clampHeights(@NonNull int[] heights) {
+        int[] clamped = heights;
+        for (int i = 0; i < heights.length; i++) {
+            if (heights[i] < MIN_HEIGHT || heights[i] > MAX_HEIGHT) {
+                if (clamped == heights) {
+                    clamped = heights.clone();
+                }
+                clamped[i] = clamp(heights[i], MIN_HEIGHT, MAX_HEIGHT);
+            }
+        }
+        return clamped;
+    }
+
+    /**
+     * Packs the differences between the given values and the given base value into a {@link BitArray}.
+     * <p>
+     * The differences must fit into a non-negative {@code int}.
+     *
+     * @return the packed values, or {@code null} if all values are equal to the base value
+     */
+    private static BitArray packDeltas(@NonNull int[] values, int base) {
+        int maxDelta = 0;
+        for (int value : values) {
+            maxDelta = max(maxDelta, value - base);
+        }
+        if (maxDelta == 0) {
+            return null;
+        }
+
+        BitArray packed = new PaddedBitArray(32 - Integer.numberOfLeadingZeros(maxDelta), values.length);
+        for (int i = 0; i < values.length; i++) {
+            packed.set(i, values[i] - base);
+        }
+        return packed;
+    }
+
+    //heights are stored as a base value plus a bit-packed delta per column, the deltas are null if all heights are the same
+    private final int surfaceBase;
+    private final BitArray surfaceDeltas;
+    private final int groundBase;
+    private final BitArray groundDeltas;
+
+    //biomes are stored as a palette plus a bit-packed palette index per column, the indices are null if there is only a single biome
+    private final int[] biomePalette;
+    private final BitArray biomeIndices;
+
+    private final ImmutableCompactArray<BlockState> surfaceBlocks;
+
+    private final int surfaceMinCube;
+    private final int surfaceMaxCube;
+
+    private CachedChunkData(@NonNull int[] surfaceHeight, @NonNull int[] groundHeight, @NonNull int[] biomes, @NonNull BlockState[] surfaceBlocks, @NonNull Object[] custom) {
+        super(custom);
+
+        surfaceHeight = clampHeights(surfaceHeight);
+        groundHeight = clampHeights(groundHeight);
+
+        this.surfaceBase = minOf(surfaceHeight);
+        this.surfaceDeltas = packDeltas(surfaceHeight, this.surfaceBase);
+        if (Arrays.equals(surfaceHeight, groundHeight)) { //no water, so we can share the deltas
+            this.groundBase = this.surfaceBase;
+            this.groundDeltas = this.surfaceDeltas;
+        } else {
+            this.groundBase = minOf(groundHeight);
+            this.groundDeltas = packDeltas(groundHeight, this.groundBase);
+        }
+
+        int[] biomePalette = new int[1];
+        int paletteSize = 0;
+        int[] biomeIndices = new int[16 * 16];
         for (int i = 0; i < 16 * 16; i++) {
-            min = min(min, min(this.groundHeight[i], this.surfaceHeight[i]));
-            max = max(max, max(this.groundHeight[i], this.surfaceHeight[i]));
+            int biome = biomes[i];
+            int index = 0;
+            while (index < paletteSize && biomePalette[index] != biome) {
+                index++;
+            }
+            if (index == paletteSize) { //add biome to palette
+                if (paletteSize == biomePalette.length) {
+                    biomePalette = Arrays.copyOf(biomePalette, paletteSize << 1);
+                }
+                biomePalette[paletteSize++] = biome;
+            }
+            biomeIndices[i] = index;
         }
-        this.surfaceMinCube = ChunkPos.blockToCube(min) - 1;
-        this.surfaceMaxCube = ChunkPos.blockToCube(max) + 1;
+        this.biomePalette = Arrays.copyOf(biomePalette, paletteSize);
+        this.biomeIndices = packDeltas(biomeIndices, 0);
+
+        this.surfaceBlocks = new ImmutableCompactArray<>(surfaceBlocks);
+
+        this.surfaceMinCube = ChunkPos.blockToCube(min(this.surfaceBase, this.groundBase)) - 1;
+        this.surfaceMaxCube = ChunkPos.blockToCube(max(maxHeight(this.surfaceBase, this.surfaceDeltas), maxHeight(this.groundBase, this.groundDeltas))) + 1;
+    }
+
+    private static int maxHeight(int base, BitArray deltas) {
+        int max = 0;
+        if (deltas != null) {
+            for (int i = 0; i < 16 * 16; i++) {
+                max = max(max, deltas.get(i));
+            }
+        }
+        return base + max;
+    }
+
+    /**
+     * @return whether or not every column in this chunk has the same data
+     */
+    private boolean isUniform() {
+        return this.surfaceDeltas == null && this.groundDeltas == null && this.biomeIndices == null && this.surfaceBlocks.isUniform();
     }
 
     public boolean intersectsSurface(int cubeY) {
@@ -135,11 +310,11 @@ public class CachedChunkData extends CustomAttributeContainer {
     }
 
     public int surfaceHeight(int x, int z) {
-        return this.surfaceHeight[x * 16 + z];
+        return this.surfaceDeltas != null ? this.surfaceBase + this.surfaceDeltas.get(x * 16 + z) : this.surfaceBase;
     }
 
     public int groundHeight(int x, int z) {
-        return this.groundHeight[x * 16 + z];
+        return this.groundDeltas != null ? this.groundBase + this.groundDeltas.get(x * 16 + z) : this.groundBase;
     }
 
     public int waterHeight(int x, int z) {
@@ -151,7 +326,25 @@ public class CachedChunkData extends CustomAttributeContainer {
     }
 
     public int biome(int x, int z) {
-        return this.biomes[z * 16 + x];
+        return this.biomeIndices != null ? this.biomePalette[this.biomeIndices.get(z * 16 + x)] : this.biomePalette[0];
+    }
+
+    /**
+     * @return the numeric IDs of the biomes of every column in this chunk, indexed by {@code z * 16 + x}. The returned array is a copy
+     */
+    public int[] biomes() {
+        int[] biomes = new int[16 * 16];
+        for (int i = 0; i < 16 * 16; i++) {
+            biomes[i] = this.biomeIndices != null ? this.biomePalette[this.biomeIndices.get(i)] : this.biomePalette[0];
+        }
+        return biomes;
+    }
+
+    /**
+     * @return all of this column's custom attributes, indexed by their {@link AttributeKey#slot() slot}
+     */
+    Object[] custom() {
+        return this.custom;
     }
 
     /**
@@ -169,12 +362,16 @@ public class CachedChunkData extends CustomAttributeContainer {
 
         protected final BlockState[] surfaceBlocks = new BlockState[16 * 16];
 
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private volatile boolean inUse;
+
         /**
          * @deprecated use {@link #builder()} unless you have a specific reason to invoke this constructor directly
          */
         @Deprecated
         public Builder() {
-            super(new Object2ObjectOpenHashMap<>());
+            super(NO_ATTRIBUTES);
             this.reset();
         }
 
@@ -203,23 +400,53 @@ public class CachedChunkData extends CustomAttributeContainer {
             return this.surfaceHeight[x * 16 + z];
         }
 
+        public <T> void putCustom(@NonNull AttributeKey<T> key, @NonNull T value) {
+            this.putCustom(key.slot(), key.cast(value));
+        }
+
         public void putCustom(@NonNull String key, @NonNull Object value) {
-            this.custom.put(key, value);
+            this.putCustom(AttributeKey.slotOf(key), value);
+        }
+
+        //steps which write different attributes may be baked concurrently, so they mustn't replace the array at the same time
+        private synchronized void putCustom(int slot, @NonNull Object value) {
+            this.custom = withSlot(this.custom, slot);
+            this.custom[slot] = value;
         }
 
         public Builder reset() {
             Arrays.fill(this.surfaceHeight, BLANK_HEIGHT);
             Arrays.fill(this.waterDepth, (byte) WATERDEPTH_DEFAULT);
             Arrays.fill(this.surfaceBlocks, null);
-            this.custom.clear();
+            this.custom = NO_ATTRIBUTES;
             return this;
         }
 
+        /**
+         * {@inheritDoc}
+         * <p>
+         * The custom attributes are handed over to the built data rather than being copied, so the builder starts out with a new array for the
+         * next column.
+         */
         @Override
         public CachedChunkData build() {
-            Map<String, Object> custom = ImmutableMap.copyOf(this.custom);
-            this.custom.clear();
-            return new CachedChunkData(this, custom);
+            try {
+                return bake(this, this.custom);
+            } finally {
+                this.discard();
+            }
+        }
+
+        @Override
+        public void discard() {
+            this.custom = NO_ATTRIBUTES;
+            this.inUse = false;
         }
     }
+
+    /**
+     * The contents of a uniform chunk, excluding custom attributes.
+     */
+    private record UniformKey(int surfaceHeight, int groundHeight, int biome, BlockState surfaceBlock) {
+    }
 }
@@ -1,36 +1,280 @@
 package net.buildtheearth.terraminusminus.generator;
 
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.cache.CacheLoader;
 
 import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.TerraExecutors;
 import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
 import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+
+import static net.daporkchop.lib.common.util.PorkUtil.*;
 
 /**
  * {@link CacheLoader} implementation for earth generators, which asynchronously aggregates information from multiple datasets and stores it
  * in a {@link CachedChunkData} for use by the generator.
+ * <p>
+ * If a {@link ChunkDataStore} is used, columns which have already been baked before are read from the store instead of being baked again, and
+ * newly baked columns are written to it.
+ * <p>
+ * Columns which aren't covered by any dataset (according to a {@link CoverageIndex}) skip all of this, and immediately share the same
+ * precomputed data.
+ * <p>
+ * If an {@link EarthColumnPipeline} is used, columns and regions are baked as part of the same pass as their biomes.
  *
  * @author DaPorkchop_
  */
 public class ChunkDataLoader extends CacheLoader<ChunkPos, CompletableFuture<CachedChunkData>> {
 	protected final GeneratorDatasets datasets;
 	protected final IEarthDataBaker<?>[] bakers;
+	protected final Executor executor;
+	protected final ChunkDataStore store;
+	protected final CoverageIndex coverage;
+	protected final EarthColumnPipeline pipeline;
+
+	protected volatile CompletableFuture<CachedChunkData> uncovered;
 
 	public ChunkDataLoader(@NonNull EarthGeneratorSettings settings) {
-		this.datasets = settings.datasets();
-		this.bakers = EarthGeneratorPipelines.dataBakers(settings);
+		this(settings.columnPipeline(), TerraConfig.chunkStore.enabled ? ChunkDataStore.forSettings(settings) : null);
 	}
 
-    public ChunkDataLoader(@NonNull GeneratorDatasets datasets, @NonNull IEarthDataBaker<?>[] bakers) {
-        this.datasets = datasets;
-        this.bakers = bakers;
-    }
+	/**
+	 * Creates a {@link ChunkDataLoader} which bakes columns as part of the given {@link EarthColumnPipeline}, sharing the work with any other
+	 * loaders using the same pipeline.
+	 *
+	 * @param store the {@link ChunkDataStore} to persist baked columns to. May be {@code null}, in which case every column is baked from scratch
+	 */
+	public ChunkDataLoader(@NonNull EarthColumnPipeline pipeline, ChunkDataStore store) {
+		this(pipeline.datasets(), pipeline.bakers(), pipeline.executor(), store, pipeline);
+	}
+
+	public ChunkDataLoader(@NonNull GeneratorDatasets datasets, @NonNull IEarthDataBaker<?>[] bakers) {
+		this(datasets, bakers, TerraExecutors.bake());
+	}
+
+	public ChunkDataLoader(@NonNull GeneratorDatasets datasets, @NonNull IEarthDataBaker<?>[] bakers, @NonNull Executor executor) {
+		this(datasets, bakers, executor, null);
+	}
+
+	/**
+	 * @param store the {@link ChunkDataStore} to persist baked columns to. May be {@code null}, in which case every column is baked from scratch
+	 */
+	public ChunkDataLoader(@NonNull GeneratorDatasets datasets, @NonNull IEarthDataBaker<?>[] bakers, @NonNull Executor executor, ChunkDataStore store) {
+		this(datasets, bakers, executor, store, null);
+	}
+
+	protected ChunkDataLoader(@NonNull GeneratorDatasets datasets, @NonNull IEarthDataBaker<?>[] bakers, @NonNull Executor executor, ChunkDataStore store, EarthColumnPipeline pipeline) {
+		this.datasets = datasets;
+		this.bakers = bakers;
+		this.executor = executor;
+		this.store = store;
+		this.coverage = new CoverageIndex(datasets, bakers);
+		this.pipeline = pipeline;
+	}
 
 	@Override
 	public CompletableFuture<CachedChunkData> load(@NonNull ChunkPos pos) {
-		return IEarthAsyncPipelineStep.getFuture(pos, this.datasets, this.bakers, CachedChunkData::builder);
+		return this.load(pos, RequestTicket.current());
+	}
+
+	/**
+	 * Loads the data for the given column on behalf of the given {@link RequestTicket}.
+	 * <p>
+	 * The ticket's priority (e.g. the distance to the nearest player) determines the order in which data is downloaded, and may be changed at any
+	 * time. Cancelling either the ticket or the returned future drops any pending downloads which aren't needed by any other column.
+	 * <p>
+	 * Note that a cancelled future must not be stored in a cache, as it will never be completed normally.
+	 *
+	 * @param pos    the position of the column
+	 * @param ticket the {@link RequestTicket}
+	 * @return a future which will be completed with the column's data
+	 */
+	public CompletableFuture<CachedChunkData> load(@NonNull ChunkPos pos, @NonNull RequestTicket ticket) {
+		CompletableFuture<CachedChunkData> uncovered = this.uncovered(pos);
+		if (uncovered != null) {
+			return uncovered;
+		}
+
+		if (this.store == null) {
+			return this.bake(pos, ticket);
+		}
+
+		CompletableFuture<CachedChunkData> future = this.store.read(pos).thenCompose(stored -> {
+			if (stored != null) {
+				return CompletableFuture.completedFuture(stored);
+			}
+
+			return this.bake(pos, ticket).thenApply(data -> {
+				this.store.write(pos, data);
+				return data;
+			});
+		});
+		future.whenComplete((data, t) -> {
+			if (future.isCancelled()) {
+				ticket.cancel();
+			}
+		});
+		return future;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Bakes the data for the given column, without consulting the {@link ChunkDataStore}.
+	 *
+	 * @param pos    the position of the column
+	 * @param ticket the {@link RequestTicket}
+	 * @return a future which will be completed with the column's data
+	 */
+	protected CompletableFuture<CachedChunkData> bake(@NonNull ChunkPos pos, @NonNull RequestTicket ticket) {
+		if (this.pipeline != null) {
+			return this.pipeline.data(pos, ticket);
+		}
+		return IEarthAsyncPipelineStep.getFuture(pos, this.datasets, this.bakers, CachedChunkData::builder, this.executor, ticket);
+	}
+
+	/**
+	 * Loads the data for every column in the given region at once.
+	 * <p>
+	 * This issues a single query per dataset for the entire region rather than one per column, which greatly reduces the overhead of
+	 * projecting bounds, looking up tiles and tracking futures when many adjacent columns are needed at the same time (e.g. when pregenerating).
+	 *
+	 * @param minChunk the position of the column at the region's minimum corner (inclusive)
+	 * @param maxChunk the position of the column at the region's maximum corner (inclusive)
+	 * @return the futures for every column in the region, in X-major order
+	 * @see IEarthAsyncPipelineStep#getFutures(ChunkPos, ChunkPos, GeneratorDatasets, IEarthAsyncPipelineStep[], java.util.function.Supplier)
+	 */
+	public CompletableFuture<CachedChunkData>[] loadRegion(@NonNull ChunkPos minChunk, @NonNull ChunkPos maxChunk) {
+		return this.loadRegion(minChunk, maxChunk, RequestTicket.current());
+	}
+
+	/**
+	 * Loads the data for every column in the given region at once, on behalf of the given {@link RequestTicket}.
+	 * <p>
+	 * If some of the columns aren't in the {@link ChunkDataStore}, the entire region is baked, but only the missing columns are written to the store.
+	 *
+	 * @param minChunk the position of the column at the region's minimum corner (inclusive)
+	 * @param maxChunk the position of the column at the region's maximum corner (inclusive)
+	 * @param ticket   the {@link RequestTicket}
+	 * @return the futures for every column in the region, in X-major order
+	 * @see #loadRegion(ChunkPos, ChunkPos)
+	 * @see #load(ChunkPos, RequestTicket)
+	 */
+	public CompletableFuture<CachedChunkData>[] loadRegion(@NonNull ChunkPos minChunk, @NonNull ChunkPos maxChunk, @NonNull RequestTicket ticket) {
+		CompletableFuture<CachedChunkData> uncovered = this.uncoveredRegion(minChunk, maxChunk);
+		if (uncovered != null) {
+			CompletableFuture<CachedChunkData>[] out = uncheckedCast(new CompletableFuture[(maxChunk.x() - minChunk.x() + 1) * (maxChunk.z() - minChunk.z() + 1)]);
+			Arrays.fill(out, uncovered);
+			return out;
+		}
+
+		if (this.store == null) {
+			return this.bakeRegion(minChunk, maxChunk, ticket);
+		}
+
+		int sizeX = maxChunk.x() - minChunk.x() + 1;
+		int sizeZ = maxChunk.z() - minChunk.z() + 1;
+
+		ChunkPos[] positions = new ChunkPos[sizeX * sizeZ];
+		CompletableFuture<CachedChunkData>[] stored = uncheckedCast(new CompletableFuture[sizeX * sizeZ]);
+		for (int i = 0, dx = 0; dx < sizeX; dx++) {
+			for (int dz = 0; dz < sizeZ; dz++, i++) {
+				stored[i] = this.store.read(positions[i] = new ChunkPos(minChunk.x() + dx, minChunk.z() + dz));
+			}
+		}
+
+		//only bake the region if at least one column is missing from the store
+		CompletableFuture<CompletableFuture<CachedChunkData>[]> baked = CompletableFuture.allOf(stored).thenApply(unused -> {
+			for (CompletableFuture<CachedChunkData> future : stored) {
+				if (future.join() == null) {
+					CompletableFuture<CachedChunkData>[] futures = this.bakeRegion(minChunk, maxChunk, ticket);
+					for (int i = 0; i < futures.length; i++) {
+						if (stored[i].join() == null) {
+							ChunkPos pos = positions[i];
+							futures[i].thenAccept(data -> this.store.write(pos, data));
+						}
+					}
+					return futures;
+				}
+			}
+			return null;
+		});
+
+		AtomicInteger remaining = new AtomicInteger(positions.length);
+		CompletableFuture<CachedChunkData>[] out = uncheckedCast(new CompletableFuture[positions.length]);
+		for (int i = 0; i < positions.length; i++) {
+			int index = i;
+			CompletableFuture<CachedChunkData> future = baked.thenCompose(futures -> stored[index].join() != null ? stored[index] : futures[index]);
+			future.whenComplete((data, t) -> {
+				if (future.isCancelled() && remaining.decrementAndGet() == 0) { //every column in the region has been cancelled
+					ticket.cancel();
+				}
+			});
+			out[i] = future;
+		}
+		return out;
+	}
+
+	/**
+	 * Bakes the data for every column in the given region, without consulting the {@link ChunkDataStore}.
+	 *
+	 * @param minChunk the position of the column at the region's minimum corner (inclusive)
+	 * @param maxChunk the position of the column at the region's maximum corner (inclusive)
+	 * @param ticket   the {@link RequestTicket}
+	 * @return the futures for every column in the region, in X-major order
+	 */
+	protected CompletableFuture<CachedChunkData>[] bakeRegion(@NonNull ChunkPos minChunk, @NonNull ChunkPos maxChunk, @NonNull RequestTicket ticket) {
+		if (this.pipeline != null) {
+			return this.pipeline.dataRegion(minChunk, maxChunk, ticket);
+		}
+		return IEarthAsyncPipelineStep.getFutures(minChunk, maxChunk, this.datasets, this.bakers, CachedChunkData::builder, this.executor, ticket);
+	}
+
+	/**
+	 * Gets the shared data for columns which aren't covered by any dataset.
+	 *
+	 * @param pos the position of the column
+	 * @return an already completed future with the shared data, or {@code null} if the column may be covered by a dataset
+	 */
+	protected CompletableFuture<CachedChunkData> uncovered(@NonNull ChunkPos pos) {
+		if (!this.coverage.isEmpty(pos)) {
+			return null;
+		}
+
+		CompletableFuture<CachedChunkData> uncovered = this.uncovered;
+		if (uncovered == null) { //bake the shared data the first time it's needed. if multiple threads race to do so, they'll all get the same result
+			CachedChunkData.Builder builder = CachedChunkData.builder();
+			try {
+				for (IEarthDataBaker<?> baker : this.bakers) {
+					baker.bake(pos, builder, null);
+				}
+			} catch (Throwable t) { //release the builder so that it can be re-used
+				builder.discard();
+				throw t;
+			}
+			this.uncovered = uncovered = CompletableFuture.completedFuture(builder.build());
+		}
+		return uncovered;
+	}
+
+	/**
+	 * @return the shared data for columns which aren't covered by any dataset, or {@code null} if any column in the region may be covered
+	 * @see #uncovered(ChunkPos)
+	 */
+	protected CompletableFuture<CachedChunkData> uncoveredRegion(@NonNull ChunkPos minChunk, @NonNull ChunkPos maxChunk) {
+		CompletableFuture<CachedChunkData> uncovered = null;
+		//coverage is the same for every column in a cell, so it's enough to check one column per cell
+		for (int x = minChunk.x(); x <= maxChunk.x(); x = (x & -CoverageIndex.CELL_SIZE) + CoverageIndex.CELL_SIZE) {
+			for (int z = minChunk.z(); z <= maxChunk.z(); z = (z & -CoverageIndex.CELL_SIZE) + CoverageIndex.CELL_SIZE) {
+				if ((uncovered = this.uncovered(new ChunkPos(x, z))) == null) {
+					return null;
+				}
+			}
+		}
+		return uncovered;
+	}
+}
@@ -0,0 +1,671 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import static java.lang.Math.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.codec.binary.Hex;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.TerraExecutors;
+import net.buildtheearth.terraminusminus.TerraMinusMinus;
+import net.buildtheearth.terraminusminus.substitutes.BlockPropertyValue;
+import net.buildtheearth.terraminusminus.substitutes.BlockState;
+import net.buildtheearth.terraminusminus.substitutes.BlockStateBuilder;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.substitutes.Identifier;
+import net.buildtheearth.terraminusminus.util.AttributeKey;
+import net.buildtheearth.terraminusminus.util.http.Disk;
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
+import net.buildtheearth.terraminusminus.util.metrics.Timer;
+
+/**
+ * Persistent on-disk store for baked {@link CachedChunkData}, which allows columns to be served again after a restart without having to
+ * download, decode and bake all of their source data again.
+ * <p>
+ * Columns are grouped into region files of {@link #REGION_SIZE}x{@link #REGION_SIZE} columns. Each region file starts with a header containing
+ * the offset, length, checksum and time of writing of every column's data, followed by the deflated data of the columns in the order they were
+ * written. A column's data is only written after it has been baked, and the header entry is only updated once the data has been written. As
+ * writes aren't synced to disk, a crash may still leave a header entry pointing at data which never reached the disk, but such columns fail
+ * their checksum and are simply baked again. Once more than half of a region file consists of data which was replaced or has expired, the
+ * file is compacted.
+ * <p>
+ * Columns expire after {@link TerraConfig.ChunkStoreOpts#ttl} minutes, after which they are baked again so that changes to the source data are
+ * picked up.
+ * <p>
+ * Every set of {@link EarthGeneratorSettings} gets its own store, whose name is derived from the settings, the custom dataset configuration
+ * files and {@link #STORE_VERSION}. Changing any of these will therefore cause all columns to be baked again. Note that the stored biome IDs
+ * are the numeric IDs produced by the {@link BiomesRegistry} at the time the column was baked.
+ */
+public final class ChunkDataStore {
+    /**
+     * The version of the store format. Must be incremented whenever the format changes, or {@link CachedChunkData} is baked differently.
+     */
+    public static final int STORE_VERSION = 3;
+
+    public static final int REGION_SHIFT = 5;
+    public static final int REGION_SIZE = 1 << REGION_SHIFT;
+    public static final int REGION_MASK = REGION_SIZE - 1;
+
+    private static final int MAGIC = 0x54434453; //"TCDS"
+    private static final int ENTRY_SIZE = 20;
+    private static final int HEADER_SIZE = 8 + REGION_SIZE * REGION_SIZE * ENTRY_SIZE;
+
+    //regions are only compacted once they contain at least this many bytes of dead data
+    private static final long MIN_COMPACTION_GARBAGE = 1L << 20L;
+
+    private static final int CUSTOM_TYPE_BYTES = 0;
+    private static final int CUSTOM_TYPE_INTS = 1;
+    private static final int CUSTOM_TYPE_DOUBLES = 2;
+
+    private static final int PROPERTY_TYPE_STRING = 0;
+    private static final int PROPERTY_TYPE_INT = 1;
+    private static final int PROPERTY_TYPE_BOOLEAN = 2;
+
+    private static final Map<Path, ChunkDataStore> STORES = new ConcurrentHashMap<>();
+
+    /**
+     * Deserialized block states are interned, so that columns which were restored from the store share their block states.
+     */
+    private static final Map<BlockState, BlockState> BLOCK_STATES = new ConcurrentHashMap<>();
+
+    private static final Set<String> UNSUPPORTED_ATTRIBUTES = ConcurrentHashMap.newKeySet();
+
+    private static final Timer READ_TIMER = Metrics.timer("store.read");
+    private static final Timer WRITE_TIMER = Metrics.timer("store.write");
+
+    /**
+     * Gets the store for the given {@link EarthGeneratorSettings}.
+     *
+     * @param settings the settings
+     * @return the store
+     */
+    public static ChunkDataStore forSettings(@NonNull EarthGeneratorSettings settings) {
+        return STORES.computeIfAbsent(Disk.storeDirectory(storeName(settings)), ChunkDataStore::new);
+    }
+
+    /**
+     * Computes a digest which identifies the terrain generated with the given {@link EarthGeneratorSettings} and the current custom dataset
+     * configurations.
+     *
+     * @param settings the settings
+     * @return the digest, as a hex string
+     */
+    @SneakyThrows(IOException.class)
+    static String storeName(@NonNull EarthGeneratorSettings settings) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not supported", e);
+        }
+
+        digest.update((STORE_VERSION + "\n" + settings).getBytes(StandardCharsets.UTF_8));
+
+        //custom dataset configurations can change the generated terrain without changing the settings
+        Path configRoot = Disk.configFile("");
+        if (Files.isDirectory(configRoot)) {
+            try (Stream<Path> stream = Files.walk(configRoot)) {
+                for (Path file : stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                    digest.update(configRoot.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            }
+        }
+
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private static int index(@NonNull ChunkPos pos) {
+        return (pos.x() & REGION_MASK) * REGION_SIZE + (pos.z() & REGION_MASK);
+    }
+
+    private static void readFully(@NonNull FileChannel channel, @NonNull ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int read = channel.read(dst, position + dst.position());
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeFully(@NonNull FileChannel channel, @NonNull ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            channel.write(src, position + src.position());
+        }
+    }
+
+    private final Path root;
+    private final LoadingCache<ChunkPos, Region> regions;
+
+    private final LongSupplier clock;
+    private final long ttl;
+
+    private ChunkDataStore(@NonNull Path root) {
+        this(root, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock the source of the current time, in milliseconds since the epoch
+     */
+    ChunkDataStore(@NonNull Path root, @NonNull LongSupplier clock) {
+        this.root = root;
+        this.clock = clock;
+        this.ttl = TimeUnit.MINUTES.toSeconds(notNegative(TerraConfig.chunkStore.ttl, "ttl"));
+        this.regions = CacheBuilder.newBuilder()
+                .maximumSize(positive(TerraConfig.chunkStore.maxOpenRegions, "maxOpenRegions"))
+                .removalListener((RemovalListener<ChunkPos, Region>) notification -> notification.getValue().close())
+                .build(new CacheLoader<ChunkPos, Region>() {
+                    @Override
+                    public Region load(ChunkPos key) throws Exception {
+                        return new Region(ChunkDataStore.this.root.resolve("r." + key.x() + '.' + key.z() + ".bin"));
+                    }
+                });
+    }
+
+    /**
+     * Asynchronously reads the data for the given column.
+     *
+     * @param pos the position of the column
+     * @return a future which will be completed with the column's data, or {@code null} if it isn't stored
+     */
+    public CompletableFuture<CachedChunkData> read(@NonNull ChunkPos pos) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = READ_TIMER.start();
+            try {
+                return this.readNow(pos);
+            } catch (Exception e) {
+                TerraMinusMinus.LOGGER.error("Unable to read stored chunk data at " + pos, e);
+                return null;
+            } finally {
+                READ_TIMER.stop(start);
+            }
+        }, TerraExecutors.store());
+    }
+
+    /**
+     * Asynchronously writes the data for the given column, replacing any existing data.
+     *
+     * @param pos  the position of the column
+     * @param data the column's data
+     */
+    public void write(@NonNull ChunkPos pos, @NonNull CachedChunkData data) {
+        TerraExecutors.store().execute(() -> {
+            long start = WRITE_TIMER.start();
+            try {
+                this.writeNow(pos, data);
+            } catch (Exception e) {
+                TerraMinusMinus.LOGGER.error("Unable to store chunk data at " + pos, e);
+            } finally {
+                WRITE_TIMER.stop(start);
+            }
+        });
+    }
+
+    /**
+     * Reads the data for the given column.
+     *
+     * @param pos the position of the column
+     * @return the column's data, or {@code null} if it isn't stored
+     */
+    public CachedChunkData readNow(@NonNull ChunkPos pos) throws IOException {
+        byte[] encoded;
+        while (true) {
+            Region region = this.region(pos);
+            synchronized (region) {
+                if (!region.closed) { //the region may have been closed after we got it from the cache, in which case we try again
+                    encoded = region.read(index(pos), this.expiredBefore());
+                    break;
+                }
+            }
+        }
+
+        return encoded != null ? decode(encoded) : null;
+    }
+
+    /**
+     * Writes the data for the given column, replacing any existing data.
+     *
+     * @param pos  the position of the column
+     * @param data the column's data
+     */
+    public void writeNow(@NonNull ChunkPos pos, @NonNull CachedChunkData data) throws IOException {
+        byte[] encoded = encode(data);
+        if (encoded == null) { //the column can't be stored
+            return;
+        }
+
+        while (true) {
+            Region region = this.region(pos);
+            synchronized (region) {
+                if (!region.closed) { //the region may have been closed after we got it from the cache, in which case we try again
+                    region.write(index(pos), encoded, this.now(), this.expiredBefore());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all open region files. The store remains usable, and will re-open them as needed.
+     */
+    void close() {
+        this.regions.invalidateAll();
+    }
+
+    /**
+     * @return the current time, in seconds since the epoch
+     */
+    private long now() {
+        return this.clock.getAsLong() / 1000L;
+    }
+
+    /**
+     * @return the time (in seconds since the epoch) before which stored columns are considered to be expired
+     */
+    private long expiredBefore() {
+        return this.ttl > 0L ? this.now() - this.ttl : Long.MIN_VALUE;
+    }
+
+    private Region region(@NonNull ChunkPos pos) throws IOException {
+        try {
+            return this.regions.get(new ChunkPos(pos.x() >> REGION_SHIFT, pos.z() >> REGION_SHIFT));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private static byte[] encode(@NonNull CachedChunkData data) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(baos, new Deflater(Deflater.BEST_SPEED)))) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    out.writeInt(data.surfaceHeight(x, z));
+                }
+            }
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    out.writeInt(data.groundHeight(x, z));
+                }
+            }
+            for (int biome : data.biomes()) {
+                out.writeInt(biome);
+            }
+
+            //surface blocks are stored as a palette followed by an index into the palette for each block
+            Reference2IntMap<BlockState> paletteIds = new Reference2IntOpenHashMap<>();
+            ByteArrayOutputStream palette = new ByteArrayOutputStream();
+            DataOutputStream paletteOut = new DataOutputStream(palette);
+            byte[] indices = new byte[16 * 16];
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    BlockState state = data.surfaceBlock(x, z);
+                    int id = paletteIds.getOrDefault(state, -1);
+                    if (id < 0) {
+                        paletteIds.put(state, id = paletteIds.size());
+                        writeBlockState(paletteOut, state);
+                    }
+                    indices[x * 16 + z] = (byte) id;
+                }
+            }
+            out.writeShort(paletteIds.size());
+            palette.writeTo(out);
+            out.write(indices);
+
+            //attribute slots are assigned at runtime, so attributes are stored by name
+            Object[] custom = data.custom();
+            int count = 0;
+            for (Object value : custom) {
+                if (value != null) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (int slot = 0; slot < custom.length; slot++) {
+                Object value = custom[slot];
+                if (value == null) {
+                    continue;
+                }
+                String key = AttributeKey.nameOf(slot);
+                out.writeUTF(key);
+
+                if (value instanceof byte[]) {
+                    byte[] arr = (byte[]) value;
+                    out.writeByte(CUSTOM_TYPE_BYTES);
+                    out.writeInt(arr.length);
+                    out.write(arr);
+                } else if (value instanceof int[]) {
+                    int[] arr = (int[]) value;
+                    out.writeByte(CUSTOM_TYPE_INTS);
+                    out.writeInt(arr.length);
+                    for (int v : arr) {
+                        out.writeInt(v);
+                    }
+                } else if (value instanceof double[]) {
+                    double[] arr = (double[]) value;
+                    out.writeByte(CUSTOM_TYPE_DOUBLES);
+                    out.writeInt(arr.length);
+                    for (double v : arr) {
+                        out.writeDouble(v);
+                    }
+                } else {
+                    if (UNSUPPORTED_ATTRIBUTES.add(key)) {
+                        TerraMinusMinus.LOGGER.warn("Custom attribute \"{}\" can't be stored ({}), columns containing it won't be persisted", key, value.getClass());
+                    }
+                    return null;
+                }
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private static CachedChunkData decode(@NonNull byte[] encoded) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(encoded)))) {
+            int[] surfaceHeight = new int[16 * 16];
+            for (int i = 0; i < 16 * 16; i++) {
+                surfaceHeight[i] = in.readInt();
+            }
+            int[] groundHeight = new int[16 * 16];
+            for (int i = 0; i < 16 * 16; i++) {
+                groundHeight[i] = in.readInt();
+            }
+            int[] biomes = new int[16 * 16];
+            for (int i = 0; i < 16 * 16; i++) {
+                biomes[i] = in.readInt();
+            }
+
+            BlockState[] palette = new BlockState[in.readUnsignedShort()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = readBlockState(in);
+            }
+            BlockState[] surfaceBlocks = new BlockState[16 * 16];
+            for (int i = 0; i < 16 * 16; i++) {
+                surfaceBlocks[i] = palette[in.readUnsignedByte()];
+            }
+
+            Object[] custom = new Object[AttributeKey.slotCount()];
+            for (int i = 0, count = in.readInt(); i < count; i++) {
+                int key = AttributeKey.slotOf(in.readUTF());
+                if (key >= custom.length) { //the attribute hasn't been used since the last restart
+                    custom = Arrays.copyOf(custom, key + 1);
+                }
+                int type = in.readUnsignedByte();
+                int length = notNegative(in.readInt(), "length");
+                switch (type) {
+                    case CUSTOM_TYPE_BYTES: {
+                        byte[] arr = new byte[length];
+                        in.readFully(arr);
+                        custom[key] = arr;
+                        break;
+                    }
+                    case CUSTOM_TYPE_INTS: {
+                        int[] arr = new int[length];
+                        for (int j = 0; j < length; j++) {
+                            arr[j] = in.readInt();
+                        }
+                        custom[key] = arr;
+                        break;
+                    }
+                    case CUSTOM_TYPE_DOUBLES: {
+                        double[] arr = new double[length];
+                        for (int j = 0; j < length; j++) {
+                            arr[j] = in.readDouble();
+                        }
+                        custom[key] = arr;
+                        break;
+                    }
+                    default:
+                        throw new IOException("invalid custom attribute type: " + type);
+                }
+            }
+
+            return CachedChunkData.restore(surfaceHeight, groundHeight, biomes, surfaceBlocks, custom);
+        }
+    }
+
+    private static void writeBlockState(@NonNull DataOutputStream out, BlockState state) throws IOException {
+        out.writeBoolean(state != null);
+        if (state == null) {
+            return;
+        }
+
+        out.writeUTF(state.getBlock().toString());
+        Map<String, BlockPropertyValue> properties = state.getProperties();
+        out.writeShort(properties.size());
+        for (Map.Entry<String, BlockPropertyValue> entry : properties.entrySet()) {
+            out.writeUTF(entry.getKey());
+
+            BlockPropertyValue value = entry.getValue();
+            if (value.canBeBoolean()) {
+                out.writeByte(PROPERTY_TYPE_BOOLEAN);
+                out.writeBoolean(value.getAsBoolean());
+            } else if (value.canBeInt()) {
+                out.writeByte(PROPERTY_TYPE_INT);
+                out.writeInt(value.getAsInt());
+            } else {
+                out.writeByte(PROPERTY_TYPE_STRING);
+                out.writeUTF(value.getAsString());
+            }
+        }
+    }
+
+    private static BlockState readBlockState(@NonNull DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        BlockStateBuilder builder = BlockStateBuilder.get().reset().setBlock(new Identifier(in.readUTF()));
+        for (int i = 0, count = in.readUnsignedShort(); i < count; i++) {
+            String property = in.readUTF();
+            int type = in.readUnsignedByte();
+            switch (type) {
+                case PROPERTY_TYPE_STRING:
+                    builder.setProperty(property, in.readUTF());
+                    break;
+                case PROPERTY_TYPE_INT:
+                    builder.setProperty(property, in.readInt());
+                    break;
+                case PROPERTY_TYPE_BOOLEAN:
+                    builder.setProperty(property, in.readBoolean());
+                    break;
+                default:
+                    throw new IOException("invalid property type: " + type);
+            }
+        }
+
+        BlockState state = builder.build();
+        BlockState interned = BLOCK_STATES.putIfAbsent(state, state);
+        return interned != null ? interned : state;
+    }
+
+    /**
+     * A single open region file.
+     * <p>
+     * Header entries consist of the offset of the column's data (as a {@code long}), the length of the data (as an {@code int}, 0 if the column
+     * isn't stored), the time at which the data was written (in seconds since the epoch, as an unsigned {@code int}) and the CRC32C of the data
+     * (as an {@code int}).
+     */
+    private static final class Region {
+        private final Path file;
+        private FileChannel channel;
+        private boolean closed;
+
+        //a copy of the header, so that reading a column only needs a single read
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        private long end;
+        private long liveBytes;
+
+        Region(@NonNull Path file) throws IOException {
+            Files.createDirectories(file.getParent());
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+            boolean valid = false;
+            if (this.channel.size() >= HEADER_SIZE) {
+                readFully(this.channel, this.header, 0L);
+                valid = this.header.getInt(0) == MAGIC && this.header.getInt(4) == STORE_VERSION;
+            }
+
+            if (valid) {
+                this.end = this.channel.size();
+                for (int index = 0; index < REGION_SIZE * REGION_SIZE; index++) {
+                    long offset = this.header.getLong(8 + index * ENTRY_SIZE);
+                    int length = this.header.getInt(8 + index * ENTRY_SIZE + 8);
+                    if (length < 0 || offset < HEADER_SIZE || offset + length > this.end) { //the entry is corrupt, forget about it
+                        this.forget(index);
+                    } else {
+                        this.liveBytes += length;
+                    }
+                }
+            } else { //the file is new or was written by an incompatible version, reset it
+                Arrays.fill(this.header.array(), (byte) 0);
+                this.header.putInt(0, MAGIC).putInt(4, STORE_VERSION);
+                this.channel.truncate(0L);
+                writeFully(this.channel, this.header.clear(), 0L);
+                this.end = HEADER_SIZE;
+            }
+        }
+
+        private static long timestamp(@NonNull ByteBuffer header, int index) {
+            return header.getInt(8 + index * ENTRY_SIZE + 12) & 0xFFFFFFFFL;
+        }
+
+        private static int checksum(@NonNull byte[] data) {
+            CRC32C crc = new CRC32C();
+            crc.update(data);
+            return (int) crc.getValue();
+        }
+
+        private void forget(int index) {
+            this.header.putLong(8 + index * ENTRY_SIZE, 0L).putInt(8 + index * ENTRY_SIZE + 8, 0)
+                    .putInt(8 + index * ENTRY_SIZE + 12, 0).putInt(8 + index * ENTRY_SIZE + 16, 0);
+        }
+
+        byte[] read(int index, long expiredBefore) throws IOException {
+            long offset = this.header.getLong(8 + index * ENTRY_SIZE);
+            int length = this.header.getInt(8 + index * ENTRY_SIZE + 8);
+            if (length == 0 || timestamp(this.header, index) < expiredBefore) { //column isn't stored, or is too old to be used
+                return null;
+            }
+
+            ByteBuffer data = ByteBuffer.allocate(length);
+            readFully(this.channel, data, offset);
+            if (checksum(data.array()) != this.header.getInt(8 + index * ENTRY_SIZE + 16)) {
+                //the header was written, but the data never made it to the disk. the data is dead now, and will be dropped by the next compaction
+                TerraMinusMinus.LOGGER.warn("Stored chunk data in {} is corrupt, it will be baked again", this.file);
+                this.liveBytes -= length;
+                this.forget(index);
+                return null;
+            }
+            return data.array();
+        }
+
+        void write(int index, @NonNull byte[] encoded, long now, long expiredBefore) throws IOException {
+            this.liveBytes -= this.header.getInt(8 + index * ENTRY_SIZE + 8);
+            this.header.putInt(8 + index * ENTRY_SIZE + 8, 0); //the old data is dead now, even if we fail to write the new data
+
+            long garbage = this.end - HEADER_SIZE - this.liveBytes;
+            if (garbage > max(this.liveBytes, MIN_COMPACTION_GARBAGE)) {
+                this.compact(expiredBefore);
+            }
+
+            //append the data to the end of the file, and only then update the header to point to it
+            long offset = this.end;
+            writeFully(this.channel, ByteBuffer.wrap(encoded), offset);
+            this.end = offset + encoded.length;
+            this.liveBytes += encoded.length;
+
+            this.header.putLong(8 + index * ENTRY_SIZE, offset).putInt(8 + index * ENTRY_SIZE + 8, encoded.length)
+                    .putInt(8 + index * ENTRY_SIZE + 12, (int) now).putInt(8 + index * ENTRY_SIZE + 16, checksum(encoded));
+            writeFully(this.channel, this.header.slice(8 + index * ENTRY_SIZE, ENTRY_SIZE), 8L + index * ENTRY_SIZE);
+        }
+
+        /**
+         * Rewrites this region's file so that it only contains the data of columns which are stored and haven't expired.
+         */
+        private void compact(long expiredBefore) throws IOException {
+            Path tmp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(0, MAGIC).putInt(4, STORE_VERSION);
+            long end = HEADER_SIZE;
+            long liveBytes = 0L;
+
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (int index = 0; index < REGION_SIZE * REGION_SIZE; index++) {
+                    byte[] data = this.read(index, expiredBefore);
+                    if (data == null) {
+                        continue;
+                    }
+
+                    writeFully(channel, ByteBuffer.wrap(data), end);
+                    header.putLong(8 + index * ENTRY_SIZE, end).putInt(8 + index * ENTRY_SIZE + 8, data.length)
+                            .putInt(8 + index * ENTRY_SIZE + 12, (int) timestamp(this.header, index))
+                            .putInt(8 + index * ENTRY_SIZE + 16, this.header.getInt(8 + index * ENTRY_SIZE + 16));
+                    end += data.length;
+                    liveBytes += data.length;
+                }
+                writeFully(channel, header, 0L);
+                channel.force(false);
+            }
+
+            this.channel.close();
+            Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            this.header.clear().put(header.clear()).clear();
+            this.end = end;
+            this.liveBytes = liveBytes;
+        }
+
+        synchronized void close() {
+            if (!this.closed) {
+                this.closed = true;
+                try {
+                    this.channel.close();
+                } catch (IOException e) {
+                    TerraMinusMinus.LOGGER.error("Unable to close region file", e);
+                }
+            }
+        }
+    }
+}
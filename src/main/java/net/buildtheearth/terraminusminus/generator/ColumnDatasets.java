@@ -0,0 +1,103 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.concurrent.CompletableFuture;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.dataset.Coverage;
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.util.AttributeKey;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
+/**
+ * A view of a {@link GeneratorDatasets} for all the pipelines baking a single column (or a single region of columns), which also holds the
+ * column's bounds so that they only need to be projected once.
+ * <p>
+ * The {@link IScalarDataset}s obtained from this view share their queries: sampling the column's geographic bounds at the same resolution
+ * more than once only queries the underlying dataset the first time. As the sampled values are shared between all steps which request them,
+ * they must not be modified.
+ */
+final class ColumnDatasets extends GeneratorDatasets {
+    @Getter
+    private final Bounds2d bounds;
+    @Getter
+    private final CornerBoundingBox2d boundsGeo;
+    private final Object[] shared;
+
+    /**
+     * @param datasets  the datasets
+     * @param bounds    the bounds of the column or region
+     * @param boundsGeo the bounds of the column or region in geographic coordinates, or {@code null} if any part of it is out of projection bounds
+     */
+    ColumnDatasets(@NonNull GeneratorDatasets datasets, @NonNull Bounds2d bounds, CornerBoundingBox2d boundsGeo) {
+        super(datasets);
+        this.shared = new Object[this.custom.length];
+        this.bounds = bounds;
+        this.boundsGeo = boundsGeo;
+    }
+
+    @Override
+    public <T> T getCustom(@NonNull AttributeKey<T> key, T fallback) {
+        T value = super.getCustom(key, fallback);
+        if (key.type() != IScalarDataset.class || value == fallback) { //only share datasets which are used through their interface
+            return value;
+        }
+
+        int slot = key.slot();
+        synchronized (this.shared) {
+            Object shared = this.shared[slot];
+            if (shared == null) {
+                this.shared[slot] = shared = new SharedScalarDataset((IScalarDataset) value);
+            }
+            return uncheckedCast(shared);
+        }
+    }
+
+    /**
+     * Wraps an {@link IScalarDataset} to share the values sampled within the column's bounds.
+     */
+    private final class SharedScalarDataset implements IScalarDataset {
+        private final IScalarDataset delegate;
+
+        private CompletableFuture<double[]> column;
+        private int sizeX;
+        private int sizeZ;
+
+        SharedScalarDataset(@NonNull IScalarDataset delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletableFuture<Double> getAsync(double lon, double lat) throws OutOfProjectionBoundsException {
+            return this.delegate.getAsync(lon, lat);
+        }
+
+        @Override
+        public CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) throws OutOfProjectionBoundsException {
+            if (bounds != ColumnDatasets.this.boundsGeo) {
+                return this.delegate.getAsync(bounds, sizeX, sizeZ);
+            }
+
+            synchronized (this) {
+                if (this.column == null) {
+                    this.column = this.delegate.getAsync(bounds, sizeX, sizeZ);
+                    this.sizeX = sizeX;
+                    this.sizeZ = sizeZ;
+                    return this.column;
+                } else if (this.sizeX == sizeX && this.sizeZ == sizeZ) {
+                    return this.column;
+                }
+            }
+            return this.delegate.getAsync(bounds, sizeX, sizeZ);
+        }
+
+        @Override
+        public Coverage coverage(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
+            return this.delegate.coverage(bounds);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.dataset.Coverage;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+/**
+ * Answers whether or not any of the datasets used by a set of {@link IEarthAsyncPipelineStep}s have any data for a given column, without
+ * actually requesting any data.
+ * <p>
+ * Coverage is computed for cells of {@link #CELL_SIZE}x{@link #CELL_SIZE} columns at a time and cached in a fixed-size, lossy table, so
+ * repeated lookups neither allocate nor touch any of the datasets.
+ * <p>
+ * Note that a cell is only known to be empty once every step knows its coverage. Scalar datasets know it up front from their configured bounds,
+ * but OpenStreetMap data (see {@link net.buildtheearth.terraminusminus.dataset.vector.VectorTiledDataset#coverage}) is only known once its tiles
+ * have been loaded. With the default pipeline, columns which are generated for the first time are therefore baked normally, and only columns
+ * whose OpenStreetMap tiles are still cached (e.g. when a neighbouring column is generated again, or the world is revisited) benefit.
+ */
+public class CoverageIndex {
+    /**
+     * The size of a cell along each axis, in columns.
+     */
+    public static final int CELL_SIZE = 16;
+    protected static final int CELL_SHIFT = Integer.numberOfTrailingZeros(CELL_SIZE);
+
+    protected static final int CAPACITY = 1 << 14;
+
+    //each slot contains the cell's coordinates (28 bits each) and its coverage (2 bits), or 0 if it's vacant
+    protected static final int COORD_BITS = 32 - CELL_SHIFT;
+    protected static final long COORD_MASK = (1L << COORD_BITS) - 1L;
+    protected static final int STATE_BITS = 2;
+    protected static final long STATE_MASK = (1L << STATE_BITS) - 1L;
+    protected static final long STATE_NONE = 1L;
+    protected static final long STATE_POSSIBLE = 2L;
+
+    protected final GeneratorDatasets datasets;
+    protected final IEarthAsyncPipelineStep<?, ?, ?>[] steps;
+
+    protected final AtomicLongArray slots = new AtomicLongArray(CAPACITY);
+
+    public CoverageIndex(@NonNull GeneratorDatasets datasets, @NonNull IEarthAsyncPipelineStep<?, ?, ?>[] steps) {
+        this.datasets = datasets;
+        this.steps = steps;
+    }
+
+    /**
+     * Checks whether or not the given column is definitely not covered by any data.
+     * <p>
+     * If this returns {@code true}, baking the column is guaranteed to produce the same result as baking any other uncovered column, so the
+     * result may be shared.
+     *
+     * @param pos the position of the column
+     * @return whether or not the column is definitely not covered by any data
+     */
+    public boolean isEmpty(@NonNull ChunkPos pos) {
+        int cellX = pos.x() >> CELL_SHIFT;
+        int cellZ = pos.z() >> CELL_SHIFT;
+        long key = ((cellX & COORD_MASK) << (COORD_BITS + STATE_BITS)) | ((cellZ & COORD_MASK) << STATE_BITS);
+        int slot = (int) HashCommon.mix(key) & (CAPACITY - 1);
+
+        long entry = this.slots.get(slot);
+        if ((entry & ~STATE_MASK) == key && (entry & STATE_MASK) != 0L) {
+            return (entry & STATE_MASK) == STATE_NONE;
+        }
+
+        Coverage coverage = this.computeCoverage(cellX, cellZ);
+        if (coverage.isFinal()) { //unknown coverage may change later on, so it has to be computed again next time
+            this.slots.set(slot, key | (coverage == Coverage.NONE ? STATE_NONE : STATE_POSSIBLE));
+        }
+        return coverage == Coverage.NONE;
+    }
+
+    protected Coverage computeCoverage(int cellX, int cellZ) {
+        int minX = ChunkPos.cubeToMinBlock(cellX << CELL_SHIFT);
+        int minZ = ChunkPos.cubeToMinBlock(cellZ << CELL_SHIFT);
+        int size = CELL_SIZE * 16;
+
+        try {
+            Bounds2d bounds = Bounds2d.of(minX, minX + size, minZ, minZ + size);
+            CornerBoundingBox2d boundsGeo = bounds.toCornerBB(this.datasets.projection(), false).toGeo();
+
+            Coverage coverage = Coverage.NONE;
+            for (IEarthAsyncPipelineStep<?, ?, ?> step : this.steps) {
+                coverage = coverage.or(step.coverage(this.datasets, bounds, boundsGeo));
+                if (coverage == Coverage.POSSIBLE) {
+                    break;
+                }
+            }
+            return coverage;
+        } catch (OutOfProjectionBoundsException e) { //the cell is at least partially out of bounds, let the columns be baked normally
+            return Coverage.POSSIBLE;
+        }
+    }
+}
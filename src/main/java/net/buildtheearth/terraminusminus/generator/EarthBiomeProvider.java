@@ -3,6 +3,7 @@ package net.buildtheearth.terraminusminus.generator;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nullable;
 
@@ -12,11 +13,13 @@ import com.google.common.cache.LoadingCache;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import net.buildtheearth.terraminusminus.TerraExecutors;
 import net.buildtheearth.terraminusminus.generator.biome.IEarthBiomeFilter;
 import net.buildtheearth.terraminusminus.substitutes.BlockPos;
 import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
 import net.buildtheearth.terraminusminus.substitutes.IBiome;
 import net.buildtheearth.terraminusminus.util.ImmutableCompactArray;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
 
 @RequiredArgsConstructor
 public class EarthBiomeProvider {
@@ -135,20 +138,71 @@ public class EarthBiomeProvider {
     public static class ChunkDataLoader extends CacheLoader<ChunkPos, CompletableFuture<ImmutableCompactArray<IBiome<?>>>> {
         protected final GeneratorDatasets datasets;
         protected final IEarthBiomeFilter<?>[] filters;
+        protected final Executor executor;
+        protected final EarthColumnPipeline pipeline;
 
         public ChunkDataLoader(@NonNull EarthGeneratorSettings settings) {
-            this.datasets = settings.datasets();
-            this.filters = EarthGeneratorPipelines.biomeFilters(settings);
+            this(settings.columnPipeline());
+        }
+
+        /**
+         * Creates a {@link ChunkDataLoader} which bakes biomes as part of the given {@link EarthColumnPipeline}, sharing the work with any other
+         * loaders using the same pipeline.
+         */
+        public ChunkDataLoader(@NonNull EarthColumnPipeline pipeline) {
+            this.datasets = pipeline.datasets();
+            this.filters = pipeline.filters();
+            this.executor = pipeline.executor();
+            this.pipeline = pipeline;
         }
 
         public ChunkDataLoader(@NonNull GeneratorDatasets datasets, @NonNull IEarthBiomeFilter<?>[] filters) {
+            this(datasets, filters, TerraExecutors.bake());
+        }
+
+        public ChunkDataLoader(@NonNull GeneratorDatasets datasets, @NonNull IEarthBiomeFilter<?>[] filters, @NonNull Executor executor) {
             this.datasets = datasets;
             this.filters = filters;
+            this.executor = executor;
+            this.pipeline = null;
         }
 
         @Override
         public CompletableFuture<ImmutableCompactArray<IBiome<?>>> load(@NonNull ChunkPos pos) {
-            return IEarthAsyncPipelineStep.getFuture(pos, this.datasets, this.filters, ChunkBiomesBuilder::get);
+            return this.load(pos, RequestTicket.current());
+        }
+
+        /**
+         * Loads the biomes for the given column on behalf of the given {@link RequestTicket}.
+         *
+         * @see net.buildtheearth.terraminusminus.generator.ChunkDataLoader#load(ChunkPos, RequestTicket)
+         */
+        public CompletableFuture<ImmutableCompactArray<IBiome<?>>> load(@NonNull ChunkPos pos, @NonNull RequestTicket ticket) {
+            if (this.pipeline != null) {
+                return this.pipeline.biomes(pos, ticket);
+            }
+            return IEarthAsyncPipelineStep.getFuture(pos, this.datasets, this.filters, ChunkBiomesBuilder::get, this.executor, ticket);
+        }
+
+        /**
+         * Loads the biomes for every column in the given region at once.
+         *
+         * @see net.buildtheearth.terraminusminus.generator.ChunkDataLoader#loadRegion(ChunkPos, ChunkPos)
+         */
+        public CompletableFuture<ImmutableCompactArray<IBiome<?>>>[] loadRegion(@NonNull ChunkPos minChunk, @NonNull ChunkPos maxChunk) {
+            return this.loadRegion(minChunk, maxChunk, RequestTicket.current());
+        }
+
+        /**
+         * Loads the biomes for every column in the given region at once, on behalf of the given {@link RequestTicket}.
+         *
+         * @see net.buildtheearth.terraminusminus.generator.ChunkDataLoader#loadRegion(ChunkPos, ChunkPos, RequestTicket)
+         */
+        public CompletableFuture<ImmutableCompactArray<IBiome<?>>>[] loadRegion(@NonNull ChunkPos minChunk, @NonNull ChunkPos maxChunk, @NonNull RequestTicket ticket) {
+            if (this.pipeline != null) {
+                return this.pipeline.biomesRegion(minChunk, maxChunk, ticket);
+            }
+            return IEarthAsyncPipelineStep.getFutures(minChunk, maxChunk, this.datasets, this.filters, ChunkBiomesBuilder::get, this.executor, ticket);
         }
     }
 }
\ No newline at end of file
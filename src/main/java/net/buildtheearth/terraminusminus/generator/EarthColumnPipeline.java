@@ -0,0 +1,351 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraExecutors;
+import net.buildtheearth.terraminusminus.generator.biome.IEarthBiomeFilter;
+import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.substitutes.IBiome;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.ImmutableCompactArray;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
+/**
+ * Bakes both the {@link CachedChunkData} and the biomes of a column in a single pass.
+ * <p>
+ * {@link ChunkDataLoader} and {@link EarthBiomeProvider.ChunkDataLoader} are views over the same pass: whichever one requests a column first
+ * starts it, and the other one joins it for as long as the column is still referenced. The column's bounds are only projected once, and
+ * identical dataset queries issued by both the data bakers and the biome filters are only issued once (see {@link ColumnDatasets}).
+ * <p>
+ * The data and the biomes are still baked independently of each other, so requesting only one of them doesn't do any of the work for the
+ * other one. Once neither of them is still being baked, the pass (and with it, the shared samples) is released.
+ * <p>
+ * Entire regions of columns (see {@link ChunkDataLoader#loadRegion(ChunkPos, ChunkPos, RequestTicket)}) are handled the same way, with a single
+ * pass over the whole region which issues one query per dataset for both the data and the biomes. Region passes are only shared by requests for
+ * exactly the same region.
+ */
+@Getter
+public class EarthColumnPipeline {
+    protected final GeneratorDatasets datasets;
+    protected final IEarthDataBaker<?>[] bakers;
+    protected final IEarthBiomeFilter<?>[] filters;
+    protected final Executor executor;
+
+    @Getter(AccessLevel.NONE)
+    protected final Cache<ChunkPos, Pass> passes = CacheBuilder.newBuilder()
+            .weakValues()
+            .build();
+    @Getter(AccessLevel.NONE)
+    protected final Cache<Region, RegionPass> regionPasses = CacheBuilder.newBuilder()
+            .weakValues()
+            .build();
+
+    public EarthColumnPipeline(@NonNull EarthGeneratorSettings settings) {
+        this(settings.datasets(), EarthGeneratorPipelines.dataBakers(settings), EarthGeneratorPipelines.biomeFilters(settings), TerraExecutors.bake());
+    }
+
+    public EarthColumnPipeline(@NonNull GeneratorDatasets datasets, @NonNull IEarthDataBaker<?>[] bakers, @NonNull IEarthBiomeFilter<?>[] filters, @NonNull Executor executor) {
+        this.datasets = datasets;
+        this.bakers = bakers;
+        this.filters = filters;
+        this.executor = executor;
+    }
+
+    /**
+     * Bakes the data for the given column.
+     *
+     * @param pos    the position of the column
+     * @param ticket the {@link RequestTicket} to request the data with
+     * @return a future which will be completed with the column's data
+     * @see ChunkDataLoader#load(ChunkPos, RequestTicket)
+     */
+    public CompletableFuture<CachedChunkData> data(@NonNull ChunkPos pos, @NonNull RequestTicket ticket) {
+        return this.get(pos, ticket, Pass::data);
+    }
+
+    /**
+     * Bakes the biomes for the given column.
+     *
+     * @param pos    the position of the column
+     * @param ticket the {@link RequestTicket} to request the data with
+     * @return a future which will be completed with the column's biomes
+     * @see EarthBiomeProvider.ChunkDataLoader#load(ChunkPos, RequestTicket)
+     */
+    public CompletableFuture<ImmutableCompactArray<IBiome<?>>> biomes(@NonNull ChunkPos pos, @NonNull RequestTicket ticket) {
+        return this.get(pos, ticket, Pass::biomes);
+    }
+
+    /**
+     * Bakes the data for every column in the given region at once.
+     *
+     * @param min    the position of the column at the region's minimum corner (inclusive)
+     * @param max    the position of the column at the region's maximum corner (inclusive)
+     * @param ticket the {@link RequestTicket} to request the data with
+     * @return the futures for every column in the region, in X-major order
+     * @see ChunkDataLoader#loadRegion(ChunkPos, ChunkPos, RequestTicket)
+     */
+    public CompletableFuture<CachedChunkData>[] dataRegion(@NonNull ChunkPos min, @NonNull ChunkPos max, @NonNull RequestTicket ticket) {
+        return this.getRegion(min, max, ticket, RegionPass::data);
+    }
+
+    /**
+     * Bakes the biomes for every column in the given region at once.
+     *
+     * @param min    the position of the column at the region's minimum corner (inclusive)
+     * @param max    the position of the column at the region's maximum corner (inclusive)
+     * @param ticket the {@link RequestTicket} to request the data with
+     * @return the futures for every column in the region, in X-major order
+     * @see EarthBiomeProvider.ChunkDataLoader#loadRegion(ChunkPos, ChunkPos, RequestTicket)
+     */
+    public CompletableFuture<ImmutableCompactArray<IBiome<?>>>[] biomesRegion(@NonNull ChunkPos min, @NonNull ChunkPos max, @NonNull RequestTicket ticket) {
+        return this.getRegion(min, max, ticket, RegionPass::biomes);
+    }
+
+    protected <V> CompletableFuture<V> get(@NonNull ChunkPos pos, @NonNull RequestTicket ticket, @NonNull BiFunction<Pass, RequestTicket, CompletableFuture<V>> stage) {
+        Pass pass = this.passes.asMap().computeIfAbsent(pos, Pass::new);
+
+        //the future returned to the caller keeps the pass alive until it's completed, so that other requests for the same column can join it
+        PassFuture<V> result = PassFuture.of(pass, stage.apply(pass, ticket));
+        result.whenComplete((value, t) -> {
+            if (result.isCancelled()) {
+                ticket.cancel();
+            }
+        });
+        return result;
+    }
+
+    protected <V> CompletableFuture<V>[] getRegion(@NonNull ChunkPos min, @NonNull ChunkPos max, @NonNull RequestTicket ticket,
+                                                   @NonNull BiFunction<RegionPass, RequestTicket, CompletableFuture<CompletableFuture<V>[]>> stage) {
+        checkArg(min.x() <= max.x() && min.z() <= max.z(), "min (%s) may not be greater than max (%s)", min, max);
+        RegionPass pass = this.regionPasses.asMap().computeIfAbsent(new Region(min, max), RegionPass::new);
+        CompletableFuture<CompletableFuture<V>[]> futures = stage.apply(pass, ticket);
+
+        int count = (max.x() - min.x() + 1) * (max.z() - min.z() + 1);
+        AtomicInteger remaining = new AtomicInteger(count);
+        CompletableFuture<V>[] out = uncheckedCast(new CompletableFuture[count]);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            PassFuture<V> result = PassFuture.of(pass, futures.thenCompose(columns -> columns[index]));
+            result.whenComplete((value, t) -> {
+                if (result.isCancelled() && remaining.decrementAndGet() == 0) { //every column in the region has been cancelled
+                    ticket.cancel();
+                }
+            });
+            out[i] = result;
+        }
+        return out;
+    }
+
+    /**
+     * Projects the given bounds on the executor.
+     *
+     * @return a future which will be completed with a view of the datasets which shares queries over the given bounds
+     */
+    protected CompletableFuture<ColumnDatasets> project(@NonNull Bounds2d bounds) {
+        return CompletableFuture.supplyAsync(() -> {
+            CornerBoundingBox2d boundsGeo;
+            try {
+                boundsGeo = bounds.toCornerBB(this.datasets.projection(), false).toGeo();
+            } catch (OutOfProjectionBoundsException e) {
+                boundsGeo = null;
+            }
+            return new ColumnDatasets(this.datasets, bounds, boundsGeo);
+        }, this.executor);
+    }
+
+    /**
+     * A single pass over a column.
+     */
+    protected final class Pass {
+        protected final ChunkPos pos;
+        protected final CompletableFuture<ColumnDatasets> datasets;
+
+        protected final Stage<CachedChunkData> data;
+        protected final Stage<ImmutableCompactArray<IBiome<?>>> biomes;
+
+        protected Pass(@NonNull ChunkPos pos) {
+            this.pos = pos;
+
+            //project the column's bounds once, for both stages
+            int baseX = ChunkPos.cubeToMinBlock(pos.x());
+            int baseZ = ChunkPos.cubeToMinBlock(pos.z());
+            this.datasets = EarthColumnPipeline.this.project(Bounds2d.of(baseX, baseX + 16, baseZ, baseZ + 16));
+
+            this.data = new Stage<>(ticket -> this.bake(EarthColumnPipeline.this.bakers, CachedChunkData::builder, ticket));
+            this.biomes = new Stage<>(ticket -> this.bake(EarthColumnPipeline.this.filters, ChunkBiomesBuilder::get, ticket));
+        }
+
+        /**
+         * @return the future for the column's data
+         */
+        protected CompletableFuture<CachedChunkData> data(@NonNull RequestTicket ticket) {
+            return this.data.get(ticket);
+        }
+
+        /**
+         * @return the future for the column's biomes
+         */
+        protected CompletableFuture<ImmutableCompactArray<IBiome<?>>> biomes(@NonNull RequestTicket ticket) {
+            return this.biomes.get(ticket);
+        }
+
+        private <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> bake(@NonNull IEarthAsyncPipelineStep<?, V, B>[] steps, @NonNull Supplier<B> builderFactory,
+                                                                                  @NonNull RequestTicket.Shared ticket) {
+            return this.datasets.thenCompose(datasets -> RequestTicket.supplyWith(ticket, () -> {
+                if (ticket.isCancelled()) {
+                    throw new CancellationException();
+                }
+                return IEarthAsyncPipelineStep.bakeColumn(this.pos, datasets, steps, builderFactory, EarthColumnPipeline.this.executor, ticket,
+                        datasets.bounds(), datasets.boundsGeo());
+            }));
+        }
+    }
+
+    /**
+     * The bounds of a region, in columns (inclusive).
+     */
+    protected record Region(ChunkPos min, ChunkPos max) {
+    }
+
+    /**
+     * A single pass over a region.
+     */
+    protected final class RegionPass {
+        protected final Region region;
+        protected final CompletableFuture<ColumnDatasets> datasets;
+
+        protected final Stage<CompletableFuture<CachedChunkData>[]> data;
+        protected final Stage<CompletableFuture<ImmutableCompactArray<IBiome<?>>>[]> biomes;
+
+        protected RegionPass(@NonNull Region region) {
+            this.region = region;
+
+            //project the region's bounds once, for both stages
+            ChunkPos min = region.min();
+            ChunkPos max = region.max();
+            this.datasets = EarthColumnPipeline.this.project(Bounds2d.of(min.getMinBlockX(), max.getMinBlockX() + 16, min.getMinBlockZ(), max.getMinBlockZ() + 16));
+
+            //the stages are only done once every column has been baked
+            this.data = new Stage<>(ticket -> this.bake(EarthColumnPipeline.this.bakers, CachedChunkData::builder, ticket), CompletableFuture::allOf);
+            this.biomes = new Stage<>(ticket -> this.bake(EarthColumnPipeline.this.filters, ChunkBiomesBuilder::get, ticket), CompletableFuture::allOf);
+        }
+
+        /**
+         * @return the future for the futures of the data of every column in the region
+         */
+        protected CompletableFuture<CompletableFuture<CachedChunkData>[]> data(@NonNull RequestTicket ticket) {
+            return this.data.get(ticket);
+        }
+
+        /**
+         * @return the future for the futures of the biomes of every column in the region
+         */
+        protected CompletableFuture<CompletableFuture<ImmutableCompactArray<IBiome<?>>>[]> biomes(@NonNull RequestTicket ticket) {
+            return this.biomes.get(ticket);
+        }
+
+        private <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<CompletableFuture<V>[]> bake(@NonNull IEarthAsyncPipelineStep<?, V, B>[] steps, @NonNull Supplier<B> builderFactory,
+                                                                                                       @NonNull RequestTicket.Shared ticket) {
+            return this.datasets.thenApply(datasets -> RequestTicket.supplyWith(ticket, () -> {
+                if (ticket.isCancelled()) {
+                    throw new CancellationException();
+                }
+                return IEarthAsyncPipelineStep.bakeRegion(this.region.min(), this.region.max(), datasets, steps, builderFactory, EarthColumnPipeline.this.executor, ticket,
+                        datasets.bounds(), datasets.boundsGeo());
+            }));
+        }
+    }
+
+    /**
+     * One of the stages of a {@link Pass} or {@link RegionPass}, which is shared by all the requests for it.
+     */
+    protected static final class Stage<V> {
+        private final Function<RequestTicket.Shared, CompletableFuture<V>> baker;
+        private final Function<V, CompletableFuture<Void>> completion;
+
+        private RequestTicket.Shared ticket;
+        private CompletableFuture<V> future;
+        private CompletableFuture<?> done;
+
+        Stage(@NonNull Function<RequestTicket.Shared, CompletableFuture<V>> baker) {
+            this(baker, null);
+        }
+
+        /**
+         * @param completion a function which returns a future that is completed once the baked value is done being baked, or {@code null} if
+         *                   that is already the case once the value is available
+         */
+        Stage(@NonNull Function<RequestTicket.Shared, CompletableFuture<V>> baker, Function<V, CompletableFuture<Void>> completion) {
+            this.baker = baker;
+            this.completion = completion;
+        }
+
+        protected synchronized CompletableFuture<V> get(@NonNull RequestTicket ticket) {
+            CompletableFuture<V> future = this.future;
+            if (future != null) {
+                if (this.done.isDone() && !this.done.isCompletedExceptionally()) { //already baked, there's nothing left to track
+                    return future;
+                } else if (this.ticket.join(ticket)) {
+                    return future;
+                }
+            }
+
+            //this is either the first request, or every earlier request was cancelled before we could join it: start over
+            RequestTicket.Shared shared = this.ticket = new RequestTicket.Shared(ticket);
+            this.future = future = this.baker.apply(shared);
+            CompletableFuture<?> done = this.done = this.completion != null ? future.thenCompose(this.completion) : future;
+            done.whenComplete((value, t) -> shared.complete()); //release the member tickets
+            return future;
+        }
+    }
+
+    /**
+     * A {@link CompletableFuture} which keeps the {@link Pass} or {@link RegionPass} it was obtained from alive until it's completed.
+     */
+    private static final class PassFuture<V> extends CompletableFuture<V> {
+        @SuppressWarnings("unused")
+        private volatile Object pass;
+
+        private PassFuture(@NonNull Object pass) {
+            this.pass = pass;
+        }
+
+        /**
+         * @param pass   the pass to keep alive
+         * @param future the future to complete the returned future with
+         */
+        static <V> PassFuture<V> of(@NonNull Object pass, @NonNull CompletableFuture<V> future) {
+            PassFuture<V> result = new PassFuture<>(pass);
+            future.whenComplete((value, t) -> {
+                if (t != null) {
+                    result.completeExceptionally(t);
+                } else {
+                    result.complete(value);
+                }
+            });
+            result.whenComplete((value, t) -> {
+                //the pass holds on to all the raw samples, which mustn't be retained for as long as the result is cached
+                result.pass = null;
+            });
+            return result;
+        }
+    }
+}
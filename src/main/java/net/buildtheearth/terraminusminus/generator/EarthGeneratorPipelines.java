@@ -6,8 +6,11 @@ import java.util.Map;
 import lombok.NonNull;
 import lombok.experimental.UtilityClass;
 import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.dataset.IElementDataset;
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
 import net.buildtheearth.terraminusminus.dataset.builtin.Climate;
 import net.buildtheearth.terraminusminus.dataset.builtin.Soil;
+import net.buildtheearth.terraminusminus.dataset.geojson.GeoJsonObject;
 import net.buildtheearth.terraminusminus.dataset.geojson.dataset.ParsingGeoJsonDataset;
 import net.buildtheearth.terraminusminus.dataset.geojson.dataset.ReferenceResolvingGeoJsonDataset;
 import net.buildtheearth.terraminusminus.dataset.geojson.dataset.TiledGeoJsonDataset;
@@ -15,6 +18,7 @@ import net.buildtheearth.terraminusminus.dataset.osm.OSMMapper;
 import net.buildtheearth.terraminusminus.dataset.scalar.MultiScalarDataset;
 import net.buildtheearth.terraminusminus.dataset.vector.GeoJsonToVectorDataset;
 import net.buildtheearth.terraminusminus.dataset.vector.VectorTiledDataset;
+import net.buildtheearth.terraminusminus.dataset.vector.geometry.VectorGeometry;
 import net.buildtheearth.terraminusminus.generator.biome.IEarthBiomeFilter;
 import net.buildtheearth.terraminusminus.generator.biome.Terra121BiomeFilter;
 import net.buildtheearth.terraminusminus.generator.data.HeightsBaker;
@@ -22,6 +26,9 @@ import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
 import net.buildtheearth.terraminusminus.generator.data.NullIslandBaker;
 import net.buildtheearth.terraminusminus.generator.data.OSMBaker;
 import net.buildtheearth.terraminusminus.generator.data.TreeCoverBaker;
+import net.buildtheearth.terraminusminus.util.AttributeKey;
+import net.buildtheearth.terraminusminus.util.bvh.BVH;
+import net.daporkchop.lib.common.util.PorkUtil;
 
 /**
  * Default processing pipelines for various earth generator processing steps.
@@ -30,6 +37,7 @@ import net.buildtheearth.terraminusminus.generator.data.TreeCoverBaker;
  */
 @UtilityClass
 public class EarthGeneratorPipelines {
+    //the names of the default datasets and custom attributes, these are the names used by the string-keyed accessors
     public final String KEY_DATASET_HEIGHTS = "heights";
     public final String KEY_DATASET_OSM_RAW = "osm_raw";
     public final String KEY_DATASET_OSM_PARSED = "osm_parsed";
@@ -40,6 +48,17 @@ public class EarthGeneratorPipelines {
 
     public final String KEY_DATA_TREE_COVER = "tree_cover";
 
+    //typed keys for the same datasets and custom attributes
+    public final AttributeKey<IScalarDataset> DATASET_HEIGHTS = AttributeKey.of(KEY_DATASET_HEIGHTS, IScalarDataset.class);
+    public final AttributeKey<IElementDataset<GeoJsonObject[]>> DATASET_OSM_RAW = AttributeKey.of(KEY_DATASET_OSM_RAW, PorkUtil.uncheckedCast(IElementDataset.class));
+    public final AttributeKey<IElementDataset<BVH<VectorGeometry>>> DATASET_OSM_PARSED = AttributeKey.of(KEY_DATASET_OSM_PARSED, PorkUtil.uncheckedCast(IElementDataset.class));
+    public final AttributeKey<IScalarDataset> DATASET_TERRA121_PRECIPITATION = AttributeKey.of(KEY_DATASET_TERRA121_PRECIPITATION, IScalarDataset.class);
+    public final AttributeKey<IScalarDataset> DATASET_TERRA121_SOIL = AttributeKey.of(KEY_DATASET_TERRA121_SOIL, IScalarDataset.class);
+    public final AttributeKey<IScalarDataset> DATASET_TERRA121_TEMPERATURE = AttributeKey.of(KEY_DATASET_TERRA121_TEMPERATURE, IScalarDataset.class);
+    public final AttributeKey<IScalarDataset> DATASET_TREE_COVER = AttributeKey.of(KEY_DATASET_TREE_COVER, IScalarDataset.class);
+
+    public final AttributeKey<byte[]> DATA_TREE_COVER = AttributeKey.of(KEY_DATA_TREE_COVER, byte[].class);
+
     public Map<String, Object> datasets(@NonNull EarthGeneratorSettings settings) {
         Map<String, Object> m = new HashMap<>();
 
@@ -69,4 +88,16 @@ public class EarthGeneratorPipelines {
     		new NullIslandBaker()
     	};
     }
+
+    /**
+     * @return the data bakers used for baking level of detail tiles, which only include the bakers whose output still makes sense when each
+     * sample covers more than a single block
+     * @see EarthLodProvider
+     */
+    public IEarthDataBaker<?>[] lodDataBakers(@NonNull EarthGeneratorSettings settings) {
+        return new IEarthDataBaker<?>[] {
+                new TreeCoverBaker(),
+                new HeightsBaker()
+        };
+    }
 }
@@ -117,6 +117,8 @@ public class EarthGeneratorSettings {
 
     protected transient final Cached<EarthBiomeProvider> biomeProvider = Cached.global(() -> new EarthBiomeProvider(this), ReferenceStrength.SOFT);
     protected transient final Cached<GeneratorDatasets> datasets = Cached.global(() -> new GeneratorDatasets(this), ReferenceStrength.SOFT);
+    protected transient final Cached<EarthColumnPipeline> columnPipeline = Cached.global(() -> new EarthColumnPipeline(this), ReferenceStrength.SOFT);
+    protected transient final Cached<EarthLodProvider> lodProvider = Cached.global(() -> new EarthLodProvider(this), ReferenceStrength.SOFT);
 
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public EarthGeneratorSettings(
@@ -154,6 +156,20 @@ public class EarthGeneratorSettings {
         return this.datasets.get();
     }
 
+    /**
+     * @return the {@link EarthColumnPipeline} shared by all data and biome loaders for these settings
+     */
+    public EarthColumnPipeline columnPipeline() {
+        return this.columnPipeline.get();
+    }
+
+    /**
+     * @return the {@link EarthLodProvider} for coarse terrain with these settings
+     */
+    public EarthLodProvider lodProvider() {
+        return this.lodProvider.get();
+    }
+
     /**
      * Tries to convert this generator settings to a String Terra121 could understand.
      *
@@ -0,0 +1,182 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraExecutors;
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.TilePos;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Provides coarse {@link CachedChunkData} for distant terrain, e.g. for far views and map renders.
+ * <p>
+ * A level of detail tile at zoom level {@code n} covers {@code 2^n * 2^n} columns, and is baked just like a single column except that each of its
+ * 16x16 samples covers {@code 2^n * 2^n} blocks: zoom level 2 results in 4x4 samples per column, zoom level 4 in a single sample per column, and
+ * higher zoom levels in a single sample for several columns. Zoom level 0 is equivalent to regular columns. The tile at {@code (x, z)} contains
+ * the columns from {@code (x << n, z << n)} (inclusive) to {@code ((x + 1) << n, (z + 1) << n)} (exclusive).
+ * <p>
+ * Tiles are baked only from the datasets' data at the tile's zoom level (see {@link IScalarDataset#atZoom(int)}), so that covering a large area
+ * doesn't require downloading its full-resolution data, and only by the data bakers which make sense at a coarser scale (see
+ * {@link EarthGeneratorPipelines#lodDataBakers(EarthGeneratorSettings)}). Baked tiles are kept in a separate cache from regular columns.
+ */
+public class EarthLodProvider {
+    /**
+     * The highest supported zoom level, at which a single tile covers more than the entire world for any sensible projection.
+     */
+    public static final int MAX_ZOOM = 20;
+
+    /**
+     * The default spec for the tile cache. Each tile takes about as much memory as a regular column, so this keeps the cache to a few tens of
+     * megabytes, regardless of how much memory is available.
+     */
+    public static final String DEFAULT_CACHE_SPEC = "maximumSize=4096";
+
+    protected final LoadingCache<TilePos, CompletableFuture<CachedChunkData>> cache;
+
+    public EarthLodProvider(@NonNull EarthGeneratorSettings settings) {
+        this(settings, DEFAULT_CACHE_SPEC);
+    }
+
+    public EarthLodProvider(@NonNull EarthGeneratorSettings settings, @NonNull String cacheSpec) {
+        this.cache = CacheBuilder.from(cacheSpec).build(new TileLoader(settings));
+    }
+
+    public EarthLodProvider(@NonNull GeneratorDatasets datasets, @NonNull IEarthDataBaker<?>[] bakers, @NonNull String cacheSpec) {
+        this.cache = CacheBuilder.from(cacheSpec).build(new TileLoader(datasets, bakers));
+    }
+
+    /**
+     * Gets the level of detail tile at the given position.
+     *
+     * @param x    the tile's X coordinate
+     * @param z    the tile's Z coordinate
+     * @param zoom the tile's zoom level
+     * @return a {@link CompletableFuture} which will be completed with the tile's data
+     */
+    public CompletableFuture<CachedChunkData> getTileAsync(int x, int z, int zoom) {
+        return this.getTileAsync(new TilePos(x, z, zoom));
+    }
+
+    /**
+     * Gets the level of detail tile at the given position.
+     *
+     * @param pos the position of the tile
+     * @return a {@link CompletableFuture} which will be completed with the tile's data
+     */
+    public CompletableFuture<CachedChunkData> getTileAsync(@NonNull TilePos pos) {
+        CompletableFuture<CachedChunkData> future = this.cache.getUnchecked(pos);
+        if (future.isCompletedExceptionally()) { //don't keep serving tiles which failed or were cancelled, bake them again instead
+            this.cache.asMap().remove(pos, future);
+            future = this.cache.getUnchecked(pos);
+        }
+        return future;
+    }
+
+    /**
+     * Gets the level of detail tile containing the given column.
+     *
+     * @param pos  the position of the column
+     * @param zoom the zoom level
+     * @return a {@link CompletableFuture} which will be completed with the tile's data
+     */
+    public CompletableFuture<CachedChunkData> getTileForChunkAsync(@NonNull ChunkPos pos, int zoom) {
+        checkArg(zoom >= 0 && zoom <= MAX_ZOOM, "zoom (%d) must be in range [0,%d]", zoom, MAX_ZOOM);
+        return this.getTileAsync(pos.x() >> zoom, pos.z() >> zoom, zoom);
+    }
+
+    /**
+     * {@link CacheLoader} implementation for level of detail tiles.
+     */
+    public static class TileLoader extends CacheLoader<TilePos, CompletableFuture<CachedChunkData>> {
+        protected final GeneratorDatasets datasets;
+        protected final IEarthDataBaker<?>[] bakers;
+        protected final Executor executor;
+
+        protected final GeneratorDatasets[] zoomedDatasets = new GeneratorDatasets[MAX_ZOOM + 1];
+
+        public TileLoader(@NonNull EarthGeneratorSettings settings) {
+            this(settings.datasets(), EarthGeneratorPipelines.lodDataBakers(settings));
+        }
+
+        public TileLoader(@NonNull GeneratorDatasets datasets, @NonNull IEarthDataBaker<?>[] bakers) {
+            this(datasets, bakers, TerraExecutors.bake());
+        }
+
+        public TileLoader(@NonNull GeneratorDatasets datasets, @NonNull IEarthDataBaker<?>[] bakers, @NonNull Executor executor) {
+            this.datasets = datasets;
+            this.bakers = bakers;
+            this.executor = executor;
+        }
+
+        @Override
+        public CompletableFuture<CachedChunkData> load(@NonNull TilePos pos) {
+            return this.load(pos, RequestTicket.current());
+        }
+
+        /**
+         * Bakes the given level of detail tile on behalf of the given {@link RequestTicket}.
+         *
+         * @param pos    the position of the tile
+         * @param ticket the {@link RequestTicket}
+         * @return a future which will be completed with the tile's data
+         * @see ChunkDataLoader#load(ChunkPos, RequestTicket)
+         */
+        public CompletableFuture<CachedChunkData> load(@NonNull TilePos pos, @NonNull RequestTicket ticket) {
+            int zoom = pos.zoom();
+            checkArg(zoom >= 0 && zoom <= MAX_ZOOM, "zoom (%d) must be in range [0,%d]", zoom, MAX_ZOOM);
+            GeneratorDatasets datasets = this.datasets(zoom);
+
+            CompletableFuture<CachedChunkData> result = CompletableFuture.supplyAsync(() -> RequestTicket.supplyWith(ticket, () -> {
+                if (ticket.isCancelled()) {
+                    throw new CancellationException();
+                }
+
+                double size = 16 << zoom;
+                Bounds2d bounds = Bounds2d.of(pos.x() * size, (pos.x() + 1) * size, pos.z() * size, (pos.z() + 1) * size);
+                CornerBoundingBox2d boundsGeo;
+                try {
+                    boundsGeo = bounds.toCornerBB(datasets.projection(), false).toGeo();
+                } catch (OutOfProjectionBoundsException e) {
+                    boundsGeo = null;
+                }
+
+                //the bakers used for tiles don't care about the column's position, so we simply give them the tile's position
+                return IEarthAsyncPipelineStep.bakeColumn(new ChunkPos(pos.x(), pos.z()), datasets, this.bakers, CachedChunkData::builder, this.executor, ticket, bounds, boundsGeo);
+            }), this.executor).thenCompose(Function.identity());
+
+            result.whenComplete((data, t) -> {
+                if (result.isCancelled()) {
+                    ticket.cancel();
+                }
+            });
+            return result;
+        }
+
+        /**
+         * @return a view of the datasets at the given zoom level
+         * @see GeneratorDatasets#atZoom(int)
+         */
+        protected GeneratorDatasets datasets(int zoom) {
+            GeneratorDatasets datasets = this.zoomedDatasets[zoom];
+            if (datasets == null) { //if multiple threads race to create the view, they'll simply use equivalent views
+                this.zoomedDatasets[zoom] = datasets = this.datasets.atZoom(zoom);
+            }
+            return datasets;
+        }
+    }
+}
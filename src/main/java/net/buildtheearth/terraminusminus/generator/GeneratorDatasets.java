@@ -2,6 +2,7 @@ package net.buildtheearth.terraminusminus.generator;
 
 import lombok.Getter;
 import lombok.NonNull;
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
 import net.buildtheearth.terraminusminus.projection.GeographicProjection;
 import net.buildtheearth.terraminusminus.util.CustomAttributeContainer;
 
@@ -26,4 +27,34 @@ public class GeneratorDatasets extends CustomAttributeContainer {
         super(datasets);
         this.projection = projection;
     }
+
+    /**
+     * Creates a view of the given {@link GeneratorDatasets}, which contains the same datasets.
+     */
+    protected GeneratorDatasets(@NonNull GeneratorDatasets datasets) {
+        super(datasets.custom);
+        this.projection = datasets.projection;
+    }
+
+    protected GeneratorDatasets(@NonNull Object[] custom, @NonNull GeographicProjection projection) {
+        super(custom);
+        this.projection = projection;
+    }
+
+    /**
+     * Gets a view of these datasets for baking at the given zoom level, in which every {@link IScalarDataset} is replaced with its
+     * {@link IScalarDataset#atZoom(int) view at that zoom level}.
+     *
+     * @param zoom the zoom level
+     * @return a view of these datasets at the given zoom level
+     */
+    public GeneratorDatasets atZoom(int zoom) {
+        Object[] custom = this.custom.clone();
+        for (int i = 0; i < custom.length; i++) {
+            if (custom[i] instanceof IScalarDataset) {
+                custom[i] = ((IScalarDataset) custom[i]).atZoom(zoom);
+            }
+        }
+        return new GeneratorDatasets(custom, this.projection);
+    }
 }
@@ -8,4 +8,13 @@ public interface IEarthAsyncDataBuilder<V> {
      * @return the built value
      */
     V build();
+
+    /**
+     * Discards the data in this builder without building it, e.g. because baking failed or was cancelled.
+     * <p>
+     * This allows builders which are cached for re-use to be re-used again.
+     */
+    default void discard() {
+        //no-op
+    }
 }
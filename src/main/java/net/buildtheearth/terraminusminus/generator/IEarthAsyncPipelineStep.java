@@ -1,17 +1,28 @@
 package net.buildtheearth.terraminusminus.generator;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraExecutors;
 import net.buildtheearth.terraminusminus.TerraMinusMinus;
+import net.buildtheearth.terraminusminus.dataset.Coverage;
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
 import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
 import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
 import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
 
+import static net.daporkchop.lib.common.util.PValidation.*;
 import static net.daporkchop.lib.common.util.PorkUtil.*;
 
 /**
@@ -19,48 +30,384 @@ import static net.daporkchop.lib.common.util.PorkUtil.*;
  */
 public interface IEarthAsyncPipelineStep<D, V, B extends IEarthAsyncDataBuilder<V>> {
     static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> getFuture(ChunkPos pos, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory) {
+        return getFuture(pos, datasets, steps, builderFactory, TerraExecutors.bake());
+    }
+
+    /**
+     * Bakes the given column.
+     *
+     * @param executor the {@link Executor} to request the data and bake the column on
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> getFuture(ChunkPos pos, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory, @NonNull Executor executor) {
+        return getFuture(pos, datasets, steps, builderFactory, executor, RequestTicket.current());
+    }
+
+    /**
+     * Bakes the given column.
+     * <p>
+     * All data is requested on behalf of the given {@link RequestTicket}, so its priority is respected when downloading data. Cancelling the
+     * returned future cancels the ticket, and once the ticket is cancelled, any pending requests which aren't needed by any other column are
+     * dropped.
+     *
+     * @param executor the {@link Executor} to request the data and bake the column on
+     * @param ticket   the {@link RequestTicket} to request the data with
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> getFuture(ChunkPos pos, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory, @NonNull Executor executor, @NonNull RequestTicket ticket) {
+        long[] dependencies = BakeSchedule.dependencies(steps);
+
         //i used the future to create the future
-        return CompletableFuture.supplyAsync(() -> {
+        CompletableFuture<V> result = CompletableFuture.supplyAsync(() -> RequestTicket.supplyWith(ticket, () -> {
+            if (ticket.isCancelled()) {
+                throw new CancellationException();
+            }
+
             int baseX = ChunkPos.cubeToMinBlock(pos.x());
             int baseZ = ChunkPos.cubeToMinBlock(pos.z());
-
-            CompletableFuture<?>[] futures = new CompletableFuture[steps.length];
+            Bounds2d chunkBounds = Bounds2d.of(baseX, baseX + 16, baseZ, baseZ + 16);
+            CornerBoundingBox2d chunkBoundsGeo;
             try {
-                Bounds2d chunkBounds = Bounds2d.of(baseX, baseX + 16, baseZ, baseZ + 16);
-                CornerBoundingBox2d chunkBoundsGeo = chunkBounds.toCornerBB(datasets.projection(), false).toGeo();
+                chunkBoundsGeo = chunkBounds.toCornerBB(datasets.projection(), false).toGeo();
+            } catch (OutOfProjectionBoundsException e) {
+                chunkBoundsGeo = null;
+            }
+
+            return bakeColumn(pos, datasets, steps, builderFactory, executor, ticket, dependencies, chunkBounds, chunkBoundsGeo);
+        }), executor).thenCompose(Function.identity());
 
-                for (int i = 0; i < steps.length; i++) {
+        result.whenComplete((data, t) -> {
+            if (result.isCancelled()) {
+                ticket.cancel();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Bakes the given column, using bounds which have already been computed.
+     * <p>
+     * This allows multiple pipelines which bake the same column (see {@link EarthColumnPipeline}) to share the work of projecting its bounds.
+     * It must be called on behalf of the given {@link RequestTicket}, i.e. with it set as the {@link RequestTicket#current() current ticket}.
+     *
+     * @param executor       the {@link Executor} to bake the column on
+     * @param ticket         the {@link RequestTicket} to request the data with
+     * @param chunkBounds    the bounds of the column
+     * @param chunkBoundsGeo the bounds of the column in geographic coordinates, or {@code null} if the column is out of projection bounds
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> bakeColumn(ChunkPos pos, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory, @NonNull Executor executor, @NonNull RequestTicket ticket, @NonNull Bounds2d chunkBounds, CornerBoundingBox2d chunkBoundsGeo) {
+        return bakeColumn(pos, datasets, steps, builderFactory, executor, ticket, BakeSchedule.dependencies(steps), chunkBounds, chunkBoundsGeo);
+    }
+
+    private static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> bakeColumn(ChunkPos pos, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory, Executor executor, RequestTicket ticket, long[] dependencies, Bounds2d chunkBounds, CornerBoundingBox2d chunkBoundsGeo) {
+        //steps whose output would be overwritten anyway don't need any data
+        long skipped = dependencies != null ? BakeSchedule.skipped(pos, steps) : 0L;
+
+        CompletableFuture<?>[] futures = new CompletableFuture[steps.length];
+        if (chunkBoundsGeo != null) {
+            for (int i = 0; i < steps.length; i++) {
+                if ((skipped & (1L << i)) == 0L) {
                     try {
-                        futures[i] = steps[i].requestData(pos, datasets, chunkBounds, chunkBoundsGeo);
+                        futures[i] = StepMetrics.requestData(steps[i], System.nanoTime(), steps[i].requestData(pos, datasets, chunkBounds, chunkBoundsGeo));
                     } catch (OutOfProjectionBoundsException ignored) {
                     }
                 }
-            } catch (OutOfProjectionBoundsException ignored) {
             }
+        }
 
-            boolean areAnyFuturesNull = Arrays.stream(futures).anyMatch(Objects::isNull);
-            CompletableFuture<?>[] nonNullFutures = areAnyFuturesNull
-                    ? Arrays.stream(futures).filter(Objects::nonNull).toArray(CompletableFuture[]::new)
-                    : futures;
+        if (dependencies != null) {
+            return bakeGraph(pos, steps, builderFactory, executor, ticket, futures, dependencies, skipped);
+        }
 
-            CompletableFuture<V> future = (nonNullFutures.length != 0 ? CompletableFuture.allOf(nonNullFutures) : CompletableFuture.completedFuture(null))
-                    .thenApply(unused -> {
-                        B builder = builderFactory.get();
+        boolean areAnyFuturesNull = Arrays.stream(futures).anyMatch(Objects::isNull);
+        CompletableFuture<?>[] nonNullFutures = areAnyFuturesNull
+                ? Arrays.stream(futures).filter(Objects::nonNull).toArray(CompletableFuture[]::new)
+                : futures;
+
+        CompletableFuture<V> future = (nonNullFutures.length != 0 ? CompletableFuture.allOf(nonNullFutures) : CompletableFuture.completedFuture(null))
+                .thenApply(unused -> {
+                    if (ticket.isCancelled()) { //nobody needs this column anymore, don't bother baking it
+                        throw new CancellationException();
+                    }
 
+                    B builder = builderFactory.get();
+                    try {
                         for (int i = 0; i < steps.length; i++) {
                             CompletableFuture<?> stepFuture = futures[i];
-                            steps[i].bake(pos, builder, stepFuture != null ? uncheckedCast(stepFuture.join()) : null);
+                            StepMetrics.bake(steps[i], pos, builder, stepFuture != null ? stepFuture.join() : null);
                         }
-
                         return builder.build();
-                    });
-            future.whenComplete((data, t) -> {
-                if (t != null) {
-                    TerraMinusMinus.LOGGER.error("async exception while loading data", t);
+                    } catch (Throwable t) { //release the builder so that it can be re-used
+                        builder.discard();
+                        throw t;
+                    }
+                });
+        future.whenComplete((data, t) -> {
+            if (t != null && !RequestTicket.isCancellation(t)) {
+                TerraMinusMinus.LOGGER.error("async exception while loading data", t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Bakes a column once the data for its steps has been requested, running each step as soon as its own data and the steps it depends on are
+     * done.
+     */
+    private static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> bakeGraph(ChunkPos pos, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory, Executor executor, RequestTicket ticket, CompletableFuture<?>[] futures, long[] dependencies, long skipped) {
+        B builder = builderFactory.get();
+
+        CompletableFuture<?>[] bakes = new CompletableFuture[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            if ((skipped & (1L << i)) != 0L) {
+                bakes[i] = CompletableFuture.completedFuture(null);
+                continue;
+            }
+
+            //wait for the step's data and for every step it depends on
+            CompletableFuture<?>[] prerequisites = new CompletableFuture[Long.bitCount(dependencies[i]) + 1];
+            int count = 0;
+            for (long remaining = dependencies[i]; remaining != 0L; remaining &= remaining - 1L) {
+                prerequisites[count++] = bakes[Long.numberOfTrailingZeros(remaining)];
+            }
+            CompletableFuture<?> stepFuture = futures[i];
+            if (stepFuture != null) {
+                prerequisites[count++] = stepFuture;
+            }
+
+            IEarthAsyncPipelineStep<?, V, B> step = steps[i];
+            bakes[i] = CompletableFuture.allOf(Arrays.copyOf(prerequisites, count)).thenRunAsync(() -> {
+                if (ticket.isCancelled()) { //nobody needs this column anymore, don't bother baking it
+                    throw new CancellationException();
+                }
+                StepMetrics.bake(step, pos, builder, stepFuture != null ? stepFuture.join() : null);
+            }, executor);
+        }
+
+        //this only completes once every step has either been baked or failed, so nothing can be using the builder anymore
+        CompletableFuture<Void> baked = CompletableFuture.allOf(bakes);
+        baked.whenComplete((unused, t) -> {
+            if (t != null) {
+                builder.discard();
+            }
+        });
+
+        CompletableFuture<V> future = baked.thenApply(unused -> builder.build());
+        future.whenComplete((data, t) -> {
+            if (t != null && !RequestTicket.isCancellation(t)) {
+                TerraMinusMinus.LOGGER.error("async exception while loading data", t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Bakes every column in the given region, fetching the data for the entire region at once.
+     * <p>
+     * Rather than computing the geographic bounds of every column and querying every dataset once per column, the bounds of the whole region are
+     * projected once and each step is given the chance to issue a single request for the entire region (see {@link #requestRegionData}).
+     * <p>
+     * Note that the region's geographic bounds are interpolated between the region's corners, so very large regions may slightly diverge from
+     * the result of loading each column individually on strongly non-linear projections. If any part of the region is out of projection bounds,
+     * every column is loaded individually using {@link #getFuture(ChunkPos, GeneratorDatasets, IEarthAsyncPipelineStep[], Supplier)}.
+     *
+     * @param min the position of the column at the region's minimum corner (inclusive)
+     * @param max the position of the column at the region's maximum corner (inclusive)
+     * @return the futures for every column in the region, in X-major order
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V>[] getFutures(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory) {
+        return getFutures(min, max, datasets, steps, builderFactory, TerraExecutors.bake());
+    }
+
+    /**
+     * Bakes every column in the given region, fetching the data for the entire region at once.
+     *
+     * @param executor the {@link Executor} to request the data and bake the columns on
+     * @see #getFutures(ChunkPos, ChunkPos, GeneratorDatasets, IEarthAsyncPipelineStep[], Supplier)
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V>[] getFutures(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory, @NonNull Executor executor) {
+        return getFutures(min, max, datasets, steps, builderFactory, executor, RequestTicket.current());
+    }
+
+    /**
+     * Bakes every column in the given region, fetching the data for the entire region at once.
+     * <p>
+     * As with {@link #getFuture(ChunkPos, GeneratorDatasets, IEarthAsyncPipelineStep[], Supplier, Executor, RequestTicket) getFuture}, steps whose
+     * output is overwritten at a column aren't baked there (and their data is only requested if that isn't the case for every column in the
+     * region), and columns aren't baked at all once the ticket has been cancelled. The ticket is cancelled once every one of the returned futures
+     * has been cancelled.
+     *
+     * @param executor the {@link Executor} to request the data and bake the columns on
+     * @param ticket   the {@link RequestTicket} to request the data with
+     * @see #getFutures(ChunkPos, ChunkPos, GeneratorDatasets, IEarthAsyncPipelineStep[], Supplier)
+     * @see #getFuture(ChunkPos, GeneratorDatasets, IEarthAsyncPipelineStep[], Supplier, Executor, RequestTicket)
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V>[] getFutures(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory, @NonNull Executor executor, @NonNull RequestTicket ticket) {
+        checkArg(min.x() <= max.x() && min.z() <= max.z(), "min (%s) may not be greater than max (%s)", min, max);
+        int count = (max.x() - min.x() + 1) * (max.z() - min.z() + 1);
+
+        CompletableFuture<CompletableFuture<V>[]> region = CompletableFuture.supplyAsync(() -> RequestTicket.supplyWith(ticket, () -> {
+            if (ticket.isCancelled()) {
+                throw new CancellationException();
+            }
+
+            Bounds2d regionBounds = Bounds2d.of(min.getMinBlockX(), max.getMinBlockX() + 16, min.getMinBlockZ(), max.getMinBlockZ() + 16);
+            CornerBoundingBox2d regionBoundsGeo;
+            try {
+                regionBoundsGeo = regionBounds.toCornerBB(datasets.projection(), false).toGeo();
+            } catch (OutOfProjectionBoundsException e) {
+                regionBoundsGeo = null;
+            }
+
+            return bakeRegion(min, max, datasets, steps, builderFactory, executor, ticket, regionBounds, regionBoundsGeo);
+        }), executor);
+        region.whenComplete((futures, t) -> {
+            if (t != null && !RequestTicket.isCancellation(t)) {
+                TerraMinusMinus.LOGGER.error("async exception while loading data", t);
+            }
+        });
+
+        AtomicInteger remaining = new AtomicInteger(count);
+        CompletableFuture<V>[] out = uncheckedCast(new CompletableFuture[count]);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            out[i] = trackRegionColumn(region.thenCompose(futures -> futures[index]), ticket, remaining);
+        }
+        return out;
+    }
+
+    /**
+     * Bakes every column in the given region, using bounds which have already been computed.
+     * <p>
+     * This allows multiple pipelines which bake the same region (see {@link EarthColumnPipeline}) to share the work of projecting its bounds.
+     * It must be called on behalf of the given {@link RequestTicket}, i.e. with it set as the {@link RequestTicket#current() current ticket}.
+     *
+     * @param executor        the {@link Executor} to bake the columns on
+     * @param ticket          the {@link RequestTicket} to request the data with
+     * @param regionBounds    the bounds of the region
+     * @param regionBoundsGeo the bounds of the region in geographic coordinates, or {@code null} if any part of the region is out of projection
+     *                        bounds, in which case every column is loaded individually
+     * @see #getFutures(ChunkPos, ChunkPos, GeneratorDatasets, IEarthAsyncPipelineStep[], Supplier, Executor, RequestTicket)
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V>[] bakeRegion(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory, @NonNull Executor executor, @NonNull RequestTicket ticket, @NonNull Bounds2d regionBounds, CornerBoundingBox2d regionBoundsGeo) {
+        checkArg(min.x() <= max.x() && min.z() <= max.z(), "min (%s) may not be greater than max (%s)", min, max);
+        int sizeX = max.x() - min.x() + 1;
+        int sizeZ = max.z() - min.z() + 1;
+
+        AtomicInteger remaining = new AtomicInteger(sizeX * sizeZ);
+        CompletableFuture<V>[] out = uncheckedCast(new CompletableFuture[sizeX * sizeZ]);
+
+        if (regionBoundsGeo == null) { //some part of the region is out of bounds, each column will have to be loaded individually
+            for (int i = 0, dx = 0; dx < sizeX; dx++) {
+                for (int dz = 0; dz < sizeZ; dz++, i++) {
+                    //give each column its own ticket, so that cancelling one of them doesn't cancel the whole region
+                    out[i] = trackRegionColumn(getFuture(new ChunkPos(min.x() + dx, min.z() + dz), datasets, steps, builderFactory, executor, new RequestTicket.Child(ticket)),
+                            ticket, remaining);
+                }
+            }
+            return out;
+        }
+
+        //steps whose output would be overwritten anyway at every column in the region don't need any data
+        long[] dependencies = BakeSchedule.dependencies(steps);
+        long[] skipped = new long[sizeX * sizeZ];
+        long skippedEverywhere = dependencies != null ? -1L : 0L;
+        if (dependencies != null) {
+            for (int i = 0, dx = 0; dx < sizeX; dx++) {
+                for (int dz = 0; dz < sizeZ; dz++, i++) {
+                    skippedEverywhere &= skipped[i] = BakeSchedule.skipped(new ChunkPos(min.x() + dx, min.z() + dz), steps);
                 }
-            });
-            return future;
-        }).thenCompose(Function.identity());
+            }
+        }
+
+        CompletableFuture<? extends Function<ChunkPos, ?>>[] futures = uncheckedCast(new CompletableFuture[steps.length]);
+        for (int i = 0; i < steps.length; i++) {
+            if ((skippedEverywhere & (1L << i)) == 0L) {
+                try {
+                    futures[i] = StepMetrics.requestRegionData(steps[i], System.nanoTime(), steps[i].requestRegionData(min, max, datasets, regionBounds, regionBoundsGeo));
+                } catch (OutOfProjectionBoundsException ignored) {
+                }
+            }
+        }
+
+        CompletableFuture<?>[] nonNullFutures = Arrays.stream(futures).filter(Objects::nonNull).toArray(CompletableFuture[]::new);
+        CompletableFuture<Function<ChunkPos, ?>[]> regionFuture = (nonNullFutures.length != 0 ? CompletableFuture.allOf(nonNullFutures) : CompletableFuture.completedFuture(null))
+                .thenApply(unused -> {
+                    Function<ChunkPos, ?>[] extractors = uncheckedCast(new Function[steps.length]);
+                    for (int i = 0; i < steps.length; i++) {
+                        extractors[i] = futures[i] != null ? futures[i].join() : null;
+                    }
+                    return extractors;
+                });
+
+        for (int i = 0, dx = 0; dx < sizeX; dx++) {
+            for (int dz = 0; dz < sizeZ; dz++, i++) {
+                ChunkPos pos = new ChunkPos(min.x() + dx, min.z() + dz);
+                long columnSkipped = skipped[i];
+                CompletableFuture<V> future = regionFuture.thenApplyAsync(extractors -> {
+                    if (ticket.isCancelled()) { //nobody needs this column anymore, don't bother baking it
+                        throw new CancellationException();
+                    }
+
+                    B builder = builderFactory.get();
+                    try {
+                        for (int j = 0; j < steps.length; j++) {
+                            if ((columnSkipped & (1L << j)) == 0L) {
+                                StepMetrics.bake(steps[j], pos, builder, extractors[j] != null ? extractors[j].apply(pos) : null);
+                            }
+                        }
+                        return builder.build();
+                    } catch (Throwable t) { //release the builder so that it can be re-used
+                        builder.discard();
+                        throw t;
+                    }
+                }, executor);
+                future.whenComplete((data, t) -> {
+                    if (t != null && !RequestTicket.isCancellation(t)) {
+                        TerraMinusMinus.LOGGER.error("async exception while loading data", t);
+                    }
+                });
+                out[i] = trackRegionColumn(future, ticket, remaining);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Cancels the given region's ticket once every one of its columns has been cancelled.
+     */
+    private static <V> CompletableFuture<V> trackRegionColumn(CompletableFuture<V> future, RequestTicket ticket, AtomicInteger remaining) {
+        future.whenComplete((data, t) -> {
+            if (future.isCancelled() && remaining.decrementAndGet() == 0) { //every column in the region has been cancelled
+                ticket.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Splits a grid of samples taken over an entire region (as returned by {@link IScalarDataset#getAsync(CornerBoundingBox2d, int, int)} with
+     * 16 samples per column along each axis) into the samples for each individual column.
+     *
+     * @param data the samples for the entire region. If {@code null}, the returned function will always return {@code null}
+     * @param min  the position of the column at the region's minimum corner
+     * @param max  the position of the column at the region's maximum corner
+     * @return a function which extracts the 16x16 samples for a single column
+     */
+    static Function<ChunkPos, double[]> splitRegionSamples(double[] data, @NonNull ChunkPos min, @NonNull ChunkPos max) {
+        if (data == null) {
+            return pos -> null;
+        }
+
+        int stride = (max.z() - min.z() + 1) << 4;
+        return pos -> {
+            int baseX = (pos.x() - min.x()) << 4;
+            int baseZ = (pos.z() - min.z()) << 4;
+
+            double[] out = new double[16 * 16];
+            for (int x = 0; x < 16; x++) {
+                System.arraycopy(data, (baseX + x) * stride + baseZ, out, x * 16, 16);
+            }
+            return out;
+        };
     }
 
     /**
@@ -74,6 +421,96 @@ public interface IEarthAsyncPipelineStep<D, V, B extends IEarthAsyncDataBuilder<
      */
     CompletableFuture<D> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException;
 
+    /**
+     * Asynchronously fetches the data required to bake the data for every column in the given region.
+     * <p>
+     * The default implementation simply requests the data for each column individually. Implementations which query datasets should override
+     * this to issue a single query for the entire region.
+     *
+     * @param min       the position of the column at the region's minimum corner (inclusive)
+     * @param max       the position of the column at the region's maximum corner (inclusive)
+     * @param datasets  the datasets to be used
+     * @param bounds    the bounding box of the region (in blocks)
+     * @param boundsGeo the bounding box of the region (in world coordinates)
+     * @return a {@link CompletableFuture} which will be completed with a function that extracts the data for a single column of the region
+     */
+    default CompletableFuture<Function<ChunkPos, D>> requestRegionData(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        int sizeZ = max.z() - min.z() + 1;
+
+        CompletableFuture<D>[] futures = uncheckedCast(new CompletableFuture[(max.x() - min.x() + 1) * sizeZ]);
+        for (int i = 0, x = min.x(); x <= max.x(); x++) {
+            for (int z = min.z(); z <= max.z(); z++, i++) {
+                ChunkPos pos = new ChunkPos(x, z);
+                int baseX = pos.getMinBlockX();
+                int baseZ = pos.getMinBlockZ();
+                try {
+                    Bounds2d chunkBounds = Bounds2d.of(baseX, baseX + 16, baseZ, baseZ + 16);
+                    futures[i] = this.requestData(pos, datasets, chunkBounds, chunkBounds.toCornerBB(datasets.projection(), false).toGeo());
+                } catch (OutOfProjectionBoundsException ignored) {
+                }
+            }
+        }
+
+        return CompletableFuture.allOf(Arrays.stream(futures).filter(Objects::nonNull).toArray(CompletableFuture[]::new))
+                .thenApply(unused -> pos -> {
+                    CompletableFuture<D> future = futures[(pos.x() - min.x()) * sizeZ + (pos.z() - min.z())];
+                    return future != null ? future.join() : null;
+                });
+    }
+
+    /**
+     * Gets the parts of the builder which this step reads while baking (e.g. {@link CachedChunkData#CHANNEL_WATER_DEPTH}, or the name of a
+     * custom attribute).
+     * <p>
+     * If every step in a pipeline declares its inputs and outputs, the steps are baked as a dependency graph: each step is baked as soon as its
+     * own data is available and every earlier step which writes to something it reads from or writes to has been baked, so steps which don't
+     * conflict may be baked concurrently. Otherwise, all steps are baked one after another once all of the data is available.
+     *
+     * @return the parts of the builder which this step reads, or {@code null} if unknown
+     * @see #outputs()
+     */
+    default Set<String> inputs() {
+        return null;
+    }
+
+    /**
+     * Gets the parts of the builder which this step may write to while baking.
+     *
+     * @return the parts of the builder which this step writes, or {@code null} if unknown
+     * @see #inputs()
+     */
+    default Set<String> outputs() {
+        return null;
+    }
+
+    /**
+     * Gets the parts of the builder which this step completely overwrites at the given column, regardless of their previous contents.
+     * <p>
+     * Earlier steps whose outputs are all overwritten by later steps before anything reads them aren't baked at all, and their data isn't
+     * requested. This is only used if every step declares its {@link #inputs() inputs} and {@link #outputs() outputs}.
+     *
+     * @param pos the position of the column
+     * @return the parts of the builder which this step overwrites
+     */
+    default Set<String> overwrites(ChunkPos pos) {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Checks whether or not this step may bake anything for the given area, without requesting any data.
+     * <p>
+     * If {@link Coverage#NONE} is returned, baking any column in the area must have the same effect as baking it with {@code null} data, and
+     * that effect must not depend on the column's position. The default implementation conservatively returns {@link Coverage#POSSIBLE}.
+     *
+     * @param datasets  the datasets to be used
+     * @param bounds    the bounding box of the area (in blocks)
+     * @param boundsGeo the bounding box of the area (in world coordinates)
+     * @return the {@link Coverage}
+     */
+    default Coverage coverage(GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        return Coverage.POSSIBLE;
+    }
+
     /**
      * Bakes the retrieved data into the chunk data for the given column.
      *
@@ -0,0 +1,536 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.TerraExecutors;
+import net.buildtheearth.terraminusminus.TerraMinusMinus;
+import net.buildtheearth.terraminusminus.projection.GeographicProjection;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.substitutes.IBiome;
+import net.buildtheearth.terraminusminus.util.ImmutableCompactArray;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+import net.buildtheearth.terraminusminus.util.http.Http;
+import net.buildtheearth.terraminusminus.util.metrics.Counter;
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
+import net.buildtheearth.terraminusminus.util.metrics.Timer;
+
+import static net.daporkchop.lib.common.math.PMath.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Headless engine which loads all the data for an area ahead of time, so that the dataset tiles are already in the HTTP cache and the baked
+ * columns are already in the {@link ChunkDataStore} before anyone visits the area.
+ * <p>
+ * The area is split into regions which are aligned to the {@link ChunkDataStore}'s region files, and every region is loaded at once using
+ * {@link ChunkDataLoader#loadRegion(ChunkPos, ChunkPos, RequestTicket)}. Regions are visited row by row in a serpentine order, so that
+ * consecutive regions are always adjacent and share as many dataset tiles as possible.
+ * <p>
+ * At most {@code concurrency} regions are loaded at the same time. The requests they issue are still subject to the per-host limits
+ * configured in {@link TerraConfig.HttpOpts#maxConcurrentRequests}, and have a low priority, so that requests for the columns around players
+ * are always served first.
+ * <p>
+ * If a progress file is given, completed regions are recorded in it, and regions which were already completed by an earlier (possibly
+ * interrupted) run for the same area are skipped. The progress file also records a digest of the settings and datasets it was created with,
+ * and is rejected if they have changed since, as the completed regions would otherwise be skipped even though their data is now different.
+ */
+public class Pregenerator {
+    public static final int REGION_SHIFT = ChunkDataStore.REGION_SHIFT;
+    public static final int REGION_SIZE = ChunkDataStore.REGION_SIZE;
+
+    /**
+     * The {@link RequestTicket#priority() priority} of the first region. Later regions have a slightly lower priority, so that regions are
+     * completed roughly in order.
+     */
+    public static final double BASE_PRIORITY = 1.0e9d;
+
+    private static final int PROGRESS_MAGIC = 0x54505247; //"TPRG"
+    private static final int PROGRESS_VERSION = 2;
+    private static final long SAVE_INTERVAL = TimeUnit.SECONDS.toNanos(5L);
+
+    private static final Counter COLUMNS = Metrics.counter("pregen.columns");
+    private static final Timer REGION_TIMER = Metrics.timer("pregen.region");
+
+    /**
+     * Computes the bounding box (in blocks) which contains the given area.
+     *
+     * @param projection the projection
+     * @param geoBounds  the area, in geographic coordinates
+     * @return the bounding box, in blocks
+     */
+    public static Bounds2d blockBounds(@NonNull GeographicProjection projection, @NonNull Bounds2d geoBounds) throws OutOfProjectionBoundsException {
+        return geoBounds.toCornerBB(projection, true).fromGeo().axisAlign();
+    }
+
+    protected final ChunkDataLoader loader;
+    protected final EarthBiomeProvider.ChunkDataLoader biomes;
+    protected final Executor executor;
+    protected final String settingsDigest;
+
+    protected final ChunkPos minChunk;
+    protected final ChunkPos maxChunk;
+    protected final int minRegionX;
+    protected final int minRegionZ;
+    protected final int regionsX;
+    protected final int regionsZ;
+    protected final int concurrency;
+
+    protected final Path progressFile;
+    protected final BitSet completed;
+
+    protected final AtomicInteger cursor = new AtomicInteger();
+    protected final AtomicInteger completedRegions = new AtomicInteger();
+    protected final AtomicInteger failedRegions = new AtomicInteger();
+    protected final AtomicInteger activeWorkers = new AtomicInteger();
+    protected final LongAdder completedColumns = new LongAdder();
+    protected final Set<RequestTicket> tickets = ConcurrentHashMap.newKeySet();
+    protected final CompletableFuture<Void> future = new CompletableFuture<>();
+    protected final Object saveLock = new Object();
+
+    protected volatile boolean cancelled;
+    protected long startTime;
+    protected long lastSave;
+
+    /**
+     * Creates a new {@link Pregenerator} which loads both the data and the biomes for every column in the given area.
+     * <p>
+     * The baked columns are written to the settings' {@link ChunkDataStore} even if {@link TerraConfig.ChunkStoreOpts#enabled} isn't set, but
+     * the generator only reads them from there if it is.
+     *
+     * @param settings     the settings of the world to pregenerate
+     * @param bounds       the area to pregenerate, in blocks
+     * @param concurrency  the maximum number of regions to load at once
+     * @param progressFile the file to record progress in. May be {@code null}, in which case progress isn't recorded
+     */
+    public Pregenerator(@NonNull EarthGeneratorSettings settings, @NonNull Bounds2d bounds, int concurrency, Path progressFile) throws IOException {
+        this(new ChunkDataLoader(settings.columnPipeline(), ChunkDataStore.forSettings(settings)), new EarthBiomeProvider.ChunkDataLoader(settings),
+                ChunkDataStore.storeName(settings), bounds, concurrency, progressFile);
+    }
+
+    /**
+     * @param loader         the {@link ChunkDataLoader} to load the data for every column with
+     * @param biomes         the {@link EarthBiomeProvider.ChunkDataLoader} to load the biomes for every column with. May be {@code null}, in which
+     *                       case biomes aren't pregenerated
+     * @param settingsDigest a digest of the settings and datasets used by the loaders. A progress file created with a different digest is rejected
+     * @param bounds       the area to pregenerate, in blocks
+     * @param concurrency  the maximum number of regions to load at once
+     * @param progressFile the file to record progress in. May be {@code null}, in which case progress isn't recorded
+     */
+    public Pregenerator(@NonNull ChunkDataLoader loader, EarthBiomeProvider.ChunkDataLoader biomes, @NonNull String settingsDigest, @NonNull Bounds2d bounds,
+                        int concurrency, Path progressFile) throws IOException {
+        this(loader, biomes, settingsDigest,
+                new ChunkPos(floorI(bounds.minX()) >> 4, floorI(bounds.minZ()) >> 4),
+                new ChunkPos((ceilI(bounds.maxX()) - 1) >> 4, (ceilI(bounds.maxZ()) - 1) >> 4),
+                concurrency, progressFile);
+    }
+
+    /**
+     * @param loader         the {@link ChunkDataLoader} to load the data for every column with
+     * @param biomes         the {@link EarthBiomeProvider.ChunkDataLoader} to load the biomes for every column with. May be {@code null}, in which
+     *                       case biomes aren't pregenerated
+     * @param settingsDigest a digest of the settings and datasets used by the loaders. A progress file created with a different digest is rejected
+     * @param minChunk     the position of the column at the area's minimum corner (inclusive)
+     * @param maxChunk     the position of the column at the area's maximum corner (inclusive)
+     * @param concurrency  the maximum number of regions to load at once
+     * @param progressFile the file to record progress in. May be {@code null}, in which case progress isn't recorded
+     */
+    public Pregenerator(@NonNull ChunkDataLoader loader, EarthBiomeProvider.ChunkDataLoader biomes, @NonNull String settingsDigest,
+                        @NonNull ChunkPos minChunk, @NonNull ChunkPos maxChunk, int concurrency, Path progressFile) throws IOException {
+        checkArg(minChunk.x() <= maxChunk.x() && minChunk.z() <= maxChunk.z(), "invalid area: %s to %s", minChunk, maxChunk);
+
+        this.loader = loader;
+        this.biomes = biomes;
+        this.executor = TerraExecutors.bake();
+        this.settingsDigest = settingsDigest;
+        this.minChunk = minChunk;
+        this.maxChunk = maxChunk;
+        this.concurrency = positive(concurrency, "concurrency");
+        this.progressFile = progressFile;
+
+        this.minRegionX = minChunk.x() >> REGION_SHIFT;
+        this.minRegionZ = minChunk.z() >> REGION_SHIFT;
+        this.regionsX = (maxChunk.x() >> REGION_SHIFT) - this.minRegionX + 1;
+        this.regionsZ = (maxChunk.z() >> REGION_SHIFT) - this.minRegionZ + 1;
+        checkArg((long) this.regionsX * this.regionsZ <= Integer.MAX_VALUE, "area is too large: %s to %s", minChunk, maxChunk);
+
+        this.completed = progressFile != null && Files.exists(progressFile) ? this.readProgress(progressFile) : new BitSet(this.totalRegions());
+        this.completedRegions.set(this.completed.cardinality());
+    }
+
+    /**
+     * Starts pregenerating the area.
+     *
+     * @return a future which will be completed once every region has been loaded, or the pregeneration has been {@link #cancel() cancelled}
+     */
+    public synchronized CompletableFuture<Void> start() {
+        checkState(this.startTime == 0L, "already started!");
+        this.startTime = this.lastSave = System.nanoTime();
+
+        int workers = Math.min(this.concurrency, this.totalRegions());
+        this.activeWorkers.set(workers);
+        for (int i = 0; i < workers; i++) {
+            this.executor.execute(this::next);
+        }
+        if (workers == 0) {
+            this.future.complete(null);
+        }
+        return this.future;
+    }
+
+    /**
+     * Stops pregenerating the area. Regions which are currently being loaded are dropped, and will be loaded again when the pregeneration is
+     * resumed.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        this.tickets.forEach(RequestTicket::cancel);
+    }
+
+    /**
+     * Starts loading the next region which hasn't been completed yet, if any.
+     */
+    protected void next() {
+        int index = -1;
+        if (!this.cancelled) {
+            synchronized (this) {
+                do { //skip regions which were already completed by an earlier run
+                    index = this.cursor.getAndIncrement();
+                } while (index < this.totalRegions() && this.completed.get(index));
+            }
+        }
+
+        if (index < 0 || index >= this.totalRegions()) { //there's nothing left for this worker to do
+            if (this.activeWorkers.decrementAndGet() == 0) {
+                this.trySaveProgress();
+                this.future.complete(null);
+            }
+            return;
+        }
+
+        RequestTicket ticket = new RequestTicket.Mutable(BASE_PRIORITY + index);
+        this.tickets.add(ticket);
+        if (this.cancelled) { //cancel() may have missed the ticket
+            ticket.cancel();
+        }
+
+        int regionIndex = index;
+        long start = REGION_TIMER.start();
+        CompletableFuture<Void> future;
+        try {
+            future = this.load(regionIndex, ticket);
+        } catch (Throwable t) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+        }
+
+        //always continue asynchronously, as regions which don't need to be loaded complete immediately
+        future.whenCompleteAsync((unused, t) -> {
+            this.tickets.remove(ticket);
+            if (t == null) {
+                REGION_TIMER.stop(start);
+                this.complete(regionIndex);
+            } else if (!RequestTicket.isCancellation(t)) {
+                this.failedRegions.incrementAndGet();
+                TerraMinusMinus.LOGGER.error("Failed to pregenerate region " + this.regionMin(regionIndex) + " to " + this.regionMax(regionIndex), t);
+            }
+            this.next();
+        }, this.executor);
+    }
+
+    /**
+     * Loads every column in the given region.
+     *
+     * @param index  the index of the region
+     * @param ticket the {@link RequestTicket} to issue the requests with
+     * @return a future which will be completed once every column in the region has been loaded
+     */
+    protected CompletableFuture<Void> load(int index, @NonNull RequestTicket ticket) {
+        ChunkPos min = this.regionMin(index);
+        ChunkPos max = this.regionMax(index);
+
+        CompletableFuture<CachedChunkData>[] data = this.loader.loadRegion(min, max, ticket);
+        if (this.biomes == null) {
+            return CompletableFuture.allOf(data);
+        }
+
+        CompletableFuture<ImmutableCompactArray<IBiome<?>>>[] biomes = this.biomes.loadRegion(min, max, ticket);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[data.length + biomes.length];
+        System.arraycopy(data, 0, futures, 0, data.length);
+        System.arraycopy(biomes, 0, futures, data.length, biomes.length);
+        return CompletableFuture.allOf(futures);
+    }
+
+    protected void complete(int index) {
+        int columns = this.columns(index);
+        this.completedColumns.add(columns);
+        COLUMNS.add(columns);
+
+        boolean save;
+        synchronized (this) {
+            this.completed.set(index);
+            long now = System.nanoTime();
+            if (save = now - this.lastSave >= SAVE_INTERVAL) {
+                this.lastSave = now;
+            }
+        }
+        this.completedRegions.incrementAndGet();
+
+        if (save) {
+            this.trySaveProgress();
+        }
+    }
+
+    /**
+     * @return the position of the column at the given region's minimum corner (inclusive)
+     */
+    protected ChunkPos regionMin(int index) {
+        int regionX = this.regionX(index);
+        int regionZ = index / this.regionsX;
+        return new ChunkPos(
+                Math.max((this.minRegionX + regionX) << REGION_SHIFT, this.minChunk.x()),
+                Math.max((this.minRegionZ + regionZ) << REGION_SHIFT, this.minChunk.z()));
+    }
+
+    /**
+     * @return the position of the column at the given region's maximum corner (inclusive)
+     */
+    protected ChunkPos regionMax(int index) {
+        int regionX = this.regionX(index);
+        int regionZ = index / this.regionsX;
+        return new ChunkPos(
+                Math.min(((this.minRegionX + regionX) << REGION_SHIFT) + REGION_SIZE - 1, this.maxChunk.x()),
+                Math.min(((this.minRegionZ + regionZ) << REGION_SHIFT) + REGION_SIZE - 1, this.maxChunk.z()));
+    }
+
+    /**
+     * @return the X coordinate of the given region, relative to the first region. Every other row is visited in reverse order
+     */
+    protected int regionX(int index) {
+        int regionX = index % this.regionsX;
+        return ((index / this.regionsX) & 1) == 0 ? regionX : this.regionsX - 1 - regionX;
+    }
+
+    /**
+     * @return the number of columns in the given region which are part of the area
+     */
+    protected int columns(int index) {
+        ChunkPos min = this.regionMin(index);
+        ChunkPos max = this.regionMax(index);
+        return (max.x() - min.x() + 1) * (max.z() - min.z() + 1);
+    }
+
+    /**
+     * @return the total number of regions in the area
+     */
+    public int totalRegions() {
+        return this.regionsX * this.regionsZ;
+    }
+
+    /**
+     * @return the number of regions which have been completed, including those which were completed by an earlier run
+     */
+    public int completedRegions() {
+        return this.completedRegions.get();
+    }
+
+    /**
+     * @return the number of regions which couldn't be loaded during this run
+     */
+    public int failedRegions() {
+        return this.failedRegions.get();
+    }
+
+    /**
+     * @return the number of columns which have been loaded during this run
+     */
+    public long completedColumns() {
+        return this.completedColumns.sum();
+    }
+
+    /**
+     * @return the average number of columns loaded per second during this run
+     */
+    public double columnsPerSecond() {
+        long startTime = this.startTime;
+        if (startTime == 0L) {
+            return 0.0d;
+        }
+        return this.completedColumns() / ((System.nanoTime() - startTime) / (double) TimeUnit.SECONDS.toNanos(1L));
+    }
+
+    @Override
+    public String toString() {
+        int completed = this.completedRegions();
+        int total = this.totalRegions();
+        return String.format("%d/%d regions (%.1f%%), %d failed, %.1f columns/s",
+                completed, total, completed * 100.0d / total, this.failedRegions(), this.columnsPerSecond());
+    }
+
+    protected BitSet readProgress(@NonNull Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            checkArg(in.readInt() == PROGRESS_MAGIC, "not a progress file: %s", file);
+            checkArg(in.readInt() == PROGRESS_VERSION, "unsupported progress file version: %s", file);
+            checkArg(in.readInt() == this.minChunk.x() && in.readInt() == this.minChunk.z() && in.readInt() == this.maxChunk.x() && in.readInt() == this.maxChunk.z(),
+                    "progress file %s was created for a different area", file);
+            checkArg(in.readUTF().equals(this.settingsDigest) && in.readBoolean() == (this.biomes != null),
+                    "progress file %s was created with different settings or datasets", file);
+
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /**
+     * Writes the set of completed regions to the progress file, if any.
+     *
+     * @throws IOException if the progress file couldn't be written
+     */
+    public void saveProgress() throws IOException {
+        if (this.progressFile == null) {
+            return;
+        }
+
+        long[] words;
+        synchronized (this) {
+            words = this.completed.toLongArray();
+        }
+
+        //write to a temporary file first, so that the progress file is never left incomplete
+        Path tmp = this.progressFile.resolveSibling(this.progressFile.getFileName() + ".tmp");
+        synchronized (this.saveLock) {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                out.writeInt(PROGRESS_MAGIC);
+                out.writeInt(PROGRESS_VERSION);
+                out.writeInt(this.minChunk.x());
+                out.writeInt(this.minChunk.z());
+                out.writeInt(this.maxChunk.x());
+                out.writeInt(this.maxChunk.z());
+                out.writeUTF(this.settingsDigest);
+                out.writeBoolean(this.biomes != null);
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            Files.move(tmp, this.progressFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Writes the set of completed regions to the progress file, if any, logging any failure instead of throwing it.
+     * <p>
+     * This is used by the workers and the shutdown hook, which must keep going even if the progress can't be saved: the regions which weren't
+     * saved will simply be pregenerated again when resuming.
+     */
+    protected void trySaveProgress() {
+        try {
+            this.saveProgress();
+        } catch (Throwable t) {
+            TerraMinusMinus.LOGGER.error("Unable to save progress to " + this.progressFile, t);
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        String settingsJson = EarthGeneratorSettings.BTE_DEFAULT_SETTINGS;
+        double[] bounds = null;
+        boolean geo = false;
+        int concurrency = 4;
+        Path progressFile = null;
+        boolean biomes = true;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--settings":
+                        settingsJson = new String(Files.readAllBytes(Paths.get(args[++i])), StandardCharsets.UTF_8);
+                        break;
+                    case "--geo":
+                    case "--blocks":
+                        geo = "--geo".equals(args[i]);
+                        bounds = new double[4];
+                        for (int j = 0; j < 4; j++) {
+                            bounds[j] = Double.parseDouble(args[++i]);
+                        }
+                        break;
+                    case "--concurrency":
+                        concurrency = Integer.parseInt(args[++i]);
+                        break;
+                    case "--progress":
+                        progressFile = Paths.get(args[++i]);
+                        break;
+                    case "--no-biomes":
+                        biomes = false;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown argument: " + args[i]);
+                }
+            }
+            checkArg(bounds != null, "no area given");
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Pregenerator (--geo <minLon> <minLat> <maxLon> <maxLat> | --blocks <minX> <minZ> <maxX> <maxZ>)");
+            System.err.println("                    [--settings <file>] [--concurrency <regions>] [--progress <file>] [--no-biomes]");
+            System.exit(1);
+            return;
+        }
+
+        Http.configChanged();
+
+        EarthGeneratorSettings settings = EarthGeneratorSettings.parse(settingsJson);
+        Bounds2d area = Bounds2d.of(bounds[0], bounds[2], bounds[1], bounds[3]);
+        if (geo) {
+            area = blockBounds(settings.projection(), area);
+        }
+
+        Pregenerator pregenerator = new Pregenerator(new ChunkDataLoader(settings.columnPipeline(), ChunkDataStore.forSettings(settings)),
+                biomes ? new EarthBiomeProvider.ChunkDataLoader(settings) : null,
+                ChunkDataStore.storeName(settings), area, concurrency, progressFile);
+
+        //save progress when interrupted
+        Thread shutdownHook = new Thread(() -> {
+            pregenerator.cancel();
+            pregenerator.trySaveProgress();
+        }, "terra-- pregenerator shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "terra-- pregenerator progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> TerraMinusMinus.LOGGER.info("Pregenerating: {}", pregenerator), 5L, 5L, TimeUnit.SECONDS);
+
+        TerraMinusMinus.LOGGER.info("Pregenerating {} regions from {} to {} ({} already completed)",
+                pregenerator.totalRegions(), pregenerator.minChunk, pregenerator.maxChunk, pregenerator.completedRegions());
+        pregenerator.start().join();
+        reporter.shutdownNow();
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        pregenerator.saveProgress(); //the workers only log failures to save, so make sure the final progress was actually written
+
+        TerraMinusMinus.LOGGER.info("Done: {}", pregenerator);
+        System.exit(pregenerator.failedRegions() == 0 ? 0 : 2);
+    }
+}
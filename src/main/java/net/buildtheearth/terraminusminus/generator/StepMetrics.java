@@ -0,0 +1,71 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.concurrent.CompletableFuture;
+
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
+import net.buildtheearth.terraminusminus.util.metrics.Timer;
+
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
+/**
+ * The {@link Metrics} recorded for each kind of {@link IEarthAsyncPipelineStep}.
+ */
+final class StepMetrics {
+    private static final ClassValue<StepMetrics> METRICS = new ClassValue<StepMetrics>() {
+        @Override
+        protected StepMetrics computeValue(Class<?> type) {
+            return new StepMetrics(Metrics.nameOf(type));
+        }
+    };
+
+    /**
+     * Records the time until the given data requested by the given step is available.
+     *
+     * @param start  the time at which the data was requested
+     * @param future the future returned by {@link IEarthAsyncPipelineStep#requestData}. May be {@code null}
+     * @return the future
+     */
+    static <F extends CompletableFuture<?>> F requestData(@NonNull IEarthAsyncPipelineStep<?, ?, ?> step, long start, F future) {
+        return record(METRICS.get(step.getClass()).requestData, start, future);
+    }
+
+    /**
+     * Records the time until the given data requested by the given step for an entire region is available.
+     *
+     * @param start  the time at which the data was requested
+     * @param future the future returned by {@link IEarthAsyncPipelineStep#requestRegionData}. May be {@code null}
+     * @return the future
+     */
+    static <F extends CompletableFuture<?>> F requestRegionData(@NonNull IEarthAsyncPipelineStep<?, ?, ?> step, long start, F future) {
+        return record(METRICS.get(step.getClass()).requestRegionData, start, future);
+    }
+
+    private static <F extends CompletableFuture<?>> F record(@NonNull Timer timer, long start, F future) {
+        if (future != null && Metrics.enabled()) {
+            future.whenComplete((data, t) -> timer.stop(start));
+        }
+        return future;
+    }
+
+    /**
+     * Bakes the given data using the given step, recording the time it took.
+     */
+    static <D, V, B extends IEarthAsyncDataBuilder<V>> void bake(@NonNull IEarthAsyncPipelineStep<D, V, B> step, @NonNull ChunkPos pos, @NonNull B builder, Object data) {
+        Timer timer = METRICS.get(step.getClass()).bake;
+        long start = timer.start();
+        step.bake(pos, builder, uncheckedCast(data));
+        timer.stop(start);
+    }
+
+    private final Timer requestData;
+    private final Timer requestRegionData;
+    private final Timer bake;
+
+    private StepMetrics(@NonNull String name) {
+        this.requestData = Metrics.timer("pipeline." + name + ".requestData");
+        this.requestRegionData = Metrics.timer("pipeline." + name + ".requestRegionData");
+        this.bake = Metrics.timer("pipeline." + name + ".bake");
+    }
+}
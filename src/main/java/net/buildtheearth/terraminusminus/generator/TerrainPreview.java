@@ -4,6 +4,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraExecutors;
 import net.buildtheearth.terraminusminus.generator.data.TreeCoverBaker;
 import net.buildtheearth.terraminusminus.projection.GeographicProjection;
 import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
@@ -41,6 +42,11 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
     protected static final int CHUNKS_PER_TILE_SHIFT = SIZE_SHIFT - 4;
     protected static final int CHUNKS_PER_TILE = 1 << CHUNKS_PER_TILE_SHIFT; //number of chunks per tile at zoom 0
 
+    /**
+     * The default spec for the tile cache, which keeps it to 64MiB of tiles.
+     */
+    public static final String DEFAULT_CACHE_SPEC = "maximumSize=256";
+
     public static BufferedImage createBlankTile() {
         return new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
     }
@@ -242,13 +248,15 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
 
     protected final LoadingCache<TilePos, CompletableFuture<BufferedImage>> cache;
     protected final ChunkDataLoader loader;
+    protected final EarthLodProvider lod;
 
     public TerrainPreview(@NonNull EarthGeneratorSettings settings) {
-        this(settings, "softValues");
+        this(settings, DEFAULT_CACHE_SPEC);
     }
 
     public TerrainPreview(@NonNull EarthGeneratorSettings settings, @NonNull String cacheSpec) {
         this.loader = new ChunkDataLoader(settings);
+        this.lod = settings.lodProvider();
         this.cache = CacheBuilder.from(cacheSpec).build(this);
     }
 
@@ -276,13 +284,20 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
     }
 
     protected CompletableFuture<BufferedImage> baseZoomTile(int x, int z) {
-        CompletableFuture<CachedChunkData>[] dataFutures = uncheckedCast(new CompletableFuture[CHUNKS_PER_TILE * CHUNKS_PER_TILE]);
-        for (int i = 0, dx = 0; dx < CHUNKS_PER_TILE; dx++) {
-            for (int dz = 0; dz < CHUNKS_PER_TILE; dz++) {
-                dataFutures[i++] = this.loader.load(new ChunkPos((x << CHUNKS_PER_TILE_SHIFT) + dx, (z << CHUNKS_PER_TILE_SHIFT) + dz));
-            }
-        }
+        CompletableFuture<CachedChunkData>[] dataFutures = this.loader.loadRegion(
+                new ChunkPos(x << CHUNKS_PER_TILE_SHIFT, z << CHUNKS_PER_TILE_SHIFT),
+                new ChunkPos((x << CHUNKS_PER_TILE_SHIFT) + CHUNKS_PER_TILE - 1, (z << CHUNKS_PER_TILE_SHIFT) + CHUNKS_PER_TILE - 1));
+
+        return this.renderTile(dataFutures);
+    }
 
+    /**
+     * Renders a tile from the data of each of its {@link #CHUNKS_PER_TILE}x{@link #CHUNKS_PER_TILE} columns, or level of detail tiles when zoomed
+     * out.
+     *
+     * @param dataFutures the data, ordered by X, then by Z
+     */
+    protected CompletableFuture<BufferedImage> renderTile(@NonNull CompletableFuture<CachedChunkData>[] dataFutures) {
         return CompletableFuture.allOf(dataFutures).thenApplyAsync(unused -> {
             BufferedImage dst = createBlankTile();
 
@@ -290,7 +305,7 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
                 for (int tz = 0; tz < CHUNKS_PER_TILE; tz++) {
                     CachedChunkData data = dataFutures[ti++].join();
 
-                    byte[] treeCoverArr = data.getCustom(EarthGeneratorPipelines.KEY_DATA_TREE_COVER, TreeCoverBaker.FALLBACK_TREE_DENSITY);
+                    byte[] treeCoverArr = data.getCustom(EarthGeneratorPipelines.DATA_TREE_COVER, TreeCoverBaker.FALLBACK_TREE_DENSITY);
 
                     int baseX = tx << 4;
                     int baseZ = tz << 4;
@@ -337,10 +352,26 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
             }
 
             return dst;
-        });
+        }, TerraExecutors.bake());
     }
 
     protected CompletableFuture<BufferedImage> zoomedOutTile(int x, int z, int zoom) {
+        if (zoom > EarthLodProvider.MAX_ZOOM) { //no level of detail data this coarse, fall back to downsampling the tiles one zoom level further in
+            return this.downsampledTile(x, z, zoom);
+        }
+
+        //each pixel of a tile at zoom level n covers 2^n blocks, which is exactly the size of a sample of a level of detail tile at zoom level n.
+        // rendering them directly means that zoomed out tiles only ever need data at their own resolution
+        CompletableFuture<CachedChunkData>[] dataFutures = uncheckedCast(new CompletableFuture[CHUNKS_PER_TILE * CHUNKS_PER_TILE]);
+        for (int i = 0, tx = 0; tx < CHUNKS_PER_TILE; tx++) {
+            for (int tz = 0; tz < CHUNKS_PER_TILE; tz++) {
+                dataFutures[i++] = this.lod.getTileAsync((x << CHUNKS_PER_TILE_SHIFT) + tx, (z << CHUNKS_PER_TILE_SHIFT) + tz, zoom);
+            }
+        }
+        return this.renderTile(dataFutures);
+    }
+
+    protected CompletableFuture<BufferedImage> downsampledTile(int x, int z, int zoom) {
         CompletableFuture<BufferedImage>[] children = uncheckedCast(new CompletableFuture[4]);
         for (int i = 0, dx = 0; dx < 2; dx++) {
             for (int dz = 0; dz < 2; dz++) {
@@ -379,7 +410,7 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
             }
 
             return dst;
-        });
+        }, TerraExecutors.bake());
     }
 
     protected CompletableFuture<BufferedImage> zoomedInTile(int x, int z, int zoom) {
@@ -398,6 +429,6 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
                     }
 
                     return dst;
-                });
+                }, TerraExecutors.bake());
     }
 }
@@ -5,7 +5,6 @@ import java.util.concurrent.CompletableFuture;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
 import net.buildtheearth.terraminusminus.generator.ChunkBiomesBuilder;
 import net.buildtheearth.terraminusminus.generator.EarthBiomeProvider;
 import net.buildtheearth.terraminusminus.generator.EarthGeneratorPipelines;
@@ -26,9 +25,9 @@ public class Terra121BiomeFilter implements IEarthBiomeFilter<Terra121BiomeFilte
 
     @Override
     public CompletableFuture<Terra121BiomeFilter.Data> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
-        CompletableFuture<double[]> precipitationFuture = datasets.<IScalarDataset>getCustom(EarthGeneratorPipelines.KEY_DATASET_TERRA121_PRECIPITATION).getAsync(boundsGeo, 16, 16);
-        CompletableFuture<double[]> soilFuture = datasets.<IScalarDataset>getCustom(EarthGeneratorPipelines.KEY_DATASET_TERRA121_SOIL).getAsync(boundsGeo, 16, 16);
-        CompletableFuture<double[]> temperatureFuture = datasets.<IScalarDataset>getCustom(EarthGeneratorPipelines.KEY_DATASET_TERRA121_TEMPERATURE).getAsync(boundsGeo, 16, 16);
+        CompletableFuture<double[]> precipitationFuture = datasets.getCustom(EarthGeneratorPipelines.DATASET_TERRA121_PRECIPITATION).getAsync(boundsGeo, 16, 16);
+        CompletableFuture<double[]> soilFuture = datasets.getCustom(EarthGeneratorPipelines.DATASET_TERRA121_SOIL).getAsync(boundsGeo, 16, 16);
+        CompletableFuture<double[]> temperatureFuture = datasets.getCustom(EarthGeneratorPipelines.DATASET_TERRA121_TEMPERATURE).getAsync(boundsGeo, 16, 16);
 
         return CompletableFuture.allOf(precipitationFuture, soilFuture, temperatureFuture)
                 .thenApply(unused -> new Data(precipitationFuture.join(), soilFuture.join(), temperatureFuture.join()));
@@ -10,6 +10,7 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import net.buildtheearth.terraminusminus.TerraConstants;
+import net.buildtheearth.terraminusminus.TerraExecutors;
 import net.buildtheearth.terraminusminus.generator.BiomesRegistry;
 import net.buildtheearth.terraminusminus.generator.ChunkBiomesBuilder;
 import net.buildtheearth.terraminusminus.generator.GeneratorDatasets;
@@ -69,7 +70,7 @@ public class UserOverrideBiomeFilter implements IEarthBiomeFilter<UserOverrideBi
     public CompletableFuture<BiomeBoundingBox> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
         return CompletableFuture.supplyAsync(() -> this.bvh.getAllIntersecting(boundsGeo).stream()
                 .max(Comparator.naturalOrder())
-                .orElse(null));
+                .orElse(null), TerraExecutors.bake());
     }
 
     @Override
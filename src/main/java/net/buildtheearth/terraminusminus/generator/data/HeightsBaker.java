@@ -3,12 +3,17 @@ package net.buildtheearth.terraminusminus.generator.data;
 import static net.daporkchop.lib.common.math.PMath.floorI;
 
 import java.util.Arrays;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
-import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import com.google.common.collect.ImmutableSet;
+
+import net.buildtheearth.terraminusminus.dataset.Coverage;
 import net.buildtheearth.terraminusminus.generator.CachedChunkData;
 import net.buildtheearth.terraminusminus.generator.EarthGeneratorPipelines;
 import net.buildtheearth.terraminusminus.generator.GeneratorDatasets;
+import net.buildtheearth.terraminusminus.generator.IEarthAsyncPipelineStep;
 import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
 import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
@@ -18,9 +23,34 @@ import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
  * @author DaPorkchop_
  */
 public class HeightsBaker implements IEarthDataBaker<double[]> {
+    private static final Set<String> INPUTS = ImmutableSet.of(CachedChunkData.CHANNEL_WATER_DEPTH);
+    private static final Set<String> OUTPUTS = ImmutableSet.of(CachedChunkData.CHANNEL_SURFACE_HEIGHT, CachedChunkData.CHANNEL_WATER_DEPTH);
+
     @Override
     public CompletableFuture<double[]> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
-        return datasets.<IScalarDataset>getCustom(EarthGeneratorPipelines.KEY_DATASET_HEIGHTS).getAsync(boundsGeo, 16, 16);
+        return datasets.getCustom(EarthGeneratorPipelines.DATASET_HEIGHTS).getAsync(boundsGeo, 16, 16);
+    }
+
+    @Override
+    public CompletableFuture<Function<ChunkPos, double[]>> requestRegionData(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        return datasets.getCustom(EarthGeneratorPipelines.DATASET_HEIGHTS)
+                .getAsync(boundsGeo, (max.x() - min.x() + 1) << 4, (max.z() - min.z() + 1) << 4)
+                .thenApply(data -> IEarthAsyncPipelineStep.splitRegionSamples(data, min, max));
+    }
+
+    @Override
+    public Coverage coverage(GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        return datasets.getCustom(EarthGeneratorPipelines.DATASET_HEIGHTS).coverage(boundsGeo);
+    }
+
+    @Override
+    public Set<String> inputs() {
+        return INPUTS;
+    }
+
+    @Override
+    public Set<String> outputs() {
+        return OUTPUTS;
     }
 
     @Override
@@ -3,8 +3,12 @@ package net.buildtheearth.terraminusminus.generator.data;
 import static java.lang.Math.max;
 
 import java.util.Arrays;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
+import com.google.common.collect.ImmutableSet;
+
+import net.buildtheearth.terraminusminus.dataset.Coverage;
 import net.buildtheearth.terraminusminus.generator.CachedChunkData;
 import net.buildtheearth.terraminusminus.generator.EarthGeneratorPipelines;
 import net.buildtheearth.terraminusminus.generator.GeneratorDatasets;
@@ -20,20 +24,47 @@ import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
  * @author DaPorkchop_
  */
 public class NullIslandBaker implements IEarthDataBaker<Void> {
+    private static final Set<String> OUTPUTS = ImmutableSet.of(CachedChunkData.CHANNEL_SURFACE_HEIGHT, CachedChunkData.CHANNEL_WATER_DEPTH,
+            CachedChunkData.CHANNEL_BIOMES, CachedChunkData.CHANNEL_SURFACE_BLOCKS, EarthGeneratorPipelines.KEY_DATA_TREE_COVER);
+
     @Override
     public CompletableFuture<Void> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
         return null;
     }
 
+    @Override
+    public Coverage coverage(GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) {
+        //null island covers the columns from -3 to 2 (inclusive) on both axes
+        return bounds.intersects(Bounds2d.of(-3 * 16, 3 * 16, -3 * 16, 3 * 16)) ? Coverage.POSSIBLE : Coverage.NONE;
+    }
+
+    @Override
+    public Set<String> inputs() {
+        return ImmutableSet.of();
+    }
+
+    @Override
+    public Set<String> outputs() {
+        return OUTPUTS;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Null island completely replaces everything else, so none of the other bakers need to run there.
+     */
+    @Override
+    public Set<String> overwrites(ChunkPos pos) {
+        return isNullIsland(pos.x(), pos.z()) ? OUTPUTS : ImmutableSet.of();
+    }
+
     @Override
     public void bake(ChunkPos pos, CachedChunkData.Builder builder, Void data) {
         if (isNullIsland(pos.x(), pos.z())) {
             Arrays.fill(builder.surfaceHeight(), -1);
 
-            byte[] trees = builder.getCustom(EarthGeneratorPipelines.KEY_DATA_TREE_COVER, null);
-            if (trees != null) {
-                Arrays.fill(trees, (byte) 0);
-            }
+            builder.putCustom(EarthGeneratorPipelines.DATA_TREE_COVER, new byte[16 * 16]);
+            Arrays.fill(builder.surfaceBlocks(), null);
 
             if (((pos.x() ^ (pos.x() >> 31)) | (pos.z() ^ (pos.z() >> 31))) == 0) {
                 Arrays.fill(builder.biomes(), MetaBiome.FOREST);
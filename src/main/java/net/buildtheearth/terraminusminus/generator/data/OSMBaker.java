@@ -4,8 +4,11 @@ import java.util.Arrays;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
-import net.buildtheearth.terraminusminus.dataset.IElementDataset;
+import com.google.common.collect.ImmutableSet;
+
+import net.buildtheearth.terraminusminus.dataset.Coverage;
 import net.buildtheearth.terraminusminus.dataset.vector.geometry.VectorGeometry;
 import net.buildtheearth.terraminusminus.generator.CachedChunkData;
 import net.buildtheearth.terraminusminus.generator.EarthGeneratorPipelines;
@@ -20,12 +23,41 @@ import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
  * @author DaPorkchop_
  */
 public class OSMBaker implements IEarthDataBaker<BVH<VectorGeometry>[]> {
+    //these are all the parts of the builder which are accessed by the built-in draw functions
+    private static final Set<String> INPUTS = ImmutableSet.of(CachedChunkData.CHANNEL_WATER_DEPTH, EarthGeneratorPipelines.KEY_DATA_TREE_COVER);
+    private static final Set<String> OUTPUTS = ImmutableSet.of(CachedChunkData.CHANNEL_WATER_DEPTH, CachedChunkData.CHANNEL_SURFACE_BLOCKS,
+            EarthGeneratorPipelines.KEY_DATA_TREE_COVER);
+
     @Override
     public CompletableFuture<BVH<VectorGeometry>[]> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
-        return datasets.<IElementDataset<BVH<VectorGeometry>>>getCustom(EarthGeneratorPipelines.KEY_DATASET_OSM_PARSED)
+        return datasets.getCustom(EarthGeneratorPipelines.DATASET_OSM_PARSED)
                 .getAsync(bounds.expand(16.0d).toCornerBB(datasets.projection(), false).toGeo());
     }
 
+    @Override
+    public CompletableFuture<Function<ChunkPos, BVH<VectorGeometry>[]>> requestRegionData(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        //every column only considers elements intersecting its own bounds while baking, so all columns can share the regions for the whole area
+        return this.requestData(min, datasets, bounds, boundsGeo).thenApply(regions -> pos -> regions);
+    }
+
+    @Override
+    public Coverage coverage(GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        //baking empty regions leaves the water depth untouched rather than filling it with ocean like null regions would, but in the absence
+        // of any height data HeightsBaker has already filled it with the same value, so this only matters if some other step has data anyway
+        return datasets.getCustom(EarthGeneratorPipelines.DATASET_OSM_PARSED)
+                .coverage(bounds.expand(16.0d).toCornerBB(datasets.projection(), false).toGeo());
+    }
+
+    @Override
+    public Set<String> inputs() {
+        return INPUTS;
+    }
+
+    @Override
+    public Set<String> outputs() {
+        return OUTPUTS;
+    }
+
     @Override
     public void bake(ChunkPos pos, CachedChunkData.Builder builder, BVH<VectorGeometry>[] regions) {
         if (regions == null) { //there's no data in this chunk... we're going to assume it's completely out of bounds
@@ -4,12 +4,17 @@ import static net.daporkchop.lib.common.math.PMath.ceilI;
 import static net.daporkchop.lib.common.math.PMath.clamp;
 
 import java.util.Arrays;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
-import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import com.google.common.collect.ImmutableSet;
+
+import net.buildtheearth.terraminusminus.dataset.Coverage;
 import net.buildtheearth.terraminusminus.generator.CachedChunkData;
 import net.buildtheearth.terraminusminus.generator.EarthGeneratorPipelines;
 import net.buildtheearth.terraminusminus.generator.GeneratorDatasets;
+import net.buildtheearth.terraminusminus.generator.IEarthAsyncPipelineStep;
 import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
 import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
@@ -44,9 +49,38 @@ public class TreeCoverBaker implements IEarthDataBaker<double[]> {
         return (byte) clamp(ceilI(value), 0, 255);
     }
 
+    private static final Set<String> OUTPUTS = ImmutableSet.of(EarthGeneratorPipelines.KEY_DATA_TREE_COVER);
+
     @Override
     public CompletableFuture<double[]> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
-        return datasets.<IScalarDataset>getCustom(EarthGeneratorPipelines.KEY_DATASET_TREE_COVER).getAsync(boundsGeo, 16, 16);
+        return datasets.getCustom(EarthGeneratorPipelines.DATASET_TREE_COVER).getAsync(boundsGeo, 16, 16);
+    }
+
+    @Override
+    public CompletableFuture<Function<ChunkPos, double[]>> requestRegionData(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        return datasets.getCustom(EarthGeneratorPipelines.DATASET_TREE_COVER)
+                .getAsync(boundsGeo, (max.x() - min.x() + 1) << 4, (max.z() - min.z() + 1) << 4)
+                .thenApply(data -> IEarthAsyncPipelineStep.splitRegionSamples(data, min, max));
+    }
+
+    @Override
+    public Coverage coverage(GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        return datasets.getCustom(EarthGeneratorPipelines.DATASET_TREE_COVER).coverage(boundsGeo);
+    }
+
+    @Override
+    public Set<String> inputs() {
+        return ImmutableSet.of();
+    }
+
+    @Override
+    public Set<String> outputs() {
+        return OUTPUTS;
+    }
+
+    @Override
+    public Set<String> overwrites(ChunkPos pos) {
+        return OUTPUTS;
     }
 
     @Override
@@ -57,6 +91,6 @@ public class TreeCoverBaker implements IEarthDataBaker<double[]> {
                 arr[i] = treeChance(treeCover[i]);
             }
         }
-        builder.putCustom(EarthGeneratorPipelines.KEY_DATA_TREE_COVER, arr);
+        builder.putCustom(EarthGeneratorPipelines.DATA_TREE_COVER, arr);
     }
 }
@@ -0,0 +1,111 @@
+package net.buildtheearth.terraminusminus.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A typed key for a custom attribute stored in a {@link CustomAttributeContainer}.
+ * <p>
+ * Every attribute name is assigned a dense integer slot the first time it's used, which allows containers to store their attributes in a plain
+ * array rather than a hash map. Keys with the same name share the same slot, regardless of their type, so the same name may be used for
+ * different kinds of values in different containers (e.g. a dataset and the data baked from it). There is no limit on the number of distinct
+ * names, but slots are never released, so names should not be generated dynamically.
+ * <p>
+ * Attribute values may be arbitrary objects, including primitive arrays (e.g. {@code byte[]}), which are compared by their contents.
+ */
+@Getter
+public final class AttributeKey<T> {
+    private static final Map<String, Integer> SLOTS = new ConcurrentHashMap<>();
+    private static volatile String[] NAMES = new String[0];
+
+    /**
+     * Gets a key for the attribute with the given name.
+     *
+     * @param name the attribute's name
+     * @param type the type of the attribute's values
+     * @return the key
+     */
+    public static <T> AttributeKey<T> of(@NonNull String name, @NonNull Class<T> type) {
+        return new AttributeKey<>(name, type, slotOf(name));
+    }
+
+    /**
+     * Gets the slot assigned to the attribute with the given name, assigning a new one if none has been assigned yet.
+     *
+     * @param name the attribute's name
+     * @return the attribute's slot
+     */
+    public static int slotOf(@NonNull String name) {
+        Integer slot = SLOTS.get(name);
+        return slot != null ? slot : assignSlot(name);
+    }
+
+    private static synchronized int assignSlot(@NonNull String name) {
+        Integer slot = SLOTS.get(name);
+        if (slot == null) {
+            String[] names = Arrays.copyOf(NAMES, NAMES.length + 1);
+            names[slot = names.length - 1] = name;
+            NAMES = names;
+            SLOTS.put(name, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the slot assigned to the attribute with the given name, without assigning a new one.
+     *
+     * @param name the attribute's name
+     * @return the attribute's slot, or {@code -1} if none has been assigned
+     */
+    public static int existingSlotOf(@NonNull String name) {
+        Integer slot = SLOTS.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * @return the number of slots which have been assigned so far. Every slot is less than this
+     */
+    public static int slotCount() {
+        return NAMES.length;
+    }
+
+    /**
+     * @param slot an attribute slot
+     * @return the name of the attribute assigned to the given slot
+     */
+    public static String nameOf(int slot) {
+        return NAMES[slot];
+    }
+
+    @NonNull
+    private final String name;
+    @NonNull
+    private final Class<T> type;
+    private final int slot;
+
+    private AttributeKey(@NonNull String name, @NonNull Class<T> type, int slot) {
+        this.name = name;
+        this.type = type;
+        this.slot = slot;
+    }
+
+    /**
+     * Ensures that the given value may be used as a value of this attribute.
+     *
+     * @param value the value
+     * @return the value
+     * @throws ClassCastException if the value is of the wrong type
+     */
+    public T cast(@NonNull Object value) {
+        return this.type.cast(value);
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
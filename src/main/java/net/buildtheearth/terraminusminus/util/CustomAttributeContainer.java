@@ -1,20 +1,72 @@
 package net.buildtheearth.terraminusminus.util;
 
-import lombok.AllArgsConstructor;
 import lombok.NonNull;
 
+import java.util.Arrays;
 import java.util.Map;
 
 import static net.daporkchop.lib.common.util.PValidation.*;
 import static net.daporkchop.lib.common.util.PorkUtil.*;
 
 /**
+ * Base class for objects which have custom attributes.
+ * <p>
+ * Attributes are stored in an array indexed by their {@link AttributeKey#slot() slot}, absent attributes are {@code null}.
+ *
  * @author DaPorkchop_
  */
-@AllArgsConstructor
 public abstract class CustomAttributeContainer {
+    protected static final Object[] NO_ATTRIBUTES = new Object[0];
+
+    /**
+     * Converts the given attributes from a {@link Map} to an array indexed by their slot.
+     *
+     * @param custom the attributes
+     * @return the attributes, indexed by their slot
+     */
+    protected static Object[] toSlots(@NonNull Map<String, Object> custom) {
+        Object[] slots = NO_ATTRIBUTES;
+        for (Map.Entry<String, Object> entry : custom.entrySet()) {
+            int slot = AttributeKey.slotOf(entry.getKey());
+            slots = withSlot(slots, slot);
+            slots[slot] = entry.getValue();
+        }
+        return trimSlots(slots);
+    }
+
+    /**
+     * @return the given attributes, or a copy of them which is large enough to hold every slot assigned so far if they can't hold the given slot
+     */
+    protected static Object[] withSlot(@NonNull Object[] slots, int slot) {
+        return slot < slots.length ? slots : Arrays.copyOf(slots, Math.max(slot + 1, AttributeKey.slotCount()));
+    }
+
+    /**
+     * @return a copy of the given attributes without any trailing absent attributes
+     */
+    protected static Object[] trimSlots(@NonNull Object[] slots) {
+        int length = slots.length;
+        while (length > 0 && slots[length - 1] == null) {
+            length--;
+        }
+        return length != 0 ? Arrays.copyOf(slots, length) : NO_ATTRIBUTES;
+    }
+
+    /**
+     * The attributes, indexed by their slot. The array may be shorter than the number of assigned slots.
+     * <p>
+     * Only builders replace the array, which is otherwise never modified after construction.
+     */
     @NonNull
-    protected final Map<String, Object> custom;
+    protected Object[] custom;
+
+    protected CustomAttributeContainer(@NonNull Object[] custom) {
+        this.custom = custom;
+    }
+
+    protected CustomAttributeContainer(@NonNull Map<String, Object> custom) {
+        this(toSlots(custom));
+    }
 
     /**
      * Gets the custom attribute with the given key.
@@ -23,9 +75,9 @@ public abstract class CustomAttributeContainer {
      * @return the attribute
      * @throws IllegalArgumentException if a property with the given name couldn't be found
      */
-    public <T> T getCustom(@NonNull String key) {
-        T value = uncheckedCast(this.custom.get(key));
-        checkArg(value != null || this.custom.containsKey(key), "unknown property: \"%s\"", key);
+    public <T> T getCustom(@NonNull AttributeKey<T> key) {
+        T value = this.getCustom(key, null);
+        checkArg(value != null, "unknown property: \"%s\"", key);
         return value;
     }
 
@@ -36,7 +88,37 @@ public abstract class CustomAttributeContainer {
      * @param fallback the value to return if the key couldn't be found
      * @return the attribute
      */
+    public <T> T getCustom(@NonNull AttributeKey<T> key, T fallback) {
+        Object[] custom = this.custom;
+        int slot = key.slot();
+        return slot < custom.length && custom[slot] != null ? uncheckedCast(custom[slot]) : fallback;
+    }
+
+    /**
+     * Gets the custom attribute with the given name.
+     *
+     * @param key the name of the attribute to get
+     * @return the attribute
+     * @throws IllegalArgumentException if a property with the given name couldn't be found
+     * @see #getCustom(AttributeKey)
+     */
+    public <T> T getCustom(@NonNull String key) {
+        T value = this.getCustom(key, null);
+        checkArg(value != null, "unknown property: \"%s\"", key);
+        return value;
+    }
+
+    /**
+     * Gets the custom attribute with the given name.
+     *
+     * @param key      the name of the attribute to get
+     * @param fallback the value to return if the key couldn't be found
+     * @return the attribute
+     * @see #getCustom(AttributeKey, Object)
+     */
     public <T> T getCustom(@NonNull String key, T fallback) {
-        return uncheckedCast(this.custom.getOrDefault(key, fallback));
+        Object[] custom = this.custom;
+        int slot = AttributeKey.existingSlotOf(key);
+        return slot >= 0 && slot < custom.length && custom[slot] != null ? uncheckedCast(custom[slot]) : fallback;
     }
 }
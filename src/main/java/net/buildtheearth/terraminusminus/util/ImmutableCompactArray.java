@@ -35,6 +35,11 @@ public final class ImmutableCompactArray<T> {
         }
 
         this.palette = paletteBuilder.toArray(Arrays.copyOf(data, paletteBuilder.size()));
+        if (idCounter <= 1) { //every value is the same, there's no need to store any indices
+            this.data = null;
+            return;
+        }
+
         this.data = new PaddedBitArray(max(32 - Integer.numberOfLeadingZeros(idCounter - 1), 1), data.length);
 
         for (int i = 0; i < data.length; i++) { //set values
@@ -49,6 +54,13 @@ public final class ImmutableCompactArray<T> {
      * @return the value
      */
     public T get(int i) {
-        return this.palette[this.data.get(i)];
+        return this.data != null ? this.palette[this.data.get(i)] : this.palette[0];
+    }
+
+    /**
+     * @return whether or not every value in this array is the same
+     */
+    public boolean isUniform() {
+        return this.data == null;
     }
 }
@@ -8,4 +8,21 @@ package net.buildtheearth.terraminusminus.util;
 @FunctionalInterface
 public interface IntToDoubleBiFunction {
     double apply(int x, int z);
+
+    /**
+     * Gets the values at a number of consecutive X coordinates.
+     * <p>
+     * The default implementation calls {@link #apply(int, int)} for each value, implementations backed by arrays should copy them in bulk.
+     *
+     * @param x         the first X coordinate
+     * @param z         the Z coordinate
+     * @param dst       the array to write the values to
+     * @param dstOffset the index in {@code dst} to write the first value to
+     * @param count     the number of values
+     */
+    default void applyRow(int x, int z, double[] dst, int dstOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOffset + i] = this.apply(x + i, z);
+        }
+    }
 }
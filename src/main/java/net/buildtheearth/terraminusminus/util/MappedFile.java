@@ -0,0 +1,79 @@
+package net.buildtheearth.terraminusminus.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A read-only file which is mapped into memory in its entirety.
+ * <p>
+ * Reading from the mapping doesn't require any system calls once the data has been paged in, and the operating system takes care of caching the
+ * parts of the file which are accessed often. Instances are thread-safe, and the mapping stays valid until the instance is garbage collected.
+ */
+@Getter
+public final class MappedFile {
+    //a single MappedByteBuffer can't be larger than 2GiB, so larger files are mapped in multiple segments
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    @Getter(AccessLevel.NONE)
+    private final MappedByteBuffer[] segments;
+
+    private final Path path;
+    private final long size;
+
+    public MappedFile(@NonNull Path path) throws IOException {
+        this.path = path;
+
+        //the mappings stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.size = channel.size();
+            this.segments = new MappedByteBuffer[(int) ((this.size + SEGMENT_SIZE - 1L) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < this.segments.length; i++) {
+                long position = (long) i << SEGMENT_SHIFT;
+                this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(this.size - position, SEGMENT_SIZE));
+            }
+        }
+    }
+
+    /**
+     * Gets a view of the given range of this file.
+     * <p>
+     * The returned buffer is big-endian, and is only a copy of the data if the range spans multiple mapped segments.
+     *
+     * @param offset the offset of the range
+     * @param length the length of the range
+     * @return a {@link ByteBuffer} containing the data in the range
+     */
+    public ByteBuffer slice(long offset, int length) {
+        checkArg(offset >= 0L && length >= 0 && offset + length <= this.size, "range [%d,%d) is outside of %s (size: %d)", offset, offset + length, this.path, this.size);
+        if (length == 0) {
+            return ByteBuffer.allocate(0);
+        }
+
+        int segment = (int) (offset >>> SEGMENT_SHIFT);
+        int position = (int) (offset & (SEGMENT_SIZE - 1L));
+        if (position + length <= this.segments[segment].capacity()) {
+            return this.segments[segment].slice(position, length);
+        }
+
+        //the range spans multiple segments
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; position = 0) {
+            MappedByteBuffer src = this.segments[segment++];
+            int n = Math.min(length - i, src.capacity() - position);
+            src.get(position, bytes, i, n);
+            i += n;
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -0,0 +1,279 @@
+package net.buildtheearth.terraminusminus.util;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import lombok.NonNull;
+
+/**
+ * Tracks the priority and cancellation state of an asynchronous data request.
+ * <p>
+ * A ticket is attached to the thread which issues a request (see {@link #current()}), from where it is picked up by the datasets and the HTTP
+ * client. Requests with a lower priority value are served first, and requests whose ticket has been cancelled are dropped before they are sent
+ * over the network.
+ * <p>
+ * Requests are usually issued with a {@link Mutable} ticket, whose priority may be changed at any time. Because dataset results are shared
+ * between many requests, datasets track the demand for each of their values with a {@link Shared} ticket: it is only cancelled once every
+ * request which needs the value has been cancelled, and has the priority of the most urgent one.
+ */
+public abstract class RequestTicket {
+    /**
+     * The ticket used for requests which aren't tracked. It has the highest priority, and can't be cancelled.
+     */
+    public static final RequestTicket UNTRACKED = new RequestTicket() {
+        @Override
+        public double priority() {
+            return 0.0d;
+        }
+
+        @Override
+        public void cancel() {
+            //no-op
+        }
+
+        @Override
+        public String toString() {
+            return "RequestTicket(untracked)";
+        }
+    };
+
+    private static final ThreadLocal<RequestTicket> CURRENT = ThreadLocal.withInitial(() -> UNTRACKED);
+
+    /**
+     * @return the ticket of the request which is currently being issued by this thread
+     */
+    public static RequestTicket current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the ticket of the request which is currently being issued by this thread.
+     *
+     * @param ticket the new ticket
+     * @return the previous ticket, which should be restored once the request has been issued
+     */
+    public static RequestTicket swap(@NonNull RequestTicket ticket) {
+        RequestTicket previous = CURRENT.get();
+        CURRENT.set(ticket);
+        return previous;
+    }
+
+    /**
+     * Runs the given function with the given ticket set as the current ticket.
+     *
+     * @param ticket   the ticket
+     * @param supplier the function to run
+     * @return the function's return value
+     */
+    public static <T> T supplyWith(@NonNull RequestTicket ticket, @NonNull Supplier<T> supplier) {
+        RequestTicket previous = swap(ticket);
+        try {
+            return supplier.get();
+        } finally {
+            swap(previous);
+        }
+    }
+
+    /**
+     * Runs the given function with the given ticket set as the current ticket.
+     *
+     * @param ticket   the ticket
+     * @param runnable the function to run
+     */
+    public static void runWith(@NonNull RequestTicket ticket, @NonNull Runnable runnable) {
+        RequestTicket previous = swap(ticket);
+        try {
+            runnable.run();
+        } finally {
+            swap(previous);
+        }
+    }
+
+    /**
+     * Checks whether or not the given {@link Throwable} indicates that a request was cancelled.
+     *
+     * @param t the {@link Throwable}
+     * @return whether or not the request was cancelled
+     */
+    public static boolean isCancellation(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t instanceof CancellationException;
+    }
+
+    protected volatile boolean cancelled;
+
+    /**
+     * @return the request's priority. Lower values are served first
+     */
+    public abstract double priority();
+
+    /**
+     * @return whether or not the request has been cancelled
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Cancels the request.
+     * <p>
+     * Work which has already been started may still complete, but no new work will be started on behalf of this request.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestTicket(priority=" + this.priority() + ", cancelled=" + this.isCancelled() + ')';
+    }
+
+    /**
+     * A ticket for a single request, whose priority may be changed by whoever issued it.
+     */
+    public static final class Mutable extends RequestTicket {
+        private volatile double priority;
+
+        /**
+         * @param priority the request's initial priority. Lower values are served first
+         */
+        public Mutable(double priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public double priority() {
+            return this.priority;
+        }
+
+        /**
+         * Changes the request's priority, e.g. because the player that requested it moved.
+         *
+         * @param priority the request's new priority. Lower values are served first
+         * @return this ticket
+         */
+        public Mutable priority(double priority) {
+            this.priority = priority;
+            return this;
+        }
+    }
+
+    /**
+     * A ticket which aggregates the demand of multiple requests for the same value.
+     * <p>
+     * It has the priority of its most urgent live member, and is cancelled once all of its members have been cancelled. Once cancelled, it will
+     * not accept any new members.
+     */
+    public static final class Shared extends RequestTicket {
+        /**
+         * The member tickets, or {@code null} if the value has already been computed.
+         */
+        private volatile RequestTicket[] members;
+
+        public Shared(@NonNull RequestTicket initial) {
+            this.members = new RequestTicket[]{ initial };
+        }
+
+        /**
+         * Adds a request to this ticket.
+         *
+         * @param ticket the ticket of the request
+         * @return whether or not the request was added. If {@code false}, this ticket has already been cancelled and the value must be requested
+         * again using a new ticket
+         */
+        public synchronized boolean join(@NonNull RequestTicket ticket) {
+            if (this.cancelled) {
+                return false;
+            }
+
+            RequestTicket[] members = this.members;
+            if (members != null) {
+                for (RequestTicket member : members) {
+                    if (member == ticket) {
+                        return true;
+                    }
+                }
+
+                members = Arrays.copyOf(members, members.length + 1);
+                members[members.length - 1] = ticket;
+                this.members = members;
+            }
+            return true;
+        }
+
+        /**
+         * Marks the value as computed, releasing all member tickets.
+         */
+        public void complete() {
+            this.members = null;
+        }
+
+        @Override
+        public double priority() {
+            RequestTicket[] members = this.members;
+            if (members == null) { //the value has already been computed, so there's nothing left to prioritize
+                return 0.0d;
+            }
+
+            double priority = Double.POSITIVE_INFINITY;
+            for (RequestTicket member : members) {
+                if (!member.isCancelled()) {
+                    priority = Math.min(priority, member.priority());
+                }
+            }
+            return priority;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            if (this.cancelled) {
+                return true;
+            }
+
+            RequestTicket[] members = this.members;
+            if (members == null) {
+                return false;
+            }
+            for (RequestTicket member : members) {
+                if (!member.isCancelled()) {
+                    return false;
+                }
+            }
+
+            synchronized (this) {
+                if (this.members == members) { //no new members have joined in the meantime, we're definitely cancelled
+                    this.cancelled = true;
+                }
+                return this.cancelled;
+            }
+        }
+    }
+
+    /**
+     * A ticket for part of a request, which can be cancelled on its own without cancelling the whole request.
+     * <p>
+     * It always has the priority of its parent, and is cancelled if either it or its parent has been cancelled.
+     */
+    public static final class Child extends RequestTicket {
+        private final RequestTicket parent;
+
+        public Child(@NonNull RequestTicket parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public double priority() {
+            return this.parent.priority();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled || this.parent.isCancelled();
+        }
+    }
+}
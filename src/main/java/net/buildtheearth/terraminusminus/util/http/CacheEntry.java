@@ -52,9 +52,9 @@ public class CacheEntry {
 
         Map<String, String> map = headers.getAll(HttpHeaderNames.CACHE_CONTROL).stream()
                 .map(s -> s.split(",")).flatMap(Arrays::stream).map(String::trim)
-                .map(Pattern.compile("^(.*?)=(.*?)$")::matcher)
+                .map(Pattern.compile("^([^=]*)(?:=(.*))?$")::matcher) //directives such as no-store don't have a value
                 .filter(Matcher::find)
-                .collect(Collectors.toMap(m -> m.group(1), m -> m.group(2)));
+                .collect(Collectors.toMap(m -> m.group(1), m -> m.group(2) != null ? m.group(2) : "", (a, b) -> a));
 
         long maxAge = -1L;
         long maxStale = -1L;
@@ -133,6 +133,17 @@ public class CacheEntry {
         return now >= this.expireTime;
     }
 
+    /**
+     * @return the time until which this response may be reused without asking the server again, or {@link Long#MIN_VALUE} if it may not be
+     * reused at all
+     */
+    public long freshUntil() {
+        if (this.noCache) {
+            return Long.MIN_VALUE;
+        }
+        return this.staleTime >= 0L ? Math.min(this.staleTime, this.expireTime) : this.expireTime;
+    }
+
     public void touch(@NonNull HttpHeaders headers) {
         if (this.etag != null) {
             headers.set(HttpHeaderNames.IF_NONE_MATCH, this.etag);
@@ -9,6 +9,8 @@ import lombok.NonNull;
 import lombok.experimental.UtilityClass;
 import net.buildtheearth.terraminusminus.TerraConfig;
 import net.buildtheearth.terraminusminus.TerraMinusMinus;
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
+import net.buildtheearth.terraminusminus.util.metrics.Timer;
 import net.daporkchop.lib.binary.netty.PUnpooled;
 import net.daporkchop.lib.common.function.io.IOConsumer;
 import net.daporkchop.lib.common.function.io.IOPredicate;
@@ -48,6 +50,9 @@ public class Disk {
     private final Path CACHE_ROOT;
     private final Path TMP_FILE;
 
+    private final Timer READ_TIMER = Metrics.timer("disk.read");
+    private final Timer WRITE_TIMER = Metrics.timer("disk.write");
+
     static {
         File mcRoot = new File(".");
         CACHE_ROOT = PFiles.ensureDirectoryExists(new File(mcRoot, "terraplusplus/cache")).toPath();
@@ -67,6 +72,7 @@ public class Disk {
      */
     public CompletableFuture<ByteBuf> read(@NonNull Path file) {
         return CompletableFuture.supplyAsync(() -> {
+            long start = READ_TIMER.start();
             try {
                 if (!Files.exists(file)) { //file doesn't exist
                     return null;
@@ -84,6 +90,8 @@ public class Disk {
                 }
             } catch (IOException e) {
                 throw new UncheckedIOException("unable to read file: " + file, e);
+            } finally {
+                READ_TIMER.stop(start);
             }
         }, DISK_EXECUTOR);
     }
@@ -96,6 +104,7 @@ public class Disk {
      */
     public void write(@NonNull Path file, @NonNull ByteBuf data) {
         DISK_EXECUTOR.submit(() -> {
+            long start = WRITE_TIMER.start();
             try {
                 try (FileChannel channel = FileChannel.open(TMP_FILE, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
                     while (data.isReadable()) {
@@ -109,6 +118,31 @@ public class Disk {
                 throw new UncheckedIOException(e);
             } finally {
                 ReferenceCountUtil.release(data);
+                WRITE_TIMER.stop(start);
+            }
+        });
+    }
+
+    /**
+     * Asynchronously appends data to the end of a file, creating it if it doesn't exist.
+     * <p>
+     * Appends are applied in the order in which they were submitted, along with any {@link #write(Path, ByteBuf)}s to the same file.
+     *
+     * @param file the file
+     * @param data the data
+     */
+    public void append(@NonNull Path file, @NonNull ByteBuf data) {
+        DISK_EXECUTOR.submit(() -> {
+            long start = WRITE_TIMER.start();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                while (data.isReadable()) {
+                    data.readBytes(channel, data.readableBytes());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                ReferenceCountUtil.release(data);
+                WRITE_TIMER.stop(start);
             }
         });
     }
@@ -137,6 +171,16 @@ public class Disk {
         return CACHE_ROOT.resolveSibling("config").resolve(name);
     }
 
+    /**
+     * Gets the path to the directory of the persistent data store with the given name.
+     *
+     * @param name the store's name
+     * @return the path to the store's directory
+     */
+    public Path storeDirectory(@NonNull String name) {
+        return CACHE_ROOT.resolveSibling("store").resolve(name);
+    }
+
     private void pruneCache() throws IOException {
         if (!TerraConfig.reducedConsoleMessages) {
             TerraMinusMinus.LOGGER.info("running cache cleanup...");
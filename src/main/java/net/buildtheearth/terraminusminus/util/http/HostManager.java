@@ -28,14 +28,18 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 import net.buildtheearth.terraminusminus.TerraConstants;
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
+import net.buildtheearth.terraminusminus.util.metrics.Timer;
 import net.daporkchop.lib.common.misc.string.PStrings;
 import net.daporkchop.lib.common.util.PorkUtil;
 
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 
 import static net.buildtheearth.terraminusminus.util.http.Http.*;
@@ -49,18 +53,32 @@ import static net.daporkchop.lib.common.util.PValidation.*;
 final class HostManager extends Host {
     private static final AttributeKey<Request> ATTR_REQUEST = AttributeKey.valueOf(Request.class, "terra++");
 
-    private final Deque<Request> pendingRequests = new ArrayDeque<>();
+    private static final long PRIORITY_REFRESH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250L);
+
+    private final PriorityQueue<Request> pendingRequests = new PriorityQueue<>();
     private final Bootstrap bootstrap;
 
+    private long nextSequenceNumber;
+    private long lastRefresh = System.nanoTime();
+
     private int maxConcurrentRequests = 1;
     private int activeRequests;
 
     private final Set<Channel> channels = Collections.newSetFromMap(new IdentityHashMap<>());
     private ChannelFuture channelFuture;
 
+    private final Timer queuedTimer;
+    private final Timer requestTimer;
+
     public HostManager(@NonNull Host host) {
         super(host);
 
+        //these are read from outside of the network thread, but the values are only informational so that doesn't really matter
+        Metrics.gauge("http." + this.authority + ".pending", this.pendingRequests::size);
+        Metrics.gauge("http." + this.authority + ".active", () -> this.activeRequests);
+        this.queuedTimer = Metrics.timer("http." + this.authority + ".queued");
+        this.requestTimer = Metrics.timer("http." + this.authority + ".request");
+
         this.bootstrap = DEFAULT_BOOTSTRAP.clone()
                 .handler(new Initializer(new Handler()))
                 .remoteAddress(this.host, this.port)
@@ -75,7 +93,9 @@ final class HostManager extends Host {
      */
     public void submit(@NonNull String path, @NonNull Callback callback, @NonNull HttpHeaders headers) {
         NETWORK_EVENT_LOOP.submit(() -> { //force execution on network thread
-            this.pendingRequests.add(new Request(path, callback, headers)); //add to request queue
+            Request request = new Request(path, callback, headers);
+            request.priority = callback.priority();
+            this.pendingRequests.add(request); //add to request queue
 
             this.tryWorkOffQueue();
         });
@@ -91,13 +111,54 @@ final class HostManager extends Host {
     }
 
     private void tryWorkOffQueue() {
-        for (Request request; this.activeRequests < this.maxConcurrentRequests && (request = this.pendingRequests.peek()) != null && this.trySendRequest0(request); ) {
+        this.refreshPriorities();
+
+        for (Request request; this.activeRequests < this.maxConcurrentRequests && (request = this.pendingRequests.peek()) != null; ) {
+            double priority = request.callback.priority();
+            if (!request.callback.isCancelled() && Double.compare(priority, request.priority) != 0) {
+                //the request's priority changed since it was queued, put it back at the position it belongs at now
+                checkState(this.pendingRequests.poll() == request, "unable to remove request from queue!");
+                request.priority = priority;
+                this.pendingRequests.add(request);
+                continue;
+            }
+
+            if (!this.trySendRequest0(request)) {
+                break;
+            }
             checkState(this.pendingRequests.poll() == request, "unable to remove request from queue!");
         }
     }
 
+    /**
+     * Re-sorts the whole request queue and removes any cancelled requests from it, at most once every {@link #PRIORITY_REFRESH_INTERVAL}.
+     * <p>
+     * Requests which became less urgent are already moved back when they reach the head of the queue (see {@link #tryWorkOffQueue()}), this is only
+     * needed to find requests which became more urgent and to release cancelled requests early. Doing it for every change would mean re-sorting
+     * the queue almost constantly while many requests are in flight.
+     */
+    private void refreshPriorities() {
+        long now = System.nanoTime();
+        if (now - this.lastRefresh < PRIORITY_REFRESH_INTERVAL || this.pendingRequests.isEmpty()) {
+            return;
+        }
+        this.lastRefresh = now;
+
+        List<Request> requests = new ArrayList<>(this.pendingRequests);
+        this.pendingRequests.clear();
+        for (Request request : requests) {
+            if (request.callback.isCancelled()) {
+                request.callback.handle(null, new CancellationException());
+            } else {
+                request.priority = request.callback.priority();
+                this.pendingRequests.add(request);
+            }
+        }
+    }
+
     private boolean trySendRequest0(@NonNull Request request) {
-        if (request.callback.isCancelled()) { //future is already completed (probably due to cancellation), pretend that we handled it
+        if (request.callback.isCancelled()) { //the request was cancelled, notify the callback and pretend that we handled it
+            request.callback.handle(null, new CancellationException());
             return true;
         }
 
@@ -106,6 +167,7 @@ final class HostManager extends Host {
                 channel.pipeline().addFirst("read_timeout", new ReadTimeoutHandler(TIMEOUT, TimeUnit.SECONDS));
                 channel.writeAndFlush(request.toNetty()); //send request
                 this.activeRequests++;
+                this.queuedTimer.stop(request.submitted);
                 return true;
             }
         }
@@ -149,7 +211,7 @@ final class HostManager extends Host {
                 // and the server closed it at the same time as we sent the request. let's re-submit the request
                 // so that it can be issued again on a new channel
 
-                this.pendingRequests.addFirst(request); //add to front of queue so that it doesn't have to wait through the entire queue again
+                this.pendingRequests.add(request); //the request keeps its sequence number, so it doesn't have to wait through the entire queue again
             }
 
             //working off the queue may open a new channel to replace this one if there are more pending requests
@@ -180,6 +242,7 @@ final class HostManager extends Host {
                 channel.close();
             }
 
+            this.requestTimer.stop(request.submitted);
             request.callback.handle(response, null);
         } catch (Exception e) {
             if (request != null) {
@@ -203,6 +266,13 @@ final class HostManager extends Host {
          */
         boolean isCancelled();
 
+        /**
+         * @return the priority of the request. Requests with lower values are sent first
+         */
+        default double priority() {
+            return 0.0d;
+        }
+
         /**
          * Handles the response body.
          *
@@ -214,12 +284,14 @@ final class HostManager extends Host {
 
     /**
      * A queued request.
+     * <p>
+     * Requests are ordered by priority, and then by the order in which they were submitted.
      *
      * @author DaPorkchop_
      */
     @RequiredArgsConstructor
     @ToString
-    private final class Request {
+    private final class Request implements Comparable<Request> {
         @NonNull
         protected final String path;
         @NonNull
@@ -227,6 +299,20 @@ final class HostManager extends Host {
         @NonNull
         protected final HttpHeaders headers;
 
+        protected final long sequenceNumber = HostManager.this.nextSequenceNumber++;
+        protected final long submitted = System.nanoTime();
+
+        /**
+         * The priority of the request at the time it was last (re-)inserted into the queue.
+         */
+        protected double priority;
+
+        @Override
+        public int compareTo(Request o) {
+            int d = Double.compare(this.priority, o.priority);
+            return d != 0 ? d : Long.compare(this.sequenceNumber, o.sequenceNumber);
+        }
+
         public HttpRequest toNetty() {
             DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, this.path);
             request.headers()
@@ -24,7 +24,9 @@ import io.netty.util.ReferenceCountUtil;
 import lombok.NonNull;
 import lombok.experimental.UtilityClass;
 import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.TerraExecutors;
 import net.buildtheearth.terraminusminus.TerraMinusMinus;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
 import net.daporkchop.lib.common.function.throwing.EFunction;
 import net.daporkchop.lib.common.misc.threadfactory.PThreadFactories;
 import net.daporkchop.lib.common.reference.cache.Cached;
@@ -39,9 +41,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -104,7 +108,21 @@ public class Http {
     }
 
     public void get(@NonNull String _url, @NonNull CompletableFuture<ByteBuf> future) {
+        get(_url, future, null);
+    }
+
+    /**
+     * Asynchronously gets the contents of the given resource.
+     *
+     * @param _url     the url of the resource to get
+     * @param future   the {@link CompletableFuture} to complete with the resource data, or {@code null} if the resource isn't found
+     * @param notFound if not {@code null}, called before the future is completed with {@code null} because the server responded with
+     *                 {@code 404 Not Found}. It is given the time until which that response may be reused (see {@link CacheEntry#freshUntil()})
+     */
+    public void get(@NonNull String _url, @NonNull CompletableFuture<ByteBuf> future, LongConsumer notFound) {
         class State implements BiConsumer<ByteBuf, Throwable>, HostManager.Callback {
+            final RequestTicket ticket = RequestTicket.current();
+
             URL parsed;
             Path cacheFile;
 
@@ -114,7 +132,12 @@ public class Http {
 
             @Override
             public synchronized boolean isCancelled() {
-                return future.isDone();
+                return future.isDone() || this.ticket.isCancelled();
+            }
+
+            @Override
+            public double priority() {
+                return this.ticket.priority();
             }
 
             @Override
@@ -167,6 +190,9 @@ public class Http {
             void handleCacheEntry(@NonNull CacheEntry cacheEntry, @NonNull ByteBuf cachedData) {
                 switch (cacheEntry.status) {
                     case CacheEntry.STATUS_NOT_FOUND: //404 Not Found
+                        if (notFound != null) {
+                            notFound.accept(cacheEntry.freshUntil());
+                        }
                         future.complete(null);
                         return;
                     case CacheEntry.STATUS_SUCCESS: //2xx
@@ -200,7 +226,7 @@ public class Http {
                             }
                             this.handleCacheEntry(this.cacheEntry, this.cachedData);
                         } else {
-                            if (!TerraConfig.reducedConsoleMessages) {
+                            if (!TerraConfig.reducedConsoleMessages && !RequestTicket.isCancellation(throwable)) {
                                 TerraMinusMinus.LOGGER.warn("Request failed: {}", this.parsed);
                             }
                             future.completeExceptionally(throwable);
@@ -252,6 +278,15 @@ public class Http {
             }
 
             synchronized void step(@NonNull String url) {
+                if (url.regionMatches(true, 0, TileArchive.URL_PREFIX, 0, TileArchive.URL_PREFIX.length())) { //it's a tile in an archive, look it up in the mapped file
+                    try {
+                        future.complete(TileArchive.get(url));
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                    return;
+                }
+
                 try {
                     this.parsed = new URL(url);
                 } catch (MalformedURLException e) {
@@ -277,7 +312,7 @@ public class Http {
 
                 if (TerraConfig.http.cache) { //attempt to read from cache
                     this.cacheFile = Disk.cacheFileFor(this.parsed.toString());
-                    Disk.read(this.cacheFile).whenComplete(this);
+                    Disk.read(this.cacheFile).whenCompleteAsync(this, TerraExecutors.io()); //don't block the disk thread while handling the cache entry
                 } else { //send the actual request
                     managerFor(this.parsed).submit(this.parsed.getFile(), this, this.nextHeaders);
                 }
@@ -309,14 +344,42 @@ public class Http {
      * @return the parsed response body
      */
     public static <T> CompletableFuture<T> getFirst(@NonNull String[] urls, @NonNull EFunction<ByteBuf, T> parseFunction) {
+        return getFirst(urls, parseFunction, TerraExecutors.decode());
+    }
+
+    /**
+     * Attempts to GET an array of URLs in order, returning the parsed response body of the first successful one.
+     *
+     * @param urls          the URLs
+     * @param parseFunction a function to use to parse the response body
+     * @param parseExecutor the {@link Executor} to run the parse function on
+     * @return the parsed response body
+     */
+    public static <T> CompletableFuture<T> getFirst(@NonNull String[] urls, @NonNull EFunction<ByteBuf, T> parseFunction, @NonNull Executor parseExecutor) {
+        return getFirst(urls, parseFunction, parseExecutor, null);
+    }
+
+    /**
+     * Attempts to GET an array of URLs in order, returning the parsed response body of the first successful one.
+     *
+     * @param urls          the URLs
+     * @param parseFunction a function to use to parse the response body
+     * @param parseExecutor the {@link Executor} to run the parse function on
+     * @param notFound      if not {@code null}, called before the result is completed with {@code null} because every URL responded with
+     *                      {@code 404 Not Found}. It is given the earliest time until which any of those responses may be reused
+     * @return the parsed response body
+     * @see #get(String, CompletableFuture, LongConsumer)
+     */
+    public static <T> CompletableFuture<T> getFirst(@NonNull String[] urls, @NonNull EFunction<ByteBuf, T> parseFunction, @NonNull Executor parseExecutor, LongConsumer notFound) {
         checkArg(urls.length > 0, "must provide at least one url");
 
         if (urls.length == 1) {
-            return getSingle(urls[0], parseFunction);
+            return getSingle(urls[0], parseFunction, parseExecutor, notFound);
         }
 
         class State implements BiConsumer<T, Throwable> {
             final CompletableFuture<T> future = new CompletableFuture<>();
+            final RequestTicket ticket = RequestTicket.current();
             List<Throwable> suppressed;
 
             /**
@@ -329,9 +392,18 @@ public class Http {
              */
             boolean foundMissing;
 
+            /**
+             * The earliest time until which any of the {@code 404 Not Found} responses may be reused.
+             */
+            long notFoundUntil = Long.MAX_VALUE;
+
             @Override
             public void accept(T value, Throwable cause) {
                 if (cause != null) {
+                    if (RequestTicket.isCancellation(cause)) { //the request was cancelled, there's no point in trying the remaining URLs
+                        this.future.completeExceptionally(cause);
+                        return;
+                    }
                     if (this.suppressed == null) {
                         this.suppressed = new ArrayList<>();
                     }
@@ -348,12 +420,15 @@ public class Http {
 
             protected void advance() {
                 if (++this.i < urls.length) {
-                    getSingle(urls[this.i], parseFunction).whenComplete(this);
+                    RequestTicket.supplyWith(this.ticket, () -> getSingle(urls[this.i], parseFunction, parseExecutor,
+                            notFound != null ? until -> this.notFoundUntil = Math.min(this.notFoundUntil, until) : null)).whenComplete(this);
                 } else if (this.foundMissing) { //the best result from any of the URLs was a 404
                     if (this.suppressed != null) {
                         RuntimeException e = new RuntimeException();
                         this.suppressed.forEach(e::addSuppressed);
                         TerraMinusMinus.LOGGER.error("Some URLs completed exceptionally", e);
+                    } else if (notFound != null) { //only report the tile as missing if every URL said so
+                        notFound.accept(this.notFoundUntil);
                     }
                     this.future.complete(null);
                 } else {
@@ -377,7 +452,34 @@ public class Http {
      * @return the parsed response body
      */
     public static <T> CompletableFuture<T> getSingle(@NonNull String url, @NonNull EFunction<ByteBuf, T> parseFunction) {
-        return get(url)
+        return getSingle(url, parseFunction, TerraExecutors.decode());
+    }
+
+    /**
+     * Attempts to GET a single URL.
+     *
+     * @param url           the URL
+     * @param parseFunction a function to use to parse the response body
+     * @param parseExecutor the {@link Executor} to run the parse function on
+     * @return the parsed response body
+     */
+    public static <T> CompletableFuture<T> getSingle(@NonNull String url, @NonNull EFunction<ByteBuf, T> parseFunction, @NonNull Executor parseExecutor) {
+        return getSingle(url, parseFunction, parseExecutor, null);
+    }
+
+    /**
+     * Attempts to GET a single URL.
+     *
+     * @param url           the URL
+     * @param parseFunction a function to use to parse the response body
+     * @param parseExecutor the {@link Executor} to run the parse function on
+     * @param notFound      see {@link #get(String, CompletableFuture, LongConsumer)}
+     * @return the parsed response body
+     */
+    public static <T> CompletableFuture<T> getSingle(@NonNull String url, @NonNull EFunction<ByteBuf, T> parseFunction, @NonNull Executor parseExecutor, LongConsumer notFound) {
+        CompletableFuture<ByteBuf> future = new CompletableFuture<>();
+        get(url, future, notFound);
+        return future
                 .thenCompose(buf -> buf == null
                         ? CompletableFuture.completedFuture(null)
                         : CompletableFuture.supplyAsync(() -> {
@@ -386,7 +488,7 @@ public class Http {
                     } finally {
                         buf.release();
                     }
-                }));
+                }, parseExecutor));
     }
 
     public static String formatUrl(@NonNull Map<String, String> properties, @NonNull String url) {
@@ -0,0 +1,284 @@
+package net.buildtheearth.terraminusminus.util.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hashing;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.util.MappedFile;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A single file containing a whole tree of tiles, which is memory-mapped for random access.
+ * <p>
+ * Shipping or caching millions of small files is slow to copy, slow to prune and slow to start up, so any tile tree which is served through
+ * {@link Http} (e.g. the tiles of a {@link net.buildtheearth.terraminusminus.dataset.scalar.ConfigurableDoubleTiledDataset} or the OpenStreetMap
+ * data) can instead be packed into an archive using {@link #pack(Path, Path)}, and referenced with URLs of the form
+ * {@code archive:<path to archive>!/<path in tree>}, e.g. {@code archive:/data/heights.tpa!/${x}/${z}.tiff}.
+ * <p>
+ * Archives are laid out as follows, with all values being little-endian:
+ * <ul>
+ *     <li>a header consisting of the {@link #MAGIC} number, the format {@link #VERSION} (as an {@code int}), 4 reserved bytes, the number of
+ *     entries and the offset of the tile data (as {@code long}s)</li>
+ *     <li>the directory, which consists of one entry per tile, sorted by the 64-bit fingerprint of the tile's path (see {@link #fingerprint(String)}).
+ *     Each entry consists of the fingerprint, the offset of the tile's data (as {@code long}s) and its length (as an {@code int}), so that
+ *     tiles can be found using a binary search without ever parsing the whole directory</li>
+ *     <li>the tiles' data. Tiles at adjacent {@code .../x/z.ext} positions in the same tree are stored close to each other, so that reading an
+ *     area only touches a few pages of the file. Tiles with identical contents (e.g. empty ocean tiles) are only stored once</li>
+ * </ul>
+ * Archives are opened once and never closed, so an archive must not be modified while it is in use.
+ */
+@Getter
+public final class TileArchive {
+    public static final long MAGIC = 0x4148435241505054L; //"TPPARCHA" when stored little-endian
+    public static final int VERSION = 1;
+
+    /**
+     * The prefix of URLs which refer to tiles in an archive.
+     */
+    public static final String URL_PREFIX = "archive:";
+
+    private static final int HEADER_SIZE = 32;
+    private static final int ENTRY_SIZE = 20;
+
+    private static final Map<Path, TileArchive> OPEN = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the archive at the given path, opening it if it isn't open already.
+     *
+     * @param path the path to the archive
+     * @return the archive
+     */
+    public static TileArchive open(@NonNull Path path) {
+        return OPEN.computeIfAbsent(path.toAbsolutePath().normalize(), p -> {
+            try {
+                return new TileArchive(p);
+            } catch (IOException e) {
+                throw new UncheckedIOException("unable to open tile archive: " + p, e);
+            }
+        });
+    }
+
+    /**
+     * Gets the data of the tile referenced by the given {@code archive:} URL.
+     *
+     * @param url the URL
+     * @return the tile's data, or {@code null} if the archive doesn't contain the tile
+     */
+    public static ByteBuf get(@NonNull String url) {
+        checkArg(url.regionMatches(true, 0, URL_PREFIX, 0, URL_PREFIX.length()), "not an archive URL: %s", url);
+        int separator = url.indexOf("!/");
+        checkArg(separator >= 0, "archive URL doesn't contain a path in the archive: %s", url);
+        return open(Paths.get(url.substring(URL_PREFIX.length(), separator))).getTile(url.substring(separator + 2));
+    }
+
+    /**
+     * Computes the fingerprint which tiles are identified by.
+     *
+     * @param path the tile's path in the tree, using {@code /} as the separator and without a leading {@code /}
+     * @return the fingerprint
+     */
+    public static long fingerprint(@NonNull String path) {
+        return Hashing.farmHashFingerprint64().hashString(path, StandardCharsets.UTF_8).asLong();
+    }
+
+    private final MappedFile file;
+    private final long size;
+
+    @Getter(AccessLevel.NONE)
+    private final ByteBuffer directory;
+
+    private TileArchive(@NonNull Path path) throws IOException {
+        this.file = new MappedFile(path);
+
+        checkArg(this.file.size() >= HEADER_SIZE, "not a tile archive: %s", path);
+        ByteBuffer header = this.file.slice(0L, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        checkArg(header.getLong(0) == MAGIC, "not a tile archive: %s", path);
+        checkArg(header.getInt(8) == VERSION, "unsupported tile archive version %d in %s (expected: %d)", header.getInt(8), path, VERSION);
+
+        this.size = header.getLong(16);
+        checkArg(this.size >= 0L && this.size <= Integer.MAX_VALUE / ENTRY_SIZE, "invalid entry count %d in %s", this.size, path);
+        this.directory = this.file.slice(HEADER_SIZE, (int) this.size * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Gets the data of the tile with the given path.
+     *
+     * @param path the tile's path in the tree, using {@code /} as the separator and without a leading {@code /}
+     * @return a read-only buffer backed by the tile's data in the mapped archive, or {@code null} if the archive doesn't contain the tile
+     */
+    public ByteBuf getTile(@NonNull String path) {
+        long fingerprint = fingerprint(path);
+        ByteBuffer directory = this.directory;
+
+        int low = 0;
+        int high = (int) this.size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = directory.getLong(middle * ENTRY_SIZE);
+            if (value < fingerprint) {
+                low = middle + 1;
+            } else if (value > fingerprint) {
+                high = middle - 1;
+            } else {
+                long offset = directory.getLong(middle * ENTRY_SIZE + 8);
+                int length = directory.getInt(middle * ENTRY_SIZE + 16);
+                return Unpooled.wrappedBuffer(this.file.slice(offset, length));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Packs a tree of tiles into an archive.
+     * <p>
+     * Every file in the tree is added to the archive, using its path relative to the root of the tree. The archive is written to a temporary
+     * file first, and only replaces the given file once it's complete.
+     *
+     * @param root    the root directory of the tree
+     * @param archive the archive file to create
+     * @return the number of tiles in the archive
+     */
+    public static int pack(@NonNull Path root, @NonNull Path archive) throws IOException {
+        List<Tile> tiles;
+        try (Stream<Path> stream = Files.walk(root)) {
+            tiles = stream.filter(Files::isRegularFile)
+                    .map(file -> new Tile(root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"), file))
+                    .sorted(Comparator.comparing((Tile tile) -> tile.group) //store tiles in the same tree close to each other
+                            .thenComparing(tile -> tile.position, Long::compareUnsigned)
+                            .thenComparing(tile -> tile.path))
+                    .collect(Collectors.toList());
+        }
+        checkArg(tiles.size() <= Integer.MAX_VALUE / ENTRY_SIZE, "too many tiles: %d", tiles.size());
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not supported", e);
+        }
+
+        Path tmp = archive.resolveSibling(archive.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long dataOffset = HEADER_SIZE + (long) tiles.size() * ENTRY_SIZE;
+
+            //write the tiles' data first, as the directory needs to know where they ended up
+            Map<ByteBuffer, Tile> unique = new HashMap<>();
+            long position = dataOffset;
+            for (Tile tile : tiles) {
+                byte[] data = Files.readAllBytes(tile.file);
+                tile.length = data.length;
+
+                Tile existing = unique.putIfAbsent(ByteBuffer.wrap(digest.digest(data)), tile);
+                if (existing != null) { //we already have a tile with the same contents, share its data
+                    tile.offset = existing.offset;
+                    continue;
+                }
+
+                tile.offset = position;
+                for (ByteBuffer buffer = ByteBuffer.wrap(data); buffer.hasRemaining(); ) {
+                    position += channel.write(buffer, position);
+                }
+            }
+
+            tiles.sort(Comparator.comparingLong(tile -> tile.fingerprint));
+            ByteBuffer buffer = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(MAGIC).putInt(VERSION).putInt(0).putLong(tiles.size()).putLong(dataOffset);
+            for (int i = 0; i < tiles.size(); i++) {
+                Tile tile = tiles.get(i);
+                if (i > 0 && tiles.get(i - 1).fingerprint == tile.fingerprint) {
+                    throw new IllegalStateException("fingerprint collision between " + tiles.get(i - 1).path + " and " + tile.path);
+                }
+                buffer.putLong(tile.fingerprint).putLong(tile.offset).putInt(tile.length);
+            }
+            for (buffer.flip(); buffer.hasRemaining(); ) {
+                channel.write(buffer, buffer.position());
+            }
+        }
+
+        Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING);
+        return tiles.size();
+    }
+
+    /**
+     * A tile which is being packed into an archive.
+     */
+    private static final class Tile {
+        final String path;
+        final Path file;
+        final long fingerprint;
+
+        //tiles at positions .../x/z.ext are sorted along a Z-order curve within their group, so that nearby tiles are stored close to each other
+        final String group;
+        final long position;
+
+        long offset;
+        int length;
+
+        Tile(@NonNull String path, @NonNull Path file) {
+            this.path = path;
+            this.file = file;
+            this.fingerprint = fingerprint(path);
+
+            String group = path;
+            long position = 0L;
+            int zStart = path.lastIndexOf('/') + 1;
+            int xStart = path.lastIndexOf('/', zStart - 2) + 1;
+            int zEnd = path.indexOf('.', zStart) >= 0 ? path.indexOf('.', zStart) : path.length();
+            if (zStart > 0) {
+                try {
+                    int x = Integer.parseInt(path.substring(xStart, zStart - 1));
+                    int z = Integer.parseInt(path.substring(zStart, zEnd));
+                    group = path.substring(0, xStart) + path.substring(zEnd);
+                    position = interleave(x ^ Integer.MIN_VALUE, z ^ Integer.MIN_VALUE);
+                } catch (NumberFormatException e) { //not a tile position
+                }
+            }
+            this.group = group;
+            this.position = position;
+        }
+
+        static long interleave(int x, int z) {
+            long result = 0L;
+            for (int i = 0; i < Integer.SIZE; i++) {
+                result |= ((x >>> i) & 1L) << (i << 1) | ((z >>> i) & 1L) << ((i << 1) + 1);
+            }
+            return result;
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: TileArchive <tile directory> <archive file>");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        int count = pack(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.printf("Packed %d tiles into %s in %.1fs%n", count, args[1], (System.nanoTime() - start) / 1.0e9d);
+    }
+}
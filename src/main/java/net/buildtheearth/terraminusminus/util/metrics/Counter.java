@@ -0,0 +1,56 @@
+package net.buildtheearth.terraminusminus.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A metric which counts events.
+ *
+ * @see Metrics#counter(String)
+ */
+public final class Counter implements CounterMXBean {
+    @Getter
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(@NonNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * Increments the counter by 1.
+     */
+    public void increment() {
+        if (Metrics.enabled()) {
+            this.count.increment();
+        }
+    }
+
+    /**
+     * Increments the counter by the given amount.
+     *
+     * @param amount the amount to increment by
+     */
+    public void add(long amount) {
+        if (Metrics.enabled()) {
+            this.count.add(amount);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    @Override
+    public void reset() {
+        this.count.reset();
+    }
+
+    @Override
+    public String toString() {
+        return this.name + ": " + this.getCount();
+    }
+}
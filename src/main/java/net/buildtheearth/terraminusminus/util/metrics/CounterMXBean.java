@@ -0,0 +1,16 @@
+package net.buildtheearth.terraminusminus.util.metrics;
+
+/**
+ * JMX view of a {@link Counter}.
+ */
+public interface CounterMXBean {
+    /**
+     * @return the counter's current value
+     */
+    long getCount();
+
+    /**
+     * Resets the counter to 0.
+     */
+    void reset();
+}
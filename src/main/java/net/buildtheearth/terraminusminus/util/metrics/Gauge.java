@@ -0,0 +1,32 @@
+package net.buildtheearth.terraminusminus.util.metrics;
+
+import java.util.function.LongSupplier;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A metric whose value is computed on demand, such as the size of a queue.
+ *
+ * @see Metrics#gauge(String, LongSupplier)
+ */
+public final class Gauge implements GaugeMXBean {
+    @Getter
+    private final String name;
+    private final LongSupplier value;
+
+    Gauge(@NonNull String name, @NonNull LongSupplier value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    @Override
+    public long getValue() {
+        return this.value.getAsLong();
+    }
+
+    @Override
+    public String toString() {
+        return this.name + ": " + this.getValue();
+    }
+}
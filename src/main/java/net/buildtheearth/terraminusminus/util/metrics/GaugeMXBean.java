@@ -0,0 +1,11 @@
+package net.buildtheearth.terraminusminus.util.metrics;
+
+/**
+ * JMX view of a {@link Gauge}.
+ */
+public interface GaugeMXBean {
+    /**
+     * @return the gauge's current value
+     */
+    long getValue();
+}
@@ -0,0 +1,111 @@
+package net.buildtheearth.terraminusminus.util.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.TerraMinusMinus;
+import net.daporkchop.lib.common.util.PValidation;
+import net.daporkchop.lib.common.util.PorkUtil;
+
+/**
+ * A small registry of named metrics describing the performance of the generation pipeline.
+ * <p>
+ * Metric names are dot-separated, e.g. {@code pipeline.HeightsBaker.bake}. If enabled in {@link TerraConfig#metrics}, every metric is also
+ * registered as an MXBean in the platform MBean server under the {@link #JMX_DOMAIN} domain, so it can be inspected with any JMX client
+ * (such as JConsole or VisualVM) without any additional dependencies.
+ */
+@UtilityClass
+public class Metrics {
+    public final String JMX_DOMAIN = "net.buildtheearth.terraminusminus";
+
+    private final Map<String, Object> METRICS = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return whether or not metrics are currently being recorded
+     */
+    public boolean enabled() {
+        return TerraConfig.metrics.enabled;
+    }
+
+    /**
+     * Gets the {@link Timer} with the given name, creating it if it doesn't exist.
+     *
+     * @param name the metric's name
+     * @return the {@link Timer}
+     */
+    public Timer timer(@NonNull String name) {
+        return get(name, Timer.class, () -> new Timer(name));
+    }
+
+    /**
+     * Gets the {@link Counter} with the given name, creating it if it doesn't exist.
+     *
+     * @param name the metric's name
+     * @return the {@link Counter}
+     */
+    public Counter counter(@NonNull String name) {
+        return get(name, Counter.class, () -> new Counter(name));
+    }
+
+    /**
+     * Gets the {@link Gauge} with the given name, creating it using the given function if it doesn't exist.
+     *
+     * @param name  the metric's name
+     * @param value a function which computes the gauge's value
+     * @return the {@link Gauge}
+     */
+    public Gauge gauge(@NonNull String name, @NonNull LongSupplier value) {
+        return get(name, Gauge.class, () -> new Gauge(name, value));
+    }
+
+    /**
+     * @return a read-only view of all metrics, sorted by name
+     */
+    public Map<String, Object> all() {
+        return Collections.unmodifiableMap(METRICS);
+    }
+
+    /**
+     * Gets a name for the given class which is suitable for use in metric names.
+     *
+     * @param clazz the class
+     * @return the class' simple name, or its full name if it's anonymous
+     */
+    public String nameOf(@NonNull Class<?> clazz) {
+        String name = clazz.getSimpleName();
+        return name.isEmpty() ? clazz.getName() : name;
+    }
+
+    private <M> M get(@NonNull String name, @NonNull Class<M> type, @NonNull Supplier<M> factory) {
+        Object metric = METRICS.get(name);
+        if (metric == null) {
+            metric = METRICS.computeIfAbsent(name, unused -> register(name, factory.get()));
+        }
+        PValidation.checkArg(type.isInstance(metric), "metric \"%s\" is a %s, not a %s", name, PorkUtil.className(metric), type.getSimpleName());
+        return PorkUtil.uncheckedCast(metric);
+    }
+
+    private Object register(@NonNull String name, @NonNull Object metric) {
+        if (TerraConfig.metrics.jmx) {
+            try {
+                ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + metric.getClass().getSimpleName() + ",name=" + ObjectName.quote(name));
+                if (!ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)) {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(metric, objectName);
+                }
+            } catch (JMException | RuntimeException | LinkageError e) { //JMX may not be available in every environment, but that shouldn't break anything
+                TerraMinusMinus.LOGGER.warn("Unable to register metric \"" + name + "\" with JMX", e);
+            }
+        }
+        return metric;
+    }
+}
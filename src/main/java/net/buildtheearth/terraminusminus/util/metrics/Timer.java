@@ -0,0 +1,140 @@
+package net.buildtheearth.terraminusminus.util.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A metric which records the durations of events in a histogram.
+ * <p>
+ * Durations are bucketed by powers of two, so recording an event only costs a few uncontended atomic additions.
+ *
+ * @see Metrics#timer(String)
+ */
+public final class Timer implements TimerMXBean {
+    private static final int BUCKETS = 32;
+    private static final int BUCKET_SHIFT = 10; //the first bucket is ~1µs wide
+
+    @Getter
+    private final String name;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+    Timer(@NonNull String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            this.histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return the start time of an event, to be passed to {@link #stop(long)} once the event is complete
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records an event which started at the given time and ends now.
+     *
+     * @param start the event's start time, as returned by {@link #start()}
+     */
+    public void stop(long start) {
+        if (Metrics.enabled()) {
+            this.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records an event with the given duration.
+     *
+     * @param nanos the event's duration, in nanoseconds
+     */
+    public void record(long nanos) {
+        if (!Metrics.enabled() || nanos < 0L) {
+            return;
+        }
+
+        this.count.increment();
+        this.totalNanos.add(nanos);
+        this.maxNanos.accumulate(nanos);
+        this.histogram[Math.min(Long.SIZE - Long.numberOfLeadingZeros(nanos >>> BUCKET_SHIFT), BUCKETS - 1)].increment();
+    }
+
+    @Override
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return this.totalNanos.sum() / 1000000.0d;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long count = this.count.sum();
+        return count != 0L ? this.totalNanos.sum() / 1000000.0d / count : 0.0d;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return this.maxNanos.get() / 1000000.0d;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return this.percentileMillis(0.5d);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return this.percentileMillis(0.99d);
+    }
+
+    private double percentileMillis(double percentile) {
+        long[] histogram = this.getHistogram();
+        long total = 0L;
+        for (long count : histogram) {
+            total += count;
+        }
+
+        long target = (long) Math.ceil(total * percentile);
+        for (int i = 0; i < BUCKETS; i++) {
+            if ((target -= histogram[i]) <= 0L) { //return the bucket's upper bound
+                return (1L << (i + BUCKET_SHIFT)) / 1000000.0d;
+            }
+        }
+        return this.getMaxMillis();
+    }
+
+    @Override
+    public long[] getHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = this.histogram[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public void reset() {
+        this.count.reset();
+        this.totalNanos.reset();
+        this.maxNanos.reset();
+        for (LongAdder bucket : this.histogram) {
+            bucket.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: count=%d, mean=%.3fms, p50<=%.3fms, p99<=%.3fms, max=%.3fms",
+                this.name, this.getCount(), this.getMeanMillis(), this.getP50Millis(), this.getP99Millis(), this.getMaxMillis());
+    }
+}
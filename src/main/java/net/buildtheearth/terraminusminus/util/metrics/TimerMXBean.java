@@ -0,0 +1,47 @@
+package net.buildtheearth.terraminusminus.util.metrics;
+
+/**
+ * JMX view of a {@link Timer}.
+ */
+public interface TimerMXBean {
+    /**
+     * @return the number of recorded events
+     */
+    long getCount();
+
+    /**
+     * @return the total duration of all recorded events, in milliseconds
+     */
+    double getTotalMillis();
+
+    /**
+     * @return the mean duration of the recorded events, in milliseconds
+     */
+    double getMeanMillis();
+
+    /**
+     * @return the longest duration of any recorded event, in milliseconds
+     */
+    double getMaxMillis();
+
+    /**
+     * @return an upper bound on the median duration of the recorded events, in milliseconds
+     */
+    double getP50Millis();
+
+    /**
+     * @return an upper bound on the 99th percentile of the durations of the recorded events, in milliseconds
+     */
+    double getP99Millis();
+
+    /**
+     * @return the number of recorded events in each histogram bucket. Bucket {@code i} counts the events which took less than
+     * {@code 2^i} microseconds, but not less than the upper bound of the previous bucket
+     */
+    long[] getHistogram();
+
+    /**
+     * Resets all recorded values.
+     */
+    void reset();
+}
@@ -0,0 +1,37 @@
+package net.buildtheearth.terraminusminus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TerraExecutorsTest {
+    @Test(timeout = 5000)
+    public void testContinuationsSurviveConfigChange() throws Exception {
+        Executor bake = TerraExecutors.bake();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Integer> future = CompletableFuture.supplyAsync(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return 1;
+        }, bake).thenApplyAsync(i -> i + 1, bake); //this continuation is only submitted after the pool has been replaced
+
+        started.await();
+        TerraExecutors.configChanged();
+        release.countDown();
+
+        assertEquals(2, (int) future.join());
+
+        //the same executor keeps accepting new work
+        assertEquals(3, (int) CompletableFuture.supplyAsync(() -> 3, bake).join());
+    }
+}
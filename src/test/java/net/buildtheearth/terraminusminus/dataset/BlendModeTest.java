@@ -0,0 +1,43 @@
+package net.buildtheearth.terraminusminus.dataset;
+
+import org.junit.Test;
+
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.projection.GeographicProjection;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.IntToDoubleBiFunction;
+
+import static org.junit.Assert.*;
+
+public class BlendModeTest {
+    private static final IntToDoubleBiFunction SAMPLER = (x, z) -> Math.sin(x * 0.3d) * 100.0d + Math.cos(z * 0.7d) * 40.0d - 20.0d;
+
+    private static void assertGridMatchesPointwise(CornerBoundingBox2d bounds, int sizeX, int sizeZ) {
+        for (BlendMode blend : BlendMode.values()) {
+            double[] grid = blend.sampleGrid(bounds, sizeX, sizeZ, SAMPLER, new double[sizeX * sizeZ]);
+
+            double[] point = new double[2];
+            double fx = 0.0d;
+            for (int i = 0, x = 0; x < sizeX; x++, fx += 1.0d / sizeX) {
+                double fz = 0.0d;
+                for (int z = 0; z < sizeZ; z++, fz += 1.0d / sizeZ) {
+                    point = bounds.point(point, fx, fz);
+                    assertEquals(blend.name(), blend.get(point[0], point[1], SAMPLER), grid[i++], 0.0d);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSampleGrid() throws Exception {
+        GeographicProjection projection = new EquirectangularProjection();
+        assertGridMatchesPointwise(new CornerBoundingBox2d(-3.7d, 12.2d, 5.92d, 5.92d, projection, false), 16, 16);
+        assertGridMatchesPointwise(new CornerBoundingBox2d(new double[]{ 10.1d, 10.3d }, new double[]{ 11.0d, 25.7d }, new double[]{ 27.4d, 9.2d }, new double[]{ 26.9d, 24.8d }, projection, false), 16, 16);
+    }
+
+    @Test
+    public void testSampleGridLargeBounds() throws Exception {
+        //far more raw samples than points, which are sampled individually instead
+        assertGridMatchesPointwise(new CornerBoundingBox2d(-170.5d, -80.5d, 340.0d, 160.0d, new EquirectangularProjection(), false), 4, 4);
+    }
+}
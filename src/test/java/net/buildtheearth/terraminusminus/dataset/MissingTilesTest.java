@@ -0,0 +1,112 @@
+package net.buildtheearth.terraminusminus.dataset;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.util.http.Disk;
+import net.daporkchop.lib.common.math.BinMath;
+
+import static org.junit.Assert.*;
+
+public class MissingTilesTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.DAYS.toMillis(20000L));
+    private int ttl;
+
+    @Before
+    public void saveConfig() {
+        this.ttl = TerraConfig.datasets.missingTilesTTL;
+        TerraConfig.datasets.missingTilesTTL = 60;
+    }
+
+    @After
+    public void restoreConfig() {
+        TerraConfig.datasets.missingTilesTTL = this.ttl;
+    }
+
+    /**
+     * Waits until every disk operation which has been submitted so far is done.
+     */
+    private static void sync(Path file) {
+        ByteBuf data = Disk.read(file).join();
+        if (data != null) {
+            data.release();
+        }
+    }
+
+    @Test
+    public void testPersistenceFormat() throws Exception {
+        Path file = this.folder.getRoot().toPath().resolve("missing");
+        long now = this.clock.get();
+
+        MissingTiles tiles = new MissingTiles(file, this.clock::get);
+        sync(file);
+        tiles.add(1, 2, now + 1000L);
+        tiles.add(-5, 7, now + 5000L);
+        tiles.add(1, 2, now + 500L); //doesn't shorten the existing entry, so nothing is appended
+        sync(file);
+
+        ByteBuf expected = Unpooled.buffer()
+                .writeLong(MissingTiles.MAGIC)
+                .writeLong(BinMath.packXY(1, 2)).writeLong(now + 1000L)
+                .writeLong(BinMath.packXY(-5, 7)).writeLong(now + 5000L);
+        assertArrayEquals(ByteBufUtil.getBytes(expected), Files.readAllBytes(file));
+
+        //the tiles are still known to be missing after a restart
+        MissingTiles reopened = new MissingTiles(file, this.clock::get);
+        sync(file);
+        assertTrue(reopened.contains(1, 2));
+        assertTrue(reopened.contains(-5, 7));
+        assertFalse(reopened.contains(2, 1));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        Path file = this.folder.getRoot().toPath().resolve("missing");
+        long now = this.clock.get();
+
+        MissingTiles tiles = new MissingTiles(file, this.clock::get);
+        sync(file);
+        tiles.add(0, 0, now + TimeUnit.MINUTES.toMillis(1L));
+        tiles.add(1, 0, Long.MAX_VALUE); //clamped to the configured TTL
+        tiles.add(2, 0, Long.MIN_VALUE); //responses which may not be reused aren't remembered at all
+        tiles.add(3, 0, now);
+        assertTrue(tiles.contains(0, 0));
+        assertTrue(tiles.contains(1, 0));
+        assertFalse(tiles.contains(2, 0));
+        assertFalse(tiles.contains(3, 0));
+
+        this.clock.addAndGet(TimeUnit.MINUTES.toMillis(1L));
+        assertFalse(tiles.contains(0, 0));
+        assertTrue(tiles.contains(1, 0));
+
+        this.clock.addAndGet(TimeUnit.MINUTES.toMillis(59L));
+        assertFalse(tiles.contains(1, 0));
+
+        //tiles which were found to be missing again are remembered again
+        tiles.add(0, 0, this.clock.get() + TimeUnit.MINUTES.toMillis(10L));
+        assertTrue(tiles.contains(0, 0));
+        sync(file);
+
+        //expired records are dropped when the file is read again
+        MissingTiles reopened = new MissingTiles(file, this.clock::get);
+        sync(file);
+        assertTrue(reopened.contains(0, 0));
+        assertFalse(reopened.contains(1, 0));
+        assertEquals(Long.BYTES + MissingTiles.RECORD_SIZE, Files.size(file));
+    }
+}
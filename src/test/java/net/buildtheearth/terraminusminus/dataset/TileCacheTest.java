@@ -0,0 +1,118 @@
+package net.buildtheearth.terraminusminus.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import net.buildtheearth.terraminusminus.util.metrics.Metrics;
+
+import static org.junit.Assert.*;
+
+public class TileCacheTest {
+    private static final long TILE_SIZE = TileCache.ENTRY_OVERHEAD + TileCache.sizeOf(new double[256]);
+
+    private static TileCache<Integer, double[]> cache(TileCache.Budget budget, long maxBytes) {
+        return new TileCache<>(budget, () -> maxBytes, TileCache::sizeOf, Metrics.counter("test.tilecache.evictions"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        TileCache.Budget budget = new TileCache.Budget("test.lru", () -> Long.MAX_VALUE);
+        TileCache<Integer, double[]> cache = cache(budget, TILE_SIZE * 3L);
+
+        for (int i = 0; i < 3; i++) {
+            assertNull(cache.putIfAbsent(i, CompletableFuture.completedFuture(new double[256])));
+        }
+        assertNotNull(cache.getIfPresent(0)); //0 is now the most recently used
+
+        assertNull(cache.putIfAbsent(3, CompletableFuture.completedFuture(new double[256])));
+        assertNotNull(cache.getIfPresent(0));
+        assertNull(cache.getIfPresent(1));
+        assertNotNull(cache.getIfPresent(2));
+        assertNotNull(cache.getIfPresent(3));
+        assertEquals(TILE_SIZE * 3L, cache.bytes());
+        assertEquals(TILE_SIZE * 3L, budget.bytes());
+    }
+
+    @Test
+    public void testGlobalBudgetIsShared() {
+        TileCache.Budget budget = new TileCache.Budget("test.global", () -> TILE_SIZE * 2L);
+        TileCache<Integer, double[]> first = cache(budget, Long.MAX_VALUE);
+        TileCache<Integer, double[]> second = cache(budget, Long.MAX_VALUE);
+
+        first.putIfAbsent(0, CompletableFuture.completedFuture(new double[256]));
+        second.putIfAbsent(0, CompletableFuture.completedFuture(new double[256]));
+        second.putIfAbsent(1, CompletableFuture.completedFuture(new double[256]));
+
+        assertNull(first.getIfPresent(0));
+        assertNotNull(second.getIfPresent(0));
+        assertNotNull(second.getIfPresent(1));
+        assertEquals(0L, first.bytes());
+        assertEquals(2, budget.size());
+    }
+
+    @Test
+    public void testLoadsAreShared() {
+        TileCache<Integer, double[]> cache = cache(new TileCache.Budget("test.shared", () -> Long.MAX_VALUE), Long.MAX_VALUE);
+
+        CompletableFuture<double[]> loading = new CompletableFuture<>();
+        assertNull(cache.putIfAbsent(0, loading));
+        assertSame(loading, cache.putIfAbsent(0, new CompletableFuture<>()));
+        assertEquals(0L, cache.bytes()); //not counted until loaded
+
+        loading.complete(new double[256]);
+        assertEquals(TILE_SIZE, cache.bytes());
+        assertSame(loading, cache.getIfPresent(0));
+    }
+
+    @Test
+    public void testRemovedValuesAreReleased() {
+        List<double[]> released = new ArrayList<>();
+        TileCache<Integer, double[]> cache = new TileCache<>(new TileCache.Budget("test.released", () -> Long.MAX_VALUE), () -> TILE_SIZE,
+                TileCache::sizeOf, Metrics.counter("test.tilecache.evictions"), released::add);
+
+        double[] first = new double[256];
+        cache.putIfAbsent(0, CompletableFuture.completedFuture(first));
+        cache.putIfAbsent(1, CompletableFuture.completedFuture(new double[256]));
+        assertEquals(1, released.size());
+        assertSame(first, released.get(0));
+
+        //values which are removed while still loading are released once they're loaded
+        CompletableFuture<double[]> loading = new CompletableFuture<>();
+        cache.putIfAbsent(2, loading);
+        assertTrue(cache.remove(2, loading));
+        double[] late = new double[256];
+        loading.complete(late);
+        assertEquals(2, released.size());
+        assertSame(late, released.get(1));
+    }
+
+    @Test(timeout = 5000)
+    public void testLookupsDontTakeBudgetLock() throws Exception {
+        TileCache.Budget budget = new TileCache.Budget("test.lock", () -> Long.MAX_VALUE);
+        TileCache<Integer, double[]> cache = cache(budget, Long.MAX_VALUE);
+        cache.putIfAbsent(0, CompletableFuture.completedFuture(new double[256]));
+
+        //the budget's lock is only needed to account for loaded values, lookups and new loads must not wait for it
+        synchronized (budget) {
+            assertNotNull(CompletableFuture.supplyAsync(() -> cache.getIfPresent(0)).get());
+            assertNull(CompletableFuture.supplyAsync(() -> cache.putIfAbsent(1, new CompletableFuture<>())).get());
+            assertEquals(2, CompletableFuture.supplyAsync(cache::size).get().intValue());
+        }
+    }
+
+    @Test
+    public void testCancelledLoadsAreRemoved() {
+        TileCache<Integer, double[]> cache = cache(new TileCache.Budget("test.cancelled", () -> Long.MAX_VALUE), Long.MAX_VALUE);
+
+        CompletableFuture<double[]> loading = new CompletableFuture<>();
+        cache.putIfAbsent(0, loading);
+        loading.completeExceptionally(new CancellationException());
+
+        assertNull(cache.getIfPresent(0));
+        assertEquals(0, cache.size());
+    }
+}
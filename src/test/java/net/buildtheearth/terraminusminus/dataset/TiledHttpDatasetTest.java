@@ -0,0 +1,120 @@
+package net.buildtheearth.terraminusminus.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+import static org.junit.Assert.*;
+
+public class TiledHttpDatasetTest {
+    @Test
+    public void testOnDemandRequestComesFirst() {
+        TestDataset dataset = new TestDataset(1);
+        dataset.getAsync(new ChunkPos(5, 5)).join();
+
+        assertEquals(9, dataset.requested.size());
+        assertEquals(new ChunkPos(5, 5), dataset.requested.get(0));
+    }
+
+    @Test
+    public void testRingIsPrefetchedClosestFirst() {
+        TestDataset dataset = new TestDataset(2);
+        dataset.prefetchAround(new ChunkPos(0, 0));
+
+        //every tile within the radius is prefetched once, in order of increasing distance
+        assertEquals(24, dataset.requested.size());
+        assertEquals(24, new HashSet<>(dataset.requested).size());
+        int distance = 1;
+        for (ChunkPos pos : dataset.requested) {
+            int d = Math.max(Math.abs(pos.x()), Math.abs(pos.z()));
+            assertTrue(d >= distance && d <= 2);
+            distance = d;
+        }
+    }
+
+    @Test
+    public void testDirectionIsFollowed() {
+        TestDataset dataset = new TestDataset(2);
+        dataset.prefetchAround(new ChunkPos(0, 0));
+
+        //moving by one tile only prefetches the tiles ahead, skipping the ones which are already cached
+        dataset.requested.clear();
+        dataset.prefetchAround(new ChunkPos(1, 0));
+        assertEquals(Arrays.asList(new ChunkPos(3, 0)), dataset.requested);
+
+        dataset.requested.clear();
+        dataset.prefetchAround(new ChunkPos(2, 1));
+        assertEquals(Arrays.asList(new ChunkPos(3, 2), new ChunkPos(4, 3)), dataset.requested);
+
+        //requesting the same tile again keeps the direction
+        dataset.requested.clear();
+        dataset.prefetchAround(new ChunkPos(2, 1));
+        assertTrue(dataset.requested.isEmpty());
+        dataset.prefetchAround(new ChunkPos(3, 2));
+        assertEquals(Arrays.asList(new ChunkPos(5, 4)), dataset.requested);
+
+        //jumping somewhere else goes back to prefetching the whole ring
+        dataset.requested.clear();
+        dataset.prefetchAround(new ChunkPos(10, 10));
+        assertEquals(24, dataset.requested.size());
+    }
+
+    @Test
+    public void testTilesOutsideOfBoundsAreSkipped() {
+        TestDataset dataset = new TestDataset(1);
+        dataset.addPrefetchBounds(Bounds2d.of(0.5d, 2.5d, 0.5d, 2.5d));
+        dataset.prefetchAround(new ChunkPos(0, 0));
+        assertEquals(new HashSet<>(Arrays.asList(new ChunkPos(1, 0), new ChunkPos(0, 1), new ChunkPos(1, 1))), new HashSet<>(dataset.requested));
+
+        //tiles which extend beyond the projection's valid area are skipped as well
+        dataset = new TestDataset(1);
+        dataset.prefetchAround(new ChunkPos(179, 0));
+        Set<ChunkPos> expected = new HashSet<>();
+        for (int dx = -1; dx <= 0; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                expected.add(new ChunkPos(179 + dx, dz));
+            }
+        }
+        expected.remove(new ChunkPos(179, 0));
+        assertEquals(expected, new HashSet<>(dataset.requested));
+    }
+
+    /**
+     * A dataset with one tile per degree, which records the tiles it is asked to load and doesn't have any of them.
+     */
+    private static class TestDataset extends TiledHttpDataset<double[]> {
+        final List<ChunkPos> requested = new ArrayList<>();
+        final int radius;
+
+        TestDataset(int radius) {
+            super(new EquirectangularProjection(), 1.0d);
+            this.radius = radius;
+        }
+
+        @Override
+        protected String[] urls(int tileX, int tileZ) {
+            this.requested.add(new ChunkPos(tileX, tileZ));
+            return null;
+        }
+
+        @Override
+        protected double[] decode(int tileX, int tileZ, @NonNull ByteBuf data) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected int prefetchRadius() {
+            return this.radius;
+        }
+    }
+}
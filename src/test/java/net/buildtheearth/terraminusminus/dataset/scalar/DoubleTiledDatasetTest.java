@@ -0,0 +1,94 @@
+package net.buildtheearth.terraminusminus.dataset.scalar;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.dataset.BlendMode;
+import net.buildtheearth.terraminusminus.dataset.scalar.storage.ScalarTile;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.projection.GeographicProjection;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+
+import static org.junit.Assert.*;
+
+public class DoubleTiledDatasetTest {
+    private static final int RESOLUTION = 4;
+
+    private static double expected(int x, int z) {
+        return x * 1000.0d + z;
+    }
+
+    @Test
+    public void testSamplesAcrossTiles() throws Exception {
+        GeographicProjection projection = new EquirectangularProjection();
+        DoubleTiledDataset dataset = new StubDataset(projection);
+
+        assertEquals(expected(5, -3), dataset.getAsync(5.5d, -2.5d).join(), 0.0d);
+
+        //8x8 samples starting at (-2, -2) span 3x3 tiles
+        CornerBoundingBox2d bounds = new CornerBoundingBox2d(-1.5d, -1.5d, 8.0d, 8.0d, projection, true);
+        double[] values = dataset.getAsync(bounds, 8, 8).join();
+        for (int i = 0, x = 0; x < 8; x++) {
+            for (int z = 0; z < 8; z++) {
+                assertEquals(expected(x - 2, z - 2), values[i++], 0.0d);
+            }
+        }
+    }
+
+    @Test
+    public void testMissingTilesAreNaN() throws Exception {
+        DoubleTiledDataset dataset = new StubDataset(new EquirectangularProjection()) {
+            @Override
+            public CompletableFuture<ScalarTile> load(@NonNull ChunkPos pos) {
+                return pos.x() == 0 ? CompletableFuture.completedFuture(null) : super.load(pos);
+            }
+        };
+
+        assertTrue(Double.isNaN(dataset.getAsync(1.5d, 1.5d).join()));
+        assertEquals(expected(4, 1), dataset.getAsync(4.5d, 1.5d).join(), 0.0d);
+
+        //rows which are copied in bulk are split up at the missing tile
+        CornerBoundingBox2d bounds = new CornerBoundingBox2d(-1.5d, 0.5d, 8.0d, 2.0d, new EquirectangularProjection(), true);
+        double[] values = dataset.getAsync(bounds, 8, 2).join();
+        for (int i = 0, x = 0; x < 8; x++) {
+            for (int z = 0; z < 2; z++, i++) {
+                if (x - 2 >= 0 && x - 2 < RESOLUTION) {
+                    assertTrue(Double.isNaN(values[i]));
+                } else {
+                    assertEquals(expected(x - 2, z), values[i], 0.0d);
+                }
+            }
+        }
+    }
+
+    private static class StubDataset extends DoubleTiledDataset {
+        StubDataset(GeographicProjection projection) {
+            super(projection, RESOLUTION, BlendMode.NEAR);
+        }
+
+        @Override
+        public CompletableFuture<ScalarTile> load(@NonNull ChunkPos pos) {
+            double[] values = new double[RESOLUTION * RESOLUTION];
+            for (int z = 0; z < RESOLUTION; z++) {
+                for (int x = 0; x < RESOLUTION; x++) {
+                    values[z * RESOLUTION + x] = expected(pos.x() * RESOLUTION + x, pos.z() * RESOLUTION + z);
+                }
+            }
+            return CompletableFuture.completedFuture(this.storage.store(values));
+        }
+
+        @Override
+        protected String[] urls(int tileX, int tileZ) {
+            return null;
+        }
+
+        @Override
+        protected ScalarTile decode(int tileX, int tileZ, @NonNull ByteBuf data) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
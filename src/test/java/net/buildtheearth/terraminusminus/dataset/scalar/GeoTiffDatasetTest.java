@@ -0,0 +1,339 @@
+package net.buildtheearth.terraminusminus.dataset.scalar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntBinaryOperator;
+import java.util.zip.Deflater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.buildtheearth.terraminusminus.dataset.BlendMode;
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.dataset.scalar.tiff.TiffFile;
+import net.buildtheearth.terraminusminus.dataset.scalar.tiff.TiffImage;
+
+import static org.junit.Assert.*;
+
+public class GeoTiffDatasetTest {
+    //a 10x6 image in 4x4 tiles, whose top-left corner is at (20,50) and whose pixels are 1 degree in size
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 6;
+    private static final int TILE = 4;
+
+    private static int sample(int x, int y) {
+        return x == 0 && y == 0 ? -9999 : x * 100 + y - 500;
+    }
+
+    private static int overviewSample(int x, int y) {
+        return 1000 + x * 10 + y;
+    }
+
+    private static int noisySample(int x, int y) {
+        if (x % 16 < 3) { //short runs of the same value, which produce codes for strings which are still being added to the table
+            return 123;
+        }
+        int hash = x * 0x9E3779B9 ^ y * 0x85EBCA6B;
+        hash ^= hash >>> 15;
+        hash *= 0x2C1B3C6D;
+        hash ^= hash >>> 12;
+        return hash & 0x3FF;
+    }
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUncompressed() throws Exception {
+        this.checkTiles(new Image(WIDTH, HEIGHT, 32, TiffImage.SAMPLE_FORMAT_FLOATING_POINT, TiffImage.COMPRESSION_NONE, TiffImage.PREDICTOR_NONE), ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void testLzwWithHorizontalPredictor() throws Exception {
+        this.checkTiles(new Image(WIDTH, HEIGHT, 16, TiffImage.SAMPLE_FORMAT_SIGNED, TiffImage.COMPRESSION_LZW, TiffImage.PREDICTOR_HORIZONTAL), ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test
+    public void testLzwWithFullTable() throws Exception {
+        //a single large tile of noisy data needs thousands of codes, so the code size grows from 9 bits all the way to 12 and the table fills up
+        Image image = new Image(128, 128, 16, TiffImage.SAMPLE_FORMAT_SIGNED, TiffImage.COMPRESSION_LZW, TiffImage.PREDICTOR_NONE);
+        image.tile = 128;
+        image.values = GeoTiffDatasetTest::noisySample;
+        byte[] compressed = image.encodeTile(0, 0, ByteOrder.BIG_ENDIAN);
+        assertTrue("not enough codes to fill the table", compressed.length * 8 / 12 > 4096 - 258);
+
+        TiffImage tiff = new TiffFile(this.write(ByteOrder.BIG_ENDIAN, image).toPath()).images().get(0);
+        tiff.checkSupported();
+        double[] values = tiff.readTile(0, 0);
+        for (int y = 0; y < image.tile; y++) {
+            for (int x = 0; x < image.tile; x++) {
+                assertEquals(noisySample(x, y), values[y * image.tile + x], 0.0d);
+            }
+        }
+    }
+
+    @Test
+    public void testDeflateWithFloatingPointPredictor() throws Exception {
+        this.checkTiles(new Image(WIDTH, HEIGHT, 32, TiffImage.SAMPLE_FORMAT_FLOATING_POINT, TiffImage.COMPRESSION_DEFLATE, TiffImage.PREDICTOR_FLOATING_POINT), ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void checkTiles(Image image, ByteOrder order) throws Exception {
+        TiffImage tiff = new TiffFile(this.write(order, image).toPath()).images().get(0);
+        tiff.checkSupported();
+        assertEquals(3, tiff.tilesAcross());
+        assertEquals(2, tiff.tilesDown());
+
+        for (int tileY = 0; tileY < 2; tileY++) {
+            for (int tileX = 0; tileX < 3; tileX++) {
+                double[] values = tiff.readTile(tileX, tileY);
+                for (int y = 0; y < TILE; y++) {
+                    for (int x = 0; x < TILE; x++) {
+                        int px = tileX * TILE + x;
+                        int py = tileY * TILE + y;
+                        double value = values[y * TILE + x];
+                        if (px >= WIDTH || py >= HEIGHT || (px == 0 && py == 0)) { //padding or nodata
+                            assertTrue(Double.isNaN(value));
+                        } else {
+                            assertEquals(sample(px, py), value, 0.0d);
+                        }
+                    }
+                }
+            }
+        }
+        assertNull(tiff.readTile(3, 0));
+    }
+
+    @Test
+    public void testDatasetUsesOverviews() throws Exception {
+        Image full = new Image(WIDTH, HEIGHT, 32, TiffImage.SAMPLE_FORMAT_FLOATING_POINT, TiffImage.COMPRESSION_DEFLATE, TiffImage.PREDICTOR_NONE);
+        Image overview = new Image(WIDTH / 2, HEIGHT / 2, 32, TiffImage.SAMPLE_FORMAT_FLOATING_POINT, TiffImage.COMPRESSION_DEFLATE, TiffImage.PREDICTOR_NONE);
+        overview.overview = true;
+        overview.values = GeoTiffDatasetTest::overviewSample;
+
+        GeoTiffDataset dataset = new GeoTiffDataset(this.write(ByteOrder.LITTLE_ENDIAN, full, overview).getPath(), BlendMode.NEAR, null, null);
+        assertEquals(sample(3, 2), dataset.getAsync(23.5d, 47.5d).join(), 0.0d);
+        assertTrue(Double.isNaN(dataset.getAsync(20.5d, 49.5d).join())); //nodata
+        assertTrue(Double.isNaN(dataset.getAsync(35.5d, 47.5d).join())); //outside of the image
+
+        //each pixel is roughly 100km in size, so the full resolution image is used until the samples are even larger than the overview's pixels
+        assertSame(dataset, dataset.atZoom(0));
+        assertSame(dataset, dataset.atZoom(17));
+        IScalarDataset zoomed = dataset.atZoom(18);
+        assertNotSame(dataset, zoomed);
+        assertEquals(overviewSample(1, 1), zoomed.getAsync(23.5d, 47.5d).join(), 0.0d);
+    }
+
+    private File write(ByteOrder order, Image... images) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(order);
+        buffer.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M')).put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'))
+                .putShort((short) 42).putInt(0);
+
+        int nextPointer = 4;
+        for (Image image : images) {
+            int tilesAcross = (image.width + image.tile - 1) / image.tile;
+            int tilesDown = (image.height + image.tile - 1) / image.tile;
+            int[] offsets = new int[tilesAcross * tilesDown];
+            int[] lengths = new int[tilesAcross * tilesDown];
+            for (int tileY = 0, tile = 0; tileY < tilesDown; tileY++) {
+                for (int tileX = 0; tileX < tilesAcross; tileX++, tile++) {
+                    byte[] data = image.encodeTile(tileX, tileY, order);
+                    offsets[tile] = buffer.position();
+                    lengths[tile] = data.length;
+                    buffer.put(data);
+                }
+            }
+
+            Map<Integer, int[]> fields = new TreeMap<>(); //tag -> {type, count, value or offset}
+            fields.put(254, new int[]{ 4, 1, image.overview ? 1 : 0 });
+            fields.put(256, new int[]{ 4, 1, image.width });
+            fields.put(257, new int[]{ 4, 1, image.height });
+            fields.put(258, new int[]{ 3, 1, image.bits });
+            fields.put(259, new int[]{ 3, 1, image.compression });
+            fields.put(262, new int[]{ 3, 1, 1 });
+            fields.put(277, new int[]{ 3, 1, 1 });
+            fields.put(317, new int[]{ 3, 1, image.predictor });
+            fields.put(322, new int[]{ 3, 1, image.tile });
+            fields.put(323, new int[]{ 3, 1, image.tile });
+            fields.put(324, new int[]{ 4, offsets.length, this.putInts(buffer, offsets) });
+            fields.put(325, new int[]{ 4, lengths.length, this.putInts(buffer, lengths) });
+            fields.put(339, new int[]{ 3, 1, image.format });
+            if (!image.overview) {
+                fields.put(33550, new int[]{ 12, 3, this.putDoubles(buffer, 1.0d, 1.0d, 0.0d) });
+                fields.put(33922, new int[]{ 12, 6, this.putDoubles(buffer, 0.0d, 0.0d, 0.0d, 20.0d, 50.0d, 0.0d) });
+                byte[] noData = "-9999\0".getBytes(StandardCharsets.US_ASCII);
+                fields.put(42113, new int[]{ 2, noData.length, buffer.position() });
+                buffer.put(noData);
+            }
+
+            buffer.putInt(nextPointer, buffer.position());
+            buffer.putShort((short) fields.size());
+            fields.forEach((tag, field) -> {
+                buffer.putShort(tag.shortValue()).putShort((short) field[0]).putInt(field[1]);
+                if (field[0] == 3 && field[1] == 1) { //inline short, padded to 4 bytes
+                    buffer.putShort((short) field[2]).putShort((short) 0);
+                } else {
+                    buffer.putInt(field[2]);
+                }
+            });
+            nextPointer = buffer.position();
+            buffer.putInt(0);
+        }
+
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), Arrays.copyOf(buffer.array(), buffer.position()));
+        return file;
+    }
+
+    private int putInts(ByteBuffer buffer, int... values) {
+        int offset = buffer.position();
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return offset;
+    }
+
+    private int putDoubles(ByteBuffer buffer, double... values) {
+        int offset = buffer.position();
+        for (double value : values) {
+            buffer.putDouble(value);
+        }
+        return offset;
+    }
+
+    private static class Image {
+        final int width;
+        final int height;
+        final int bits;
+        final int format;
+        final int compression;
+        final int predictor;
+
+        boolean overview;
+        int tile = TILE;
+        IntBinaryOperator values = GeoTiffDatasetTest::sample;
+
+        Image(int width, int height, int bits, int format, int compression, int predictor) {
+            this.width = width;
+            this.height = height;
+            this.bits = bits;
+            this.format = format;
+            this.compression = compression;
+            this.predictor = predictor;
+        }
+
+        byte[] encodeTile(int tileX, int tileY, ByteOrder order) {
+            int bytesPerSample = this.bits >> 3;
+            ByteBuffer raw = ByteBuffer.allocate(this.tile * this.tile * bytesPerSample).order(order);
+            for (int y = 0; y < this.tile; y++) {
+                int previous = 0;
+                for (int x = 0; x < this.tile; x++) {
+                    int px = tileX * this.tile + x;
+                    int py = tileY * this.tile + y;
+                    int value = px < this.width && py < this.height ? this.values.applyAsInt(px, py) : 0;
+                    if (this.format == TiffImage.SAMPLE_FORMAT_FLOATING_POINT) {
+                        raw.putFloat(value);
+                    } else if (this.predictor == TiffImage.PREDICTOR_HORIZONTAL) {
+                        raw.putShort((short) (value - previous));
+                        previous = value;
+                    } else {
+                        raw.putShort((short) value);
+                    }
+                }
+            }
+
+            byte[] data = raw.array();
+            if (this.predictor == TiffImage.PREDICTOR_FLOATING_POINT) { //split the samples' bytes by significance, then difference them
+                byte[] split = new byte[data.length];
+                for (int y = 0; y < this.tile; y++) {
+                    int base = y * this.tile * bytesPerSample;
+                    for (int x = 0; x < this.tile; x++) {
+                        for (int b = 0; b < bytesPerSample; b++) {
+                            int index = base + x * bytesPerSample + (order == ByteOrder.LITTLE_ENDIAN ? bytesPerSample - 1 - b : b);
+                            split[base + b * this.tile + x] = data[index];
+                        }
+                    }
+                    for (int i = this.tile * bytesPerSample - 1; i > 0; i--) {
+                        split[base + i] -= split[base + i - 1];
+                    }
+                }
+                data = split;
+            }
+
+            switch (this.compression) {
+                case TiffImage.COMPRESSION_LZW:
+                    return lzw(data);
+                case TiffImage.COMPRESSION_DEFLATE: {
+                    Deflater deflater = new Deflater();
+                    deflater.setInput(data);
+                    deflater.finish();
+                    byte[] compressed = new byte[data.length * 2 + 64];
+                    int length = deflater.deflate(compressed);
+                    deflater.end();
+                    return Arrays.copyOf(compressed, length);
+                }
+                default:
+                    return data;
+            }
+        }
+
+        static byte[] lzw(byte[] data) {
+            BitWriter out = new BitWriter();
+            Map<Integer, Integer> table = new HashMap<>();
+            int next = 258;
+            int codeBits = 9;
+
+            out.write(256, codeBits);
+            int current = data[0] & 0xFF;
+            for (int i = 1; i <= data.length; i++) {
+                if (i < data.length) {
+                    Integer code = table.get(current << 8 | (data[i] & 0xFF));
+                    if (code != null) {
+                        current = code;
+                        continue;
+                    }
+                    if (next < 4096) { //once the table is full, the remaining data is encoded with the existing strings
+                        table.put(current << 8 | (data[i] & 0xFF), next);
+                    }
+                }
+
+                //the decoder adds an entry for the last code as well, so the code size has to be updated after it too
+                out.write(current, codeBits);
+                if (++next >= 1 << codeBits && codeBits < 12) {
+                    codeBits++;
+                }
+                current = i < data.length ? data[i] & 0xFF : -1;
+            }
+            out.write(257, codeBits);
+            return out.finish();
+        }
+    }
+
+    private static class BitWriter {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long buffer;
+        int bits;
+
+        void write(int code, int width) {
+            this.buffer = this.buffer << width | code;
+            for (this.bits += width; this.bits >= 8; this.bits -= 8) {
+                this.out.write((int) (this.buffer >>> (this.bits - 8)));
+            }
+        }
+
+        byte[] finish() {
+            if (this.bits > 0) {
+                this.out.write((int) (this.buffer << (8 - this.bits)));
+            }
+            return this.out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package net.buildtheearth.terraminusminus.dataset.scalar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.IntRange;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+import static org.junit.Assert.*;
+
+public class MultiScalarDatasetTest {
+    private static final Bounds2d WORLD = Bounds2d.of(-180.0d, 180.0d, -90.0d, 90.0d);
+    private static final double NaN = Double.NaN;
+
+    private int speculativeFetches;
+
+    @Before
+    public void saveConfig() {
+        this.speculativeFetches = TerraConfig.datasets.speculativeFetches;
+    }
+
+    @After
+    public void restoreConfig() {
+        TerraConfig.datasets.speculativeFetches = this.speculativeFetches;
+    }
+
+    private static MultiScalarDataset.WrappedDataset wrap(IScalarDataset dataset, Bounds2d bounds, int minZoom, int maxZoom, double priority) {
+        return new MultiScalarDataset.WrappedDataset(dataset, new Bounds2d[]{ bounds }, new IntRange(minZoom, maxZoom), priority, null);
+    }
+
+    private static CompletableFuture<double[]> query(IScalarDataset dataset, RequestTicket ticket) throws OutOfProjectionBoundsException {
+        CornerBoundingBox2d bounds = new CornerBoundingBox2d(10.2d, 20.2d, 0.1d, 0.1d, new EquirectangularProjection(), true);
+        RequestTicket previous = RequestTicket.swap(ticket);
+        try {
+            return dataset.getAsync(bounds, 2, 2);
+        } finally {
+            RequestTicket.swap(previous);
+        }
+    }
+
+    @Test
+    public void testMergesInPriorityOrder() throws Exception {
+        TerraConfig.datasets.speculativeFetches = 3;
+        ManualDataset a = new ManualDataset();
+        ManualDataset b = new ManualDataset();
+        ManualDataset c = new ManualDataset();
+        MultiScalarDataset dataset = new MultiScalarDataset(wrap(c, WORLD, 0, 0, 1.0d), wrap(a, WORLD, 0, 0, 3.0d), wrap(b, WORLD, 0, 0, 2.0d));
+
+        RequestTicket ticket = new RequestTicket.Mutable(0.0d);
+        CompletableFuture<double[]> future = query(dataset, ticket);
+        assertEquals(1, a.requests.size());
+        assertEquals(1, b.requests.size());
+        assertEquals(1, c.requests.size());
+
+        //the lower priority datasets complete first, but can't be merged before the higher priority ones
+        c.requests.get(0).complete(new double[]{ 3.0d, 3.0d, 3.0d, NaN });
+        b.requests.get(0).complete(new double[]{ 2.0d, 2.0d, NaN, NaN });
+        assertFalse(future.isDone());
+
+        a.requests.get(0).complete(new double[]{ NaN, 1.0d, NaN, NaN });
+        assertArrayEquals(new double[]{ 2.0d, 1.0d, 3.0d, NaN }, future.join(), 0.0d);
+        assertFalse(ticket.isCancelled());
+    }
+
+    @Test
+    public void testSpeculativeRequestsAreCancelled() throws Exception {
+        TerraConfig.datasets.speculativeFetches = 3;
+        ManualDataset a = new ManualDataset();
+        ManualDataset b = new ManualDataset();
+        ManualDataset c = new ManualDataset();
+        MultiScalarDataset dataset = new MultiScalarDataset(wrap(a, WORLD, 0, 0, 3.0d), wrap(b, WORLD, 0, 0, 2.0d), wrap(c, WORLD, 0, 0, 1.0d));
+
+        RequestTicket ticket = new RequestTicket.Mutable(0.0d);
+        CompletableFuture<double[]> future = query(dataset, ticket);
+        assertFalse(b.tickets.get(0).isCancelled());
+
+        //the highest priority dataset fills every sample, so the others aren't needed anymore
+        a.requests.get(0).complete(new double[]{ 1.0d, 1.0d, 1.0d, 1.0d });
+        assertArrayEquals(new double[]{ 1.0d, 1.0d, 1.0d, 1.0d }, future.join(), 0.0d);
+        assertTrue(b.tickets.get(0).isCancelled());
+        assertTrue(c.tickets.get(0).isCancelled());
+        assertFalse(ticket.isCancelled());
+
+        //results which arrive late are ignored
+        b.requests.get(0).complete(new double[]{ 2.0d, 2.0d, 2.0d, 2.0d });
+        assertArrayEquals(new double[]{ 1.0d, 1.0d, 1.0d, 1.0d }, future.join(), 0.0d);
+    }
+
+    @Test
+    public void testErrorsArePropagated() throws Exception {
+        TerraConfig.datasets.speculativeFetches = 3;
+        ManualDataset a = new ManualDataset();
+        ManualDataset b = new ManualDataset();
+        ManualDataset c = new ManualDataset();
+        MultiScalarDataset dataset = new MultiScalarDataset(wrap(a, WORLD, 0, 0, 3.0d), wrap(b, WORLD, 0, 0, 2.0d), wrap(c, WORLD, 0, 0, 1.0d));
+
+        CompletableFuture<double[]> future = query(dataset, new RequestTicket.Mutable(0.0d));
+
+        //the error is only reported once every higher priority dataset has been merged
+        IllegalStateException error = new IllegalStateException("test");
+        b.requests.get(0).completeExceptionally(error);
+        assertFalse(future.isDone());
+
+        a.requests.get(0).complete(new double[]{ 1.0d, NaN, NaN, NaN });
+        try {
+            future.join();
+            fail();
+        } catch (CompletionException e) {
+            assertSame(error, e.getCause());
+        }
+        assertTrue(c.tickets.get(0).isCancelled());
+    }
+
+    @Test
+    public void testSingleFetchIsSequential() throws Exception {
+        TerraConfig.datasets.speculativeFetches = 1;
+        ManualDataset a = new ManualDataset();
+        ManualDataset b = new ManualDataset();
+        ManualDataset c = new ManualDataset();
+        MultiScalarDataset dataset = new MultiScalarDataset(wrap(a, WORLD, 0, 0, 3.0d), wrap(b, WORLD, 0, 0, 2.0d), wrap(c, WORLD, 0, 0, 1.0d));
+
+        RequestTicket ticket = new RequestTicket.Mutable(0.0d);
+        CompletableFuture<double[]> future = query(dataset, ticket);
+
+        //each dataset is only requested once the previous one has left some samples empty, using the request's own ticket
+        assertEquals(1, a.requests.size());
+        assertSame(ticket, a.tickets.get(0));
+        assertTrue(b.requests.isEmpty());
+        assertTrue(c.requests.isEmpty());
+
+        a.requests.get(0).complete(new double[]{ 1.0d, NaN, NaN, NaN });
+        assertEquals(1, b.requests.size());
+        assertSame(ticket, b.tickets.get(0));
+        assertTrue(c.requests.isEmpty());
+
+        b.requests.get(0).complete(new double[]{ 2.0d, 2.0d, 2.0d, 2.0d });
+        assertArrayEquals(new double[]{ 1.0d, 2.0d, 2.0d, 2.0d }, future.join(), 0.0d);
+        assertTrue(c.requests.isEmpty());
+        assertFalse(ticket.isCancelled());
+    }
+
+    @Test
+    public void testZoomLevels() throws Exception {
+        ManualDataset full = new ManualDataset();
+        ManualDataset coarse = new ManualDataset();
+        MultiScalarDataset dataset = new MultiScalarDataset(wrap(full, WORLD, 0, 0, 1.0d), wrap(coarse, WORLD, 1, 2, 2.0d));
+
+        //regular queries don't use the coarse dataset, even though it has a higher priority
+        query(dataset, RequestTicket.UNTRACKED);
+        assertEquals(1, full.requests.size());
+        assertTrue(coarse.requests.isEmpty());
+
+        query(dataset.atZoom(1), RequestTicket.UNTRACKED);
+        assertEquals(1, full.requests.size());
+        assertEquals(1, coarse.requests.size());
+
+        //zoom levels above the highest one use the coarsest datasets
+        query(dataset.atZoom(5), RequestTicket.UNTRACKED);
+        assertEquals(1, full.requests.size());
+        assertEquals(2, coarse.requests.size());
+    }
+
+    @Test
+    public void testSingleDatasetCellsSkipMerging() throws Exception {
+        TerraConfig.datasets.speculativeFetches = 3;
+        ManualDataset a = new ManualDataset();
+        ManualDataset b = new ManualDataset();
+        MultiScalarDataset dataset = new MultiScalarDataset(wrap(a, Bounds2d.of(0.0d, 30.0d, 0.0d, 30.0d), 0, 0, 1.0d),
+                wrap(b, Bounds2d.of(40.0d, 50.0d, 0.0d, 30.0d), 0, 0, 2.0d));
+
+        //the queried cells are only covered by a, so it's sampled directly, even if the query spans multiple cells
+        CompletableFuture<double[]> future = query(dataset, RequestTicket.UNTRACKED);
+        assertSame(a.requests.get(0), future);
+        future = dataset.getAsync(new CornerBoundingBox2d(10.5d, 20.5d, 1.0d, 1.0d, new EquirectangularProjection(), true), 2, 2);
+        assertSame(a.requests.get(1), future);
+        assertTrue(b.requests.isEmpty());
+
+        //once another dataset overlaps the queried cell, the datasets are merged again
+        ManualDataset c = new ManualDataset();
+        dataset = new MultiScalarDataset(wrap(a, Bounds2d.of(0.0d, 30.0d, 0.0d, 30.0d), 0, 0, 1.0d),
+                wrap(c, Bounds2d.of(10.0d, 11.0d, 20.0d, 21.0d), 0, 0, 2.0d));
+        future = query(dataset, RequestTicket.UNTRACKED);
+        assertEquals(3, a.requests.size());
+        assertEquals(1, c.requests.size());
+        assertNotSame(a.requests.get(2), future);
+    }
+
+    @Test
+    public void testSelectMatchesBvh() {
+        Random random = new Random(12345L);
+        List<MultiScalarDataset.WrappedDataset> wrapped = new ArrayList<>();
+        wrapped.add(wrap(new ManualDataset(), WORLD, 0, 0, -1.0d));
+        wrapped.add(wrap(new ManualDataset(), Bounds2d.of(-200.0d, 200.0d, -100.0d, 100.0d), 0, 0, -2.0d));
+        for (int i = 0; i < 300; i++) {
+            //snap most edges to whole or half degrees, so that many of them lie exactly on cell edges
+            double minX = coordinate(random, 190.0d);
+            double minZ = coordinate(random, 95.0d);
+            double maxX = minX + Math.abs(coordinate(random, 8.0d));
+            double maxZ = minZ + Math.abs(coordinate(random, 8.0d));
+            wrapped.add(wrap(new ManualDataset(), Bounds2d.of(minX, maxX, minZ, maxZ), 0, 0, i));
+        }
+        MultiScalarDataset dataset = new MultiScalarDataset(wrapped.toArray(new MultiScalarDataset.WrappedDataset[0]));
+
+        List<Bounds2d> queries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            double x = coordinate(random, 185.0d);
+            double z = coordinate(random, 93.0d);
+            queries.add(Bounds2d.of(x, x, z, z)); //points, often on cell edges
+            queries.add(Bounds2d.of(x, x + random.nextDouble() * 0.01d, z, z + random.nextDouble() * 0.01d)); //small queries
+            queries.add(Bounds2d.of(x, x + random.nextDouble() * 3.0d, z, z + random.nextDouble() * 3.0d)); //queries spanning multiple cells
+        }
+        queries.add(Bounds2d.of(180.0d, 180.0d, 90.0d, 90.0d));
+        queries.add(Bounds2d.of(-180.0d, -180.0d, -90.0d, -90.0d));
+        queries.add(Bounds2d.of(-181.0d, -180.5d, 0.0d, 0.5d));
+        queries.add(Bounds2d.of(0.0d, 0.5d, 90.5d, 91.0d));
+        queries.add(Bounds2d.of(179.5d, 180.5d, 10.0d, 10.5d));
+
+        for (Bounds2d query : queries) {
+            MultiScalarDataset.WrappedDataset[] expected = dataset.bvh.getAllIntersecting(query).toArray(new MultiScalarDataset.WrappedDataset[0]);
+            Arrays.sort(expected);
+            assertArrayEquals(query.toString(), expected, dataset.select(query));
+        }
+    }
+
+    private static double coordinate(Random random, double range) {
+        double value = (random.nextDouble() * 2.0d - 1.0d) * range;
+        switch (random.nextInt(3)) {
+            case 0:
+                return Math.floor(value);
+            case 1:
+                return Math.floor(value * 2.0d) * 0.5d;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * A dataset whose requests are completed manually.
+     */
+    private static class ManualDataset implements IScalarDataset {
+        final List<CompletableFuture<double[]>> requests = new ArrayList<>();
+        final List<RequestTicket> tickets = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<Double> getAsync(double lon, double lat) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) {
+            CompletableFuture<double[]> future = new CompletableFuture<>();
+            this.requests.add(future);
+            this.tickets.add(RequestTicket.current());
+            return future;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.buildtheearth.terraminusminus.dataset.scalar.storage;
+
+import org.junit.Test;
+
+import net.buildtheearth.terraminusminus.TerraConstants;
+
+import static org.junit.Assert.*;
+
+public class TileStorageTest {
+    private static final double[] VALUES = { 0.0d, 1.0d, -1.0d, Double.NaN, 8848.00390625d, -10994.5d, 0.37d };
+
+    @Test
+    public void testDouble() {
+        ScalarTile tile = new DoubleTileStorage().store(VALUES.clone());
+        for (int i = 0; i < VALUES.length; i++) {
+            assertEquals(VALUES[i], tile.get(i), 0.0d);
+        }
+    }
+
+    @Test
+    public void testFloat() {
+        ScalarTile tile = new FloatTileStorage().store(VALUES.clone());
+        for (int i = 0; i < VALUES.length; i++) {
+            assertEquals(VALUES[i], tile.get(i), 1.0e-6d);
+        }
+        assertTrue(tile.sizeInBytes() < new DoubleTileStorage().store(VALUES.clone()).sizeInBytes());
+    }
+
+    @Test
+    public void testShort() {
+        ScalarTile tile = new ShortTileStorage(0.5d, 0.0d).store(VALUES.clone());
+        for (int i = 0; i < VALUES.length; i++) {
+            assertEquals(VALUES[i], tile.get(i), 0.25d);
+        }
+
+        //values outside of the representable range are clamped
+        tile = new ShortTileStorage(0.01d, 0.0d).store(new double[]{ 1000.0d, -1000.0d });
+        assertEquals(327.67d, tile.get(0), 1.0e-9d);
+        assertEquals(-327.67d, tile.get(1), 1.0e-9d);
+    }
+
+    @Test
+    public void testOffHeap() {
+        ScalarTile tile = new OffHeapTileStorage().store(VALUES.clone());
+        for (int i = 0; i < VALUES.length; i++) {
+            assertEquals(VALUES[i], tile.get(i), 1.0e-6d);
+        }
+        assertEquals(VALUES.length * (long) Float.BYTES, tile.sizeInBytes());
+
+        //the tile stays readable as long as anyone still holds a reference to it
+        assertTrue(tile.retain());
+        tile.release();
+        assertEquals(1.0d, tile.get(1), 0.0d);
+
+        tile.release();
+        assertFalse(tile.retain());
+
+        //the freed buffer may be reused by a new tile, which mustn't make the old tile retainable again
+        ScalarTile other = new OffHeapTileStorage().store(VALUES.clone());
+        assertFalse(tile.retain());
+        assertTrue(other.retain());
+        other.release();
+        other.release();
+        assertFalse(other.retain());
+
+        try {
+            other.release();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testGetRow() {
+        for (TileStorage storage : new TileStorage[]{ new DoubleTileStorage(), new FloatTileStorage(), new ShortTileStorage(0.5d, 0.0d), new OffHeapTileStorage() }) {
+            ScalarTile tile = storage.store(VALUES.clone());
+            double[] row = new double[VALUES.length + 1];
+            tile.get(2, row, 1, VALUES.length - 2);
+            for (int i = 2; i < VALUES.length; i++) {
+                assertEquals(tile.get(i), row[i - 1], 0.0d);
+            }
+            tile.release();
+        }
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        assertTrue(TerraConstants.JSON_MAPPER.readValue("{\"float\":{}}", TileStorage.class) instanceof FloatTileStorage);
+
+        TileStorage storage = TerraConstants.JSON_MAPPER.readValue("{\"short\":{\"scale\":0.25,\"offset\":-100}}", TileStorage.class);
+        assertTrue(storage instanceof ShortTileStorage);
+        assertEquals(0.25d, ((ShortTileStorage) storage).scale(), 0.0d);
+        assertEquals(-100.0d, ((ShortTileStorage) storage).offset(), 0.0d);
+    }
+}
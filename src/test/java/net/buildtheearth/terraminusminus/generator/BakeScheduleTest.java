@@ -0,0 +1,39 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import org.junit.Test;
+
+import net.buildtheearth.terraminusminus.generator.data.HeightsBaker;
+import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
+import net.buildtheearth.terraminusminus.generator.data.NullIslandBaker;
+import net.buildtheearth.terraminusminus.generator.data.OSMBaker;
+import net.buildtheearth.terraminusminus.generator.data.TreeCoverBaker;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+
+import static org.junit.Assert.*;
+
+public class BakeScheduleTest {
+    private final IEarthDataBaker<?>[] bakers = {
+            new TreeCoverBaker(),
+            new HeightsBaker(),
+            new OSMBaker(),
+            new NullIslandBaker()
+    };
+
+    @Test
+    public void testDependencies() {
+        long[] dependencies = BakeSchedule.dependencies(this.bakers);
+        assertNotNull(dependencies);
+        assertEquals(0b000L, dependencies[0]); //tree cover
+        assertEquals(0b000L, dependencies[1]); //heights don't touch the tree cover, so they can be baked concurrently
+        assertEquals(0b011L, dependencies[2]); //osm modifies both the tree cover and the water depth
+        assertEquals(0b111L, dependencies[3]); //null island overwrites everything
+    }
+
+    @Test
+    public void testSkipped() {
+        assertEquals(0b0111L, BakeSchedule.skipped(new ChunkPos(0, 0), this.bakers));
+        assertEquals(0b0111L, BakeSchedule.skipped(new ChunkPos(-3, 2), this.bakers));
+        assertEquals(0b0000L, BakeSchedule.skipped(new ChunkPos(3, 0), this.bakers));
+        assertEquals(0b0000L, BakeSchedule.skipped(new ChunkPos(1000, -1000), this.bakers));
+    }
+}
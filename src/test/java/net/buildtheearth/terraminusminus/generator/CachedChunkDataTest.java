@@ -0,0 +1,130 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.substitutes.MetaBiome;
+import net.buildtheearth.terraminusminus.util.AttributeKey;
+
+import static org.junit.Assert.*;
+
+public class CachedChunkDataTest {
+
+    @BeforeClass
+    public static void setupBiomes() {
+        if (BiomesRegistry.get() == null) {
+            BiomesRegistry.setDefaultBiomesRegistry(new BiomesRegistry() {
+            });
+        }
+    }
+
+    @Test
+    public void testAccessors() {
+        CachedChunkData.Builder builder = CachedChunkData.builder();
+        Arrays.fill(builder.biomes(), null);
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                builder.surfaceHeight(x, z, x * 37 - z * 11 - 64);
+                builder.biomes()[z * 16 + x] = (x + z) % 3 == 0 ? MetaBiome.PLAINS : MetaBiome.FOREST;
+            }
+        }
+        CachedChunkData data = builder.build();
+
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                assertEquals(x * 37 - z * 11 - 64, data.surfaceHeight(x, z));
+                assertEquals(x * 37 - z * 11 - 64, data.groundHeight(x, z));
+                assertEquals(((x + z) % 3 == 0 ? MetaBiome.PLAINS : MetaBiome.FOREST).getNumericId(), data.biome(x, z));
+                assertEquals(data.biome(x, z), data.biomes()[z * 16 + x]);
+            }
+        }
+        assertTrue(data.intersectsSurface(ChunkPos.blockToCube(-64 - 15 * 11)));
+        assertTrue(data.intersectsSurface(ChunkPos.blockToCube(15 * 37 - 64)));
+    }
+
+    @Test
+    public void testExtremeHeightsAreClamped() {
+        CachedChunkData.Builder builder = CachedChunkData.builder();
+        builder.surfaceHeight(0, 0, Integer.MIN_VALUE);
+        builder.surfaceHeight(15, 15, Integer.MAX_VALUE);
+        builder.surfaceHeight(7, 7, 1234);
+        CachedChunkData data = builder.build();
+
+        assertEquals(CachedChunkData.MIN_HEIGHT, data.surfaceHeight(0, 0));
+        assertEquals(CachedChunkData.MAX_HEIGHT, data.surfaceHeight(15, 15));
+        assertEquals(1234, data.surfaceHeight(7, 7));
+        assertEquals(CachedChunkData.BLANK_HEIGHT, data.surfaceHeight(3, 4));
+    }
+
+    @Test
+    public void testUniformChunksAreShared() {
+        CachedChunkData a = this.uniform(-20, new byte[16 * 16]);
+        CachedChunkData b = this.uniform(-20, new byte[16 * 16]);
+        assertSame(a, b);
+        assertEquals(-20, a.surfaceHeight(3, 7));
+        assertEquals(MetaBiome.DEEP_OCEAN.getNumericId(), a.biome(3, 7));
+
+        byte[] treeCover = new byte[16 * 16];
+        treeCover[42] = 1;
+        assertNotSame(a, this.uniform(-20, treeCover));
+        assertNotSame(a, this.uniform(-21, new byte[16 * 16]));
+    }
+
+    @Test
+    public void testCustomAttributes() {
+        byte[] treeCover = new byte[16 * 16];
+        treeCover[7] = 42;
+
+        CachedChunkData.Builder builder = CachedChunkData.builder();
+        builder.putCustom(EarthGeneratorPipelines.DATA_TREE_COVER, treeCover);
+        builder.putCustom("test_attribute", new int[]{ 1, 2, 3 });
+        CachedChunkData data = builder.build();
+
+        assertSame(treeCover, data.getCustom(EarthGeneratorPipelines.DATA_TREE_COVER));
+        assertSame(treeCover, data.getCustom(EarthGeneratorPipelines.KEY_DATA_TREE_COVER));
+        assertArrayEquals(new int[]{ 1, 2, 3 }, data.getCustom(AttributeKey.of("test_attribute", int[].class)));
+        assertNull(data.getCustom("missing_attribute", null));
+
+        //the builder must not retain any attributes once it has been built
+        assertNull(CachedChunkData.builder().getCustom(EarthGeneratorPipelines.DATA_TREE_COVER, null));
+    }
+
+    @Test
+    public void testManyAttributes() {
+        //slots are assigned on demand, and there is no limit on their number
+        @SuppressWarnings("unchecked")
+        AttributeKey<int[]>[] keys = new AttributeKey[AttributeKey.slotCount() + 100];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = AttributeKey.of("test_many_attributes_" + i, int[].class);
+        }
+
+        CachedChunkData.Builder builder = CachedChunkData.builder();
+        for (int i = 0; i < keys.length; i += 3) {
+            builder.putCustom(keys[i], new int[]{ i });
+        }
+        CachedChunkData data = builder.build();
+
+        for (int i = 0; i < keys.length; i++) {
+            if (i % 3 == 0) {
+                assertArrayEquals(new int[]{ i }, data.getCustom(keys[i]));
+            } else {
+                assertNull(data.getCustom(keys[i], null));
+            }
+        }
+    }
+
+    private CachedChunkData uniform(int height, byte[] treeCover) {
+        CachedChunkData.Builder builder = CachedChunkData.builder();
+        Arrays.fill(builder.biomes(), null);
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                builder.surfaceHeight(x, z, height);
+            }
+        }
+        builder.putCustom(EarthGeneratorPipelines.DATA_TREE_COVER, treeCover);
+        return builder.build();
+    }
+}
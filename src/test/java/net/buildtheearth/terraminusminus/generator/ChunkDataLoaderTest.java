@@ -0,0 +1,151 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.generator.data.HeightsBaker;
+import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
+import net.buildtheearth.terraminusminus.generator.data.NullIslandBaker;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+import static org.junit.Assert.*;
+
+public class ChunkDataLoaderTest {
+    @BeforeClass
+    public static void setupBiomes() {
+        if (BiomesRegistry.get() == null) {
+            BiomesRegistry.setDefaultBiomesRegistry(new BiomesRegistry() {
+            });
+        }
+    }
+
+    @Test
+    public void testRegionMatchesColumns() {
+        CountingHeightsBaker heights = new CountingHeightsBaker();
+        ChunkDataLoader loader = new ChunkDataLoader(datasets(), new IEarthDataBaker<?>[]{ heights, new NullIslandBaker() }, Runnable::run);
+
+        //the region overlaps null island, where the heights aren't baked at all
+        ChunkPos min = new ChunkPos(-6, -2);
+        ChunkPos max = new ChunkPos(1, 4);
+        CompletableFuture<CachedChunkData>[] region = loader.loadRegion(min, max, RequestTicket.UNTRACKED);
+        assertEquals(8 * 7, region.length);
+
+        for (int i = 0, x = min.x(); x <= max.x(); x++) {
+            for (int z = min.z(); z <= max.z(); z++, i++) {
+                ChunkPos pos = new ChunkPos(x, z);
+                assertEquals(!NullIslandBaker.isNullIsland(x, z), heights.baked.contains(pos));
+                assertSameData(pos, loader.load(pos, RequestTicket.UNTRACKED).join(), region[i].join());
+            }
+        }
+    }
+
+    @Test
+    public void testCancelledRegionIsNotBaked() {
+        CountingHeightsBaker heights = new CountingHeightsBaker();
+        ChunkDataLoader loader = new ChunkDataLoader(datasets(), new IEarthDataBaker<?>[]{ heights }, Runnable::run);
+
+        RequestTicket ticket = new RequestTicket.Mutable(0.0d);
+        ticket.cancel();
+        for (CompletableFuture<CachedChunkData> future : loader.loadRegion(new ChunkPos(4, 4), new ChunkPos(5, 5), ticket)) {
+            assertTrue(future.isCompletedExceptionally());
+        }
+        assertTrue(heights.baked.isEmpty());
+    }
+
+    @Test
+    public void testFailedBakeReleasesBuilder() {
+        ChunkDataLoader loader = new ChunkDataLoader(datasets(), new IEarthDataBaker<?>[]{ new FailingBaker() }, Runnable::run);
+
+        //everything runs on this thread, so the thread's cached builder must be available again after each failed bake
+        CachedChunkData.Builder cached = CachedChunkData.builder();
+        cached.discard();
+
+        assertTrue(loader.load(new ChunkPos(4, 4), RequestTicket.UNTRACKED).isCompletedExceptionally());
+        assertSame(cached, CachedChunkData.builder());
+        cached.discard();
+
+        for (CompletableFuture<CachedChunkData> future : loader.loadRegion(new ChunkPos(4, 4), new ChunkPos(5, 5), RequestTicket.UNTRACKED)) {
+            assertTrue(future.isCompletedExceptionally());
+        }
+        assertSame(cached, CachedChunkData.builder());
+        cached.discard();
+    }
+
+    private static GeneratorDatasets datasets() {
+        return new GeneratorDatasets(Collections.singletonMap(EarthGeneratorPipelines.KEY_DATASET_HEIGHTS, new SlopeDataset()), new EquirectangularProjection());
+    }
+
+    private static void assertSameData(ChunkPos pos, CachedChunkData expected, CachedChunkData actual) {
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                String message = pos + " at " + x + ',' + z;
+                assertEquals(message, expected.surfaceHeight(x, z), actual.surfaceHeight(x, z));
+                assertEquals(message, expected.groundHeight(x, z), actual.groundHeight(x, z));
+                assertEquals(message, expected.biome(x, z), actual.biome(x, z));
+                assertEquals(message, expected.surfaceBlock(x, z), actual.surfaceBlock(x, z));
+            }
+        }
+        assertArrayEquals(pos.toString(), expected.custom(), actual.custom());
+    }
+
+    /**
+     * A dataset whose values only depend on the sampled position, so the same samples are returned regardless of how the area is split up.
+     * Positions in the south-west are in the ocean.
+     */
+    private static class SlopeDataset implements IScalarDataset {
+        @Override
+        public CompletableFuture<Double> getAsync(double lon, double lat) {
+            return CompletableFuture.completedFuture(this.sample(lon, lat));
+        }
+
+        @Override
+        public CompletableFuture<double[]> getAsync(CornerBoundingBox2d bounds, int sizeX, int sizeZ) {
+            double[] values = new double[sizeX * sizeZ];
+            double[] point = new double[2];
+            for (int x = 0; x < sizeX; x++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    bounds.point(point, x / (double) sizeX, z / (double) sizeZ);
+                    values[x * sizeZ + z] = this.sample(point[0], point[1]);
+                }
+            }
+            return CompletableFuture.completedFuture(values);
+        }
+
+        private double sample(double lon, double lat) {
+            //samples are taken at whole blocks, so offset the values to keep rounding errors from changing the baked heights
+            return lon + lat < -40.5d ? Double.NaN : lon * 2.0d - lat * 3.0d + 0.5d;
+        }
+    }
+
+    private static class FailingBaker implements IEarthDataBaker<Void> {
+        @Override
+        public CompletableFuture<Void> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void bake(ChunkPos pos, CachedChunkData.Builder builder, Void data) {
+            throw new IllegalStateException("test");
+        }
+    }
+
+    private static class CountingHeightsBaker extends HeightsBaker {
+        final Set<ChunkPos> baked = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void bake(ChunkPos pos, CachedChunkData.Builder builder, double[] heights) {
+            this.baked.add(pos);
+            super.bake(pos, builder, heights);
+        }
+    }
+}
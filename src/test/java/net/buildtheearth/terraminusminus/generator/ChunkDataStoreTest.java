@@ -0,0 +1,205 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.buildtheearth.terraminusminus.TerraConfig;
+import net.buildtheearth.terraminusminus.substitutes.BlockState;
+import net.buildtheearth.terraminusminus.substitutes.BlockStateBuilder;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.substitutes.Identifier;
+import net.buildtheearth.terraminusminus.substitutes.MetaBiome;
+import net.buildtheearth.terraminusminus.util.AttributeKey;
+
+import static org.junit.Assert.*;
+
+public class ChunkDataStoreTest {
+    private static final AttributeKey<byte[]> KEY_BYTES = AttributeKey.of("store_test_bytes", byte[].class);
+    private static final AttributeKey<int[]> KEY_INTS = AttributeKey.of("store_test_ints", int[].class);
+    private static final AttributeKey<double[]> KEY_DOUBLES = AttributeKey.of("store_test_doubles", double[].class);
+
+    @BeforeClass
+    public static void setupBiomes() {
+        if (BiomesRegistry.get() == null) {
+            BiomesRegistry.setDefaultBiomesRegistry(new BiomesRegistry() {
+            });
+        }
+    }
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.DAYS.toMillis(20000L));
+    private int ttl;
+
+    @Before
+    public void saveConfig() {
+        this.ttl = TerraConfig.chunkStore.ttl;
+    }
+
+    @After
+    public void restoreConfig() {
+        TerraConfig.chunkStore.ttl = this.ttl;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        TerraConfig.chunkStore.ttl = 0;
+        Path root = this.folder.getRoot().toPath();
+
+        ChunkPos[] positions = { new ChunkPos(0, 0), new ChunkPos(3, 17), new ChunkPos(-1, -1), new ChunkPos(ChunkDataStore.REGION_SIZE, 5) };
+        CachedChunkData[] columns = new CachedChunkData[positions.length];
+
+        ChunkDataStore store = new ChunkDataStore(root, this.clock::get);
+        for (int i = 0; i < positions.length; i++) {
+            store.writeNow(positions[i], columns[i] = column(new Random(i), 1));
+        }
+        for (int i = 0; i < positions.length; i++) {
+            assertColumnEquals(columns[i], store.readNow(positions[i]));
+        }
+        assertNull(store.readNow(new ChunkPos(1, 0)));
+        assertNull(store.readNow(new ChunkPos(100, 100)));
+
+        //the header is read back correctly after the region files have been closed
+        store.close();
+        ChunkDataStore reopened = new ChunkDataStore(root, this.clock::get);
+        for (int i = 0; i < positions.length; i++) {
+            assertColumnEquals(columns[i], reopened.readNow(positions[i]));
+        }
+        assertNull(reopened.readNow(new ChunkPos(1, 0)));
+        reopened.close();
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        TerraConfig.chunkStore.ttl = 60;
+        ChunkDataStore store = new ChunkDataStore(this.folder.getRoot().toPath(), this.clock::get);
+
+        ChunkPos pos = new ChunkPos(4, 2);
+        CachedChunkData column = column(new Random(0L), 1);
+        store.writeNow(pos, column);
+
+        this.clock.addAndGet(TimeUnit.MINUTES.toMillis(59L));
+        assertColumnEquals(column, store.readNow(pos));
+
+        this.clock.addAndGet(TimeUnit.MINUTES.toMillis(2L));
+        assertNull(store.readNow(pos));
+
+        //writing the column again makes it valid again
+        store.writeNow(pos, column);
+        assertColumnEquals(column, store.readNow(pos));
+        store.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        TerraConfig.chunkStore.ttl = 0;
+        Path root = this.folder.getRoot().toPath();
+        ChunkDataStore store = new ChunkDataStore(root, this.clock::get);
+
+        ChunkPos other = new ChunkPos(1, 1);
+        CachedChunkData otherColumn = column(new Random(-1L), 1024);
+        store.writeNow(other, otherColumn);
+
+        //repeatedly replacing a column would make the file grow forever if it was never compacted
+        ChunkPos pos = new ChunkPos(0, 0);
+        CachedChunkData column = null;
+        for (int i = 0; i < 256; i++) {
+            store.writeNow(pos, column = column(new Random(i), 1024));
+        }
+
+        assertColumnEquals(column, store.readNow(pos));
+        assertColumnEquals(otherColumn, store.readNow(other));
+        assertTrue(Files.size(root.resolve("r.0.0.bin")) < 2L << 20L);
+
+        store.close();
+        ChunkDataStore reopened = new ChunkDataStore(root, this.clock::get);
+        assertColumnEquals(column, reopened.readNow(pos));
+        assertColumnEquals(otherColumn, reopened.readNow(other));
+        reopened.close();
+    }
+
+    @Test
+    public void testLostDataIsDetected() throws Exception {
+        TerraConfig.chunkStore.ttl = 0;
+        Path root = this.folder.getRoot().toPath();
+        ChunkDataStore store = new ChunkDataStore(root, this.clock::get);
+
+        ChunkPos intact = new ChunkPos(2, 3);
+        CachedChunkData intactColumn = column(new Random(0L), 1);
+        store.writeNow(intact, intactColumn);
+        ChunkPos lost = new ChunkPos(3, 2);
+        store.writeNow(lost, column(new Random(1L), 1));
+        store.close();
+
+        //simulate a crash after the header was written, but before the data of the last column reached the disk
+        Path file = root.resolve("r.0.0.bin");
+        byte[] contents = Files.readAllBytes(file);
+        Arrays.fill(contents, contents.length - 16, contents.length, (byte) 0);
+        Files.write(file, contents);
+
+        ChunkDataStore reopened = new ChunkDataStore(root, this.clock::get);
+        assertColumnEquals(intactColumn, reopened.readNow(intact));
+        assertNull(reopened.readNow(lost));
+        reopened.close();
+    }
+
+    /**
+     * Creates a column with random contents.
+     *
+     * @param attributeSize the length of the custom attribute arrays, whose contents are incompressible
+     */
+    private static CachedChunkData column(Random random, int attributeSize) {
+        BlockState[] palette = {
+                null,
+                BlockStateBuilder.get().reset().setBlock(new Identifier("stone")).build(),
+                BlockStateBuilder.get().reset().setBlock(new Identifier("grass_block")).setProperty("snowy", random.nextBoolean()).build(),
+                BlockStateBuilder.get().reset().setBlock(new Identifier("oak_log")).setProperty("axis", "y").setProperty("age", random.nextInt(8)).build()
+        };
+
+        CachedChunkData.Builder builder = CachedChunkData.builder();
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                builder.surfaceHeight(x, z, random.nextInt(4000) - 2000);
+                if (random.nextInt(4) == 0) {
+                    builder.updateWaterDepth(x, z, random.nextInt(10));
+                }
+                builder.biomes()[z * 16 + x] = random.nextBoolean() ? MetaBiome.PLAINS : MetaBiome.FOREST;
+                builder.surfaceBlocks()[x * 16 + z] = palette[random.nextInt(palette.length)];
+            }
+        }
+
+        byte[] bytes = new byte[attributeSize];
+        random.nextBytes(bytes);
+        builder.putCustom(KEY_BYTES, bytes);
+        builder.putCustom(KEY_INTS, random.ints(attributeSize).toArray());
+        builder.putCustom(KEY_DOUBLES, random.doubles(attributeSize).toArray());
+        return builder.build();
+    }
+
+    private static void assertColumnEquals(CachedChunkData expected, CachedChunkData actual) {
+        assertNotNull(actual);
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                assertEquals(expected.surfaceHeight(x, z), actual.surfaceHeight(x, z));
+                assertEquals(expected.groundHeight(x, z), actual.groundHeight(x, z));
+                assertEquals(expected.biome(x, z), actual.biome(x, z));
+                assertEquals(expected.surfaceBlock(x, z), actual.surfaceBlock(x, z));
+            }
+        }
+        assertArrayEquals(expected.getCustom(KEY_BYTES), actual.getCustom(KEY_BYTES));
+        assertArrayEquals(expected.getCustom(KEY_INTS), actual.getCustom(KEY_INTS));
+        assertTrue(Arrays.equals(expected.getCustom(KEY_DOUBLES), actual.getCustom(KEY_DOUBLES)));
+    }
+}
@@ -0,0 +1,100 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import net.buildtheearth.terraminusminus.dataset.Coverage;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+
+import static org.junit.Assert.*;
+
+public class CoverageIndexTest {
+    @Test
+    public void testCellsAreCached() {
+        TestIndex index = new TestIndex();
+        index.coverage = Coverage.NONE;
+
+        assertTrue(index.isEmpty(new ChunkPos(0, 0)));
+        assertTrue(index.isEmpty(new ChunkPos(CoverageIndex.CELL_SIZE - 1, 3)));
+        assertEquals(Collections.singletonList(new ChunkPos(0, 0)), index.computed);
+
+        //the coverage is cached, even if the datasets would now answer differently
+        index.coverage = Coverage.POSSIBLE;
+        assertTrue(index.isEmpty(new ChunkPos(5, 7)));
+        assertFalse(index.isEmpty(new ChunkPos(-1, 0)));
+        assertFalse(index.isEmpty(new ChunkPos(-1, 0)));
+        assertEquals(2, index.computed.size());
+        assertEquals(new ChunkPos(-CoverageIndex.CELL_SIZE, 0), index.computed.get(1));
+    }
+
+    @Test
+    public void testUnknownCoverageIsNotCached() {
+        TestIndex index = new TestIndex();
+        index.coverage = Coverage.UNKNOWN;
+
+        //columns with unknown coverage must be baked, and the coverage is computed again until it's known
+        assertFalse(index.isEmpty(new ChunkPos(0, 0)));
+        assertFalse(index.isEmpty(new ChunkPos(1, 1)));
+        assertEquals(2, index.computed.size());
+
+        index.coverage = Coverage.NONE;
+        assertTrue(index.isEmpty(new ChunkPos(2, 2)));
+        assertTrue(index.isEmpty(new ChunkPos(3, 3)));
+        assertEquals(3, index.computed.size());
+    }
+
+    @Test
+    public void testCollidingCellsOverwriteEachOther() {
+        TestIndex index = new TestIndex();
+        index.coverage = Coverage.NONE;
+
+        //find another cell which maps to the same slot as cell (0,0)
+        int slot = slot(0, 0);
+        int otherX = 1;
+        while (slot(otherX, 0) != slot) {
+            otherX++;
+        }
+        ChunkPos first = new ChunkPos(0, 0);
+        ChunkPos second = new ChunkPos(otherX << CoverageIndex.CELL_SHIFT, 0);
+
+        assertTrue(index.isEmpty(first));
+        index.coverage = Coverage.POSSIBLE;
+        assertFalse(index.isEmpty(second));
+        assertFalse(index.isEmpty(second));
+        assertEquals(2, index.computed.size());
+
+        //the first cell was evicted, so its coverage is computed again
+        assertFalse(index.isEmpty(first));
+        assertEquals(3, index.computed.size());
+        assertEquals(first, index.computed.get(2));
+    }
+
+    private static int slot(int cellX, int cellZ) {
+        long key = ((cellX & CoverageIndex.COORD_MASK) << (CoverageIndex.COORD_BITS + CoverageIndex.STATE_BITS))
+                | ((cellZ & CoverageIndex.COORD_MASK) << CoverageIndex.STATE_BITS);
+        return (int) HashCommon.mix(key) & (CoverageIndex.CAPACITY - 1);
+    }
+
+    /**
+     * A {@link CoverageIndex} which records the cells whose coverage is computed, and gives them all the same coverage.
+     */
+    private static class TestIndex extends CoverageIndex {
+        final List<ChunkPos> computed = new ArrayList<>();
+        Coverage coverage;
+
+        TestIndex() {
+            super(new GeneratorDatasets(Collections.emptyMap(), new EquirectangularProjection()), new IEarthAsyncPipelineStep<?, ?, ?>[0]);
+        }
+
+        @Override
+        protected Coverage computeCoverage(int cellX, int cellZ) {
+            this.computed.add(new ChunkPos(cellX << CELL_SHIFT, cellZ << CELL_SHIFT));
+            return this.coverage;
+        }
+    }
+}
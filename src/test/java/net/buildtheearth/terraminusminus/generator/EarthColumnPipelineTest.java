@@ -0,0 +1,142 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.generator.biome.IEarthBiomeFilter;
+import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.substitutes.IBiome;
+import net.buildtheearth.terraminusminus.substitutes.MetaBiome;
+import net.buildtheearth.terraminusminus.util.AttributeKey;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraminusminus.util.ImmutableCompactArray;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+import net.buildtheearth.terraminusminus.util.bvh.Bounds2d;
+
+import static org.junit.Assert.*;
+
+public class EarthColumnPipelineTest {
+    private static final AttributeKey<IScalarDataset> KEY_SHARED = AttributeKey.of("test_shared_dataset", IScalarDataset.class);
+
+    @BeforeClass
+    public static void setupBiomes() {
+        if (BiomesRegistry.get() == null) {
+            BiomesRegistry.setDefaultBiomesRegistry(new BiomesRegistry() {
+            });
+        }
+    }
+
+    @Test
+    public void testQueriesAreShared() {
+        AtomicInteger queries = new AtomicInteger();
+        EarthColumnPipeline pipeline = pipeline(queries);
+
+        ChunkPos pos = new ChunkPos(3, -5);
+        CompletableFuture<CachedChunkData> data = pipeline.data(pos, RequestTicket.UNTRACKED);
+        CompletableFuture<ImmutableCompactArray<IBiome<?>>> biomes = pipeline.biomes(pos, RequestTicket.UNTRACKED);
+
+        assertEquals(7, data.join().surfaceHeight(4, 9));
+        assertSame(MetaBiome.PLAINS, biomes.join().get(42));
+        assertEquals("both pipelines must share the same query", 1, queries.get());
+
+        //a different column gets its own pass
+        pipeline.biomes(new ChunkPos(4, -5), RequestTicket.UNTRACKED).join();
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testRegionQueriesAreShared() {
+        AtomicInteger queries = new AtomicInteger();
+        EarthColumnPipeline pipeline = pipeline(queries);
+
+        ChunkPos min = new ChunkPos(3, -5);
+        ChunkPos max = new ChunkPos(5, -3);
+        CompletableFuture<CachedChunkData>[] data = pipeline.dataRegion(min, max, RequestTicket.UNTRACKED);
+        CompletableFuture<ImmutableCompactArray<IBiome<?>>>[] biomes = pipeline.biomesRegion(min, max, RequestTicket.UNTRACKED);
+        assertEquals(9, data.length);
+        assertEquals(9, biomes.length);
+
+        for (int i = 0; i < 9; i++) {
+            assertEquals(7, data[i].join().surfaceHeight(4, 9));
+            assertSame(MetaBiome.PLAINS, biomes[i].join().get(42));
+        }
+        assertEquals("both pipelines must share the same query for the whole region", 1, queries.get());
+    }
+
+    /**
+     * @param queries counts the queries for more than a single sample
+     * @return a pipeline whose data bakers and biome filters both sample the same dataset
+     */
+    private static EarthColumnPipeline pipeline(AtomicInteger queries) {
+        IScalarDataset dataset = new IScalarDataset() {
+            @Override
+            public CompletableFuture<Double> getAsync(double lon, double lat) {
+                return CompletableFuture.completedFuture(7.0d);
+            }
+
+            @Override
+            public CompletableFuture<double[]> getAsync(CornerBoundingBox2d bounds, int sizeX, int sizeZ) {
+                queries.incrementAndGet();
+                double[] values = new double[sizeX * sizeZ];
+                Arrays.fill(values, 7.0d);
+                return CompletableFuture.completedFuture(values);
+            }
+        };
+
+        GeneratorDatasets datasets = new GeneratorDatasets(Collections.singletonMap(KEY_SHARED.name(), dataset), new EquirectangularProjection());
+        return new EarthColumnPipeline(datasets, new IEarthDataBaker<?>[]{ new HeightBaker() }, new IEarthBiomeFilter<?>[]{ new PlainsFilter() }, Runnable::run);
+    }
+
+    private static CompletableFuture<Function<ChunkPos, double[]>> requestSharedRegion(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        return datasets.getCustom(KEY_SHARED).getAsync(boundsGeo, (max.x() - min.x() + 1) << 4, (max.z() - min.z() + 1) << 4)
+                .thenApply(data -> IEarthAsyncPipelineStep.splitRegionSamples(data, min, max));
+    }
+
+    private static class HeightBaker implements IEarthDataBaker<double[]> {
+        @Override
+        public CompletableFuture<double[]> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+            return datasets.getCustom(KEY_SHARED).getAsync(boundsGeo, 16, 16);
+        }
+
+        @Override
+        public CompletableFuture<Function<ChunkPos, double[]>> requestRegionData(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+            return requestSharedRegion(min, max, datasets, boundsGeo);
+        }
+
+        @Override
+        public void bake(ChunkPos pos, CachedChunkData.Builder builder, double[] data) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    builder.surfaceHeight(x, z, (int) data[x * 16 + z]);
+                }
+            }
+        }
+    }
+
+    private static class PlainsFilter implements IEarthBiomeFilter<double[]> {
+        @Override
+        public CompletableFuture<double[]> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+            return datasets.getCustom(KEY_SHARED).getAsync(boundsGeo, 16, 16);
+        }
+
+        @Override
+        public CompletableFuture<Function<ChunkPos, double[]>> requestRegionData(ChunkPos min, ChunkPos max, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+            return requestSharedRegion(min, max, datasets, boundsGeo);
+        }
+
+        @Override
+        public void bake(ChunkPos pos, ChunkBiomesBuilder builder, double[] data) {
+            Arrays.fill(builder.state(), MetaBiome.PLAINS);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.buildtheearth.terraminusminus.dataset.IScalarDataset;
+import net.buildtheearth.terraminusminus.generator.data.HeightsBaker;
+import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.CornerBoundingBox2d;
+
+import static org.junit.Assert.*;
+
+public class EarthLodProviderTest {
+
+    @BeforeClass
+    public static void setupBiomes() {
+        if (BiomesRegistry.get() == null) {
+            BiomesRegistry.setDefaultBiomesRegistry(new BiomesRegistry() {
+            });
+        }
+    }
+
+    @Test
+    public void testTilesUseZoomedDatasets() {
+        AtomicInteger fullResolutionQueries = new AtomicInteger();
+        StubDataset zoomed = new StubDataset(null);
+        StubDataset heights = new StubDataset(zoomed) {
+            @Override
+            public CompletableFuture<double[]> getAsync(CornerBoundingBox2d bounds, int sizeX, int sizeZ) {
+                fullResolutionQueries.incrementAndGet();
+                return super.getAsync(bounds, sizeX, sizeZ);
+            }
+        };
+
+        GeneratorDatasets datasets = new GeneratorDatasets(Collections.singletonMap(EarthGeneratorPipelines.KEY_DATASET_HEIGHTS, heights), new EquirectangularProjection());
+        EarthLodProvider provider = new EarthLodProvider(datasets, new IEarthDataBaker<?>[]{ new HeightsBaker() }, "");
+
+        CachedChunkData data = provider.getTileForChunkAsync(new ChunkPos(5, 1), 2).join();
+        assertEquals(0, fullResolutionQueries.get());
+        assertEquals(2, heights.requestedZoom);
+        assertEquals(1, zoomed.queries.get());
+
+        //tile (1, 0) at zoom 2 covers 4x4 columns, so each of its samples covers 4x4 blocks
+        assertEquals(64.0d, zoomed.lastBounds.maxX() - zoomed.lastBounds.minX(), 1.0e-9d);
+        assertEquals(64.0d, zoomed.lastBounds.minX(), 1.0e-9d);
+        assertEquals(12, data.surfaceHeight(3, 7));
+
+        //tiles are cached
+        assertSame(data, provider.getTileAsync(1, 0, 2).join());
+        assertEquals(1, zoomed.queries.get());
+    }
+
+    private static class StubDataset implements IScalarDataset {
+        final StubDataset zoomed;
+        final AtomicInteger queries = new AtomicInteger();
+        volatile CornerBoundingBox2d lastBounds;
+        volatile int requestedZoom = -1;
+
+        StubDataset(StubDataset zoomed) {
+            this.zoomed = zoomed;
+        }
+
+        @Override
+        public CompletableFuture<Double> getAsync(double lon, double lat) {
+            return CompletableFuture.completedFuture(12.0d);
+        }
+
+        @Override
+        public CompletableFuture<double[]> getAsync(CornerBoundingBox2d bounds, int sizeX, int sizeZ) {
+            this.queries.incrementAndGet();
+            this.lastBounds = bounds;
+            double[] values = new double[sizeX * sizeZ];
+            Arrays.fill(values, 12.0d);
+            return CompletableFuture.completedFuture(values);
+        }
+
+        @Override
+        public IScalarDataset atZoom(int zoom) {
+            this.requestedZoom = zoom;
+            return this.zoomed != null ? this.zoomed : this;
+        }
+    }
+}
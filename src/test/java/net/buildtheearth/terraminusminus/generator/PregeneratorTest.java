@@ -0,0 +1,192 @@
+package net.buildtheearth.terraminusminus.generator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.buildtheearth.terraminusminus.generator.data.IEarthDataBaker;
+import net.buildtheearth.terraminusminus.projection.EquirectangularProjection;
+import net.buildtheearth.terraminusminus.substitutes.ChunkPos;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+
+import static net.buildtheearth.terraminusminus.generator.Pregenerator.*;
+import static org.junit.Assert.*;
+
+public class PregeneratorTest {
+    private static final String DIGEST = "settings";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRegionAlignment() throws Exception {
+        ChunkPos min = new ChunkPos(-5, 3);
+        ChunkPos max = new ChunkPos(REGION_SIZE * 2 + 6, REGION_SIZE + 1);
+        TestPregenerator pregenerator = new TestPregenerator(min, max, 1, null);
+        assertEquals(4 * 2, pregenerator.totalRegions());
+
+        long columns = 0L;
+        for (int i = 0; i < pregenerator.totalRegions(); i++) {
+            ChunkPos regionMin = pregenerator.regionMin(i);
+            ChunkPos regionMax = pregenerator.regionMax(i);
+
+            //every region lies within a single region file of the chunk store, and is clipped to the area
+            assertEquals(regionMin.x() >> REGION_SHIFT, regionMax.x() >> REGION_SHIFT);
+            assertEquals(regionMin.z() >> REGION_SHIFT, regionMax.z() >> REGION_SHIFT);
+            assertTrue(regionMin.x() == min.x() || (regionMin.x() & (REGION_SIZE - 1)) == 0);
+            assertTrue(regionMin.z() == min.z() || (regionMin.z() & (REGION_SIZE - 1)) == 0);
+            assertTrue(regionMax.x() == max.x() || (regionMax.x() & (REGION_SIZE - 1)) == REGION_SIZE - 1);
+            assertTrue(regionMax.z() == max.z() || (regionMax.z() & (REGION_SIZE - 1)) == REGION_SIZE - 1);
+            assertTrue(regionMin.x() >= min.x() && regionMax.x() <= max.x());
+            assertTrue(regionMin.z() >= min.z() && regionMax.z() <= max.z());
+
+            assertEquals((regionMax.x() - regionMin.x() + 1) * (regionMax.z() - regionMin.z() + 1), pregenerator.columns(i));
+            columns += pregenerator.columns(i);
+        }
+
+        //together, the regions cover the whole area exactly once
+        assertEquals((long) (max.x() - min.x() + 1) * (max.z() - min.z() + 1), columns);
+    }
+
+    @Test(timeout = 10000)
+    public void testSerpentineOrder() throws Exception {
+        TestPregenerator pregenerator = new TestPregenerator(new ChunkPos(0, 0), new ChunkPos(REGION_SIZE * 3 - 1, REGION_SIZE * 3 - 1), 1, null);
+        pregenerator.start().join();
+
+        List<ChunkPos> order = pregenerator.loaded;
+        assertEquals(9, order.size());
+        for (int i = 0; i < order.size(); i++) {
+            int row = i / 3;
+            int column = (row & 1) == 0 ? i % 3 : 2 - i % 3;
+            assertEquals(new ChunkPos(column * REGION_SIZE, row * REGION_SIZE), order.get(i));
+
+            if (i > 0) { //consecutive regions are always adjacent
+                ChunkPos previous = order.get(i - 1);
+                assertEquals(REGION_SIZE, Math.abs(order.get(i).x() - previous.x()) + Math.abs(order.get(i).z() - previous.z()));
+            }
+        }
+        assertEquals(9, pregenerator.completedRegions());
+        assertEquals(9L * REGION_SIZE * REGION_SIZE, pregenerator.completedColumns());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrencyLimit() throws Exception {
+        int concurrency = 3;
+        TestPregenerator pregenerator = new TestPregenerator(new ChunkPos(0, 0), new ChunkPos(REGION_SIZE * 4 - 1, REGION_SIZE * 2 - 1), concurrency, null);
+        pregenerator.manual = true;
+        CompletableFuture<Void> done = pregenerator.start();
+
+        int total = pregenerator.totalRegions();
+        int started = 0;
+        Deque<CompletableFuture<Void>> active = new ArrayDeque<>();
+        while (started < total || !active.isEmpty()) {
+            while (active.size() < concurrency && started < total) {
+                CompletableFuture<Void> future = pregenerator.pending.poll(5L, TimeUnit.SECONDS);
+                assertNotNull("a worker is idle", future);
+                active.add(future);
+                started++;
+            }
+            assertNull("too many regions are being loaded at once", pregenerator.pending.poll(20L, TimeUnit.MILLISECONDS));
+
+            pregenerator.inFlight.decrementAndGet();
+            active.poll().complete(null);
+        }
+
+        done.get(5L, TimeUnit.SECONDS);
+        assertEquals(concurrency, pregenerator.maxInFlight.get());
+        assertEquals(total, pregenerator.completedRegions());
+    }
+
+    @Test(timeout = 10000)
+    public void testProgressPersistence() throws Exception {
+        Path progress = this.folder.getRoot().toPath().resolve("progress.bin");
+        ChunkPos min = new ChunkPos(-REGION_SIZE, 0);
+        ChunkPos max = new ChunkPos(REGION_SIZE * 2 - 1, REGION_SIZE * 2 - 1);
+
+        //the first run is interrupted before it can load every region
+        TestPregenerator first = new TestPregenerator(min, max, 2, progress);
+        first.dropped.add(1);
+        first.dropped.add(4);
+        first.start().join();
+        assertEquals(4, first.completedRegions());
+
+        //the second run only loads the regions which weren't completed
+        TestPregenerator second = new TestPregenerator(min, max, 2, progress);
+        assertEquals(4, second.completedRegions());
+        second.start().join();
+        assertEquals(new HashSet<>(Arrays.asList(second.regionMin(1), second.regionMin(4))), new HashSet<>(second.loaded));
+        assertEquals(6, second.completedRegions());
+
+        TestPregenerator third = new TestPregenerator(min, max, 2, progress);
+        assertEquals(6, third.completedRegions());
+        third.start().join();
+        assertTrue(third.loaded.isEmpty());
+
+        //progress can't be resumed with a different area or different settings
+        try {
+            new TestPregenerator(min, new ChunkPos(max.x() + 1, max.z()), 2, progress);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new TestPregenerator(min, max, 2, progress, "other settings");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static class TestPregenerator extends Pregenerator {
+        final List<ChunkPos> loaded = Collections.synchronizedList(new ArrayList<>());
+        final Set<Integer> dropped = new HashSet<>();
+        final BlockingQueue<CompletableFuture<Void>> pending = new LinkedBlockingQueue<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        volatile boolean manual;
+
+        TestPregenerator(ChunkPos minChunk, ChunkPos maxChunk, int concurrency, Path progressFile) throws IOException {
+            this(minChunk, maxChunk, concurrency, progressFile, DIGEST);
+        }
+
+        TestPregenerator(ChunkPos minChunk, ChunkPos maxChunk, int concurrency, Path progressFile, String digest) throws IOException {
+            super(new ChunkDataLoader(new GeneratorDatasets(Collections.emptyMap(), new EquirectangularProjection()), new IEarthDataBaker<?>[0]), null,
+                    digest, minChunk, maxChunk, concurrency, progressFile);
+        }
+
+        @Override
+        protected CompletableFuture<Void> load(int index, RequestTicket ticket) {
+            this.loaded.add(this.regionMin(index));
+            this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            if (this.manual) {
+                this.pending.add(future);
+                return future;
+            }
+
+            this.inFlight.decrementAndGet();
+            if (this.dropped.contains(index)) { //behaves like a region which was cancelled by an interruption
+                future.completeExceptionally(new CancellationException());
+            } else {
+                future.complete(null);
+            }
+            return future;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package net.buildtheearth.terraminusminus.util.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import lombok.NonNull;
+import net.buildtheearth.terraminusminus.util.RequestTicket;
+
+import static org.junit.Assert.*;
+
+public class HostManagerTest {
+    private final List<String> served = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch blocking = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private HttpServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if ("/block".equals(path)) { //keep the only connection busy until every other request has been queued
+                this.blocking.countDown();
+                try {
+                    this.release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            } else {
+                this.served.add(path);
+            }
+            exchange.sendResponseHeaders(200, -1L);
+            exchange.close();
+        });
+        this.server.start();
+    }
+
+    @After
+    public void stopServer() {
+        this.release.countDown();
+        this.server.stop(0);
+    }
+
+    @Test(timeout = 10000L)
+    public void testRequestsAreServedByPriority() throws Exception {
+        HostManager manager = new HostManager(new Host(new URL("http", "127.0.0.1", this.server.getAddress().getPort(), "/")));
+
+        TestCallback blocker = this.submit(manager, "/block", new RequestTicket.Mutable(0.0d));
+        this.blocking.await();
+
+        TestCallback a = this.submit(manager, "/a", new RequestTicket.Mutable(3.0d));
+        TestCallback b = this.submit(manager, "/b", new RequestTicket.Mutable(1.0d));
+        RequestTicket.Mutable cancelled = new RequestTicket.Mutable(0.0d);
+        TestCallback c = this.submit(manager, "/c", cancelled);
+        RequestTicket.Mutable demoted = new RequestTicket.Mutable(0.5d);
+        TestCallback d = this.submit(manager, "/d", demoted);
+        TestCallback e = this.submit(manager, "/e", new RequestTicket.Mutable(2.0d));
+
+        //the tickets change while their requests are queued
+        cancelled.cancel();
+        demoted.priority(4.0d);
+
+        Http.NETWORK_EVENT_LOOP.submit(() -> {}).syncUninterruptibly(); //wait until every request has been queued
+        this.release.countDown();
+
+        for (TestCallback callback : new TestCallback[]{ blocker, a, b, d, e }) {
+            assertEquals(200, callback.result.join().intValue());
+        }
+        assertTrue(RequestTicket.isCancellation(c.result.handle((status, t) -> t).join()));
+
+        assertEquals(Arrays.asList("/b", "/e", "/a", "/d"), this.served);
+    }
+
+    private TestCallback submit(HostManager manager, String path, RequestTicket ticket) {
+        TestCallback callback = new TestCallback(ticket);
+        manager.submit(path, callback, EmptyHttpHeaders.INSTANCE);
+        return callback;
+    }
+
+    private static class TestCallback implements HostManager.Callback {
+        final RequestTicket ticket;
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        TestCallback(@NonNull RequestTicket ticket) {
+            this.ticket = ticket;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.ticket.isCancelled();
+        }
+
+        @Override
+        public double priority() {
+            return this.ticket.priority();
+        }
+
+        @Override
+        public void handle(FullHttpResponse response, Throwable throwable) {
+            if (throwable != null) {
+                this.result.completeExceptionally(throwable);
+            } else {
+                this.result.complete(response.status().code());
+            }
+        }
+    }
+}
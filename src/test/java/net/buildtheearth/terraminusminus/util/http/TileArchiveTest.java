@@ -0,0 +1,75 @@
+package net.buildtheearth.terraminusminus.util.http;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.netty.buffer.ByteBuf;
+
+import static org.junit.Assert.*;
+
+public class TileArchiveTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPackAndRead() throws Exception {
+        Map<String, String> tiles = new LinkedHashMap<>();
+        tiles.put("12/34.png", "ocean");
+        tiles.put("12/35.png", "ocean"); //identical contents should only be stored once
+        tiles.put("-1/-7.png", "land");
+        tiles.put("tile/3/4.json", "{\"type\":\"FeatureCollection\"}");
+        tiles.put("way/123456.json", "{\"type\":\"LineString\"}");
+        tiles.put("empty.json", "");
+
+        Path root = this.folder.newFolder("tiles").toPath();
+        long totalSize = 0L;
+        for (Map.Entry<String, String> entry : tiles.entrySet()) {
+            Path file = root.resolve(entry.getKey());
+            Files.createDirectories(file.getParent());
+            Files.write(file, entry.getValue().getBytes(StandardCharsets.UTF_8));
+            totalSize += entry.getValue().length();
+        }
+
+        File archiveFile = new File(this.folder.getRoot(), "tiles.tpa");
+        assertEquals(tiles.size(), TileArchive.pack(root, archiveFile.toPath()));
+        assertTrue(archiveFile.length() < 32L + tiles.size() * 20L + totalSize);
+
+        TileArchive archive = TileArchive.open(archiveFile.toPath());
+        assertEquals(tiles.size(), archive.size());
+        for (Map.Entry<String, String> entry : tiles.entrySet()) {
+            assertEquals(entry.getValue(), read(archive.getTile(entry.getKey())));
+        }
+        assertNull(archive.getTile("12/36.png"));
+        assertNull(archive.getTile("tiles/12/34.png"));
+    }
+
+    @Test(timeout = 5000)
+    public void testHttpGet() throws Exception {
+        Path root = this.folder.newFolder("tiles").toPath();
+        Files.createDirectories(root.resolve("1"));
+        Files.write(root.resolve("1/2.json"), "data".getBytes(StandardCharsets.UTF_8));
+
+        Path archive = this.folder.getRoot().toPath().resolve("tiles.tpa");
+        TileArchive.pack(root, archive);
+
+        assertEquals("data", read(Http.get(TileArchive.URL_PREFIX + archive + "!/1/2.json").join()));
+        assertNull(Http.get(TileArchive.URL_PREFIX + archive + "!/1/3.json").join());
+    }
+
+    private static String read(ByteBuf buf) {
+        assertNotNull(buf);
+        try {
+            return buf.toString(StandardCharsets.UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package net.buildtheearth.terraminusminus.util.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    @Test
+    public void testTimer() {
+        Timer timer = Metrics.timer("test.timer");
+        assertSame(timer, Metrics.timer("test.timer"));
+        timer.reset();
+
+        for (int i = 0; i < 99; i++) {
+            timer.record(500L); //all of these fall into the first bucket
+        }
+        timer.record(10_000_000L);
+
+        assertEquals(100L, timer.getCount());
+        assertEquals(10.0d, timer.getMaxMillis(), 0.0d);
+        assertTrue(timer.getP50Millis() <= 0.001024d);
+        assertTrue(timer.getP99Millis() <= 0.001024d);
+        assertTrue(timer.getMeanMillis() > 0.1d);
+    }
+
+    @Test
+    public void testCounter() {
+        Counter counter = Metrics.counter("test.counter");
+        counter.reset();
+        counter.increment();
+        counter.add(41L);
+        assertEquals(42L, counter.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        Metrics.counter("test.mismatch");
+        Metrics.timer("test.mismatch");
+    }
+}